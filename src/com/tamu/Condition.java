@@ -0,0 +1,22 @@
+package com.tamu;
+
+import storageManager.Schema;
+import storageManager.Tuple;
+
+// A condition compiled once for the tuples of one schema, so that evaluating it does not walk
+// the statement tree: its class is generated by ShapeCache for the shape of the statement, with
+// the columns resolved to field offsets, and its constants are bound at every compile(). Fields are
+// read in place, so evaluate() allocates nothing but the strings of the STR20 fields it compares.
+// A condition evaluates as Expression.evaluateBoolean() evaluates its statement,
+// except that a column that cannot be resolved is reported once, when it is compiled.
+public abstract class Condition {
+    public abstract boolean evaluate(Tuple tuple);
+
+    // a condition of the same class, with the literals of another statement of its shape
+    abstract Condition bind(Object[] literals);
+
+    // compiles the condition in the statement for the tuples of the schema
+    public static Condition compile(Statement statement, Schema schema) {
+        return ShapeCache.compileCondition(statement, schema);
+    }
+}
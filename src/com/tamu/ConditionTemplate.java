@@ -0,0 +1,42 @@
+package com.tamu;
+
+import storageManager.Tuple;
+
+import java.lang.constant.ConstantDescs;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+
+// The class ShapeCache defines again, hidden, for each shape of a Condition; the code of
+// the shape is its class data, a constant the JIT inlines into evaluate()
+final class ConditionTemplate extends Condition {
+    // (Tuple, Object[])boolean
+    private final static MethodHandle SHAPE;
+
+    static {
+        try {
+            SHAPE = MethodHandles.classData(MethodHandles.lookup(), ConstantDescs.DEFAULT_NAME, MethodHandle.class);
+        } catch (IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Object[] literals;
+
+    ConditionTemplate(Object[] literals) {
+        this.literals = literals;
+    }
+
+    Condition bind(Object[] literals) {
+        return new ConditionTemplate(literals);
+    }
+
+    public boolean evaluate(Tuple tuple) {
+        try {
+            return (boolean) SHAPE.invokeExact(tuple, literals);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
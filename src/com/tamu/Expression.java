@@ -1,9 +1,12 @@
 package com.tamu;
 
+import storageManager.Field;
 import storageManager.FieldType;
 import storageManager.Schema;
 import storageManager.Tuple;
 
+import java.util.List;
+
 public class Expression {
     private final static String errorInfo = "Error in a expression! ";
 
@@ -36,13 +39,11 @@ public class Expression {
         String type = statement.getAttribute();
         switch (type) {
             case "COL_ID":
-                StringBuilder fieldName = new StringBuilder();
-                for (Statement name : statement.branches) {
-                    fieldName.append(name.getAttribute()).append(".");
+                Field field = getField(tuple, statement);
+                if (field == null) {
+                    return 0;
                 }
-                fieldName.deleteCharAt(fieldName.length() - 1);
-                String name = fieldName.toString();
-                return tuple.getField(name).integer;
+                return field.integer;
             case "INT":
                 return Integer.parseInt(statement.getLeafAttribute());
             default:
@@ -61,6 +62,56 @@ public class Expression {
         }
     }
 
+    private static Field getField(Tuple tuple, Statement statement) {
+        String fieldName = resolveFieldName(tuple.getSchema(), statement);
+        if (fieldName == null) {
+            return null;
+        }
+        return tuple.getField(fieldName);
+    }
+
+    // returns the name of the column in the schema, or null if there is no such column;
+    // the fields of a joined tuple are named relation.field
+    static String resolveFieldName(Schema schema, Statement statement) {
+        List<String> fieldNames = schema.getFieldNames();
+        if (statement.getSize() == 2) {
+            // course.exam = 100
+            String relationName = statement.getLeftAttribute();
+            String fieldName = statement.getRightAttribute();
+            if (fieldNames.contains(relationName + "." + fieldName)) {
+                return relationName + "." + fieldName;
+            } else if (fieldNames.contains(fieldName)) {
+                return fieldName;
+            }
+            Util.outputErrorLn(errorInfo + "Relation \"" + relationName + "\" doesn't contain a column \"" + fieldName + "\".");
+            return null;
+
+        } else if (statement.getSize() != 1) {
+            Util.outputErrorLn(errorInfo + "Unrecognized expression.");
+            return null;
+        }
+
+        // exam = 100
+        String fieldName = statement.getLeafAttribute();
+        if (fieldNames.contains(fieldName)) {
+            return fieldName;
+        }
+        String found = null;
+        for (String name : fieldNames) {
+            if (name.endsWith("." + fieldName)) {
+                if (found != null) {
+                    Util.outputErrorLn(errorInfo + "There are at least two columns \"" + fieldName + "\". Please specify relation name for the column.");
+                    return null;
+                }
+                found = name;
+            }
+        }
+        if (found == null) {
+            Util.outputErrorLn(errorInfo + "Cannot find such column: \"" + fieldName + "\".");
+        }
+        return found;
+    }
+
     private static TupleValue evaluateTuple(Statement statement, Tuple tuple) {
         TupleValue value = new TupleValue();
         String type = statement.getAttribute();
@@ -76,34 +127,17 @@ public class Expression {
                 break;
 
             case "COL_ID":
-                Schema schema = tuple.getSchema();
-
-                String fieldName;
-                if (statement.getSize() == 1) {
-                    // exam = 100
-                    fieldName = statement.getLeafAttribute();
-
-                } else if (statement.getSize() == 2) {
-                    // course.exam = 100
-                    String relationName = statement.getLeftAttribute();
-                    fieldName = statement.getRightAttribute();
-                    if (schema.getFieldOffset(fieldName) == -1) {
-                        Util.outputErrorLn(errorInfo + "Relation \"" + relationName + "\" doesn't contain a column \"" + fieldName + "\".");
-                        break;
-                    }
-
-                } else {
-                    Util.outputErrorLn(errorInfo + "Unrecognized expression.");
+                Field field = getField(tuple, statement);
+                if (field == null) {
                     break;
                 }
 
-                FieldType fieldType = schema.getFieldType(fieldName);
-                value.fieldType = fieldType;
+                value.fieldType = field.type;
 
-                if (fieldType == FieldType.INT) {
-                    value.integer = tuple.getField(fieldName).integer;
+                if (field.type == FieldType.INT) {
+                    value.integer = field.integer;
                 } else {
-                    value.str = tuple.getField(fieldName).str;
+                    value.str = field.str;
                 }
                 break;
 
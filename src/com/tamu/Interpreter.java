@@ -1,6 +1,10 @@
 package com.tamu;
 
+import com.tamu.buffer.BufferPool;
+import com.tamu.buffer.EvictionPolicy;
+import com.tamu.index.IndexCatalog;
 import com.tamu.manipulation.*;
+import com.tamu.statistics.StatisticsCatalog;
 import storageManager.Disk;
 import storageManager.MainMemory;
 import storageManager.SchemaManager;
@@ -12,20 +16,39 @@ class Interpreter {
     private Disk disk;
     private MainMemory memory;
     private SchemaManager schemaManager;
+    private BufferPool bufferPool;
+    private StatisticsCatalog catalog;
+    private IndexCatalog indexes;
     private Parser parser;
 
     // for benchmark
     private double DBMSTime;
+    private double virtualTime;
+    private double queueTime;
     private long DBMSIO;
     private long computerTime;
 
     Interpreter() {
-        this.disk = new Disk();
+        this(null, "LRU");
+    }
+
+    // keeps the relations in a page file, so they survive the program,
+    // unless pageFileName is null;
+    // evictionPolicy is one of LRU, CLOCK and 2Q
+    Interpreter(String pageFileName, String evictionPolicy) {
+        this.disk = pageFileName == null ? new Disk() : new Disk(pageFileName);
         this.memory = new MainMemory();
         this.schemaManager = new SchemaManager(memory, disk);
+        this.bufferPool = new BufferPool(memory, EvictionPolicy.forName(evictionPolicy, memory.getMemorySize()));
+        this.catalog = new StatisticsCatalog();
+        this.indexes = new IndexCatalog();
         this.parser = new Parser();
     }
 
+    void close() {
+        disk.close();
+    }
+
     private boolean execute(String statement) {
         Statement statementTree = parser.parse(statement);
         if (statementTree == null) {
@@ -38,6 +61,9 @@ class Interpreter {
             case "CREATE":
                 manipulation = new Create();
                 break;
+            case "CREATE_INDEX":
+                manipulation = new CreateIndex();
+                break;
             case "INSERT":
                 manipulation = new Insert();
                 break;
@@ -50,6 +76,16 @@ class Interpreter {
             case "DROP":
                 manipulation = new Drop();
                 break;
+            case "LOAD":
+                manipulation = new Load();
+                break;
+            case "ANALYZE":
+                manipulation = new Analyze();
+                break;
+            case "PREPARE":
+                // the parser keeps the prepared statement
+                Util.outputLn("Successfully prepared statement \"" + statementTree.getLeaf().getLeafAttribute() + "\".");
+                return true;
             case "INITIAL":
             default:
                 // if everything works fine, this line will be never reached
@@ -58,7 +94,10 @@ class Interpreter {
                 System.exit(1);
                 break;
         }
-        return manipulation.execute(disk, memory, schemaManager, statementTree.branches);
+        boolean result = manipulation.execute(disk, memory, schemaManager, bufferPool, catalog, indexes, statementTree.branches);
+        // write the changed pages back, so every statement ends on the disk
+        bufferPool.flushAll();
+        return result;
     }
 
     boolean executeStatement(String statement) {
@@ -90,12 +129,18 @@ class Interpreter {
 
     private void benchmarkBegin() {
         DBMSTime = disk.getDiskTimer();
+        virtualTime = disk.getVirtualTime();
+        queueTime = disk.getQueueTime();
         DBMSIO = disk.getDiskIOs();
         computerTime = System.currentTimeMillis();
     }
 
     private void benchmarkEnd() {
         Util.outputLn("DBMS time = " + String.format("%.2f", (disk.getDiskTimer() - DBMSTime)) + " ms");
+        if (disk.hasVirtualClock()) {
+            Util.outputLn("DBMS virtual disk time = " + String.format("%.2f", (disk.getVirtualTime() - virtualTime))
+                    + " ms, queued " + String.format("%.2f", (disk.getQueueTime() - queueTime)) + " ms");
+        }
         Util.outputLn("DBMS Disk I/Os = " + (disk.getDiskIOs() - DBMSIO));
         Util.outputLn("Computer time = " + (System.currentTimeMillis() - computerTime) + " ms");
     }
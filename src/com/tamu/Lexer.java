@@ -0,0 +1,117 @@
+package com.tamu;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+// Splits a statement into tokens in one pass over its characters.
+// A word is a run of letters, digits, '_' and '.', and "course.*" is one word;
+// it is a keyword if it is one of KEYWORDS in any case, an integer if it is all digits
+// and fits an INT, and an identifier otherwise.
+// A '-' right before digits is the sign of an integer, unless it follows an operand.
+// Strings are quoted by '"' or '\'', and keep what is between the quotes.
+// A keyword is still read as a name by Parser where no keyword is expected,
+// so relations and columns named DATA, INDEX, ON, AS, USING, CLUSTER, LIMIT or BY keep working.
+// A ';' outside a string ends nothing and is dropped.
+class Lexer {
+    enum Type {
+        KEYWORD, IDENTIFIER, INTEGER, STRING, PUNCTUATION, PARAMETER
+    }
+
+    static class Token {
+        final Type type;
+        final String text;
+
+        Token(Type type, String text) {
+            this.type = type;
+            this.text = text;
+        }
+
+        // true if the token is the keyword, in any case
+        boolean is(String keyword) {
+            return type == Type.KEYWORD && text.equalsIgnoreCase(keyword);
+        }
+
+        // true if the token is the punctuation character
+        boolean is(char punctuation) {
+            return type == Type.PUNCTUATION && text.length() == 1 && text.charAt(0) == punctuation;
+        }
+
+        // true if the token can be the operand of an operator
+        boolean isOperand() {
+            return type == Type.IDENTIFIER || type == Type.INTEGER || type == Type.STRING
+                    || type == Type.PARAMETER || is(')');
+        }
+    }
+
+    // looked up in any case
+    private final static Set<String> KEYWORDS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        KEYWORDS.addAll(Arrays.asList(
+                "SELECT", "DISTINCT", "FROM", "WHERE", "ORDER", "BY", "LIMIT", "AND", "OR",
+                "INSERT", "INTO", "VALUES", "CREATE", "TABLE", "DROP", "DELETE", "LOAD", "DATA",
+                "ANALYZE", "PREPARE", "AS", "EXECUTE", "INDEX", "ON", "USING", "CLUSTER"));
+    }
+
+    static List<Token> tokenize(String statement) {
+        List<Token> tokens = new ArrayList<>();
+        int length = statement.length();
+        int i = 0;
+        while (i < length) {
+            char c = statement.charAt(i);
+            if (Character.isWhitespace(c) || c == ';') {
+                i++;
+
+            } else if (c == '"' || c == '\'') {
+                int end = statement.indexOf(c, i + 1);
+                if (end == -1) {
+                    end = length;
+                }
+                tokens.add(new Token(Type.STRING, statement.substring(i + 1, end)));
+                i = end + 1;
+
+            } else if (isWordCharacter(c) || (c == '-' && i + 1 < length && Character.isDigit(statement.charAt(i + 1))
+                    && (tokens.isEmpty() || !tokens.get(tokens.size() - 1).isOperand()))) {
+                int start = i;
+                boolean digits = true;
+                for (i++; i < length; i++) {
+                    char next = statement.charAt(i);
+                    if (next == '*' && statement.charAt(i - 1) == '.') {
+                        // course.*
+                        digits = false;
+                        i++;
+                        break;
+                    } else if (!isWordCharacter(next)) {
+                        break;
+                    }
+                    digits &= Character.isDigit(next);
+                }
+                digits &= c == '-' || Character.isDigit(c);
+                String word = statement.substring(start, i);
+                if (digits && Util.isInteger(word)) {
+                    tokens.add(new Token(Type.INTEGER, word));
+                } else if (KEYWORDS.contains(word)) {
+                    tokens.add(new Token(Type.KEYWORD, word));
+                } else {
+                    tokens.add(new Token(Type.IDENTIFIER, word));
+                }
+
+            } else if (c == '?') {
+                tokens.add(new Token(Type.PARAMETER, "?"));
+                i++;
+
+            } else {
+                tokens.add(new Token(Type.PUNCTUATION, String.valueOf(c)));
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isWordCharacter(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '.';
+    }
+}
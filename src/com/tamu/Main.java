@@ -14,7 +14,18 @@ public class Main {
         String outputFileName = "Database_Result_" + sdf.format(Calendar.getInstance().getTime()) + ".log";
         Util.createOutputFile(outputFileName);
 
-        Interpreter interpreter = new Interpreter();
+        // optional arguments: the page file that keeps the relations,
+        // and "-eviction LRU|CLOCK|2Q" for the buffer pool
+        String pageFileName = null;
+        String evictionPolicy = "LRU";
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equalsIgnoreCase("-eviction") && i + 1 < args.length) {
+                evictionPolicy = args[++i];
+            } else {
+                pageFileName = args[i];
+            }
+        }
+        Interpreter interpreter = new Interpreter(pageFileName, evictionPolicy);
 //        interpreter.executeFile("multiple relations join.txt");
 //        interpreter.executeFile("holes.txt");
 //        interpreter.executeFile("select1.txt");
@@ -73,6 +84,7 @@ public class Main {
 
                 case "Q":
                     in.close();
+                    interpreter.close();
                     try {
                         if (writer != null) {
                             writer.flush();
@@ -1,187 +1,345 @@
 package com.tamu;
 
-import java.util.Arrays;
+import com.tamu.Lexer.Token;
+import com.tamu.Lexer.Type;
+
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Stack;
 
-class Parser {
+// Parses the tokens of a statement from Lexer, so no word is split or trimmed again
+public class Parser {
+    private StatementCache cache = new StatementCache(this);
+
     Statement parse(String statement) {
         Util.outputLn("\nProcessing: " + statement + " ...");
 
-        statement = statement.replaceAll(";", "").replaceAll(", *", ",").replaceAll(" +", " ").replaceAll(" \\(", "\\(");
-        String words[] = statement.split("(,| |(?=.)(?=\\())");
-        return parse(words, "INITIAL");
+        String command = statement.trim();
+        int space = command.indexOf(' ');
+        command = space == -1 ? command : command.substring(0, space);
+        if (command.equalsIgnoreCase("PREPARE")) {
+            // PREPARE name AS statement, with a ? for each parameter
+            List<Token> tokens = Lexer.tokenize(statement);
+            if (tokens.size() < 4 || !tokens.get(2).is("AS")) {
+                Util.outputErrorLn("Error in a PREPARE statement! Expected PREPARE name AS statement.");
+                return null;
+            }
+            String name = tokens.get(1).text;
+            Statement template = parse(tokens.subList(3, tokens.size()));
+            if (template == null) {
+                return null;
+            }
+            cache.prepare(name, template);
+            Statement prepare = new Statement("PREPARE");
+            prepare.branches.add(generateLeaf(name, "NAME"));
+            return prepare;
+
+        } else if (command.equalsIgnoreCase("EXECUTE")) {
+            // EXECUTE name (1, "A", ...)
+            List<Token> tokens = Lexer.tokenize(statement);
+            if (tokens.size() < 2) {
+                Util.outputErrorLn("Error in an EXECUTE statement! Expected EXECUTE name (value, ...).");
+                return null;
+            }
+            List<String> literals = new ArrayList<>();
+            for (Token token : tokens.subList(2, tokens.size())) {
+                if (token.type == Type.STRING) {
+                    literals.add("\"" + token.text + "\"");
+                } else if (!token.is('(') && !token.is(')') && !token.is(',')) {
+                    literals.add(token.text);
+                }
+            }
+            return cache.execute(tokens.get(1).text, literals);
+        }
+        return cache.parse(statement);
     }
 
-    private Statement parse(String[] words, String type) {
-        Statement statement = null;
-
-        switch (type.toUpperCase()) {
-            case "INITIAL":
-                switch (words[0].toUpperCase()) {
-                    case "SELECT":
-                    case "CREATE":
-                    case "INSERT":
-                    case "DELETE":
-                        statement = parse(words, words[0]);
-                        break;
-                    case "DROP":
-                        statement = new Statement("DROP");
-                        statement.branches.add(generateLeaf(words[2], "RELATION"));
-                        break;
+    // parses a statement without printing it
+    public Statement parseText(String statement) {
+        return parse(Lexer.tokenize(statement));
+    }
 
-                }
-                break;
-
-            case "DELETE":
-                statement = new Statement(type);
-                String relation = words[2];
-                statement.branches.add(generateLeaf(relation, "RELATION"));
-                if (words.length > 3 && words[3].equalsIgnoreCase("WHERE")) {
-                    statement.branches.add(parse(Arrays.copyOfRange(words, 4, words.length), "WHERE"));
-                }
-                break;
-
-            case "INSERT":
-                // INSERT INTO course(sid, ...) VALUES(1, ...)
-                int value = -1;
-                // INSERT INTO course(sid, ...) SELECT * FROM course
-                int select = -1;
-
-                for (int i = 0; i != words.length; i++) {
-                    if (words[i].equals("VALUES")) {
-                        value = i;
-                    } else if (words[i].equals("SELECT")) {
-                        select = i;
-                    }
-                }
+    private Statement parse(List<Token> tokens) {
+        if (tokens.isEmpty() || tokens.get(0).type != Type.KEYWORD) {
+            return null;
+        }
+        Token command = tokens.get(0);
+        if (command.is("SELECT")) {
+            return parseSelect(tokens);
+        } else if (command.is("INSERT")) {
+            return parseInsert(tokens);
+        } else if (command.is("CREATE")) {
+            return parseCreate(tokens);
+        } else if (command.is("DELETE")) {
+            return parseDelete(tokens);
+        } else if (command.is("LOAD")) {
+            return parseLoad(tokens);
+        } else if (command.is("DROP")) {
+            if (tokens.size() < 3) {
+                Util.outputErrorLn("Error in a DROP statement! Expected DROP TABLE relation.");
+                return null;
+            }
+            Statement statement = new Statement("DROP");
+            statement.branches.add(generateLeaf(tokens.get(2).text, "RELATION"));
+            return statement;
+        } else if (command.is("ANALYZE")) {
+            // ANALYZE course, or ANALYZE for every relation
+            Statement statement = new Statement("ANALYZE");
+            if (tokens.size() > 1) {
+                statement.branches.add(generateLeaf(tokens.get(1).text, "RELATION"));
+            }
+            return statement;
+        }
+        return null;
+    }
 
-                if (value == -1 && select == -1) {
-                    Util.outputErrorLn("Error in an INSERT statement! Cannot find VALUES or SELECT.");
-                } else if (value != -1 && select != -1) {
-                    Util.outputErrorLn("Error in an INSERT statement! Found both VALUES and SELECT.");
-                } else {
-                    int position = value == -1 ? select : value;
-                    statement = new Statement(type);
-                    statement.branches.add(generateLeaf(words[2], "RELATION"));
-                    statement.branches.add(parse(Arrays.copyOfRange(words, 3, position), "COL"));
+    // SELECT [DISTINCT] col, ... FROM relation, ... [WHERE condition] [ORDER BY col] [LIMIT n]
+    private Statement parseSelect(List<Token> tokens) {
+        Statement statement = new Statement("SELECT");
+        int from = -1, where = -1, order = -1, limit = -1;
+        for (int i = 1; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            if (token.is("FROM")) {
+                from = i;
+            } else if (token.is("WHERE")) {
+                where = i;
+            } else if (token.is("ORDER")) {
+                order = i;
+            } else if (token.is("LIMIT") && from != -1 && i + 2 == tokens.size()) {
+                // only LIMIT n at the end, so that a column may be named limit
+                limit = i;
+            }
+        }
+        if ((where != -1 && where < from) || (order != -1 && order < Math.max(from, where))
+                || (limit != -1 && limit < Math.max(Math.max(from, where), order))) {
+            Util.outputErrorLn("Error in a SELECT statement! Expected FROM, WHERE, ORDER BY and LIMIT in this order.");
+            return null;
+        }
+        // the clauses before LIMIT end at it
+        int end = limit > 0 ? limit : tokens.size();
 
-                    if (value != -1) {
-                        statement.branches.add(parse(Arrays.copyOfRange(words, value + 1, words.length), "VALUES"));
-                    } else {
-                        statement.branches.add(parse(Arrays.copyOfRange(words, select, words.length), "VALUES"));
-                    }
-                }
-                break;
+        if (from != -1) {
+            statement.branches.add(parseColumns(tokens.subList(1, from)));
+        }
 
-            case "VALUES":
-                if (words[0].equalsIgnoreCase("SELECT")) {
-                    statement = parse(words, "SELECT");
-                } else {
-                    statement = new Statement(type);
-                    for (String word : words) {
-                        word = Util.trim(word);
-                        statement.branches.add(generateLeaf(word, "VALUE"));
-                    }
-                }
-                break;
-
-            case "DROP":
-                statement = new Statement(type);
-                statement.branches.add(generateLeaf(words[2], "RELATION"));
-                break;
-
-            case "SELECT":
-                statement = new Statement(type);
-                int from = -1, where = -1, order = -1;
-                for (int i = 1; i < words.length; i++) {
-                    if (words[i].equalsIgnoreCase("FROM")) {
-                        from = i;
-                    } else if (words[i].equalsIgnoreCase("WHERE")) {
-                        where = i;
-                    } else if (words[i].equalsIgnoreCase("ORDER")) {
-                        order = i;
-                    }
-                }
+        if (where != -1) {
+            statement.branches.add(parseRelations(tokens.subList(from + 1, where)));
+            Statement expression = parseWhere(tokens.subList(where + 1, order > 0 ? order : end));
+            if (expression == null) {
+                return null;
+            }
+            statement.branches.add(expression);
+        } else {
+            statement.branches.add(parseRelations(tokens.subList(from + 1, order > 0 ? order : end)));
+        }
 
-                if (from != -1) {
-                    statement.branches.add(parse(Arrays.copyOfRange(words, 1, from), "COL"));
-                }
+        if (order != -1) {
+            // ORDER BY col
+            if (order + 2 >= end) {
+                Util.outputErrorLn("Error in a SELECT statement! Expected ORDER BY column.");
+                return null;
+            }
+            Statement orderBy = new Statement("ORDER");
+            orderBy.branches.add(generateLeaf(tokens.get(order + 2).text, "COL_ID"));
+            statement.branches.add(orderBy);
+        }
 
-                if (where != -1) {
-                    statement.branches.add(parse(Arrays.copyOfRange(words, from + 1, where), "FROM"));
-                    statement.branches.add(parse(Arrays.copyOfRange(words, where + 1, order > 0 ? order : words.length), "WHERE"));
-                } else {
-                    statement.branches.add(parse(Arrays.copyOfRange(words, from + 1, order > 0 ? order : words.length), "FROM"));
-                }
+        if (limit != -1 && limit + 1 < tokens.size()) {
+            // SELECT ... LIMIT 10
+            statement.branches.add(generateLiteral(tokens.get(limit + 1).text, "LIMIT"));
+        }
+        return statement;
+    }
 
-                if (order != -1) {
-                    statement.branches.add(parse(Arrays.copyOfRange(words, order + 2, words.length), "ORDER"));
-                }
-                break;
-
-            case "ORDER":
-                statement = new Statement(type);
-                statement.branches.add(generateLeaf(words[0], "COL_ID"));
-                break;
-
-            case "COL":
-                statement = new Statement(type);
-                if (words[0].equalsIgnoreCase("DISTINCT")) {
-                    statement.branches.add(new Statement("DISTINCT"));
-                    Statement col = statement.getLeaf();
-                    for (int i = 1; i < words.length; i++) {
-                        String s = words[i];
-                        if (s.length() > 0) {
-                            col.branches.add(generateLeaf(s.charAt(s.length() - 1) == ',' ? s.substring(0, s.length() - 1) : s, "COL_ID"));
-                        }
-                    }
-                } else {
-                    for (String word : words) {
-                        word = word.replaceAll("[()]", "");
-                        statement.branches.add(generateLeaf(word, "COL_ID"));
+    // INSERT INTO course(sid, ...) VALUES(1, ...), (2, ...)
+    // INSERT INTO course(sid, ...) SELECT * FROM course
+    private Statement parseInsert(List<Token> tokens) {
+        int value = -1;
+        int select = -1;
+        for (int i = 0; i != tokens.size(); i++) {
+            if (tokens.get(i).is("VALUES")) {
+                value = i;
+            } else if (tokens.get(i).is("SELECT")) {
+                select = i;
+            }
+        }
+
+        if (value == -1 && select == -1) {
+            Util.outputErrorLn("Error in an INSERT statement! Cannot find VALUES or SELECT.");
+            return null;
+        } else if (value != -1 && select != -1) {
+            Util.outputErrorLn("Error in an INSERT statement! Found both VALUES and SELECT.");
+            return null;
+        }
+        int position = value == -1 ? select : value;
+        if (position < 3) {
+            Util.outputErrorLn("Error in an INSERT statement! Expected INSERT INTO relation.");
+            return null;
+        }
+
+        Statement statement = new Statement("INSERT");
+        statement.branches.add(generateLeaf(tokens.get(2).text, "RELATION"));
+        statement.branches.add(parseColumns(tokens.subList(3, position)));
+        if (value != -1) {
+            // a ROW for each tuple
+            Statement values = new Statement("VALUES");
+            Statement row = null;
+            for (Token token : tokens.subList(value + 1, tokens.size())) {
+                if (token.is('(')) {
+                    row = null;
+                } else if (!token.is(')') && !token.is(',')) {
+                    if (row == null) {
+                        row = new Statement("ROW");
+                        values.branches.add(row);
                     }
+                    row.branches.add(token.type == Type.IDENTIFIER ? generateLeaf(token.text, "VALUE")
+                            : generateLiteral(token.text, "VALUE"));
                 }
-                break;
+            }
+            statement.branches.add(values);
+        } else {
+            Statement query = parseSelect(tokens.subList(select, tokens.size()));
+            if (query == null) {
+                return null;
+            }
+            statement.branches.add(query);
+        }
+        return statement;
+    }
 
-            case "FROM":
-                statement = new Statement(type);
-                for (String word : words) {
-                    statement.branches.add(generateLeaf(word, "RELATION"));
-                }
-                break;
-
-            case "WHERE":
-                statement = new Statement("EXPRESSION");
-                statement.branches.add(generateExpression(words));
-                break;
-
-            case "CREATE":
-                statement = new Statement(type);
-                statement.branches.add(generateLeaf(words[2], "RELATION"));
-                statement.branches.add(parse(Arrays.copyOfRange(words, 3, words.length), "CREATE_COL"));
-                break;
-
-            case "CREATE_COL":
-                statement = new Statement(type);
-                for (int i = 0; i < words.length / 2; i++) {
-                    statement.branches.add(parse(Arrays.copyOfRange(words, 2 * i, 2 * i + 2), "CREATE_COL_DETAIL"));
-                }
-                break;
+    // CREATE TABLE course (sid INT, ...) [CLUSTER BY sid]
+    private Statement parseCreate(List<Token> tokens) {
+        if (tokens.size() > 1 && tokens.get(1).is("INDEX")) {
+            return parseCreateIndex(tokens);
+        }
+        // the fields end at the last ')', and CLUSTER BY column may follow
+        int end = tokens.size();
+        while (end > 3 && !tokens.get(end - 1).is(')')) {
+            end--;
+        }
+        if (end == 3) {
+            end = tokens.size();
+        }
+        boolean cluster = end + 3 == tokens.size() && tokens.get(end).is("CLUSTER") && tokens.get(end + 1).is("BY")
+                && isName(tokens.get(end + 2));
+        if (tokens.size() < 3 || (end < tokens.size() && !cluster)) {
+            Util.outputErrorLn("Error in a CREATE statement! Expected CREATE TABLE relation (field type, ...) [CLUSTER BY column].");
+            return null;
+        }
+        Statement statement = new Statement("CREATE");
+        statement.branches.add(generateLeaf(tokens.get(2).text, "RELATION"));
+
+        Statement columns = new Statement("CREATE_COL");
+        Token fieldName = null;
+        for (Token token : tokens.subList(3, end)) {
+            if (token.type == Type.PUNCTUATION) {
+                continue;
+            }
+            if (fieldName == null) {
+                fieldName = token;
+            } else {
+                Statement detail = new Statement("CREATE_COL_DETAIL");
+                detail.branches.add(generateLeaf(fieldName.text, "COL_ID"));
+                detail.branches.add(generateLeaf(token.text, "TYPE"));
+                columns.branches.add(detail);
+                fieldName = null;
+            }
+        }
+        statement.branches.add(columns);
+        if (cluster) {
+            statement.branches.add(generateLeaf(tokens.get(end + 2).text, "CLUSTER"));
+        }
+        return statement;
+    }
+
+    // CREATE INDEX name ON course (sid) [USING BTREE | HASH]
+    private Statement parseCreateIndex(List<Token> tokens) {
+        boolean using = tokens.size() == 10 && tokens.get(8).is("USING") && isName(tokens.get(9));
+        if ((tokens.size() != 8 && !using) || !isName(tokens.get(2)) || !tokens.get(3).is("ON")
+                || !isName(tokens.get(4)) || !tokens.get(5).is('(')
+                || !isName(tokens.get(6)) || !tokens.get(7).is(')')) {
+            Util.outputErrorLn("Error in a CREATE INDEX statement! Expected CREATE INDEX name ON relation (column) [USING BTREE | HASH].");
+            return null;
+        }
+        Statement statement = new Statement("CREATE_INDEX");
+        statement.branches.add(generateLeaf(tokens.get(2).text, "INDEX"));
+        statement.branches.add(generateLeaf(tokens.get(4).text, "RELATION"));
+        statement.branches.add(generateLeaf(tokens.get(6).text, "COL_ID"));
+        if (using) {
+            statement.branches.add(generateLeaf(tokens.get(9).text.toUpperCase(), "TYPE"));
+        }
+        return statement;
+    }
+
+    // DELETE FROM course [WHERE condition]
+    private Statement parseDelete(List<Token> tokens) {
+        if (tokens.size() < 3) {
+            Util.outputErrorLn("Error in a DELETE statement! Expected DELETE FROM relation.");
+            return null;
+        }
+        Statement statement = new Statement("DELETE");
+        statement.branches.add(generateLeaf(tokens.get(2).text, "RELATION"));
+        if (tokens.size() > 3 && tokens.get(3).is("WHERE")) {
+            Statement expression = parseWhere(tokens.subList(4, tokens.size()));
+            if (expression == null) {
+                return null;
+            }
+            statement.branches.add(expression);
+        }
+        return statement;
+    }
 
-            case "CREATE_COL_DETAIL":
-                statement = new Statement(type);
-                String fieldName = words[0].replaceAll("\\(", "");
-                String fieldType = words[1].replaceAll("\\)", "");
+    // LOAD DATA 'course.csv' INTO course
+    private Statement parseLoad(List<Token> tokens) {
+        if (tokens.size() != 5 || !tokens.get(1).is("DATA") || !tokens.get(3).is("INTO")) {
+            Util.outputErrorLn("Error in a LOAD statement! Expected LOAD DATA 'file' INTO relation.");
+            return null;
+        }
+        Statement statement = new Statement("LOAD");
+        // not generateLeaf(), the file name may contain '.'
+        Statement file = new Statement("FILE");
+        file.branches.add(new Statement(tokens.get(2).text));
+        statement.branches.add(file);
+        statement.branches.add(generateLeaf(tokens.get(4).text, "RELATION"));
+        return statement;
+    }
 
-                statement.branches.add(generateLeaf(fieldName, "COL_ID"));
-                statement.branches.add(generateLeaf(fieldType, "TYPE"));
-                break;
+    // col, ... or DISTINCT col, ...
+    private Statement parseColumns(List<Token> tokens) {
+        Statement statement = new Statement("COL");
+        Statement columns = statement;
+        if (!tokens.isEmpty() && tokens.get(0).is("DISTINCT")) {
+            columns = new Statement("DISTINCT");
+            statement.branches.add(columns);
+            tokens = tokens.subList(1, tokens.size());
+        }
+        for (Token token : tokens) {
+            if (!token.is(',') && !token.is('(') && !token.is(')')) {
+                columns.branches.add(generateLeaf(token.text, "COL_ID"));
+            }
+        }
+        return statement;
+    }
 
-            default:
-                break;
+    private Statement parseRelations(List<Token> tokens) {
+        Statement statement = new Statement("FROM");
+        for (Token token : tokens) {
+            if (!token.is(',')) {
+                statement.branches.add(generateLeaf(token.text, "RELATION"));
+            }
         }
+        return statement;
+    }
 
+    private Statement parseWhere(List<Token> tokens) {
+        Statement condition = generateExpression(tokens);
+        if (condition == null) {
+            Util.outputErrorLn("Error in a WHERE clause! Expected a condition.");
+            return null;
+        }
+        Statement statement = new Statement("EXPRESSION");
+        statement.branches.add(condition);
         return statement;
     }
 
@@ -199,46 +357,58 @@ class Parser {
         priority.put("*", 4);
     }
 
-    private Statement generateExpression(String[] tokens) {
+    // the operator of the token, as in priority, or null if it is an operand
+    private static String getOperator(Token token) {
+        if (token.type == Type.PUNCTUATION) {
+            return priority.containsKey(token.text) ? token.text : null;
+        } else if (token.is("AND")) {
+            return "AND";
+        } else if (token.is("OR")) {
+            return "OR";
+        }
+        return null;
+    }
+
+    // null if there is no operand
+    private Statement generateExpression(List<Token> tokens) {
         Stack<Statement> stack = new Stack<>();
 
-        for (int i = 0; i < tokens.length; i++) {
-            String token = tokens[i];
-            if (priority.containsKey(token)) {
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            String operator = getOperator(token);
+            if (operator != null) {
                 if (stack.size() >= 3) {
                     Statement last = stack.pop();
-                    if (priority.get(token) >= priority.get(stack.peek().getAttribute())) {
+                    if (priority.get(operator) >= priority.get(stack.peek().getAttribute())) {
                         stack.push(last);
-                        stack.push(new Statement(token));
+                        stack.push(new Statement(operator));
                     } else {
-                        while (stack.size() > 0 && priority.get(stack.peek().getAttribute()) > priority.get(token)) {
-                            Statement operator = stack.pop();
+                        while (stack.size() > 0 && priority.get(stack.peek().getAttribute()) > priority.get(operator)) {
+                            Statement lastOperator = stack.pop();
                             Statement anotherOperand = stack.pop();
-                            operator.branches.add(anotherOperand);
-                            operator.branches.add(last);
-                            last = operator;
+                            lastOperator.branches.add(anotherOperand);
+                            lastOperator.branches.add(last);
+                            last = lastOperator;
                         }
                         stack.push(last);
-                        stack.push(new Statement(token));
+                        stack.push(new Statement(operator));
                     }
                 } else {
-                    stack.push(new Statement(token));
+                    stack.push(new Statement(operator));
                 }
-            } else if (Util.isInteger(token)) {
-                stack.push(generateLeaf(token, "INT"));
+            } else if (token.type == Type.INTEGER) {
+                stack.push(generateLiteral(token.text, "INT"));
 
-            } else if (token.charAt(0) == '"') {
-                stack.push(generateLeaf(token.substring(1, token.length() - 1), "STR20"));
+            } else if (token.type == Type.STRING) {
+                stack.push(generateLiteral(token.text, "STR20"));
 
-            } else if (token.charAt(0) == '(') {
+            } else if (token.is('(')) {
                 int start = i;
 
-                for (int bracketCount = 0; i < tokens.length; i++) {
-                    String t = tokens[i];
-                    if (t.charAt(0) == '(') {
+                for (int bracketCount = 0; i < tokens.size(); i++) {
+                    if (tokens.get(i).is('(')) {
                         bracketCount++;
-                    }
-                    if (t.charAt(t.length() - 1) == ')') {
+                    } else if (tokens.get(i).is(')')) {
                         bracketCount--;
                         if (bracketCount == 0) {
                             break;
@@ -246,15 +416,14 @@ class Parser {
                     }
                 }
 
-                String[] tokensInClause = Arrays.copyOfRange(tokens, start, i + 1);
-
-                // eliminate first '(' and last ')'
-                tokensInClause[0] = tokensInClause[0].substring(1);
-                tokensInClause[tokensInClause.length - 1] = tokensInClause[tokensInClause.length - 1].substring(0, tokensInClause[tokensInClause.length - 1].length() - 1);
-
-                stack.push(generateExpression(tokensInClause));
-            } else {
-                stack.push(generateLeaf(token, "COL_ID"));
+                // without the '(' and the ')'
+                Statement clause = generateExpression(tokens.subList(start + 1, Math.min(i, tokens.size())));
+                if (clause == null) {
+                    return null;
+                }
+                stack.push(clause);
+            } else if (!token.is(')')) {
+                stack.push(generateLeaf(token.text, "COL_ID"));
             }
         }
 
@@ -268,11 +437,17 @@ class Parser {
             }
             return operand;
         } else {
-            return stack.peek();
+            return stack.isEmpty() ? null : stack.peek();
         }
     }
 
-    private static Statement generateLeaf(String word, String type) {
+    // a name where no keyword is expected, so that a keyword may also name a relation or a column
+    private static boolean isName(Token token) {
+        return token.type == Type.IDENTIFIER || token.type == Type.KEYWORD;
+    }
+
+    // a leaf of each part of a name, as course.sid
+    static Statement generateLeaf(String word, String type) {
         Statement statement = new Statement(type);
         String[] parts = word.split("\\.");
         for (String part : parts) {
@@ -280,4 +455,11 @@ class Parser {
         }
         return statement;
     }
+
+    // a leaf of a literal, kept whole: "x.y" is not a name
+    static Statement generateLiteral(String literal, String type) {
+        Statement statement = new Statement(type);
+        statement.branches.add(new Statement(literal));
+        return statement;
+    }
 }
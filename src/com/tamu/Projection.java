@@ -0,0 +1,22 @@
+package com.tamu;
+
+import storageManager.Field;
+import storageManager.Schema;
+import storageManager.Tuple;
+
+import java.util.List;
+
+// The conditions of a query and the columns it selects, fused by ShapeCache into one generated
+// class for the shape of the query: apply() returns the fields at the selected offsets of a tuple
+// that satisfies the conditions, read straight from it, or null for a tuple that does not.
+public abstract class Projection {
+    public abstract List<Field> apply(Tuple tuple);
+
+    // a projection of the same class, with the literals of other conditions of its shape
+    abstract Projection bind(Object[] literals);
+
+    // compiles the conditions and the selection of the offsets for the tuples of the schema
+    public static Projection compile(List<Statement> conditions, Schema schema, int[] offsets) {
+        return ShapeCache.compileProjection(conditions, schema, offsets);
+    }
+}
@@ -0,0 +1,45 @@
+package com.tamu;
+
+import storageManager.Field;
+import storageManager.Tuple;
+
+import java.lang.constant.ConstantDescs;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+
+// The class ShapeCache defines again, hidden, for each shape of a Projection; the code of
+// the shape is its class data, a constant the JIT inlines into apply()
+final class ProjectionTemplate extends Projection {
+    // (Tuple, Object[])List
+    private final static MethodHandle SHAPE;
+
+    static {
+        try {
+            SHAPE = MethodHandles.classData(MethodHandles.lookup(), ConstantDescs.DEFAULT_NAME, MethodHandle.class);
+        } catch (IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Object[] literals;
+
+    ProjectionTemplate(Object[] literals) {
+        this.literals = literals;
+    }
+
+    Projection bind(Object[] literals) {
+        return new ProjectionTemplate(literals);
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<Field> apply(Tuple tuple) {
+        try {
+            return (List<Field>) SHAPE.invokeExact(tuple, literals);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package com.tamu;
+
+import storageManager.Field;
+import storageManager.FieldType;
+import storageManager.Schema;
+import storageManager.Tuple;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The classes of Conditions and Projections, generated for the shape of their statements:
+// the statements without their literals, on the tuples of one schema. The code of a shape is
+// one method handle over the tuple and the literals, with the columns resolved to field offsets
+// and the operators fused; it is the constant of a hidden class defined from ConditionTemplate
+// or ProjectionTemplate, so the JIT compiles each shape into one straight method of its own.
+// The classes are cached by shape, so a query repeated with other constants only creates
+// an instance of its class with them. The cache is shared by every interpreter; when it is full, it is emptied.
+class ShapeCache {
+    private final static int CACHE_SIZE = 256;
+
+    // an instance of the class of each shape, without literals, to bind them to
+    private final static ConcurrentHashMap<String, Object> classes = new ConcurrentHashMap<>();
+
+    private final static byte[] CONDITION_TEMPLATE = readClass(ConditionTemplate.class);
+    private final static byte[] PROJECTION_TEMPLATE = readClass(ProjectionTemplate.class);
+
+    private final static MethodHandle GET_INTEGER;
+    private final static MethodHandle GET_STR;
+    private final static MethodHandle GET_FIELD;
+    private final static MethodHandle AS_LIST;
+    private final static MethodHandle INT_EQUAL;
+    private final static MethodHandle LESS_THAN;
+    private final static MethodHandle GREATER_THAN;
+    private final static MethodHandle STR_EQUAL;
+    private final static MethodHandle ADD;
+    private final static MethodHandle SUBTRACT;
+    private final static MethodHandle MULTIPLY;
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodType intOperator = MethodType.methodType(int.class, int.class, int.class);
+        MethodType intComparison = MethodType.methodType(boolean.class, int.class, int.class);
+        try {
+            GET_INTEGER = lookup.findVirtual(Tuple.class, "getInteger", MethodType.methodType(int.class, int.class));
+            GET_STR = lookup.findVirtual(Tuple.class, "getStr", MethodType.methodType(String.class, int.class));
+            GET_FIELD = lookup.findVirtual(Tuple.class, "getField", MethodType.methodType(Field.class, int.class));
+            AS_LIST = lookup.findStatic(Arrays.class, "asList", MethodType.methodType(List.class, Object[].class));
+            INT_EQUAL = lookup.findStatic(ShapeCache.class, "intEqual", intComparison);
+            LESS_THAN = lookup.findStatic(ShapeCache.class, "lessThan", intComparison);
+            GREATER_THAN = lookup.findStatic(ShapeCache.class, "greaterThan", intComparison);
+            STR_EQUAL = lookup.findStatic(ShapeCache.class, "strEqual", MethodType.methodType(boolean.class, String.class, String.class));
+            ADD = lookup.findStatic(ShapeCache.class, "add", intOperator);
+            SUBTRACT = lookup.findStatic(ShapeCache.class, "subtract", intOperator);
+            MULTIPLY = lookup.findStatic(ShapeCache.class, "multiply", intOperator);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    static Condition compileCondition(Statement statement, Schema schema) {
+        return (Condition) compile(List.of(statement), schema, null);
+    }
+
+    static Projection compileProjection(List<Statement> conditions, Schema schema, int[] offsets) {
+        return (Projection) compile(conditions, schema, offsets);
+    }
+
+    // an instance of the class of the shape, with the literals of the statements;
+    // a Condition of their conjunction if offsets is null, a Projection of the offsets otherwise
+    private static Object compile(List<Statement> conditions, Schema schema, int[] offsets) {
+        StringBuilder key = new StringBuilder(schema.toString()).append('\n');
+        key.append(offsets == null ? "-" : Arrays.toString(offsets)).append('\n');
+        List<Object> literals = new ArrayList<>();
+        for (Statement condition : conditions) {
+            appendKey(key, condition, literals);
+        }
+
+        Object prototype = classes.get(key.toString());
+        if (prototype == null) {
+            Generator generator = new Generator(schema);
+            prototype = define(generator.generate(conditions, offsets), offsets == null ? CONDITION_TEMPLATE : PROJECTION_TEMPLATE);
+            // a shape whose errors were reported is generated again, so they are reported again
+            if (!generator.reported) {
+                if (classes.size() >= CACHE_SIZE) {
+                    classes.clear();
+                }
+                classes.putIfAbsent(key.toString(), prototype);
+            }
+        }
+        Object[] values = literals.toArray();
+        return offsets == null ? ((Condition) prototype).bind(values) : ((Projection) prototype).bind(values);
+    }
+
+    // appends the statement in prefix form, with the type of its literals only, and collects the literals
+    private static void appendKey(StringBuilder key, Statement statement, List<Object> literals) {
+        String type = statement.getAttribute();
+        key.append(type);
+        switch (type) {
+            case "INT":
+                literals.add(Integer.parseInt(statement.getLeafAttribute()));
+                return;
+            case "STR20":
+                literals.add(statement.getLeafAttribute());
+                return;
+        }
+        if (statement.getSize() > 0) {
+            key.append('(');
+            for (Statement branch : statement.branches) {
+                if (type.equals("COL_ID")) {
+                    key.append(branch.getAttribute());
+                } else {
+                    appendKey(key, branch, literals);
+                }
+                key.append(' ');
+            }
+            key.append(')');
+        }
+    }
+
+    // defines a hidden class from the template, with the code of the shape as its constant,
+    // and returns an instance of it
+    private static Object define(MethodHandle shape, byte[] template) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClassWithClassData(template, shape, true);
+            return lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class, Object[].class))
+                    .invoke((Object[]) null);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] readClass(Class<?> template) {
+        try (InputStream input = template.getResourceAsStream(template.getSimpleName() + ".class")) {
+            return input.readAllBytes();
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Generates the code of a shape, over the tuple and the array of its literals in the order of the statements.
+    // It evaluates as Expression.evaluateBoolean() evaluates the statements, except that a column that
+    // cannot be resolved is reported once, here.
+    private static class Generator {
+        private final static List<Class<?>> PARAMETER_TYPES = List.of(Tuple.class, Object[].class);
+
+        private Schema schema;
+        // the literal read next
+        private int next;
+        // set if an error is reported
+        private boolean reported;
+
+        Generator(Schema schema) {
+            this.schema = schema;
+        }
+
+        // (Tuple, Object[])boolean of the conjunction of the conditions; with offsets,
+        // (Tuple, Object[])List of the fields at the offsets, or null if the tuple does not satisfy it
+        MethodHandle generate(List<Statement> conditions, int[] offsets) {
+            MethodHandle condition = null;
+            for (Statement statement : conditions) {
+                MethodHandle conjunct = generateCondition(statement);
+                condition = condition == null ? conjunct : MethodHandles.guardWithTest(condition, conjunct, constant(false));
+            }
+            if (condition == null) {
+                condition = constant(true);
+            }
+            if (offsets == null) {
+                return condition;
+            }
+
+            MethodHandle[] fields = new MethodHandle[offsets.length];
+            for (int i = 0; i < offsets.length; i++) {
+                fields[i] = MethodHandles.insertArguments(GET_FIELD, 1, offsets[i]).asType(MethodType.methodType(Object.class, Tuple.class));
+            }
+            MethodHandle project = MethodHandles.filterArguments(AS_LIST.asCollector(Object[].class, offsets.length), 0, fields);
+            project = MethodHandles.permuteArguments(project, MethodType.methodType(List.class, Tuple.class), new int[offsets.length]);
+            project = MethodHandles.dropArguments(project, 1, Object[].class);
+            MethodHandle rejected = MethodHandles.dropArguments(MethodHandles.constant(List.class, null), 0, PARAMETER_TYPES);
+            return MethodHandles.guardWithTest(condition, project, rejected);
+        }
+
+        private MethodHandle generateCondition(Statement statement) {
+            String type = statement.getAttribute();
+            switch (type) {
+                case "EXPRESSION":
+                    return generateCondition(statement.getLeaf());
+
+                case "AND":
+                    return MethodHandles.guardWithTest(generateCondition(statement.getLeft()),
+                            generateCondition(statement.getRight()), constant(false));
+
+                case "OR":
+                    return MethodHandles.guardWithTest(generateCondition(statement.getLeft()),
+                            constant(true), generateCondition(statement.getRight()));
+
+                case "=": {
+                    // values of different types, or of a column that cannot be found, are never equal
+                    MethodHandle left = generateValue(statement.getLeft());
+                    MethodHandle right = generateValue(statement.getRight());
+                    if (left == null || right == null || left.type().returnType() != right.type().returnType()) {
+                        return constant(false);
+                    }
+                    return combine(left.type().returnType() == int.class ? INT_EQUAL : STR_EQUAL, left, right);
+                }
+
+                case "<":
+                    return combine(LESS_THAN, generateInt(statement.getLeft()), generateInt(statement.getRight()));
+
+                case ">":
+                    return combine(GREATER_THAN, generateInt(statement.getLeft()), generateInt(statement.getRight()));
+
+                default:
+                    Util.outputLn("Unknown Expression!");
+                    reported = true;
+                    skip(statement);
+                    return constant(false);
+            }
+        }
+
+        // an operand returning an int or a String by its type, or null for a column that cannot be found
+        private MethodHandle generateValue(Statement statement) {
+            switch (statement.getAttribute()) {
+                case "INT":
+                    return generateLiteral(int.class);
+
+                case "STR20":
+                    return generateLiteral(String.class);
+
+                case "COL_ID":
+                    String fieldName = Expression.resolveFieldName(schema, statement);
+                    int offset = fieldName == null ? -1 : schema.getFieldOffset(fieldName);
+                    if (offset == -1) {
+                        reported = true;
+                        return null;
+                    }
+                    MethodHandle field = schema.getFieldType(offset) == FieldType.INT ? GET_INTEGER : GET_STR;
+                    return MethodHandles.dropArguments(MethodHandles.insertArguments(field, 1, offset), 1, Object[].class);
+
+                case "+":
+                    return combine(ADD, generateInt(statement.getLeft()), generateInt(statement.getRight()));
+
+                case "-":
+                    return combine(SUBTRACT, generateInt(statement.getLeft()), generateInt(statement.getRight()));
+
+                case "*":
+                    return combine(MULTIPLY, generateInt(statement.getLeft()), generateInt(statement.getRight()));
+
+                default:
+                    skip(statement);
+                    return constant(0);
+            }
+        }
+
+        // an operand returning an int: a column that cannot be found is 0,
+        // and a string has the integer of a STR20 field
+        private MethodHandle generateInt(Statement statement) {
+            MethodHandle value = generateValue(statement);
+            if (value == null) {
+                return constant(0);
+            } else if (value.type().returnType() == String.class) {
+                return constant(Integer.MIN_VALUE);
+            }
+            return value;
+        }
+
+        // the next literal, read from the array
+        private MethodHandle generateLiteral(Class<?> type) {
+            MethodHandle literal = MethodHandles.insertArguments(MethodHandles.arrayElementGetter(Object[].class), 1, next++);
+            return MethodHandles.dropArguments(literal.asType(MethodType.methodType(type, Object[].class)), 0, Tuple.class);
+        }
+
+        // steps over the literals of a statement that is not generated
+        private void skip(Statement statement) {
+            switch (statement.getAttribute()) {
+                case "INT":
+                case "STR20":
+                    next++;
+                    return;
+                case "COL_ID":
+                    return;
+            }
+            for (Statement branch : statement.branches) {
+                skip(branch);
+            }
+        }
+
+        private MethodHandle constant(Object value) {
+            Class<?> type = value instanceof Boolean ? boolean.class : int.class;
+            return MethodHandles.dropArguments(MethodHandles.constant(type, value), 0, PARAMETER_TYPES);
+        }
+
+        // the operator applied to the results of left and right, all of them over the same parameters
+        private MethodHandle combine(MethodHandle operator, MethodHandle left, MethodHandle right) {
+            MethodHandle operands = MethodHandles.dropArguments(operator, 2, PARAMETER_TYPES);
+            return MethodHandles.foldArguments(MethodHandles.foldArguments(operands, 1, right), left);
+        }
+    }
+
+    private static boolean intEqual(int left, int right) {
+        return left == right;
+    }
+
+    private static boolean lessThan(int left, int right) {
+        return left < right;
+    }
+
+    private static boolean greaterThan(int left, int right) {
+        return left > right;
+    }
+
+    // a null string is equal to nothing
+    private static boolean strEqual(String left, String right) {
+        return left != null && left.equals(right);
+    }
+
+    private static int add(int left, int right) {
+        return left + right;
+    }
+
+    private static int subtract(int left, int right) {
+        return left - right;
+    }
+
+    private static int multiply(int left, int right) {
+        return left * right;
+    }
+}
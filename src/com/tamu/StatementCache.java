@@ -0,0 +1,210 @@
+package com.tamu;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/* Parsed statements kept as templates, so a statement run again with other literals
+ *   is not parsed again.
+ * A template is a parsed statement with a leaf of ? for each parameter;
+ *   binding it to values copies it, with a leaf of each value in place of the ?.
+ * Every statement is looked up by its text with its literals replaced by ?.
+ *   The first time, the text is parsed both ways, and the template is only kept
+ *   if binding it gives what the parser gives, else the text is always parsed.
+ * Templates may also be named by PREPARE name AS statement,
+ *   and bound by EXECUTE name (value, ...).
+ */
+class StatementCache {
+    private final static int CACHE_SIZE = 256;
+    private final static String PARAMETER = "?";
+    private final static String executeErrorInfo = "Error in an EXECUTE statement! ";
+
+    // a template that must not be used: its text is always parsed
+    private final static Statement UNCACHEABLE = new Statement();
+
+    private Parser parser;
+    // the least recently used template is dropped first
+    private Map<String, Statement> templates = new LinkedHashMap<String, Statement>(16, 0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry<String, Statement> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private Map<String, Statement> prepared = new HashMap<>();
+
+    StatementCache(Parser parser) {
+        this.parser = parser;
+    }
+
+    Statement parse(String statement) {
+        List<String> literals = new ArrayList<>();
+        String text = normalize(statement, literals);
+        if (text == null) {
+            return parser.parseText(statement);
+        }
+
+        Statement template = templates.get(text);
+        if (template == UNCACHEABLE) {
+            return parser.parseText(statement);
+        } else if (template != null) {
+            return bind(template, literals);
+        }
+
+        Statement parsed = parser.parseText(statement);
+        if (parsed == null) {
+            return null;
+        }
+        try {
+            template = parser.parseText(text);
+        } catch (RuntimeException e) {
+            // a ? where the parser expects something else
+            template = null;
+        }
+        if (template != null && countParameters(template) == literals.size() && equals(bind(template, literals), parsed)) {
+            templates.put(text, template);
+        } else {
+            templates.put(text, UNCACHEABLE);
+        }
+        return parsed;
+    }
+
+    void prepare(String name, Statement template) {
+        prepared.put(name, template);
+    }
+
+    // binds the statement prepared as name to the literals, strings quoted
+    Statement execute(String name, List<String> literals) {
+        Statement template = prepared.get(name);
+        if (template == null) {
+            Util.outputErrorLn(executeErrorInfo + "Cannot find prepared statement \"" + name + "\".");
+            return null;
+        }
+
+        int numOfParameters = countParameters(template);
+        if (literals.size() != numOfParameters) {
+            Util.outputErrorLn(executeErrorInfo + "Statement \"" + name + "\" takes " + numOfParameters
+                    + " values, but " + literals.size() + " are given.");
+            return null;
+        }
+        return bind(template, literals);
+    }
+
+    // returns the statement with its literals replaced by ?, adding them to literals in order;
+    // null if it has a ? already
+    private static String normalize(String statement, List<String> literals) {
+        StringBuilder text = new StringBuilder(statement.length());
+        int length = statement.length();
+        for (int i = 0; i < length; ) {
+            char c = statement.charAt(i);
+            if (c == '?') {
+                return null;
+            }
+            boolean start = i == 0 || isSeparator(statement.charAt(i - 1));
+
+            if (start && (c == '"' || c == '\'')) {
+                int end = statement.indexOf(c, i + 1);
+                if (end <= i + 1 || (end + 1 < length && !isTerminator(statement.charAt(end + 1)))) {
+                    return null;
+                }
+                literals.add(statement.substring(i, end + 1));
+                text.append(PARAMETER);
+                i = end + 1;
+                continue;
+            }
+
+            if (start && (Character.isDigit(c) || (c == '-' && i + 1 < length && Character.isDigit(statement.charAt(i + 1))))) {
+                int end = i + 1;
+                while (end < length && Character.isDigit(statement.charAt(end))) {
+                    end++;
+                }
+                if (end == length || isTerminator(statement.charAt(end))) {
+                    String literal = statement.substring(i, end);
+                    if (!Util.isInteger(literal)) {
+                        // too long for an INT, so the parser takes it for a column
+                        return null;
+                    }
+                    literals.add(literal);
+                    text.append(PARAMETER);
+                    i = end;
+                    continue;
+                }
+            }
+
+            text.append(c);
+            i++;
+        }
+        return text.toString();
+    }
+
+    // a literal starts after one of these
+    private static boolean isSeparator(char c) {
+        return c == ' ' || c == ',' || c == '(';
+    }
+
+    // and ends before one of these
+    private static boolean isTerminator(char c) {
+        return c == ' ' || c == ',' || c == ')' || c == ';';
+    }
+
+    private static int countParameters(Statement statement) {
+        if (isParameter(statement)) {
+            return 1;
+        }
+        int count = 0;
+        for (Statement branch : statement.branches) {
+            count += countParameters(branch);
+        }
+        return count;
+    }
+
+    // a leaf of ?, such as COL_ID(?) in a condition, VALUE(?) or LIMIT(?)
+    private static boolean isParameter(Statement statement) {
+        return statement.getSize() == 1 && statement.getLeaf().getSize() == 0
+                && statement.getLeafAttribute().equals(PARAMETER);
+    }
+
+    // a copy of the template with the literals in place of its parameters, in order
+    private static Statement bind(Statement template, List<String> literals) {
+        return bind(template, literals, new int[1]);
+    }
+
+    private static Statement bind(Statement template, List<String> literals, int[] next) {
+        if (isParameter(template)) {
+            String literal = literals.get(next[0]++);
+            boolean quoted = literal.startsWith("\"") || literal.startsWith("'");
+            String value = quoted ? literal.substring(1, literal.length() - 1) : literal;
+            if (template.getAttribute().equals("COL_ID")) {
+                // in a condition, as the parser reads a literal
+                if (Util.isInteger(literal)) {
+                    return Parser.generateLiteral(literal, "INT");
+                } else if (quoted) {
+                    return Parser.generateLiteral(value, "STR20");
+                }
+            }
+            return Parser.generateLiteral(value, template.getAttribute());
+        }
+
+        Statement statement = new Statement(template.getAttribute());
+        for (Statement branch : template.branches) {
+            statement.branches.add(bind(branch, literals, next));
+        }
+        return statement;
+    }
+
+    private static boolean equals(Statement statement1, Statement statement2) {
+        if (statement1 == null || statement2 == null) {
+            return statement1 == statement2;
+        }
+        if (!String.valueOf(statement1.getAttribute()).equals(String.valueOf(statement2.getAttribute()))
+                || statement1.getSize() != statement2.getSize()) {
+            return false;
+        }
+        for (int i = 0; i < statement1.getSize(); i++) {
+            if (!equals(statement1.branches.get(i), statement2.branches.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -8,7 +8,7 @@ public class TupleValue {
     int integer;
 
     public boolean equals(TupleValue value) {
-        if (this.fieldType == value.fieldType) {
+        if (this.fieldType != null && this.fieldType == value.fieldType) {
             if (this.fieldType == FieldType.INT) {
                 return this.integer == value.integer;
             } else {
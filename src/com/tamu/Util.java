@@ -3,9 +3,9 @@ package com.tamu;
 import storageManager.Field;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 public class Util {
     private static FileWriter writer;
@@ -42,30 +42,38 @@ public class Util {
         }
     }
 
-    public static void output(List<String> fieldNames, List<Map<String, Field>> tuples) {
+    // a result is printed as its title, one line for each tuple as it comes, and its end
+    public static void outputTitle(List<String> fieldNames) {
+        outputLn(getLine(fieldNames));
+        outputLn(getTitleLine(fieldNames));
+    }
+
+    public static void outputTuple(List<Field> fields) {
+        for (Field field : fields) {
+            output(field + "\t");
+        }
+        outputLn("");
+    }
+
+    public static void outputEnd(List<String> fieldNames) {
+        outputLn(getLine(fieldNames));
+    }
+
+    private static String getTitleLine(List<String> fieldNames) {
         StringBuilder titleLineSB = new StringBuilder();
         for (String fieldName : fieldNames) {
             titleLineSB.append(fieldName).append("\t");
         }
-        String titleLine = titleLineSB.toString();
+        return titleLineSB.toString();
+    }
 
+    private static String getLine(List<String> fieldNames) {
+        String titleLine = getTitleLine(fieldNames);
         StringBuilder lineSB = new StringBuilder();
         for (int i = 0; i != titleLine.length(); i++) {
             lineSB.append('=');
         }
-        String line = lineSB.toString();
-
-        outputLn(line);
-        outputLn(titleLine);
-
-        for (Map<String, Field> tuple : tuples) {
-            for (String fieldName : fieldNames) {
-                output(tuple.get(fieldName) + "\t");
-            }
-            outputLn("");
-        }
-
-        outputLn(line);
+        return lineSB.toString();
     }
 
     static Boolean isInteger(String s) {
@@ -77,22 +85,9 @@ public class Util {
         }
     }
 
-    static String trim(String s) {
-        if (s.length() == 0) {
-            return null;
-        }
-
-        String str = s;
-        while (str.charAt(0) == '('
-                || str.charAt(0) == '"') {
-            str = str.substring(1);
-        }
-        while (str.charAt(str.length() - 1) == ')'
-                || str.charAt(str.length() - 1) == ','
-                || str.charAt(str.length() - 1) == '"') {
-            str = str.substring(0, str.length() - 1);
-        }
-        return str;
+    // a STR20 value is stored in at most 20 bytes, so a longer one would not be read back as it is
+    public static boolean isStr20(String s) {
+        return s.getBytes(StandardCharsets.UTF_8).length <= 20;
     }
 
     static List<String> readFile(String fileName) {
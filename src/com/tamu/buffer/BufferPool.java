@@ -0,0 +1,349 @@
+package com.tamu.buffer;
+
+import storageManager.Block;
+import storageManager.MainMemory;
+import storageManager.Relation;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/* A buffer pool manages every block of the MainMemory as a frame.
+ * A frame either buffers one disk block (a page) of a relation,
+ *   is handed out as a work area, or is free.
+ * Pages stay buffered after they are unpinned, so a page requested
+ *   again is not read from the disk again. Changed pages are marked
+ *   dirty and written back when they are evicted or flushed.
+ * Sequential scans read ahead several pages with one disk request,
+ *   so the seek time is paid once per chunk instead of once per block.
+ *   A chunk is a few pages only, so a scan does not evict the whole pool.
+ * Usage: Pin a page to get the memory block index holding it,
+ *          access the block through MainMemory::getBlock(),
+ *          and unpin it when it is no longer used.
+ *        A pinned frame is never evicted.
+ *        Do not read or write relation blocks directly while
+ *          their pages may be buffered here.
+ */
+public class BufferPool {
+    // a chunk read ahead takes at most this many frames, and at most half of the available ones,
+    // so a scan leaves the pages of other operators buffered
+    private final static int MAX_READ_AHEAD = 4;
+
+    private MainMemory memory;
+    private EvictionPolicy policy;
+
+    private Page[] pages;        // page in each frame; null for free and work frames
+    private int[] pinCounts;
+    private boolean[] dirty;
+    private boolean[] work;      // frames handed out by allocate()
+    private Map<Page, Integer> pageTable = new HashMap<>();
+
+    // for benchmark
+    private long hits;
+    private long misses;
+
+    // identifies a disk block of a relation
+    static class Page {
+        final Relation relation;
+        final int blockIndex;
+
+        Page(Relation relation, int blockIndex) {
+            this.relation = relation;
+            this.blockIndex = blockIndex;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Page)) {
+                return false;
+            }
+            Page page = (Page) o;
+            return relation == page.relation && blockIndex == page.blockIndex;
+        }
+
+        public int hashCode() {
+            return System.identityHashCode(relation) * 31 + blockIndex;
+        }
+    }
+
+    public BufferPool(MainMemory memory, EvictionPolicy policy) {
+        this.memory = memory;
+        this.policy = policy;
+        int numFrames = memory.getMemorySize();
+        pages = new Page[numFrames];
+        pinCounts = new int[numFrames];
+        dirty = new boolean[numFrames];
+        work = new boolean[numFrames];
+    }
+
+    public int getNumOfFrames() {
+        return pages.length;
+    }
+
+    // returns the number of frames that pin() or allocate() can still hand out
+    public int getNumOfAvailableFrames() {
+        int count = 0;
+        for (int i = 0; i < pages.length; i++) {
+            if (pinCounts[i] == 0 && !work[i]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // number of blocks of the relation, including new pages not yet written back
+    public int getNumOfBlocks(Relation relation) {
+        int numOfBlocks = relation.getNumOfBlocks();
+        for (Page page : pages) {
+            if (page != null && page.relation == relation && page.blockIndex >= numOfBlocks) {
+                numOfBlocks = page.blockIndex + 1;
+            }
+        }
+        return numOfBlocks;
+    }
+
+    // returns the memory block index holding the page, reading it if needed;
+    // returns -1 if every frame is pinned
+    public int pin(Relation relation, int blockIndex) {
+        Page page = new Page(relation, blockIndex);
+        Integer frame = pageTable.get(page);
+        if (frame != null) {
+            hits++;
+            pinCounts[frame]++;
+            policy.access(frame);
+            return frame;
+        }
+
+        misses++;
+        int newFrame = getFrame();
+        if (newFrame == -1) {
+            System.err.print("pin ERROR: every memory block is pinned\n");
+            return -1;
+        }
+        if (!relation.getBlock(blockIndex, newFrame)) {
+            memory.getBlock(newFrame).clear();
+        }
+        register(newFrame, page);
+        return newFrame;
+    }
+
+    // returns the memory block index for a page that is not on the disk yet,
+    // e.g. a block appended to the relation; the empty page is dirty
+    public int pinNew(Relation relation, int blockIndex) {
+        Page page = new Page(relation, blockIndex);
+        Integer frame = pageTable.get(page);
+        if (frame != null) {
+            pinCounts[frame]++;
+            policy.access(frame);
+            memory.getBlock(frame).clear();
+            dirty[frame] = true;
+            return frame;
+        }
+
+        int newFrame = getFrame();
+        if (newFrame == -1) {
+            System.err.print("pinNew ERROR: every memory block is pinned\n");
+            return -1;
+        }
+        memory.getBlock(newFrame).clear();
+        register(newFrame, page);
+        dirty[newFrame] = true;
+        return newFrame;
+    }
+
+    // like pin(), but for sequential scans up to numOfBlocks: on a miss, the page
+    // and the pages following it are read ahead with one Relation::getBlocks()
+    // into a few consecutive available frames
+    public int pinAhead(Relation relation, int blockIndex, int numOfBlocks) {
+        Page page = new Page(relation, blockIndex);
+        if (pageTable.containsKey(page) || readAhead(relation, blockIndex, numOfBlocks) == 0) {
+            return pin(relation, blockIndex);
+        }
+        misses++;
+        int frame = pageTable.get(page);
+        pinCounts[frame]++;
+        policy.access(frame);
+        return frame;
+    }
+
+    public void unpin(int frame, boolean isDirty) {
+        if (pinCounts[frame] == 0) {
+            System.err.print("unpin ERROR: memory block " + frame + " is not pinned\n");
+            return;
+        }
+        pinCounts[frame]--;
+        dirty[frame] |= isDirty;
+    }
+
+    public void markDirty(int frame) {
+        dirty[frame] = true;
+    }
+
+    // hands out a frame as a work area; returns -1 if every frame is in use
+    public int allocate() {
+        int frame = getFrame();
+        if (frame != -1) {
+            work[frame] = true;
+            memory.getBlock(frame).clear();
+        }
+        return frame;
+    }
+
+    // hands out num_frames consecutive frames as work areas and returns the first,
+    // e.g. for Relation::getBlocks(); returns -1 if there is no such run
+    public int allocate(int num_frames) {
+        for (int start = 0; start + num_frames <= pages.length; start++) {
+            boolean available = true;
+            for (int i = start; i < start + num_frames && available; i++) {
+                available = pinCounts[i] == 0 && !work[i];
+            }
+            if (available) {
+                for (int i = start; i < start + num_frames; i++) {
+                    if (pages[i] != null) {
+                        evict(i);
+                    }
+                    work[i] = true;
+                    memory.getBlock(i).clear();
+                }
+                return start;
+            }
+        }
+        return -1;
+    }
+
+    // gives a work frame back
+    public void release(int frame) {
+        work[frame] = false;
+    }
+
+    // turns a work frame into a buffered page of the relation,
+    // e.g. after the frame was filled by Relation::getBlocks()
+    public void adopt(int frame, Relation relation, int blockIndex, boolean isDirty) {
+        Page page = new Page(relation, blockIndex);
+        Integer old = pageTable.get(page);
+        if (old != null) {
+            // the frame replaces an older copy of the page
+            drop(old);
+        }
+        work[frame] = false;
+        register(frame, page);
+        pinCounts[frame] = 0;
+        dirty[frame] = isDirty;
+    }
+
+    // writes back every dirty page of the relation
+    public void flush(Relation relation) {
+        for (int i = 0; i < pages.length; i++) {
+            if (pages[i] != null && pages[i].relation == relation) {
+                writeBack(i);
+            }
+        }
+    }
+
+    // writes back every dirty page
+    public void flushAll() {
+        for (int i = 0; i < pages.length; i++) {
+            if (pages[i] != null) {
+                writeBack(i);
+            }
+        }
+    }
+
+    // forgets the buffered pages of the relation from startingBlockIndex on,
+    // without writing them back
+    public void discard(Relation relation, int startingBlockIndex) {
+        for (int i = 0; i < pages.length; i++) {
+            if (pages[i] != null && pages[i].relation == relation && pages[i].blockIndex >= startingBlockIndex) {
+                if (pinCounts[i] > 0) {
+                    System.err.print("discard ERROR: memory block " + i + " is still pinned\n");
+                }
+                drop(i);
+            }
+        }
+    }
+
+    // deletes the blocks of the relation from startingBlockIndex to the last block
+    public void deleteBlocks(Relation relation, int startingBlockIndex) {
+        discard(relation, startingBlockIndex);
+        if (startingBlockIndex < relation.getNumOfBlocks()) {
+            relation.deleteBlocks(startingBlockIndex);
+        }
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    // returns a free frame, evicting an unpinned page if needed
+    private int getFrame() {
+        boolean[] evictable = new boolean[pages.length];
+        for (int i = 0; i < pages.length; i++) {
+            if (pages[i] == null && !work[i]) {
+                return i;
+            }
+            evictable[i] = pages[i] != null && pinCounts[i] == 0;
+        }
+        int frame = policy.victim(evictable);
+        if (frame != -1) {
+            evict(frame);
+        }
+        return frame;
+    }
+
+    // reads the pages from blockIndex on, stopping before numOfBlocks,
+    // the end of the relation on the disk, or a page that is buffered already
+    // (it may be newer than the disk copy), or a chunk of MAX_READ_AHEAD pages or half the available frames;
+    // returns the number of pages read, or 0 if there are not at least two pages and two frames for them
+    private int readAhead(Relation relation, int blockIndex, int numOfBlocks) {
+        int window = Math.min(MAX_READ_AHEAD, getNumOfAvailableFrames() / 2);
+        int end = Math.min(Math.min(numOfBlocks, relation.getNumOfBlocks()), blockIndex + window);
+        int count = 0;
+        while (blockIndex + count < end && !pageTable.containsKey(new Page(relation, blockIndex + count))) {
+            count++;
+        }
+        for (; count > 1; count--) {
+            int start = allocate(count);
+            if (start != -1) {
+                relation.getBlocks(blockIndex, start, count);
+                for (int i = 0; i < count; i++) {
+                    adopt(start + i, relation, blockIndex + i, false);
+                }
+                return count;
+            }
+        }
+        return 0;
+    }
+
+    private void register(int frame, Page page) {
+        pages[frame] = page;
+        pinCounts[frame] = 1;
+        dirty[frame] = false;
+        pageTable.put(page, frame);
+        policy.insert(frame, page);
+    }
+
+    private void evict(int frame) {
+        writeBack(frame);
+        drop(frame);
+    }
+
+    private void drop(int frame) {
+        pageTable.remove(pages[frame]);
+        policy.remove(frame);
+        pages[frame] = null;
+        pinCounts[frame] = 0;
+        dirty[frame] = false;
+    }
+
+    private void writeBack(int frame) {
+        if (dirty[frame]) {
+            Block block = memory.getBlock(frame);
+            if (!block.isEmpty()) {
+                pages[frame].relation.setBlock(pages[frame].blockIndex, frame);
+            }
+            dirty[frame] = false;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.tamu.buffer;
+
+// approximates LRU with one reference bit per frame and a rotating hand
+public class ClockPolicy implements EvictionPolicy {
+    private boolean[] inUse;
+    private boolean[] referenced;
+    private int hand = 0;
+
+    ClockPolicy(int numFrames) {
+        inUse = new boolean[numFrames];
+        referenced = new boolean[numFrames];
+    }
+
+    public void insert(int frame, Object page) {
+        inUse[frame] = true;
+        referenced[frame] = true;
+    }
+
+    public void access(int frame) {
+        referenced[frame] = true;
+    }
+
+    public void remove(int frame) {
+        inUse[frame] = false;
+        referenced[frame] = false;
+    }
+
+    public int victim(boolean[] evictable) {
+        // two sweeps: the first one may only clear reference bits
+        for (int i = 0; i < 2 * inUse.length; i++) {
+            int frame = hand;
+            hand = (hand + 1) % inUse.length;
+            if (inUse[frame] && evictable[frame]) {
+                if (referenced[frame]) {
+                    referenced[frame] = false;
+                } else {
+                    return frame;
+                }
+            }
+        }
+        return -1;
+    }
+}
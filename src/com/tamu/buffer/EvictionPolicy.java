@@ -0,0 +1,31 @@
+package com.tamu.buffer;
+
+/* Decides which memory block of a BufferPool gives up its page
+ * when a page that is not buffered is requested.
+ * Frames are numbered like the memory blocks: 0,1,2,...
+ */
+public interface EvictionPolicy {
+    // the page has just been read into the frame
+    void insert(int frame, Object page);
+
+    // the page in the frame has been requested again
+    void access(int frame);
+
+    // the frame no longer holds a page
+    void remove(int frame);
+
+    // returns the frame to evict among the evictable ones, or -1 if there is none
+    int victim(boolean[] evictable);
+
+    static EvictionPolicy forName(String name, int numFrames) {
+        switch (name.toUpperCase()) {
+            case "CLOCK":
+                return new ClockPolicy(numFrames);
+            case "2Q":
+                return new TwoQueuePolicy(numFrames);
+            case "LRU":
+            default:
+                return new LRUPolicy();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.tamu.buffer;
+
+import java.util.LinkedHashSet;
+
+// evicts the page that has not been requested for the longest time
+public class LRUPolicy implements EvictionPolicy {
+    // least recently used first
+    private LinkedHashSet<Integer> frames = new LinkedHashSet<>();
+
+    public void insert(int frame, Object page) {
+        frames.add(frame);
+    }
+
+    public void access(int frame) {
+        frames.remove(frame);
+        frames.add(frame);
+    }
+
+    public void remove(int frame) {
+        frames.remove(frame);
+    }
+
+    public int victim(boolean[] evictable) {
+        for (int frame : frames) {
+            if (evictable[frame]) {
+                return frame;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,76 @@
+package com.tamu.buffer;
+
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+
+/* Simplified 2Q: pages requested once stay in a FIFO queue (A1in),
+ *   so one long scan cannot flush the pages that are requested
+ *   again and again, which live in an LRU queue (Am).
+ * A1out remembers the pages recently evicted from A1in;
+ *   such a page goes straight to Am when it is read again.
+ */
+public class TwoQueuePolicy implements EvictionPolicy {
+    private int maxA1in;
+    private int maxA1out;
+    private LinkedHashSet<Integer> a1in = new LinkedHashSet<>();
+    private LinkedHashSet<Integer> am = new LinkedHashSet<>();
+    private LinkedList<Object> a1out = new LinkedList<>();
+    private Object[] pages;
+
+    TwoQueuePolicy(int numFrames) {
+        maxA1in = Math.max(1, numFrames / 4);
+        maxA1out = Math.max(1, numFrames / 2);
+        pages = new Object[numFrames];
+    }
+
+    public void insert(int frame, Object page) {
+        pages[frame] = page;
+        if (a1out.remove(page)) {
+            am.add(frame);
+        } else {
+            a1in.add(frame);
+        }
+    }
+
+    public void access(int frame) {
+        if (am.remove(frame)) {
+            am.add(frame);
+        }
+        // a page in A1in keeps its place: correlated requests do not count
+    }
+
+    public void remove(int frame) {
+        a1in.remove(frame);
+        am.remove(frame);
+        pages[frame] = null;
+    }
+
+    public int victim(boolean[] evictable) {
+        int frame = -1;
+        if (a1in.size() > maxA1in || am.isEmpty()) {
+            frame = first(a1in, evictable);
+        }
+        if (frame == -1) {
+            frame = first(am, evictable);
+        }
+        if (frame == -1) {
+            frame = first(a1in, evictable);
+        }
+        if (frame != -1 && a1in.contains(frame)) {
+            a1out.addLast(pages[frame]);
+            if (a1out.size() > maxA1out) {
+                a1out.removeFirst();
+            }
+        }
+        return frame;
+    }
+
+    private static int first(LinkedHashSet<Integer> queue, boolean[] evictable) {
+        for (int frame : queue) {
+            if (evictable[frame]) {
+                return frame;
+            }
+        }
+        return -1;
+    }
+}
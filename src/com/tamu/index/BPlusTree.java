@@ -0,0 +1,356 @@
+package com.tamu.index;
+
+import com.tamu.buffer.BufferPool;
+import storageManager.FieldType;
+import storageManager.MainMemory;
+import storageManager.Relation;
+import storageManager.Schema;
+import storageManager.Tuple;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/* A B+-tree index: every node is the one tuple of a block of the storage relation,
+ *   and the root is always block 0, so the tree needs no other catalog.
+ * The fields of a node are
+ *   info:                 size * 2 + 1 for a leaf, size * 2 for an internal node
+ *   pointer0:             the next leaf, -1 after the last one; or the first child
+ *   key<i>, pointer<i+1>: the i-th key and its tuple id; or the child after the key
+ *   so a node has up to ORDER keys.
+ * The keys of the subtree left of a key are not greater than it, and the keys
+ *   of the subtree right of it are not less, so equal keys may span several leaves:
+ *   they are found from the leftmost leaf that may hold them, along the next leaves.
+ * Entries are removed from their leaf without merging the leaves, so a leaf may get empty;
+ *   the tree only shrinks when it is cleared.
+ */
+public class BPlusTree extends Index {
+    final static int ORDER = (Schema.getMaxNumOfFields() - 2) / 2;
+
+    private final static int INFO = 0;
+    private final static int NONE = -1;
+
+    // a node read out of its block; it may hold one key too many before it is split
+    private static class Node {
+        boolean leaf;
+        int size;
+        Object[] keys = new Object[ORDER + 1];
+        int[] pointers = new int[ORDER + 2];
+    }
+
+    // a new node right of a split one, and the key between them
+    private static class Split {
+        Object key;
+        int block;
+
+        Split(Object key, int block) {
+            this.key = key;
+            this.block = block;
+        }
+    }
+
+    BPlusTree(String name, Relation relation, String fieldName, Relation storage, MainMemory memory, BufferPool bufferPool) {
+        super(name, relation, fieldName, storage, memory, bufferPool);
+    }
+
+    // the schema of the nodes of a tree of the keys of the type
+    static Schema getSchema(FieldType keyType) {
+        ArrayList<String> fieldNames = new ArrayList<>();
+        ArrayList<FieldType> fieldTypes = new ArrayList<>();
+        fieldNames.add("info");
+        fieldTypes.add(FieldType.INT);
+        fieldNames.add("pointer0");
+        fieldTypes.add(FieldType.INT);
+        for (int i = 0; i < ORDER; i++) {
+            fieldNames.add("key" + i);
+            fieldTypes.add(keyType);
+            fieldNames.add("pointer" + (i + 1));
+            fieldTypes.add(FieldType.INT);
+        }
+        return new Schema(fieldNames, fieldTypes);
+    }
+
+    public boolean supports(char operator) {
+        return operator == '=' || getType() == FieldType.INT;
+    }
+
+    public List<Integer> lookup(char operator, Object value) {
+        List<Integer> tupleIds = new ArrayList<>();
+        if (isEmpty()) {
+            return tupleIds;
+        }
+        // the first leaf that may hold a key
+        int block;
+        switch (operator) {
+            case '=':
+                block = findLeaf(value, true);
+                break;
+            case '<':
+                block = findLeaf(null, true);
+                break;
+            default:
+                block = findLeaf(value, false);
+                break;
+        }
+
+        for (; block != NONE; ) {
+            Node node = read(block);
+            for (int i = 0; i < node.size; i++) {
+                int comparison = compare(node.keys[i], value);
+                if (operator == '>' ? comparison > 0 : operator == '=' ? comparison == 0 : comparison < 0) {
+                    tupleIds.add(node.pointers[i + 1]);
+                } else if (operator == '<' ? comparison >= 0 : operator == '=' && comparison > 0) {
+                    return tupleIds;
+                }
+            }
+            block = node.pointers[0];
+        }
+        return tupleIds;
+    }
+
+    // one block for each level, and a leaf for every few entries
+    public double getCost(double numOfEntries) {
+        int numOfBlocks = bufferPool.getNumOfBlocks(storage);
+        double height = Math.ceil(Math.log(numOfBlocks + 1) / Math.log(ORDER + 1));
+        return height + 1 + numOfEntries / ORDER;
+    }
+
+    // loads the sorted keys bottom up, into full leaves and nodes,
+    // each written once; the root is written last, into block 0
+    protected void build(List<Object> keys, List<Integer> tupleIds) {
+        clear();
+        if (keys.isEmpty()) {
+            return;
+        }
+        Integer[] order = new Integer[keys.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        // stable, so equal keys stay in the order of their tuple ids
+        Arrays.sort(order, (i, j) -> compare(keys.get(i), keys.get(j)));
+
+        // the first key and the block of each node of the level
+        List<Object> firstKeys = new ArrayList<>();
+        List<Integer> blocks = new ArrayList<>();
+        int numOfLeaves = (order.length + ORDER - 1) / ORDER;
+        int nextBlock = numOfLeaves == 1 ? 0 : 1;
+        for (int leaf = 0; leaf < numOfLeaves; leaf++) {
+            Node node = new Node();
+            node.leaf = true;
+            for (int i = leaf * ORDER; i < Math.min(order.length, (leaf + 1) * ORDER); i++) {
+                node.keys[node.size] = keys.get(order[i]);
+                node.pointers[++node.size] = tupleIds.get(order[i]);
+            }
+            node.pointers[0] = leaf + 1 < numOfLeaves ? nextBlock + 1 : NONE;
+            firstKeys.add(node.keys[0]);
+            blocks.add(nextBlock);
+            write(nextBlock++, node);
+        }
+
+        while (blocks.size() > 1) {
+            List<Object> levelKeys = new ArrayList<>();
+            List<Integer> levelBlocks = new ArrayList<>();
+            boolean root = blocks.size() <= ORDER + 1;
+            for (int first = 0; first < blocks.size(); first += ORDER + 1) {
+                Node node = new Node();
+                node.pointers[0] = blocks.get(first);
+                for (int i = first + 1; i < Math.min(blocks.size(), first + ORDER + 1); i++) {
+                    node.keys[node.size] = firstKeys.get(i);
+                    node.pointers[++node.size] = blocks.get(i);
+                }
+                int block = root ? 0 : nextBlock++;
+                levelKeys.add(firstKeys.get(first));
+                levelBlocks.add(block);
+                write(block, node);
+            }
+            firstKeys = levelKeys;
+            blocks = levelBlocks;
+        }
+    }
+
+    public void insert(Object key, int tupleId) {
+        if (isEmpty()) {
+            Node root = new Node();
+            root.leaf = true;
+            root.pointers[0] = NONE;
+            insertEntry(root, 0, key, tupleId);
+            write(0, root);
+            return;
+        }
+        Split split = insert(0, key, tupleId);
+        if (split != null) {
+            // the root stays at block 0: its left half moves to a new block under a new root
+            Node left = read(0);
+            int leftBlock = bufferPool.getNumOfBlocks(storage);
+            write(leftBlock, left);
+            Node root = new Node();
+            root.pointers[0] = leftBlock;
+            insertEntry(root, 0, split.key, split.block);
+            write(0, root);
+        }
+    }
+
+    public void update(Object key, Map<Integer, Integer> changes) {
+        if (isEmpty()) {
+            return;
+        }
+        int remaining = changes.size();
+        for (int block = findLeaf(key, true); block != NONE && remaining > 0; ) {
+            Node node = read(block);
+            boolean changed = false;
+            for (int i = 0; i < node.size && remaining > 0; ) {
+                int comparison = compare(node.keys[i], key);
+                if (comparison > 0) {
+                    remaining = 0;
+                    break;
+                }
+                Integer tupleId = comparison == 0 ? changes.get(node.pointers[i + 1]) : null;
+                if (tupleId == null) {
+                    i++;
+                    continue;
+                }
+                remaining--;
+                changed = true;
+                if (tupleId == NONE) {
+                    removeEntry(node, i);
+                } else {
+                    node.pointers[++i] = tupleId;
+                }
+            }
+            if (changed) {
+                write(block, node);
+            }
+            block = node.pointers[0];
+        }
+    }
+
+    // inserts the entry into the subtree at the block; returns the split of the node at the block, if any
+    private Split insert(int block, Object key, int tupleId) {
+        Node node = read(block);
+        // after the keys not greater than the key
+        int position = 0;
+        while (position < node.size && compare(node.keys[position], key) <= 0) {
+            position++;
+        }
+
+        if (node.leaf) {
+            insertEntry(node, position, key, tupleId);
+        } else {
+            Split split = insert(node.pointers[position], key, tupleId);
+            if (split == null) {
+                return null;
+            }
+            insertEntry(node, position, split.key, split.block);
+        }
+        if (node.size <= ORDER) {
+            write(block, node);
+            return null;
+        }
+
+        // the right half goes to a new block
+        Node right = new Node();
+        right.leaf = node.leaf;
+        int rightBlock = bufferPool.getNumOfBlocks(storage);
+        Object key0;
+        if (node.leaf) {
+            int half = (node.size + 1) / 2;
+            for (int i = half; i < node.size; i++) {
+                insertEntry(right, right.size, node.keys[i], node.pointers[i + 1]);
+            }
+            node.size = half;
+            right.pointers[0] = node.pointers[0];
+            node.pointers[0] = rightBlock;
+            key0 = right.keys[0];
+        } else {
+            // the middle key moves up
+            int middle = node.size / 2;
+            right.pointers[0] = node.pointers[middle + 1];
+            for (int i = middle + 1; i < node.size; i++) {
+                insertEntry(right, right.size, node.keys[i], node.pointers[i + 1]);
+            }
+            key0 = node.keys[middle];
+            node.size = middle;
+        }
+        write(rightBlock, right);
+        write(block, node);
+        return new Split(key0, rightBlock);
+    }
+
+    // the leaf where the keys equal to the key start, if leftmost;
+    // otherwise the leaf after which there is no key equal to it.
+    // The null key of a STR20 tree is the least, so findLeaf(null, true) is the first leaf
+    private int findLeaf(Object key, boolean leftmost) {
+        int block = 0;
+        while (true) {
+            Node node = read(block);
+            if (node.leaf) {
+                return block;
+            }
+            int i = 0;
+            if (key != null || !leftmost) {
+                while (i < node.size && (leftmost ? compare(node.keys[i], key) < 0 : compare(node.keys[i], key) <= 0)) {
+                    i++;
+                }
+            }
+            block = node.pointers[i];
+        }
+    }
+
+    private static void insertEntry(Node node, int position, Object key, int pointer) {
+        for (int i = node.size; i > position; i--) {
+            node.keys[i] = node.keys[i - 1];
+            node.pointers[i + 1] = node.pointers[i];
+        }
+        node.keys[position] = key;
+        node.pointers[position + 1] = pointer;
+        node.size++;
+    }
+
+    private static void removeEntry(Node node, int position) {
+        for (int i = position; i < node.size - 1; i++) {
+            node.keys[i] = node.keys[i + 1];
+            node.pointers[i + 1] = node.pointers[i + 2];
+        }
+        node.size--;
+    }
+
+    private boolean isEmpty() {
+        return bufferPool.getNumOfBlocks(storage) == 0;
+    }
+
+    private Node read(int block) {
+        int frame = bufferPool.pin(storage, block);
+        Tuple tuple = memory.getBlock(frame).getTuple(0);
+        bufferPool.unpin(frame, false);
+
+        Node node = new Node();
+        int info = tuple.getInteger(INFO);
+        node.leaf = info % 2 == 1;
+        node.size = info / 2;
+        node.pointers[0] = tuple.getInteger(1);
+        for (int i = 0; i < node.size; i++) {
+            node.keys[i] = getType() == FieldType.INT ? (Object) tuple.getInteger(2 + 2 * i) : tuple.getStr(2 + 2 * i);
+            node.pointers[i + 1] = tuple.getInteger(3 + 2 * i);
+        }
+        return node;
+    }
+
+    // the whole block is written, so it is not read first
+    private void write(int block, Node node) {
+        Tuple tuple = storage.createTuple();
+        tuple.setField(INFO, node.size * 2 + (node.leaf ? 1 : 0));
+        tuple.setField(1, node.pointers[0]);
+        for (int i = 0; i < node.size; i++) {
+            if (getType() == FieldType.INT) {
+                tuple.setField(2 + 2 * i, (Integer) node.keys[i]);
+            } else {
+                tuple.setField(2 + 2 * i, (String) node.keys[i]);
+            }
+            tuple.setField(3 + 2 * i, node.pointers[i + 1]);
+        }
+        int frame = bufferPool.pinNew(storage, block);
+        memory.getBlock(frame).appendTuple(tuple);
+        bufferPool.unpin(frame, true);
+    }
+}
@@ -0,0 +1,314 @@
+package com.tamu.index;
+
+import com.tamu.buffer.BufferPool;
+import storageManager.Block;
+import storageManager.FieldType;
+import storageManager.MainMemory;
+import storageManager.Relation;
+import storageManager.SchemaManager;
+import storageManager.Tuple;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/* The clustering of a relation by a column, from CREATE TABLE ... CLUSTER BY column:
+ *   the tuples are kept in blocks by their keys, every key of a block being at most
+ *   every key of the next block, so the tuples of a key or a range of keys are in a run of blocks.
+ * A block cannot be put between two others on the track, so the order of the blocks
+ *   is kept in memory; like the directory of a HashIndex, it is a list of block indexes only.
+ *   A key is found by a binary search over the blocks in that order, reading the smallest key
+ *   of about log2(B) of them.
+ * A tuple goes to the last block whose smallest key is at most its key. A full block is split:
+ *   the larger half of its tuples moves to a new block after it in the order, at the end of the track
+ *   or in a block emptied by DELETE. A tuple past the end of the last block starts a new block alone,
+ *   so tuples inserted in the order of their keys fill their blocks.
+ * DELETE leaves holes in the blocks, which later tuples of their keys fill,
+ *   and hands the blocks it empties back with free().
+ * As an index, the tuples are the entries: lookup() returns every tuple id of the blocks
+ *   that may hold the keys, holes too, so the tuples are checked by the caller.
+ */
+public class ClusteredIndex extends Index {
+    // the blocks of the relation in the order of their keys; none of them is empty
+    private List<Integer> order = new ArrayList<>();
+    // the empty blocks of the relation, which a split uses before the track grows
+    private TreeSet<Integer> free = new TreeSet<>();
+
+    // a tuple moved to another block by a split, with its tuple ids before and after
+    public static class Move {
+        public final Tuple tuple;
+        public final int from;
+        public final int to;
+
+        public Move(Tuple tuple, int from, int to) {
+            this.tuple = tuple;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    ClusteredIndex(String name, Relation relation, String fieldName, MainMemory memory, BufferPool bufferPool) {
+        super(name, relation, fieldName, null, memory, bufferPool);
+    }
+
+    public boolean isClustered() {
+        return true;
+    }
+
+    public boolean supports(char operator) {
+        return operator == '=' || getType() == FieldType.INT;
+    }
+
+    public List<Integer> lookup(char operator, Object value) {
+        int start;
+        int end;
+        switch (operator) {
+            case '=':
+                // the blocks before the last one whose smallest key is less than the value have smaller keys,
+                // and the blocks after the last one whose smallest key is the value have larger keys
+                start = Math.max(0, findLast(value, false));
+                end = findLast(value, true) + 1;
+                break;
+            case '<':
+                start = 0;
+                end = findLast(value, false) + 1;
+                break;
+            default:
+                start = Math.max(0, findLast(value, true));
+                end = order.size();
+                break;
+        }
+
+        List<Integer> tupleIds = new ArrayList<>();
+        int tuplesPerBlock = getRelation().getSchema().getTuplesPerBlock();
+        for (int i = start; i < end; i++) {
+            for (int j = 0; j < tuplesPerBlock; j++) {
+                tupleIds.add(order.get(i) * tuplesPerBlock + j);
+            }
+        }
+        return tupleIds;
+    }
+
+    // the blocks read by the two binary searches of a lookup
+    public double getCost(double numOfEntries) {
+        return 2 * Math.ceil(Math.log(order.size() + 1) / Math.log(2));
+    }
+
+    // the order of the blocks from the smallest key of each of them;
+    // the relation must be clustered already, e.g. empty
+    protected void build(List<Object> keys, List<Integer> tupleIds) {
+        int tuplesPerBlock = getRelation().getSchema().getTuplesPerBlock();
+        Map<Integer, Object> smallestKeys = new HashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            int block = tupleIds.get(i) / tuplesPerBlock;
+            if (!smallestKeys.containsKey(block) || compare(keys.get(i), smallestKeys.get(block)) < 0) {
+                smallestKeys.put(block, keys.get(i));
+            }
+        }
+        order = new ArrayList<>(smallestKeys.keySet());
+        order.sort((block1, block2) -> compare(smallestKeys.get(block1), smallestKeys.get(block2)));
+        free = new TreeSet<>();
+        for (int i = 0; i < bufferPool.getNumOfBlocks(getRelation()); i++) {
+            if (!smallestKeys.containsKey(i)) {
+                free.add(i);
+            }
+        }
+    }
+
+    // the tuples are placed by insertTuples(), so there is no entry to add
+    public void insert(Object key, int tupleId) {
+    }
+
+    // the tuples are where the cluster put them, so there is no entry to change
+    public void update(Object key, Map<Integer, Integer> changes) {
+    }
+
+    // puts the tuples in the blocks of their keys, in the order of their keys, so the blocks read
+    // for a tuple are likely still buffered for the next one. The tuples that were in the relation
+    // and that the splits of its blocks moved are added to moves, with their tuple ids before the insertion.
+    // Returns the tuple ids of the tuples
+    public List<Integer> insertTuples(List<Tuple> tuples, List<Move> moves) {
+        Integer[] byKey = new Integer[tuples.size()];
+        for (int i = 0; i < byKey.length; i++) {
+            byKey[i] = i;
+        }
+        Arrays.sort(byKey, (i, j) -> compare(getKey(tuples.get(i)), getKey(tuples.get(j))));
+
+        Integer[] tupleIds = new Integer[tuples.size()];
+        // by their tuple ids now: the tuples inserted so far, by their positions in tuples,
+        // and the moved tuples, by their moves from their tuple ids before the insertion
+        Map<Integer, Integer> inserted = new HashMap<>();
+        Map<Integer, Move> moved = new HashMap<>();
+        int[] position = {-1};
+        for (int i : byKey) {
+            List<Move> splitMoves = new ArrayList<>();
+            int tupleId = insertTuple(tuples.get(i), position, splitMoves);
+            for (Move move : splitMoves) {
+                Integer insertedAt = inserted.remove(move.from);
+                if (insertedAt != null) {
+                    tupleIds[insertedAt] = move.to;
+                    inserted.put(move.to, insertedAt);
+                } else {
+                    Move first = moved.remove(move.from);
+                    moved.put(move.to, new Move(move.tuple, first == null ? move.from : first.from, move.to));
+                }
+            }
+            tupleIds[i] = tupleId;
+            inserted.put(tupleId, i);
+        }
+        moves.addAll(moved.values());
+        return Arrays.asList(tupleIds);
+    }
+
+    // puts the tuple in the block of its key, splitting the block if it is full;
+    // the tuples the split moves are added to moves. position is the position in the order
+    // of the block of the tuple inserted before, -1 for none, and it is set to the one of this tuple.
+    // Returns the tuple id of the tuple
+    private int insertTuple(Tuple tuple, int[] position, List<Move> moves) {
+        Relation relation = getRelation();
+        int tuplesPerBlock = relation.getSchema().getTuplesPerBlock();
+        Object key = getKey(tuple);
+        if (order.isEmpty()) {
+            int block = newBlock();
+            order.add(block);
+            int frame = bufferPool.pinNew(relation, block);
+            memory.getBlock(frame).appendTuple(tuple);
+            bufferPool.unpin(frame, true);
+            return block * tuplesPerBlock;
+        }
+
+        position[0] = findPosition(key, position[0]);
+        int block = order.get(position[0]);
+        int frame = bufferPool.pin(relation, block);
+        Block oldBlock = memory.getBlock(frame);
+        ArrayList<Tuple> tuples = oldBlock.getTuples();
+        for (int i = 0; i < tuplesPerBlock; i++) {
+            if (i >= tuples.size() || tuples.get(i).isNull()) {
+                oldBlock.setTuple(i, tuple);
+                bufferPool.unpin(frame, true);
+                return block * tuplesPerBlock + i;
+            }
+        }
+
+        // the block is full: the tuples of the block and the new one, the new one last of equal keys
+        Integer[] byKey = new Integer[tuples.size() + 1];
+        for (int i = 0; i < byKey.length; i++) {
+            byKey[i] = i;
+        }
+        Arrays.sort(byKey, (i, j) -> compare(i == tuples.size() ? key : getKey(tuples.get(i)),
+                j == tuples.size() ? key : getKey(tuples.get(j))));
+
+        int newBlock = newBlock();
+        order.add(position[0] + 1, newBlock);
+        int newFrame = bufferPool.pinNew(relation, newBlock);
+        Block splitBlock = memory.getBlock(newFrame);
+        int tupleId;
+        if (position[0] == order.size() - 2 && byKey[byKey.length - 1] == tuples.size()) {
+            // past the end of the last block
+            splitBlock.appendTuple(tuple);
+            tupleId = newBlock * tuplesPerBlock;
+        } else {
+            // the smaller half stays, and the larger half moves
+            int numToKeep = (byKey.length + 1) / 2;
+            tupleId = -1;
+            int freeSlot = -1;
+            for (int i = numToKeep; i < byKey.length; i++) {
+                int to = newBlock * tuplesPerBlock + splitBlock.getTuples().size();
+                if (byKey[i] == tuples.size()) {
+                    tupleId = to;
+                    splitBlock.appendTuple(tuple);
+                } else {
+                    moves.add(new Move(tuples.get(byKey[i]), block * tuplesPerBlock + byKey[i], to));
+                    splitBlock.appendTuple(tuples.get(byKey[i]));
+                    oldBlock.invalidateTuple(byKey[i]);
+                    freeSlot = byKey[i];
+                }
+            }
+            if (tupleId == -1) {
+                // the new tuple is among the smaller half, so it takes a slot a moved tuple has left
+                oldBlock.setTuple(freeSlot, tuple);
+                tupleId = block * tuplesPerBlock + freeSlot;
+            }
+        }
+        bufferPool.unpin(newFrame, true);
+        bufferPool.unpin(frame, true);
+        return tupleId;
+    }
+
+    // takes the blocks a deletion has emptied out of the order, and deletes the empty blocks at the end of the track
+    public void free(Collection<Integer> blocks) {
+        order.removeAll(blocks);
+        free.addAll(blocks);
+        Relation relation = getRelation();
+        int numOfBlocks = bufferPool.getNumOfBlocks(relation);
+        int end = numOfBlocks;
+        while (end > 0 && free.remove(end - 1)) {
+            end--;
+        }
+        if (end < numOfBlocks) {
+            bufferPool.deleteBlocks(relation, end);
+        }
+    }
+
+    public void clear() {
+        order = new ArrayList<>();
+        free = new TreeSet<>();
+    }
+
+    // the blocks are the relation's, which DROP deletes
+    void drop(SchemaManager schemaManager) {
+    }
+
+    // the position of the block a tuple of the key goes to: the last one whose smallest key is at most the key,
+    // or the first one. Tuples inserted in the order of their keys mostly go to the block of the one before,
+    // at the last position, or the next one, so those are tried before a binary search
+    private int findPosition(Object key, int last) {
+        for (int position = Math.max(0, last); last != -1 && position < Math.min(last + 2, order.size()); position++) {
+            if ((position == 0 || compare(getSmallestKey(order.get(position)), key) <= 0)
+                    && (position + 1 == order.size() || compare(getSmallestKey(order.get(position + 1)), key) > 0)) {
+                return position;
+            }
+        }
+        return Math.max(0, findLast(key, true));
+    }
+
+    // the last position in the order whose block has a smallest key less than the value,
+    // or at most the value if inclusive; -1 if there is none
+    private int findLast(Object value, boolean inclusive) {
+        int low = 0;
+        int high = order.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int compare = compare(getSmallestKey(order.get(middle)), value);
+            if (compare < 0 || (inclusive && compare == 0)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low - 1;
+    }
+
+    private Object getSmallestKey(int block) {
+        int frame = bufferPool.pin(getRelation(), block);
+        Object smallest = null;
+        boolean found = false;
+        for (Tuple tuple : memory.getBlock(frame).getTuples()) {
+            if (!tuple.isNull() && (!found || compare(getKey(tuple), smallest) < 0)) {
+                smallest = getKey(tuple);
+                found = true;
+            }
+        }
+        bufferPool.unpin(frame, false);
+        return smallest;
+    }
+
+    // an empty block of the relation, the first free one or a new one at the end of the track
+    private int newBlock() {
+        return free.isEmpty() ? bufferPool.getNumOfBlocks(getRelation()) : free.pollFirst();
+    }
+}
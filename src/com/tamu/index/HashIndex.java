@@ -0,0 +1,337 @@
+package com.tamu.index;
+
+import com.tamu.buffer.BufferPool;
+import storageManager.FieldType;
+import storageManager.MainMemory;
+import storageManager.Relation;
+import storageManager.Schema;
+import storageManager.Tuple;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/* An extendible hash index: every bucket is the one tuple of a block of the storage relation.
+ * The directory maps the low globalDepth bits of the hash of a key to the block of its bucket;
+ *   a bucket of local depth d is shared by the entries that agree on their low d bits.
+ *   The directory is small, so it is kept in memory: a lookup reads the bucket only.
+ * The fields of a bucket are
+ *   info:                 depth * (BUCKET_SIZE + 1) + size
+ *   next:                 the next block of the bucket, -1 for none
+ *   key<i>, tuple<i>:     the i-th key and its tuple id
+ *   so a block holds up to BUCKET_SIZE entries.
+ * A full bucket is split in two, doubling the directory if needed, unless all its keys have
+ *   the same hash, e.g. many tuples of one key, or it has overflow blocks already;
+ *   then a new overflow block is chained after its first block.
+ * Entries are removed from their block without merging the buckets;
+ *   the index only shrinks when it is cleared.
+ */
+public class HashIndex extends Index {
+    final static int BUCKET_SIZE = (Schema.getMaxNumOfFields() - 2) / 2;
+    // the directory has at most 2 ^ MAX_DEPTH entries; fuller buckets are chained
+    private final static int MAX_DEPTH = 16;
+
+    private final static int INFO = 0;
+    private final static int NEXT = 1;
+    private final static int NONE = -1;
+
+    // a block of a bucket read out of its block; it may hold one entry too many before it is split
+    private static class Bucket {
+        int depth;
+        int next = NONE;
+        int size;
+        Object[] keys = new Object[BUCKET_SIZE + 1];
+        int[] tupleIds = new int[BUCKET_SIZE + 1];
+
+        void add(Object key, int tupleId) {
+            keys[size] = key;
+            tupleIds[size++] = tupleId;
+        }
+
+        void remove(int position) {
+            for (int i = position; i < size - 1; i++) {
+                keys[i] = keys[i + 1];
+                tupleIds[i] = tupleIds[i + 1];
+            }
+            size--;
+        }
+    }
+
+    private int globalDepth;
+    // the block of the bucket of each hash, empty while the index has no blocks
+    private int[] directory = new int[0];
+
+    HashIndex(String name, Relation relation, String fieldName, Relation storage, MainMemory memory, BufferPool bufferPool) {
+        super(name, relation, fieldName, storage, memory, bufferPool);
+    }
+
+    // the schema of the buckets of an index of the keys of the type
+    static Schema getSchema(FieldType keyType) {
+        ArrayList<String> fieldNames = new ArrayList<>();
+        ArrayList<FieldType> fieldTypes = new ArrayList<>();
+        fieldNames.add("info");
+        fieldTypes.add(FieldType.INT);
+        fieldNames.add("next");
+        fieldTypes.add(FieldType.INT);
+        for (int i = 0; i < BUCKET_SIZE; i++) {
+            fieldNames.add("key" + i);
+            fieldTypes.add(keyType);
+            fieldNames.add("tuple" + i);
+            fieldTypes.add(FieldType.INT);
+        }
+        return new Schema(fieldNames, fieldTypes);
+    }
+
+    public boolean supports(char operator) {
+        return operator == '=';
+    }
+
+    public List<Integer> lookup(char operator, Object value) {
+        List<Integer> tupleIds = new ArrayList<>();
+        if (directory.length == 0) {
+            return tupleIds;
+        }
+        for (int block = directory[hash(value) & (directory.length - 1)]; block != NONE; ) {
+            Bucket bucket = read(block);
+            for (int i = 0; i < bucket.size; i++) {
+                if (compare(bucket.keys[i], value) == 0) {
+                    tupleIds.add(bucket.tupleIds[i]);
+                }
+            }
+            block = bucket.next;
+        }
+        return tupleIds;
+    }
+
+    // the blocks of one bucket
+    public double getCost(double numOfEntries) {
+        return 1 + numOfEntries / BUCKET_SIZE;
+    }
+
+    // writes the entries into 2 ^ depth buckets about three quarters full, each written once:
+    // the first block of each bucket in the order of the directory, then the overflow blocks
+    protected void build(List<Object> keys, List<Integer> tupleIds) {
+        clear();
+        if (keys.isEmpty()) {
+            return;
+        }
+        int depth = 0;
+        while (depth < MAX_DEPTH && (BUCKET_SIZE << depth) * 3 / 4 < keys.size()) {
+            depth++;
+        }
+        globalDepth = depth;
+        directory = new int[1 << depth];
+        List<List<Integer>> buckets = new ArrayList<>();
+        for (int i = 0; i < directory.length; i++) {
+            directory[i] = i;
+            buckets.add(new ArrayList<>());
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            buckets.get(hash(keys.get(i)) & (directory.length - 1)).add(i);
+        }
+
+        int nextBlock = directory.length;
+        List<Bucket> overflows = new ArrayList<>();
+        for (int i = 0; i < directory.length; i++) {
+            List<Integer> entries = buckets.get(i);
+            Bucket first = null;
+            Bucket last = null;
+            for (int j = 0; j == 0 || j < entries.size(); j += BUCKET_SIZE) {
+                Bucket bucket = new Bucket();
+                bucket.depth = depth;
+                for (int k = j; k < Math.min(entries.size(), j + BUCKET_SIZE); k++) {
+                    bucket.add(keys.get(entries.get(k)), tupleIds.get(entries.get(k)));
+                }
+                if (first == null) {
+                    first = bucket;
+                } else {
+                    last.next = nextBlock++;
+                    overflows.add(bucket);
+                }
+                last = bucket;
+            }
+            write(i, first);
+        }
+        for (int i = 0; i < overflows.size(); i++) {
+            write(directory.length + i, overflows.get(i));
+        }
+    }
+
+    public void insert(Object key, int tupleId) {
+        if (directory.length == 0) {
+            Bucket bucket = new Bucket();
+            bucket.add(key, tupleId);
+            write(0, bucket);
+            globalDepth = 0;
+            directory = new int[]{0};
+            return;
+        }
+
+        // into the first block of the bucket, or the block after it: overflow blocks
+        // are chained right after the first one, so the block after it is the newest
+        int first = directory[hash(key) & (directory.length - 1)];
+        Bucket bucket = read(first);
+        if (bucket.size < BUCKET_SIZE) {
+            bucket.add(key, tupleId);
+            write(first, bucket);
+            return;
+        }
+        if (bucket.next != NONE) {
+            Bucket second = read(bucket.next);
+            if (second.size < BUCKET_SIZE) {
+                second.add(key, tupleId);
+                write(bucket.next, second);
+                return;
+            }
+        }
+
+        bucket.add(key, tupleId);
+        if (bucket.next == NONE && canSplit(bucket)) {
+            split(first, bucket);
+        } else {
+            // a new block with the new entry, chained after the first one
+            Bucket overflow = new Bucket();
+            overflow.depth = bucket.depth;
+            overflow.next = bucket.next;
+            overflow.add(key, tupleId);
+            bucket.size--;
+            bucket.next = bufferPool.getNumOfBlocks(storage);
+            write(bucket.next, overflow);
+            write(first, bucket);
+        }
+    }
+
+    public void update(Object key, Map<Integer, Integer> changes) {
+        if (directory.length == 0) {
+            return;
+        }
+        int remaining = changes.size();
+        for (int block = directory[hash(key) & (directory.length - 1)]; block != NONE && remaining > 0; ) {
+            Bucket bucket = read(block);
+            boolean changed = false;
+            for (int i = 0; i < bucket.size && remaining > 0; ) {
+                Integer tupleId = compare(bucket.keys[i], key) == 0 ? changes.get(bucket.tupleIds[i]) : null;
+                if (tupleId == null) {
+                    i++;
+                    continue;
+                }
+                remaining--;
+                changed = true;
+                if (tupleId == NONE) {
+                    bucket.remove(i);
+                } else {
+                    bucket.tupleIds[i++] = tupleId;
+                }
+            }
+            if (changed) {
+                write(block, bucket);
+            }
+            block = bucket.next;
+        }
+    }
+
+    public void clear() {
+        super.clear();
+        globalDepth = 0;
+        directory = new int[0];
+    }
+
+    // true if splitting the bucket, up to MAX_DEPTH, would part its entries
+    private static boolean canSplit(Bucket bucket) {
+        int mask = (1 << MAX_DEPTH) - 1;
+        for (int i = 1; i < bucket.size; i++) {
+            if ((hash(bucket.keys[i]) & mask) != (hash(bucket.keys[0]) & mask)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // splits the bucket of one block with one entry too many, by the next bit of the hashes,
+    // until neither half is too full
+    private void split(int block, Bucket bucket) {
+        int nextBlock = bufferPool.getNumOfBlocks(storage);
+        while (true) {
+            int depth = bucket.depth;
+            if (depth == globalDepth) {
+                // double the directory: the new half points to the same buckets
+                int[] doubled = new int[directory.length * 2];
+                System.arraycopy(directory, 0, doubled, 0, directory.length);
+                System.arraycopy(directory, 0, doubled, directory.length, directory.length);
+                directory = doubled;
+                globalDepth++;
+            }
+
+            Bucket zero = new Bucket();
+            Bucket one = new Bucket();
+            zero.depth = depth + 1;
+            one.depth = depth + 1;
+            for (int i = 0; i < bucket.size; i++) {
+                Bucket half = (hash(bucket.keys[i]) >>> depth & 1) == 0 ? zero : one;
+                half.add(bucket.keys[i], bucket.tupleIds[i]);
+            }
+            int oneBlock = nextBlock++;
+            int low = hash(bucket.keys[0]) & ((1 << depth) - 1);
+            for (int i = low; i < directory.length; i += 1 << depth) {
+                if ((i >>> depth & 1) == 1) {
+                    directory[i] = oneBlock;
+                }
+            }
+
+            // the half with every entry is split again
+            if (zero.size > BUCKET_SIZE) {
+                write(oneBlock, one);
+                bucket = zero;
+            } else if (one.size > BUCKET_SIZE) {
+                write(block, zero);
+                block = oneBlock;
+                bucket = one;
+            } else {
+                write(oneBlock, one);
+                write(block, zero);
+                return;
+            }
+        }
+    }
+
+    // mixes the bits of the hash code, so the low bits depend on all of them
+    private static int hash(Object key) {
+        int hash = key == null ? 0 : key.hashCode() * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private Bucket read(int block) {
+        int frame = bufferPool.pin(storage, block);
+        Tuple tuple = memory.getBlock(frame).getTuple(0);
+        bufferPool.unpin(frame, false);
+
+        Bucket bucket = new Bucket();
+        int info = tuple.getInteger(INFO);
+        bucket.depth = info / (BUCKET_SIZE + 1);
+        bucket.size = info % (BUCKET_SIZE + 1);
+        bucket.next = tuple.getInteger(NEXT);
+        for (int i = 0; i < bucket.size; i++) {
+            bucket.keys[i] = getType() == FieldType.INT ? (Object) tuple.getInteger(2 + 2 * i) : tuple.getStr(2 + 2 * i);
+            bucket.tupleIds[i] = tuple.getInteger(3 + 2 * i);
+        }
+        return bucket;
+    }
+
+    // the whole block is written, so it is not read first
+    private void write(int block, Bucket bucket) {
+        Tuple tuple = storage.createTuple();
+        tuple.setField(INFO, bucket.depth * (BUCKET_SIZE + 1) + bucket.size);
+        tuple.setField(NEXT, bucket.next);
+        for (int i = 0; i < bucket.size; i++) {
+            if (getType() == FieldType.INT) {
+                tuple.setField(2 + 2 * i, (Integer) bucket.keys[i]);
+            } else {
+                tuple.setField(2 + 2 * i, (String) bucket.keys[i]);
+            }
+            tuple.setField(3 + 2 * i, bucket.tupleIds[i]);
+        }
+        int frame = bufferPool.pinNew(storage, block);
+        memory.getBlock(frame).appendTuple(tuple);
+        bufferPool.unpin(frame, true);
+    }
+}
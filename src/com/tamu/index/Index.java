@@ -0,0 +1,158 @@
+package com.tamu.index;
+
+import com.tamu.buffer.BufferPool;
+import storageManager.FieldType;
+import storageManager.MainMemory;
+import storageManager.Relation;
+import storageManager.SchemaManager;
+import storageManager.Tuple;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/* An index on one column of a relation, mapping the value of the column
+ *   to the tuple id of each tuple: blockIndex * tuplesPerBlock + offset in the block.
+ * The index is stored in a relation of its own, so its blocks are on their own
+ *   track, and they are read and written through the buffer pool.
+ * A key is an Integer for an INT column, and a String (or null) for a STR20 column.
+ * Usage: Look up the tuple ids with lookup(), and read the tuples from the relation.
+ *        Whoever moves the tuples of the relation keeps the index up to date
+ *          with insert() and update(), or clear() once the relation is empty.
+ */
+public abstract class Index {
+    private String name;
+    private Relation relation;
+    private String fieldName;
+    private int offset;
+    private FieldType type;
+
+    protected Relation storage;
+    protected MainMemory memory;
+    protected BufferPool bufferPool;
+
+    Index(String name, Relation relation, String fieldName, Relation storage, MainMemory memory, BufferPool bufferPool) {
+        this.name = name;
+        this.relation = relation;
+        this.fieldName = fieldName;
+        this.offset = relation.getSchema().getFieldOffset(fieldName);
+        this.type = relation.getSchema().getFieldType(fieldName);
+        this.storage = storage;
+        this.memory = memory;
+        this.bufferPool = bufferPool;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getRelationName() {
+        return relation.getRelationName();
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    public FieldType getType() {
+        return type;
+    }
+
+    Relation getRelation() {
+        return relation;
+    }
+
+    // true if the tuples of near keys are in the same blocks of the relation,
+    // so the tuples looked up are read a block of them at a time
+    public boolean isClustered() {
+        return false;
+    }
+
+    // the key of a tuple of the relation
+    public Object getKey(Tuple tuple) {
+        return type == FieldType.INT ? (Object) tuple.getInteger(offset) : tuple.getStr(offset);
+    }
+
+    // true if lookup() can find the keys that compare with a value by the operator
+    public abstract boolean supports(char operator);
+
+    // the tuple ids of the keys that compare with the value by the operator, '=', '<' or '>', in any order
+    public abstract List<Integer> lookup(char operator, Object value);
+
+    // estimated number of blocks of the index read by a lookup() that finds numOfEntries tuple ids
+    public abstract double getCost(double numOfEntries);
+
+    // builds the index from one scan of the tuples of the relation
+    public void build() {
+        List<Object> keys = new ArrayList<>();
+        List<Integer> tupleIds = new ArrayList<>();
+        int tuplesPerBlock = relation.getSchema().getTuplesPerBlock();
+        int blockNumber = bufferPool.getNumOfBlocks(relation);
+        for (int i = 0; i < blockNumber; i++) {
+            int frame = bufferPool.pinAhead(relation, i, blockNumber);
+            List<Tuple> tuples = memory.getBlock(frame).getTuples();
+            for (int j = 0; j < tuples.size(); j++) {
+                if (!tuples.get(j).isNull()) {
+                    keys.add(getKey(tuples.get(j)));
+                    tupleIds.add(i * tuplesPerBlock + j);
+                }
+            }
+            bufferPool.unpin(frame, false);
+        }
+        build(keys, tupleIds);
+    }
+
+    // builds the index from the keys and the tuple ids of all the tuples of the relation,
+    // in the order of the tuple ids
+    protected abstract void build(List<Object> keys, List<Integer> tupleIds);
+
+    public abstract void insert(Object key, int tupleId);
+
+    // inserts the entries in the order of their keys, so the blocks read for a key
+    // are likely still buffered for the next one
+    public void insert(List<Object> keys, List<Integer> tupleIds) {
+        Integer[] order = new Integer[keys.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (i, j) -> compare(keys.get(i), keys.get(j)));
+        for (int i : order) {
+            insert(keys.get(i), tupleIds.get(i));
+        }
+    }
+
+    // replaces the tuple ids of the key that are in changes by their new ones,
+    // or removes them if the new one is -1
+    public abstract void update(Object key, Map<Integer, Integer> changes);
+
+    // applies the changes of each key, in the order of the keys
+    public void update(Map<Object, Map<Integer, Integer>> changes) {
+        List<Object> keys = new ArrayList<>(changes.keySet());
+        keys.sort(Index::compare);
+        for (Object key : keys) {
+            update(key, changes.get(key));
+        }
+    }
+
+    // removes every key, e.g. once the relation is empty
+    public void clear() {
+        bufferPool.deleteBlocks(storage, 0);
+    }
+
+    // deletes the relation the index is stored in
+    void drop(SchemaManager schemaManager) {
+        bufferPool.deleteBlocks(storage, 0);
+        schemaManager.deleteRelation(storage.getRelationName());
+    }
+
+    // orders INT keys by their values and STR20 keys as strings, with null first
+    static int compare(Object key1, Object key2) {
+        if (key1 == null || key2 == null) {
+            return key1 == null ? (key2 == null ? 0 : -1) : 1;
+        } else if (key1 instanceof Integer) {
+            return Integer.compare((Integer) key1, (Integer) key2);
+        }
+        return ((String) key1).compareTo((String) key2);
+    }
+}
@@ -0,0 +1,133 @@
+package com.tamu.index;
+
+import com.tamu.buffer.BufferPool;
+import storageManager.FieldType;
+import storageManager.MainMemory;
+import storageManager.Relation;
+import storageManager.Schema;
+import storageManager.SchemaManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/* The index catalog keeps the indexes of the relations next to the SchemaManager.
+ * CREATE INDEX builds a B+-tree or a hash index, INSERT, LOAD and DELETE keep it up to date
+ *   as tuples come and go, and DROP of its relation drops it.
+ * The index of name is stored in the relation "index_" + name, and the prefix is reserved:
+ *   a user statement cannot create, drop, insert into or delete from such a relation,
+ *   but it can drop one left by an earlier run, which no index of the catalog uses.
+ * A relation created with CLUSTER BY has its clustering here too, which is not one of its indexes:
+ *   INSERT, LOAD and DELETE place and remove its tuples through it.
+ * Like the statistics, the catalog is kept for the run only: an index stored
+ *   in a page file by an earlier run is not used, and its name cannot be used again
+ *   until its relation is dropped.
+ */
+public class IndexCatalog {
+    private final static String STORAGE_PREFIX = "index_";
+
+    // in the order they are created
+    private Map<String, Index> indexes = new LinkedHashMap<>();
+    // by the name of the relation
+    private Map<String, ClusteredIndex> clusters = new HashMap<>();
+
+    public static String getStorageName(String name) {
+        return STORAGE_PREFIX + name;
+    }
+
+    // true if the relation name is reserved for the storage of an index
+    public static boolean isStorageName(String relationName) {
+        return relationName.startsWith(STORAGE_PREFIX);
+    }
+
+    // true if an index of the catalog is stored in the relation
+    public boolean isStorage(String relationName) {
+        return isStorageName(relationName) && indexes.containsKey(relationName.substring(STORAGE_PREFIX.length()));
+    }
+
+    // returns null if there is no such index
+    public Index get(String name) {
+        return indexes.get(name);
+    }
+
+    public List<Index> getIndexes(String relationName) {
+        List<Index> found = new ArrayList<>();
+        for (Index index : indexes.values()) {
+            if (index.getRelationName().equals(relationName)) {
+                found.add(index);
+            }
+        }
+        return found;
+    }
+
+    // the index on the column that looks up a key by the operator reading the fewest blocks, or null
+    public Index getIndex(String relationName, String fieldName, char operator) {
+        Index best = null;
+        for (Index index : getIndexes(relationName)) {
+            if (index.getFieldName().equals(fieldName) && index.supports(operator)
+                    && (best == null || index.getCost(1) < best.getCost(1))) {
+                best = index;
+            }
+        }
+        return best;
+    }
+
+    // the index getIndex() returns, and the clustering of the relation if it is by the column
+    // and supports the operator
+    public List<Index> getIndexes(String relationName, String fieldName, char operator) {
+        List<Index> found = new ArrayList<>();
+        Index index = getIndex(relationName, fieldName, operator);
+        if (index != null) {
+            found.add(index);
+        }
+        ClusteredIndex cluster = clusters.get(relationName);
+        if (cluster != null && cluster.getFieldName().equals(fieldName) && cluster.supports(operator)) {
+            found.add(cluster);
+        }
+        return found;
+    }
+
+    // returns null if the relation is not clustered
+    public ClusteredIndex getCluster(String relationName) {
+        return clusters.get(relationName);
+    }
+
+    // clusters the relation, which must be empty, by the column
+    public ClusteredIndex cluster(Relation relation, String fieldName, MainMemory memory, BufferPool bufferPool) {
+        ClusteredIndex cluster = new ClusteredIndex(relation.getRelationName(), relation, fieldName, memory, bufferPool);
+        clusters.put(relation.getRelationName(), cluster);
+        return cluster;
+    }
+
+    // creates an empty index on the column of the relation, a hash index if hash, else a B+-tree;
+    // returns null if a relation has the name of its storage already, or it cannot be created
+    public Index create(String name, Relation relation, String fieldName, boolean hash,
+                        SchemaManager schemaManager, MainMemory memory, BufferPool bufferPool) {
+        String storageName = getStorageName(name);
+        FieldType keyType = relation.getSchema().getFieldType(fieldName);
+        Schema schema = hash ? HashIndex.getSchema(keyType) : BPlusTree.getSchema(keyType);
+        if (schemaManager.relationExists(storageName)) {
+            return null;
+        }
+
+        Relation storage = schemaManager.createRelation(storageName, schema);
+        if (storage == null) {
+            return null;
+        }
+        Index index = hash ? new HashIndex(name, relation, fieldName, storage, memory, bufferPool)
+                : new BPlusTree(name, relation, fieldName, storage, memory, bufferPool);
+        indexes.put(name, index);
+        return index;
+    }
+
+    // drops every index of the relation, and its clustering
+    public void drop(String relationName, SchemaManager schemaManager) {
+        for (Index index : getIndexes(relationName)) {
+            index.drop(schemaManager);
+            indexes.remove(index.getName());
+        }
+        clusters.remove(relationName);
+    }
+}
@@ -0,0 +1,68 @@
+package com.tamu.manipulation;
+
+import com.tamu.Statement;
+import com.tamu.Util;
+import com.tamu.buffer.BufferPool;
+import com.tamu.index.IndexCatalog;
+import com.tamu.statistics.RelationStatistics;
+import com.tamu.statistics.StatisticsCatalog;
+import storageManager.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// ANALYZE course
+// Rebuilds the statistics of the relation from one scan of its tuples.
+// Without a relation name, every relation is analyzed, but the temp relations and the storage of indexes.
+public class Analyze implements Manipulation {
+    private final static String errorInfo = "Error in an ANALYZE statement! ";
+
+    public boolean execute(Disk disk, MainMemory memory, SchemaManager schemaManager, BufferPool bufferPool, StatisticsCatalog catalog, IndexCatalog indexes, List<Statement> statements) {
+        String relationName = null;
+
+        for (Statement statement : statements) {
+            switch (statement.getAttribute()) {
+                case "RELATION":
+                    relationName = statement.getLeafAttribute();
+                    break;
+            }
+        }
+
+        List<String> relationNames;
+        if (relationName == null) {
+            relationNames = new ArrayList<>();
+            for (String name : schemaManager.getRelationNames()) {
+                if (!name.startsWith("temp_") && !IndexCatalog.isStorageName(name)) {
+                    relationNames.add(name);
+                }
+            }
+        } else {
+            relationNames = Collections.singletonList(relationName);
+        }
+
+        for (String name : relationNames) {
+            Relation relation = schemaManager.getRelation(name);
+            if (relation == null) {
+                Util.outputErrorLn(errorInfo + "Cannot find such relation: \"" + name + "\".");
+                return false;
+            }
+
+            RelationStatistics statistics = catalog.startAnalyze(relation.getSchema());
+            int blockNumber = bufferPool.getNumOfBlocks(relation);
+            for (int i = 0; i < blockNumber; i++) {
+                int frame = bufferPool.pinAhead(relation, i, blockNumber);
+                for (Tuple tuple : memory.getBlock(frame).getTuples()) {
+                    if (!tuple.isNull()) {
+                        statistics.add(tuple);
+                    }
+                }
+                bufferPool.unpin(frame, false);
+            }
+            catalog.finishAnalyze(name, statistics);
+
+            Util.outputLn("Successfully executed ANALYZE of relation \"" + name + "\".");
+        }
+        return true;
+    }
+}
@@ -2,6 +2,9 @@ package com.tamu.manipulation;
 
 import com.tamu.Statement;
 import com.tamu.Util;
+import com.tamu.buffer.BufferPool;
+import com.tamu.index.IndexCatalog;
+import com.tamu.statistics.StatisticsCatalog;
 import storageManager.*;
 
 import java.util.ArrayList;
@@ -10,9 +13,10 @@ import java.util.List;
 public class Create implements Manipulation {
     private final static String errorInfo = "Error in a CREATE statement! ";
 
-    public boolean execute(Disk disk, MainMemory memory, SchemaManager schemaManager, List<Statement> statements) {
+    public boolean execute(Disk disk, MainMemory memory, SchemaManager schemaManager, BufferPool bufferPool, StatisticsCatalog catalog, IndexCatalog indexes, List<Statement> statements) {
         String relationName = null;
         List<Statement> fieldStatements = null;
+        String clusterFieldName = null;
 
         for (Statement statement : statements) {
             switch (statement.getAttribute()) {
@@ -23,6 +27,10 @@ public class Create implements Manipulation {
                 case "CREATE_COL":
                     fieldStatements = statement.branches;
                     break;
+
+                case "CLUSTER":
+                    clusterFieldName = statement.getLeafAttribute();
+                    break;
             }
         }
 
@@ -30,6 +38,10 @@ public class Create implements Manipulation {
             Util.outputErrorLn(errorInfo + "Cannot find relation name.");
             return false;
 
+        } else if (IndexCatalog.isStorageName(relationName)) {
+            Util.outputErrorLn(errorInfo + "Relation \"" + relationName + "\" is reserved for the storage of an index.");
+            return false;
+
         } else if (fieldStatements == null) {
             Util.outputErrorLn(errorInfo + "Cannot find fields.");
             return false;
@@ -81,8 +93,22 @@ public class Create implements Manipulation {
             }
         }
 
+        if (clusterFieldName != null && !fieldNames.contains(clusterFieldName)) {
+            Util.outputErrorLn(errorInfo + "Cannot cluster by \"" + clusterFieldName + "\", which is not a field.");
+            return false;
+        }
+
         Schema schema = new Schema(fieldNames, fieldTypes);
-        schemaManager.createRelation(relationName, schema);
+        Relation relation = schemaManager.createRelation(relationName, schema);
+        if (relation == null) {
+            Util.outputErrorLn(errorInfo + "Cannot record relation \"" + relationName + "\", the catalog is full.");
+            return false;
+        }
+        catalog.create(relationName, schema);
+        if (clusterFieldName != null) {
+            // the tuples are kept in the blocks of their keys
+            indexes.cluster(relation, clusterFieldName, memory, bufferPool);
+        }
         Util.outputLn("Successfully executed CREATE relation \"" + relationName + "\".");
         return true;
     }
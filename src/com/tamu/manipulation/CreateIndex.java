@@ -0,0 +1,98 @@
+package com.tamu.manipulation;
+
+import com.tamu.Statement;
+import com.tamu.Util;
+import com.tamu.buffer.BufferPool;
+import com.tamu.index.Index;
+import com.tamu.index.IndexCatalog;
+import com.tamu.statistics.StatisticsCatalog;
+import storageManager.*;
+
+import java.util.List;
+
+// CREATE INDEX name ON course (sid) [USING BTREE | HASH]
+// Builds a B+-tree, or a hash index, on the column of the relation from one scan of its tuples.
+// A B+-tree looks up =, < and > on INT columns, and = on STR20 columns; a hash index looks up = only.
+public class CreateIndex implements Manipulation {
+    private final static String errorInfo = "Error in a CREATE INDEX statement! ";
+
+    public boolean execute(Disk disk, MainMemory memory, SchemaManager schemaManager, BufferPool bufferPool, StatisticsCatalog catalog, IndexCatalog indexes, List<Statement> statements) {
+        String name = null;
+        String relationName = null;
+        String fieldName = null;
+        String type = "BTREE";
+
+        for (Statement statement : statements) {
+            switch (statement.getAttribute()) {
+                case "INDEX":
+                    name = statement.getLeafAttribute();
+                    break;
+
+                case "RELATION":
+                    relationName = statement.getLeafAttribute();
+                    break;
+
+                case "COL_ID":
+                    fieldName = statement.getLeafAttribute();
+                    break;
+
+                case "TYPE":
+                    type = statement.getLeafAttribute();
+                    break;
+            }
+        }
+
+        if (name == null) {
+            Util.outputErrorLn(errorInfo + "Cannot find index name.");
+            return false;
+
+        } else if (relationName == null) {
+            Util.outputErrorLn(errorInfo + "Cannot find relation name.");
+            return false;
+
+        } else if (fieldName == null) {
+            Util.outputErrorLn(errorInfo + "Cannot find column name.");
+            return false;
+        }
+
+        if (IndexCatalog.isStorageName(relationName)) {
+            // its tuples are moved by its index, which would not keep another index up to date
+            Util.outputErrorLn(errorInfo + "Relation \"" + relationName + "\" is reserved for the storage of an index.");
+            return false;
+        }
+
+        Relation relation = schemaManager.getRelation(relationName);
+        if (relation == null) {
+            Util.outputErrorLn(errorInfo + "Cannot find such relation: \"" + relationName + "\".");
+            return false;
+
+        } else if (relation.getSchema().getFieldOffset(fieldName) == -1) {
+            Util.outputErrorLn(errorInfo + "No such column \"" + fieldName + "\" in relation \"" + relationName + "\".");
+            return false;
+
+        } else if (indexes.get(name) != null) {
+            Util.outputErrorLn(errorInfo + "There is already an index \"" + name + "\".");
+            return false;
+
+        } else if (!type.equals("BTREE") && !type.equals("HASH")) {
+            Util.outputErrorLn(errorInfo + "Index type is neither BTREE nor HASH: \"" + type + "\".");
+            return false;
+
+        } else if (schemaManager.relationExists(IndexCatalog.getStorageName(name))) {
+            // left by an earlier run; it is only dropped by DROP TABLE
+            Util.outputErrorLn(errorInfo + "There is already a relation \"" + IndexCatalog.getStorageName(name) + "\" to store index \"" + name + "\" in.");
+            return false;
+        }
+
+        Index index = indexes.create(name, relation, fieldName, type.equals("HASH"), schemaManager, memory, bufferPool);
+        if (index == null) {
+            Util.outputErrorLn(errorInfo + "Cannot create a relation to store index \"" + name + "\" in.");
+            return false;
+        }
+
+        index.build();
+
+        Util.outputLn("Successfully executed CREATE INDEX \"" + name + "\" on relation \"" + relationName + "\".");
+        return true;
+    }
+}
@@ -1,17 +1,26 @@
 package com.tamu.manipulation;
 
-import com.tamu.Expression;
+import com.tamu.Condition;
 import com.tamu.Statement;
 import com.tamu.Util;
+import com.tamu.buffer.BufferPool;
+import com.tamu.index.ClusteredIndex;
+import com.tamu.index.Index;
+import com.tamu.index.IndexCatalog;
+import com.tamu.statistics.RelationStatistics;
+import com.tamu.statistics.StatisticsCatalog;
 import storageManager.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class Delete implements Manipulation {
     private final static String errorInfo = "Error in a DELETE statement! ";
 
-    public boolean execute(Disk disk, MainMemory memory, SchemaManager schemaManager, List<Statement> statements) {
+    public boolean execute(Disk disk, MainMemory memory, SchemaManager schemaManager, BufferPool bufferPool, StatisticsCatalog catalog, IndexCatalog indexes, List<Statement> statements) {
         String relationName = null;
         Statement expression = null;
 
@@ -30,6 +39,10 @@ public class Delete implements Manipulation {
         if (relationName == null) {
             Util.outputErrorLn(errorInfo + "Cannot find relation name.");
             return false;
+
+        } else if (IndexCatalog.isStorageName(relationName)) {
+            Util.outputErrorLn(errorInfo + "Relation \"" + relationName + "\" is reserved for the storage of an index.");
+            return false;
         }
 
         Relation relation = schemaManager.getRelation(relationName);
@@ -38,142 +51,201 @@ public class Delete implements Manipulation {
             return false;
         }
 
-        int blockNumber = relation.getNumOfBlocks();
+        Condition condition = expression == null ? null : Condition.compile(expression, relation.getSchema());
+        RelationStatistics statistics = catalog.get(relationName);
+        int blockNumber = bufferPool.getNumOfBlocks(relation);
+        int tuplesPerBlock = relation.getSchema().getTuplesPerBlock();
+
+        // the tuples to check: the ones an index looks up if it is expected to read fewer blocks, or all of them
+        Select.IndexLookup lookup = null;
+        if (expression != null) {
+            List<Statement> conjuncts = new ArrayList<>();
+            Select.getConjuncts(expression.getLeaf(), conjuncts);
+            List<String> relationNames = Collections.singletonList(relationName);
+            JoinPlanner planner = new JoinPlanner(schemaManager, bufferPool, catalog, relationNames,
+                    Collections.singletonMap(relationName, conjuncts), Collections.emptyList());
+            lookup = Select.getIndexLookup(schemaManager, bufferPool, indexes, planner, relationName, conjuncts);
+        }
+        List<Integer> tupleIds = null;
+        if (lookup != null) {
+            tupleIds = new ArrayList<>(lookup.index.lookup(lookup.operator, lookup.value));
+            Collections.sort(tupleIds);
+        }
+
+        // the tuple ids of the deleted tuples, in order, and the changes of the keys of each index
+        List<Integer> holes = new ArrayList<>();
+        List<Index> relationIndexes = indexes.getIndexes(relationName);
+        List<Map<Object, Map<Integer, Integer>>> changes = new ArrayList<>();
+        for (int i = 0; i < relationIndexes.size(); i++) {
+            changes.add(new HashMap<>());
+        }
+
+        // the blocks left without tuples, if the relation is clustered
+        ClusteredIndex cluster = indexes.getCluster(relationName);
+        List<Integer> emptiedBlocks = new ArrayList<>();
+
+        // -1 if not every tuple is checked
+        int remainingTuples = tupleIds == null ? 0 : -1;
+        int next = 0;
         for (int i = 0; i < blockNumber; i++) {
+            if (tupleIds != null) {
+                // skip to the block of the next tuple looked up
+                if (next == tupleIds.size()) {
+                    break;
+                }
+                i = tupleIds.get(next) / tuplesPerBlock;
+                if (i >= blockNumber) {
+                    break;
+                }
+            }
             boolean blockToDelete = false;
 
-            relation.getBlock(i, 0);
-            Block block = memory.getBlock(0);
+            int frame = tupleIds == null ? bufferPool.pinAhead(relation, i, blockNumber) : bufferPool.pin(relation, i);
+            Block block = memory.getBlock(frame);
             ArrayList<Tuple> tuplesInBlock = block.getTuples();
 
             for (int j = 0; j < tuplesInBlock.size(); j++) {
+                if (tupleIds != null) {
+                    if (next == tupleIds.size() || tupleIds.get(next) / tuplesPerBlock != i) {
+                        break;
+                    }
+                    j = tupleIds.get(next++) % tuplesPerBlock;
+                    if (j >= tuplesInBlock.size()) {
+                        continue;
+                    }
+                }
                 Tuple tuple = tuplesInBlock.get(j);
-                if (!tuple.isNull() && (expression == null || Expression.evaluateBoolean(expression, tuple))) {
-                    block.invalidateTuple(j);
-                    blockToDelete = true;
+                if (!tuple.isNull()) {
+                    if (condition == null || condition.evaluate(tuple)) {
+                        if (statistics != null) {
+                            statistics.remove(tuple);
+                        }
+                        for (int k = 0; k < relationIndexes.size(); k++) {
+                            changes.get(k).computeIfAbsent(relationIndexes.get(k).getKey(tuple), key -> new HashMap<>())
+                                    .put(i * tuplesPerBlock + j, -1);
+                        }
+                        block.invalidateTuple(j);
+                        holes.add(i * tuplesPerBlock + j);
+                        blockToDelete = true;
+                    } else if (remainingTuples != -1) {
+                        remainingTuples++;
+                    }
                 }
             }
 
-            if (blockToDelete) {
-                relation.setBlock(i, 0);
+            if (cluster != null && blockToDelete && block.getNumTuples() == 0) {
+                emptiedBlocks.add(i);
             }
+            bufferPool.unpin(frame, blockToDelete);
         }
 
-        eliminateHoles(relation, memory);
+        if (cluster != null) {
+            // the tuples left stay in the blocks of their keys
+            cluster.free(emptiedBlocks);
+        } else if (remainingTuples == 0) {
+            bufferPool.deleteBlocks(relation, 0);
+        } else {
+            eliminateHoles(relation, memory, bufferPool, holes, relationIndexes, changes);
+        }
+        for (int k = 0; k < relationIndexes.size(); k++) {
+            updateIndex(relationIndexes.get(k), changes.get(k), bufferPool.getNumOfBlocks(relation));
+        }
 
         Util.outputLn("Successfully executed DELETE from relation \"" + relation.getRelationName() + "\".");
         return true;
     }
 
-    private void eliminateHoles(Relation relation, MainMemory memory) {
-        int blockNumber = relation.getNumOfBlocks();
+    // moves the last tuples of the relation into the holes in front of them, from the first hole on,
+    // then deletes the blocks left without tuples;
+    // the moves are added to the changes of the keys of each index
+    private void eliminateHoles(Relation relation, MainMemory memory, BufferPool bufferPool, List<Integer> holes,
+                                List<Index> relationIndexes, List<Map<Object, Map<Integer, Integer>>> changes) {
+        int blockNumber = bufferPool.getNumOfBlocks(relation);
+        if (blockNumber == 0) {
+            return;
+        }
         int capacity = relation.getSchema().getTuplesPerBlock();
 
-        int holeI = 0;
-        int fillI = blockNumber - 1;
-
-        relation.getBlock(holeI, 0);
-        Block holeBlock = memory.getBlock(0);
-        relation.getBlock(fillI, 1);
-        Block fillBlock = memory.getBlock(1);
-
-        int holeTupleI = 0;
-        int fillTupleI = capacity - 1;
-
-        boolean finishSearch = false;
-
-        while (true) {
-            // find next hole
-            Tuple holeTuple = null;
-            while (true) {
-                for (; holeTupleI < capacity; holeTupleI++) {
-                    Tuple tuple = holeBlock.getTuple(holeTupleI);
-                    if (tuple.isNull()) {
-                        holeTuple = tuple;
-                        break;
-                    }
-                }
-                if (holeTuple == null) {
-                    holeTupleI = 0;
-                    holeI++;
-                    if (holeI > fillI || holeI > blockNumber || (holeI == fillI && holeTupleI > fillTupleI)) {
-                        finishSearch = true;
-                        break;
-                    }
-                    relation.getBlock(holeI, 0);
-                    holeBlock = memory.getBlock(0);
-                } else {
+        // the blocks of the next hole and of the next tuple to fill it with, pinned while they are used
+        int[] holeFrame = {-1, -1};
+        int[] fillFrame = {-1, -1};
+        boolean holeDirty = false;
+        boolean fillDirty = false;
+        int fill = blockNumber * capacity - 1;
+        for (int hole : holes) {
+            // the last tuple behind the hole
+            while (fill > hole) {
+                fillDirty = pin(relation, bufferPool, fillFrame, fill / capacity, fillDirty);
+                if (!isHole(memory.getBlock(fillFrame[0]), fill % capacity)) {
                     break;
                 }
+                fill--;
             }
-
-            if (finishSearch) {
+            if (fill <= hole) {
                 break;
             }
-
-            // find next fill
-            Tuple fillTuple = null;
-            while (true) {
-                for (; -1 < fillTupleI; fillTupleI--) {
-                    Tuple tuple = fillBlock.getTuple(fillTupleI);
-                    if (!tuple.isNull()) {
-                        fillTuple = tuple;
-                        break;
-                    }
-                }
-                if (fillTuple == null) {
-                    fillTupleI = capacity - 1;
-                    fillI--;
-                    if (holeI > fillI || fillI < 0 || (holeI == fillI && holeTupleI > fillTupleI)) {
-                        finishSearch = true;
-                        break;
-                    }
-                    relation.getBlock(fillI, 1);
-                    fillBlock = memory.getBlock(1);
-                } else {
-                    break;
-                }
+            holeDirty = pin(relation, bufferPool, holeFrame, hole / capacity, holeDirty);
+
+            // holeBlock and fillBlock are the same block when they are in one block
+            Block holeBlock = memory.getBlock(holeFrame[0]);
+            Block fillBlock = memory.getBlock(fillFrame[0]);
+            Tuple tuple = fillBlock.getTuple(fill % capacity);
+            for (int k = 0; k < relationIndexes.size(); k++) {
+                changes.get(k).computeIfAbsent(relationIndexes.get(k).getKey(tuple), key -> new HashMap<>()).put(fill, hole);
             }
+            holeBlock.setTuple(hole % capacity, tuple);
+            fillBlock.invalidateTuple(fill % capacity);
+            holeDirty = true;
+            fillDirty = true;
+            fill--;
+        }
+        pin(relation, bufferPool, holeFrame, -1, holeDirty);
 
-            if (finishSearch) {
+        // the last tuple left
+        while (fill >= 0) {
+            fillDirty = pin(relation, bufferPool, fillFrame, fill / capacity, fillDirty);
+            if (!isHole(memory.getBlock(fillFrame[0]), fill % capacity)) {
                 break;
             }
+            fill--;
+        }
+        pin(relation, bufferPool, fillFrame, -1, fillDirty);
 
-            if (holeI == fillI) {
-                if (holeTupleI > fillTupleI) {
-                    for (; holeTupleI < capacity; holeTupleI++) {
-                        holeBlock.invalidateTuple(holeTupleI);
-                    }
-                    break;
-                } else {
-                    // when holeI == fillI, holeBlock and fillBlock are the same block
-                    holeBlock.setTuple(holeTupleI, fillTuple);
-                    holeBlock.invalidateTuple(fillTupleI);
-                    relation.setBlock(holeI, 0);
-
-                    relation.getBlock(holeI, 0);
-                    holeBlock = memory.getBlock(0);
-                    relation.getBlock(fillI, 1);
-                    fillBlock = memory.getBlock(1);
-                }
+        // delete the blocks that are all holes to free space
+        int blocksToKeep = fill / capacity + 1;
+        if (blocksToKeep < blockNumber) {
+            bufferPool.deleteBlocks(relation, blocksToKeep);
+        }
+    }
 
-            } else {
-                holeBlock.setTuple(holeTupleI, fillTuple);
-                relation.setBlock(holeI, 0);
-                fillBlock.invalidateTuple(fillTupleI);
-                relation.setBlock(fillI, 1);
-            }
+    // moves frame, { frame, block index }, to the block of the relation, unless it is there already,
+    // unpinning the block it was at; -1 only unpins it. Returns whether the pinned block is dirty
+    private static boolean pin(Relation relation, BufferPool bufferPool, int[] frame, int blockIndex, boolean isDirty) {
+        if (frame[1] == blockIndex) {
+            return isDirty;
         }
+        if (frame[0] != -1) {
+            bufferPool.unpin(frame[0], isDirty);
+        }
+        frame[0] = blockIndex == -1 ? -1 : bufferPool.pin(relation, blockIndex);
+        frame[1] = blockIndex;
+        return false;
+    }
 
-        // clear those blocks that are all holes or empties (getNumTuple() == 0)
-        // to free space
-        for (int i = 0; i < blockNumber; i++) {
-            relation.getBlock(i, 0);
-            Block block = memory.getBlock(0);
-            if (block.getNumTuples() == 0) {
-                relation.deleteBlocks(i);
-                return;
-            }
+    // applies the changes to the index, or builds it again from the relation
+    // if that is expected to read fewer blocks
+    private static void updateIndex(Index index, Map<Object, Map<Integer, Integer>> changes, int numOfBlocks) {
+        if (numOfBlocks == 0) {
+            index.clear();
+        } else if (changes.size() * index.getCost(1) > numOfBlocks) {
+            index.build();
+        } else {
+            index.update(changes);
         }
     }
+
+    private static boolean isHole(Block block, int tupleOffset) {
+        ArrayList<Tuple> tuples = block.getTuples();
+        return tupleOffset >= tuples.size() || tuples.get(tupleOffset).isNull();
+    }
 }
@@ -2,6 +2,9 @@ package com.tamu.manipulation;
 
 import com.tamu.Statement;
 import com.tamu.Util;
+import com.tamu.buffer.BufferPool;
+import com.tamu.index.IndexCatalog;
+import com.tamu.statistics.StatisticsCatalog;
 import storageManager.Disk;
 import storageManager.MainMemory;
 import storageManager.Relation;
@@ -12,7 +15,7 @@ import java.util.List;
 public class Drop implements Manipulation {
     private final static String errorInfo = "Error in a DROP statement! ";
 
-    public boolean execute(Disk disk, MainMemory memory, SchemaManager schemaManager, List<Statement> statements) {
+    public boolean execute(Disk disk, MainMemory memory, SchemaManager schemaManager, BufferPool bufferPool, StatisticsCatalog catalog, IndexCatalog indexes, List<Statement> statements) {
         String relationName = null;
 
         for (Statement statement : statements) {
@@ -26,19 +29,32 @@ public class Drop implements Manipulation {
         if (relationName == null) {
             Util.outputErrorLn(errorInfo + "Cannot find relation name.");
             return false;
+
+        } else if (indexes.isStorage(relationName)) {
+            // a relation left by an index of an earlier run may be dropped
+            Util.outputErrorLn(errorInfo + "Relation \"" + relationName + "\" stores an index. Drop its relation instead.");
+            return false;
         }
 
-        return execute(schemaManager, relationName);
+        // before the relation, whose name is cleared once it is deleted
+        if (schemaManager.relationExists(relationName)) {
+            indexes.drop(relationName, schemaManager);
+        }
+        if (!execute(schemaManager, bufferPool, relationName)) {
+            return false;
+        }
+        catalog.drop(relationName);
+        return true;
     }
 
-    boolean execute(SchemaManager schemaManager, String relationName) {
+    public boolean execute(SchemaManager schemaManager, BufferPool bufferPool, String relationName) {
         Relation relation = schemaManager.getRelation(relationName);
         if (relation == null) {
             Util.outputErrorLn(errorInfo + "Cannot find such relation: \"" + relationName + "\".");
             return false;
 
         } else {
-            relation.deleteBlocks(0);
+            bufferPool.deleteBlocks(relation, 0);
             schemaManager.deleteRelation(relationName);
             Util.outputLn("Successfully executed DROP relation \"" + relationName + "\".");
             return true;
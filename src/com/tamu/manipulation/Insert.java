@@ -2,19 +2,29 @@ package com.tamu.manipulation;
 
 import com.tamu.Statement;
 import com.tamu.Util;
+import com.tamu.buffer.BufferPool;
+import com.tamu.index.ClusteredIndex;
+import com.tamu.index.Index;
+import com.tamu.index.IndexCatalog;
+import com.tamu.operator.Project;
+import com.tamu.statistics.RelationStatistics;
+import com.tamu.statistics.StatisticsCatalog;
 import storageManager.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class Insert implements Manipulation {
     private final static String errorInfo = "Error in a INSERT statement! ";
 
-    public boolean execute(Disk disk, MainMemory memory, SchemaManager schemaManager, List<Statement> statements) {
+    public boolean execute(Disk disk, MainMemory memory, SchemaManager schemaManager, BufferPool bufferPool, StatisticsCatalog catalog, IndexCatalog indexes, List<Statement> statements) {
         String relationName = null;
         List<Statement> fieldStatements = null;
         List<Statement> values = null;
-        List<Tuple> tuplesToInsert = null;
+        Project plan = null;
 
         for (Statement statement : statements) {
             switch (statement.getAttribute()) {
@@ -33,9 +43,10 @@ public class Insert implements Manipulation {
 
                 case "SELECT":
                     // INSERT INTO course(sid, ...) SELECT * FROM course
-                    Select select = new Select();
-                    select.execute(disk, memory, schemaManager, statement.branches);
-                    tuplesToInsert = select.originTuples;
+                    plan = new Select().getPlan(memory, schemaManager, bufferPool, catalog, indexes, statement.branches);
+                    if (plan == null) {
+                        return false;
+                    }
                     break;
             }
         }
@@ -44,15 +55,19 @@ public class Insert implements Manipulation {
             Util.outputErrorLn(errorInfo + "Cannot find relation name.");
             return false;
 
+        } else if (IndexCatalog.isStorageName(relationName)) {
+            Util.outputErrorLn(errorInfo + "Relation \"" + relationName + "\" is reserved for the storage of an index.");
+            return false;
+
         } else if (fieldStatements == null) {
             Util.outputErrorLn(errorInfo + "Cannot find fieldStatements.");
             return false;
 
-        } else if (values == null && tuplesToInsert == null) {
+        } else if (values == null && plan == null) {
             Util.outputErrorLn(errorInfo + "Cannot find values or tuples.");
             return false;
 
-        } else if (values != null && tuplesToInsert != null) {
+        } else if (values != null && plan != null) {
             Util.outputErrorLn(errorInfo + "Find both values and tuples. Please use only one of them.");
             return false;
         }
@@ -60,97 +75,232 @@ public class Insert implements Manipulation {
         Relation relation = schemaManager.getRelation(relationName);
         Schema schema = schemaManager.getSchema(relationName);
 
+        ArrayList<Tuple> newTuples = new ArrayList<>();
         if (values != null) {
-            // INSERT INTO course(sid, ...) VALUES(1, ...)
-            Tuple newTuple = relation.createTuple();
-            for (int i = 0; i < fieldStatements.size(); i++) {
-                // not using fieldNames because the order of input may be different
-                String fieldName = fieldStatements.get(i).branches.get(0).getAttribute();
-                FieldType fieldType = schema.getFieldType(fieldName);
-                String value = values.get(i).branches.get(0).getAttribute();
-
-                if (fieldType.equals(FieldType.INT)) {
-                    if (value.equalsIgnoreCase("NULL")) {
-                        newTuple.setField(fieldName, 0);
+            // INSERT INTO course(sid, ...) VALUES(1, ...), (2, ...)
+            for (Statement row : values) {
+                if (row.branches.size() != fieldStatements.size()) {
+                    Util.outputErrorLn(errorInfo + "The number of values does not match the number of columns.");
+                    return false;
+                }
+
+                Tuple newTuple = relation.createTuple();
+                for (int i = 0; i < fieldStatements.size(); i++) {
+                    // not using fieldNames because the order of input may be different
+                    String fieldName = fieldStatements.get(i).branches.get(0).getAttribute();
+                    FieldType fieldType = schema.getFieldType(fieldName);
+                    String value = row.branches.get(i).branches.get(0).getAttribute();
+
+                    if (fieldType.equals(FieldType.INT)) {
+                        if (value.equalsIgnoreCase("NULL")) {
+                            newTuple.setField(fieldName, 0);
+                        } else {
+                            newTuple.setField(fieldName, Integer.parseInt(value));
+                        }
+                    } else if (!Util.isStr20(value)) {
+                        Util.outputErrorLn(errorInfo + "Value \"" + value + "\" of column \"" + fieldName + "\" is longer than 20 bytes.");
+                        return false;
                     } else {
-                        newTuple.setField(fieldName, Integer.parseInt(value));
+                        newTuple.setField(fieldName, value);
                     }
-                } else {
-                    newTuple.setField(fieldName, value);
                 }
+                newTuples.add(newTuple);
             }
-            insertTuple(relation, memory, newTuple);
 
         } else {
             // INSERT INTO course(sid, ...) SELECT * FROM course
-            ArrayList<String> fieldNames = schema.getFieldNames();
-            for (Tuple tuple : tuplesToInsert) {
+            // the selected columns go to the columns in order; the whole result is read
+            // before inserting, so the inserted tuples are not selected again
+            if (plan.getFieldNames().size() != fieldStatements.size()) {
+                Util.outputErrorLn(errorInfo + "The number of selected columns does not match the number of columns.");
+                return false;
+            }
+            plan.open();
+            for (Tuple tuple = plan.next(); tuple != null; tuple = plan.next()) {
+                List<Field> fields = plan.getFields();
                 Tuple newTuple = relation.createTuple();
-
-                for (String fieldName : fieldNames) {
-                    Field field = tuple.getField(fieldName);
-                    FieldType fieldType = schema.getFieldType(fieldName);
-                    if (fieldType.equals(FieldType.INT)) {
+                for (int i = 0; i < fieldStatements.size(); i++) {
+                    String fieldName = fieldStatements.get(i).branches.get(0).getAttribute();
+                    Field field = fields.get(i);
+                    if (field.type != schema.getFieldType(fieldName)) {
+                        plan.close();
+                        Util.outputErrorLn(errorInfo + "The type of selected column \"" + plan.getFieldNames().get(i) + "\" does not match column \"" + fieldName + "\".");
+                        return false;
+                    }
+                    if (field.type == FieldType.INT) {
                         newTuple.setField(fieldName, field.integer);
                     } else {
                         newTuple.setField(fieldName, field.str);
                     }
                 }
-                insertTuple(relation, memory, newTuple);
+                newTuples.add(newTuple);
             }
+            plan.close();
         }
 
+        List<Integer> tupleIds;
+        List<ClusteredIndex.Move> moves = new ArrayList<>();
+        ClusteredIndex cluster = indexes.getCluster(relationName);
+        if (cluster != null) {
+            tupleIds = cluster.insertTuples(newTuples, moves);
+        } else if (newTuples.size() == 1) {
+            tupleIds = Collections.singletonList(insertTuple(relation, memory, bufferPool, newTuples.get(0)));
+        } else {
+            tupleIds = insertTuples(relation, memory, bufferPool, newTuples);
+        }
+        updateStatistics(catalog, relation, newTuples);
+        updateIndexes(indexes, relation, bufferPool, newTuples, tupleIds, moves);
+
         Util.outputLn("Successfully executed INSERT into relation \"" + relation.getRelationName() + "\".");
         return true;
     }
 
-    private void insertTuple(Relation relation, MainMemory memory, Tuple tupleToInsert) {
-        int blockNumber = relation.getNumOfBlocks();
+    // appends many tuples: the free space of the last block is filled first,
+    // the rest is packed into new blocks written by Relation::appendTuples();
+    // the new last block stays buffered for the next call.
+    // Returns the tuple ids of the tuples, blockIndex * tuplesPerBlock + offset in the block
+    static List<Integer> insertTuples(Relation relation, MainMemory memory, BufferPool bufferPool, ArrayList<Tuple> tuplesToInsert) {
+        List<Integer> tupleIds = new ArrayList<>();
+        int tuplesPerBlock = relation.getSchema().getTuplesPerBlock();
+        int next = 0;
+        int blockNumber = bufferPool.getNumOfBlocks(relation);
+        if (blockNumber > 0) {
+            int frame = bufferPool.pin(relation, blockNumber - 1);
+            Block lastBlock = memory.getBlock(frame);
+            if (lastBlock.getNumTuples() == 0) {
+                lastBlock.clear();
+            }
+            // fill the holes, then the end of the last block
+            ArrayList<Tuple> tuples = lastBlock.getTuples();
+            for (int i = 0; i < tuples.size() && next < tuplesToInsert.size(); i++) {
+                if (tuples.get(i).isNull()) {
+                    lastBlock.setTuple(i, tuplesToInsert.get(next++));
+                    tupleIds.add((blockNumber - 1) * tuplesPerBlock + i);
+                }
+            }
+            while (!lastBlock.isFull() && next < tuplesToInsert.size()) {
+                tupleIds.add((blockNumber - 1) * tuplesPerBlock + lastBlock.getTuples().size());
+                lastBlock.appendTuple(tuplesToInsert.get(next++));
+            }
+            bufferPool.unpin(frame, next > 0);
+        }
+        if (next == tuplesToInsert.size()) {
+            return tupleIds;
+        }
+
+        // new blocks go after the blocks on the disk, so write back the buffered ones first
+        bufferPool.flush(relation);
+        int numFrames = bufferPool.getNumOfAvailableFrames();
+        int start = -1;
+        while (numFrames > 0 && (start = bufferPool.allocate(numFrames)) == -1) {
+            numFrames--;
+        }
+        if (start == -1) {
+            // no work frame to pack the tuples into
+            for (int i = next; i < tuplesToInsert.size(); i++) {
+                tupleIds.add(insertTuple(relation, memory, bufferPool, tuplesToInsert.get(i)));
+            }
+            return tupleIds;
+        }
+        ArrayList<Tuple> rest = new ArrayList<>(tuplesToInsert.subList(next, tuplesToInsert.size()));
+        // packed into the blocks after the last one
+        for (int i = 0; i < rest.size(); i++) {
+            tupleIds.add(relation.getNumOfBlocks() * tuplesPerBlock + i);
+        }
+        relation.appendTuples(rest, start, numFrames);
+        int lastFrame = start + (rest.size() - 1) / rest.get(0).getTuplesPerBlock() % numFrames;
+        for (int i = start; i < start + numFrames; i++) {
+            if (i == lastFrame) {
+                bufferPool.adopt(i, relation, relation.getNumOfBlocks() - 1, false);
+            } else {
+                bufferPool.release(i);
+            }
+        }
+        return tupleIds;
+    }
+
+    // adds the inserted tuples to the indexes of the relation, and moves the tuples the insertion moved,
+    // or builds them again from the relation if that is expected to read fewer blocks
+    static void updateIndexes(IndexCatalog indexes, Relation relation, BufferPool bufferPool, List<Tuple> insertedTuples, List<Integer> tupleIds,
+                              List<ClusteredIndex.Move> moves) {
+        for (Index index : indexes.getIndexes(relation.getRelationName())) {
+            if ((insertedTuples.size() + moves.size()) * index.getCost(1) > bufferPool.getNumOfBlocks(relation)) {
+                index.build();
+                continue;
+            }
+            if (!moves.isEmpty()) {
+                Map<Object, Map<Integer, Integer>> changes = new HashMap<>();
+                for (ClusteredIndex.Move move : moves) {
+                    changes.computeIfAbsent(index.getKey(move.tuple), key -> new HashMap<>()).put(move.from, move.to);
+                }
+                index.update(changes);
+            }
+            List<Object> keys = new ArrayList<>();
+            for (Tuple tuple : insertedTuples) {
+                keys.add(index.getKey(tuple));
+            }
+            index.insert(keys, tupleIds);
+        }
+    }
+
+    // adds the inserted tuples to the statistics of the relation, if it has any
+    static void updateStatistics(StatisticsCatalog catalog, Relation relation, List<Tuple> insertedTuples) {
+        RelationStatistics statistics = catalog.get(relation.getRelationName());
+        if (statistics != null) {
+            for (Tuple tuple : insertedTuples) {
+                statistics.add(tuple);
+            }
+        }
+    }
+
+    // returns the tuple id of the tuple
+    static int insertTuple(Relation relation, MainMemory memory, BufferPool bufferPool, Tuple tupleToInsert) {
+        int tuplesPerBlock = relation.getSchema().getTuplesPerBlock();
+        int blockNumber = bufferPool.getNumOfBlocks(relation);
         if (blockNumber == 0) {
             // empty relation
-            Block block = memory.getBlock(0);
-            block.clear();
-            block.appendTuple(tupleToInsert);
-            relation.setBlock(0, 0);
+            int frame = bufferPool.pinNew(relation, 0);
+            memory.getBlock(frame).appendTuple(tupleToInsert);
+            bufferPool.unpin(frame, true);
+            return 0;
+        }
 
-        } else {
-            int capacity = relation.getSchema().getTuplesPerBlock();
+        // insert it to last block
+        int frame = bufferPool.pin(relation, blockNumber - 1);
+        Block lastBlock = memory.getBlock(frame);
 
-            // insert it to last block
-            relation.getBlock(blockNumber - 1, 0);
-            Block lastBlock = memory.getBlock(0);
+        // deal with "hole"s in last block
+        int tupleId = (blockNumber - 1) * tuplesPerBlock;
+        if (lastBlock.getNumTuples() == 0) {
+            lastBlock.clear();
+            lastBlock.appendTuple(tupleToInsert);
 
-            // deal with "hole"s in last block
-            int insertPosition = 0;
-            int validTuple = lastBlock.getNumTuples();
-            if (validTuple == 0) {
-                lastBlock.clear();
-                lastBlock.appendTuple(tupleToInsert);
-                insertPosition = blockNumber - 1;
+        } else if (!lastBlock.isFull()) {
+            tupleId += lastBlock.getTuples().size();
+            lastBlock.appendTuple(tupleToInsert);
 
-            } else if (validTuple == capacity) {
-                lastBlock.clear();
-                lastBlock.appendTuple(tupleToInsert);
-                insertPosition = blockNumber;
+        } else {
+            int hole = -1;
+            ArrayList<Tuple> tuples = lastBlock.getTuples();
+            for (int i = 0; i < tuples.size(); i++) {
+                if (tuples.get(i).isNull()) {
+                    hole = i;
+                    break;
+                }
+            }
 
+            if (hole != -1) {
+                tupleId += hole;
+                lastBlock.setTuple(hole, tupleToInsert);
             } else {
-                // it should be like this,
-                // but storage manager will produce "error"
-                // so let's work around.
-//                for (int i = 0; i < capacity; i++) {
-//                    Tuple tuple = lastBlock.getTuple(i);
-//                    if (tuple.isNull()) {
-//                        lastBlock.setTuple(i, tupleToInsert);
-//                        insertPosition = blockNumber - 1;
-//                        break;
-//                    }
-//                }
-
-                lastBlock.appendTuple(tupleToInsert);
-                insertPosition = blockNumber - 1;
+                // the last block is full, start a new one
+                bufferPool.unpin(frame, false);
+                frame = bufferPool.pinNew(relation, blockNumber);
+                memory.getBlock(frame).appendTuple(tupleToInsert);
+                tupleId = blockNumber * tuplesPerBlock;
             }
-            memory.setBlock(0, lastBlock);
-            relation.setBlock(insertPosition, 0);
         }
+        bufferPool.unpin(frame, true);
+        return tupleId;
     }
 }
@@ -0,0 +1,280 @@
+package com.tamu.manipulation;
+
+import com.tamu.Statement;
+import com.tamu.buffer.BufferPool;
+import com.tamu.statistics.ColumnStatistics;
+import com.tamu.statistics.RelationStatistics;
+import com.tamu.statistics.StatisticsCatalog;
+import storageManager.*;
+
+import java.util.*;
+
+// Chooses the order of a left-deep join of several relations.
+// The sizes and selectivities come from the statistics catalog, with defaults for
+// the relations and conditions it cannot tell about. The size of a join is estimated as the product of the sizes of its relations
+// after their pushed-down conditions, times the selectivity of the join conditions among them.
+// The cost of an order is the total size of its intermediate results,
+// so orders that join through a condition early are preferred over cross products.
+// Up to MAX_RELATIONS_FOR_DP relations, every order is considered by dynamic programming
+// over the subsets of relations; beyond that, the order is built greedily.
+class JoinPlanner {
+    private final static int MAX_RELATIONS_FOR_DP = 10;
+
+    // selectivities when the statistics do not tell
+    private final static double EQUALITY_SELECTIVITY = 1.0 / 10;
+    private final static double RANGE_SELECTIVITY = 1.0 / 3;
+    private final static double DEFAULT_SELECTIVITY = 1.0 / 2;
+
+    private SchemaManager schemaManager;
+    private StatisticsCatalog catalog;
+    private List<String> relationNames;
+    private List<Statement> joinConditions;
+
+    private Map<String, Double> numOfTuples = new HashMap<>();
+    // estimated number of tuples of each relation after its own conditions
+    private Map<String, Double> sizes = new HashMap<>();
+    // relations referenced by each join condition; conditions whose columns
+    // cannot be resolved are left out of the estimates
+    private Map<Statement, Set<String>> conditionRelations = new HashMap<>();
+
+    JoinPlanner(SchemaManager schemaManager, BufferPool bufferPool, StatisticsCatalog catalog, List<String> relationNames,
+                Map<String, List<Statement>> relationConditions, List<Statement> joinConditions) {
+        this.schemaManager = schemaManager;
+        this.catalog = catalog;
+        this.relationNames = relationNames;
+        this.joinConditions = joinConditions;
+
+        for (String relationName : relationNames) {
+            RelationStatistics statistics = catalog.get(relationName);
+            double tuples;
+            if (statistics != null) {
+                tuples = statistics.getNumOfTuples();
+            } else {
+                // new pages may not be written back yet, so count at least a tuple for each of them
+                Relation relation = schemaManager.getRelation(relationName);
+                tuples = Math.max(relation.getNumOfTuples(), bufferPool.getNumOfBlocks(relation));
+            }
+            numOfTuples.put(relationName, tuples);
+
+            double size = tuples;
+            for (Statement condition : relationConditions.getOrDefault(relationName, Collections.emptyList())) {
+                size *= getSelectivity(condition);
+            }
+            sizes.put(relationName, size);
+        }
+
+        for (Statement condition : joinConditions) {
+            Set<String> relations = new HashSet<>();
+            if (Select.getReferencedRelations(schemaManager, relationNames, condition, relations)) {
+                conditionRelations.put(condition, relations);
+            }
+        }
+    }
+
+    // returns the relation names in the order they should be joined
+    List<String> getOrder() {
+        if (relationNames.size() <= MAX_RELATIONS_FOR_DP) {
+            return getDynamicProgrammingOrder();
+        }
+        return getGreedyOrder();
+    }
+
+    // estimated number of tuples of the relation that satisfy its own conditions
+    double getNumOfQualifiedTuples(String relationName) {
+        return sizes.get(relationName);
+    }
+
+    // estimated number of tuples of the relation that satisfy the condition
+    double getNumOfQualifiedTuples(String relationName, Statement condition) {
+        return numOfTuples.get(relationName) * getSelectivity(condition);
+    }
+
+    // estimated number of tuples of the join of some of the relations
+    double getNumOfJoinedTuples(Collection<String> relations) {
+        double size = 0;
+        Set<String> joined = new HashSet<>();
+        for (String relationName : relations) {
+            size = joined.isEmpty() ? sizes.get(relationName) : getJoinSize(size, joined, relationName);
+            joined.add(relationName);
+        }
+        return size;
+    }
+
+    // best[subset] is the cheapest left-deep order of the relations in the subset,
+    // extended from the best order of the subset without its last relation
+    private List<String> getDynamicProgrammingOrder() {
+        int n = relationNames.size();
+        int numOfSubsets = 1 << n;
+        double[] sizeOfSubset = new double[numOfSubsets];
+        double[] cost = new double[numOfSubsets];
+        int[] last = new int[numOfSubsets];
+
+        for (int subset = 1; subset < numOfSubsets; subset++) {
+            cost[subset] = Double.MAX_VALUE;
+            if (Integer.bitCount(subset) == 1) {
+                last[subset] = Integer.numberOfTrailingZeros(subset);
+                sizeOfSubset[subset] = sizes.get(relationNames.get(last[subset]));
+                cost[subset] = 0;
+                continue;
+            }
+
+            // the size of a join does not depend on the order
+            int lowest = Integer.numberOfTrailingZeros(subset);
+            sizeOfSubset[subset] = getJoinSize(sizeOfSubset[subset & ~(1 << lowest)], getRelations(subset & ~(1 << lowest)), relationNames.get(lowest));
+
+            for (int i = 0; i < n; i++) {
+                int rest = subset & ~(1 << i);
+                if (rest == subset) {
+                    continue;
+                }
+                double newCost = cost[rest] + sizeOfSubset[subset];
+                // of orders as costly, the one that joins the largest relation last, so the smaller
+                // side is the outer one, and the larger one may be looked up in an index
+                if (newCost < cost[subset] || (newCost == cost[subset]
+                        && sizes.get(relationNames.get(i)) > sizes.get(relationNames.get(last[subset])))) {
+                    cost[subset] = newCost;
+                    last[subset] = i;
+                }
+            }
+        }
+
+        LinkedList<String> order = new LinkedList<>();
+        for (int subset = numOfSubsets - 1; subset != 0; subset &= ~(1 << last[subset])) {
+            order.addFirst(relationNames.get(last[subset]));
+        }
+        return order;
+    }
+
+    // starts from the smallest relation, and joins the relation that keeps the result smallest next
+    private List<String> getGreedyOrder() {
+        List<String> order = new ArrayList<>();
+        Set<String> joined = new HashSet<>();
+        double size = 0;
+        while (order.size() < relationNames.size()) {
+            String next = null;
+            double nextSize = Double.MAX_VALUE;
+            for (String relationName : relationNames) {
+                if (joined.contains(relationName)) {
+                    continue;
+                }
+                double newSize = order.isEmpty() ? sizes.get(relationName) : getJoinSize(size, joined, relationName);
+                if (newSize < nextSize) {
+                    next = relationName;
+                    nextSize = newSize;
+                }
+            }
+            order.add(next);
+            joined.add(next);
+            size = nextSize;
+        }
+        return order;
+    }
+
+    private Set<String> getRelations(int subset) {
+        Set<String> relations = new HashSet<>();
+        for (int i = 0; i < relationNames.size(); i++) {
+            if ((subset & (1 << i)) != 0) {
+                relations.add(relationNames.get(i));
+            }
+        }
+        return relations;
+    }
+
+    // estimated size of joining the relation to a join of the other relations
+    private double getJoinSize(double size, Set<String> joined, String relationName) {
+        double joinSize = size * sizes.get(relationName);
+        for (Statement condition : joinConditions) {
+            Set<String> relations = conditionRelations.get(condition);
+            if (relations != null && relations.contains(relationName) && isJoinedWith(relations, joined, relationName)) {
+                joinSize *= getSelectivity(condition);
+            }
+        }
+        return joinSize;
+    }
+
+    private static boolean isJoinedWith(Set<String> relations, Set<String> joined, String relationName) {
+        for (String relation : relations) {
+            if (!relation.equals(relationName) && !joined.contains(relation)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // fraction of the tuples expected to satisfy the condition
+    private double getSelectivity(Statement condition) {
+        Statement left = condition.getLeft();
+        Statement right = condition.getRight();
+        switch (condition.getAttribute()) {
+            case "AND":
+                return getSelectivity(left) * getSelectivity(right);
+            case "OR":
+                double s1 = getSelectivity(left);
+                double s2 = getSelectivity(right);
+                return s1 + s2 - s1 * s2;
+            case "=":
+                // r.a = s.b: assume the column with fewer values is a foreign key of the other
+                if (left.getAttribute().equals("COL_ID") && right.getAttribute().equals("COL_ID")) {
+                    return 1 / Math.max(getNumOfValues(left), getNumOfValues(right));
+                }
+                return getComparisonSelectivity(condition.getAttribute(), left, right, EQUALITY_SELECTIVITY);
+            case "<":
+            case ">":
+                return getComparisonSelectivity(condition.getAttribute(), left, right, RANGE_SELECTIVITY);
+            default:
+                return DEFAULT_SELECTIVITY;
+        }
+    }
+
+    // selectivity of "column operator constant" from the statistics of the column,
+    // or the default for other operands
+    private double getComparisonSelectivity(String operator, Statement left, Statement right, double defaultSelectivity) {
+        if (right.getAttribute().equals("COL_ID")) {
+            // 10 < exam is exam > 10
+            Statement column = right;
+            right = left;
+            left = column;
+            operator = operator.equals("<") ? ">" : operator.equals(">") ? "<" : operator;
+        }
+        if (!left.getAttribute().equals("COL_ID")) {
+            return defaultSelectivity;
+        }
+        String[] resolved = Select.resolveColumn(schemaManager, relationNames, left);
+        RelationStatistics statistics = resolved == null ? null : catalog.get(resolved[0]);
+        if (statistics == null) {
+            return defaultSelectivity;
+        }
+
+        ColumnStatistics column = statistics.getColumn(resolved[1]);
+        Object value;
+        if (right.getAttribute().equals("INT") && column.getType() == FieldType.INT) {
+            value = Integer.parseInt(right.getLeafAttribute());
+        } else if (right.getAttribute().equals("STR20") && column.getType() == FieldType.STR20) {
+            value = right.getLeafAttribute();
+        } else {
+            return defaultSelectivity;
+        }
+
+        switch (operator) {
+            case "=":
+                return column.getEqualFraction(value, statistics.getNumOfTuples());
+            case "<":
+                return column.getLessFraction(value);
+            default:
+                return column.getGreaterFraction(value, statistics.getNumOfTuples());
+        }
+    }
+
+    // number of distinct values of the column; without statistics, every tuple is assumed to have its own
+    private double getNumOfValues(Statement column) {
+        String[] resolved = Select.resolveColumn(schemaManager, relationNames, column);
+        if (resolved == null) {
+            return 1 / DEFAULT_SELECTIVITY;
+        }
+        RelationStatistics statistics = catalog.get(resolved[0]);
+        if (statistics != null) {
+            return statistics.getNumOfValues(resolved[1]);
+        }
+        return Math.max(1, numOfTuples.get(resolved[0]));
+    }
+}
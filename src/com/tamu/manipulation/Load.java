@@ -0,0 +1,164 @@
+package com.tamu.manipulation;
+
+import com.tamu.Statement;
+import com.tamu.Util;
+import com.tamu.buffer.BufferPool;
+import com.tamu.index.ClusteredIndex;
+import com.tamu.index.IndexCatalog;
+import com.tamu.statistics.StatisticsCatalog;
+import storageManager.*;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// LOAD DATA 'course.csv' INTO course
+// Every line of the file is a tuple, with the values separated by ',' in the
+// order of the fields. Every line is checked before any is written, then the
+// lines are appended to the relation a chunk at a time, so the file is never
+// held in memory at once.
+public class Load implements Manipulation {
+    private final static String errorInfo = "Error in a LOAD statement! ";
+
+    public boolean execute(Disk disk, MainMemory memory, SchemaManager schemaManager, BufferPool bufferPool, StatisticsCatalog catalog, IndexCatalog indexes, List<Statement> statements) {
+        String fileName = null;
+        String relationName = null;
+
+        for (Statement statement : statements) {
+            switch (statement.getAttribute()) {
+                case "FILE":
+                    fileName = statement.getLeafAttribute();
+                    break;
+
+                case "RELATION":
+                    relationName = statement.getLeafAttribute();
+                    break;
+            }
+        }
+
+        if (fileName == null) {
+            Util.outputErrorLn(errorInfo + "Cannot find file name.");
+            return false;
+
+        } else if (relationName == null) {
+            Util.outputErrorLn(errorInfo + "Cannot find relation name.");
+            return false;
+
+        } else if (IndexCatalog.isStorageName(relationName)) {
+            Util.outputErrorLn(errorInfo + "Relation \"" + relationName + "\" is reserved for the storage of an index.");
+            return false;
+        }
+
+        Relation relation = schemaManager.getRelation(relationName);
+        if (relation == null) {
+            Util.outputErrorLn(errorInfo + "Cannot find such relation: \"" + relationName + "\".");
+            return false;
+        }
+        Schema schema = relation.getSchema();
+
+        // a bad line leaves the relation as it was
+        int invalidLineNumber;
+        try {
+            invalidLineNumber = findInvalidLine(relation, schema, fileName);
+        } catch (IOException e) {
+            Util.outputErrorLn(errorInfo + "Cannot read \"" + fileName + "\": " + e.getMessage());
+            return false;
+        }
+        if (invalidLineNumber > 0) {
+            Util.outputErrorLn(errorInfo + "Invalid tuple at line " + invalidLineNumber + " of \"" + fileName + "\".");
+            return false;
+        }
+
+        // enough tuples to fill every frame a few times, so most chunks
+        // are written with a few large requests
+        int chunkSize = schema.getTuplesPerBlock() * bufferPool.getNumOfFrames() * 16;
+        ArrayList<Tuple> chunk = new ArrayList<>(chunkSize);
+        int numOfTuples = 0;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
+            for (String line; (line = reader.readLine()) != null; ) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                chunk.add(parseLine(relation, schema, line));
+
+                if (chunk.size() == chunkSize) {
+                    insert(relation, memory, bufferPool, catalog, indexes, chunk);
+                    numOfTuples += chunk.size();
+                    chunk.clear();
+                }
+            }
+        } catch (IOException e) {
+            Util.outputErrorLn(errorInfo + "Cannot read \"" + fileName + "\" after loading " + numOfTuples + " tuples: " + e.getMessage());
+            return false;
+        }
+        if (!chunk.isEmpty()) {
+            insert(relation, memory, bufferPool, catalog, indexes, chunk);
+            numOfTuples += chunk.size();
+        }
+
+        Util.outputLn("Successfully executed LOAD of " + numOfTuples + " tuples into relation \"" + relation.getRelationName() + "\".");
+        return true;
+    }
+
+    // returns the number of the first line that is not a tuple of the relation, or 0 if there is none
+    private int findInvalidLine(Relation relation, Schema schema, String fileName) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
+            int lineNumber = 0;
+            for (String line; (line = reader.readLine()) != null; ) {
+                lineNumber++;
+                if (!line.trim().isEmpty() && parseLine(relation, schema, line) == null) {
+                    return lineNumber;
+                }
+            }
+        }
+        return 0;
+    }
+
+    // appends the tuples to the relation, or puts them in the blocks of their keys if it is clustered
+    private void insert(Relation relation, MainMemory memory, BufferPool bufferPool, StatisticsCatalog catalog,
+                        IndexCatalog indexes, ArrayList<Tuple> tuples) {
+        List<ClusteredIndex.Move> moves = new ArrayList<>();
+        ClusteredIndex cluster = indexes.getCluster(relation.getRelationName());
+        List<Integer> tupleIds = cluster != null ? cluster.insertTuples(tuples, moves)
+                : Insert.insertTuples(relation, memory, bufferPool, tuples);
+        Insert.updateStatistics(catalog, relation, tuples);
+        Insert.updateIndexes(indexes, relation, bufferPool, tuples, tupleIds, moves);
+    }
+
+    // returns null if the number or the types of the values do not match the schema,
+    // or a STR20 value is longer than 20 bytes
+    private Tuple parseLine(Relation relation, Schema schema, String line) {
+        String[] values = line.split(",", -1);
+        if (values.length != schema.getNumOfFields()) {
+            return null;
+        }
+
+        Tuple tuple = relation.createTuple();
+        for (int i = 0; i < values.length; i++) {
+            String value = values[i].trim();
+            if (schema.getFieldType(i).equals(FieldType.INT)) {
+                if (value.equalsIgnoreCase("NULL")) {
+                    tuple.setField(i, 0);
+                } else {
+                    try {
+                        tuple.setField(i, Integer.parseInt(value));
+                    } catch (NumberFormatException e) {
+                        return null;
+                    }
+                }
+            } else {
+                if (value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+                    value = value.substring(1, value.length() - 1);
+                }
+                if (!Util.isStr20(value)) {
+                    return null;
+                }
+                tuple.setField(i, value);
+            }
+        }
+        return tuple;
+    }
+}
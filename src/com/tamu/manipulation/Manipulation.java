@@ -1,6 +1,9 @@
 package com.tamu.manipulation;
 
 import com.tamu.Statement;
+import com.tamu.buffer.BufferPool;
+import com.tamu.index.IndexCatalog;
+import com.tamu.statistics.StatisticsCatalog;
 import storageManager.Disk;
 import storageManager.MainMemory;
 import storageManager.SchemaManager;
@@ -8,5 +11,5 @@ import storageManager.SchemaManager;
 import java.util.List;
 
 public interface Manipulation {
-    boolean execute(Disk disk, MainMemory memory, SchemaManager schemaManager, List<Statement> statements);
+    boolean execute(Disk disk, MainMemory memory, SchemaManager schemaManager, BufferPool bufferPool, StatisticsCatalog catalog, IndexCatalog indexes, List<Statement> statements);
 }
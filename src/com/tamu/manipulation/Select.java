@@ -1,24 +1,53 @@
 package com.tamu.manipulation;
 
-import com.tamu.Expression;
 import com.tamu.Statement;
 import com.tamu.Util;
+import com.tamu.buffer.BufferPool;
+import com.tamu.index.Index;
+import com.tamu.index.IndexCatalog;
+import com.tamu.operator.*;
+import com.tamu.statistics.StatisticsCatalog;
 import storageManager.*;
 
 import java.util.*;
 
+// Builds a plan of operators for the query and pulls the result out of it,
+// so the first tuples are printed before the last ones are read.
 public class Select implements Manipulation {
-    public List<Map<String, Field>> tuples;
-    List<Tuple> originTuples;
+    // WHERE clause split at the top-level ANDs:
+    // conditions on the columns of a single relation are applied while that relation is scanned,
+    // the other conditions as soon as their relations are joined
+    private Map<String, List<Statement>> relationConditions = new HashMap<>();
+    private List<Statement> joinConditions = new ArrayList<>();
+    // with nothing between the scan of a single relation and the root, the conditions its scan cannot
+    // vectorize are checked at the root instead, in one generated function with the selection of the columns
+    private List<Statement> rootConditions;
 
     private final static String errorInfo = "Error in a SELECT statement! ";
 
-    public boolean execute(Disk disk, MainMemory memory, SchemaManager schemaManager, List<Statement> statements) {
+    public boolean execute(Disk disk, MainMemory memory, SchemaManager schemaManager, BufferPool bufferPool, StatisticsCatalog catalog, IndexCatalog indexes, List<Statement> statements) {
+        Project plan = getPlan(memory, schemaManager, bufferPool, catalog, indexes, statements);
+        if (plan == null) {
+            return false;
+        }
+
+        Util.outputTitle(plan.getFieldNames());
+        plan.open();
+        for (Tuple tuple = plan.next(); tuple != null; tuple = plan.next()) {
+            Util.outputTuple(plan.getFields());
+        }
+        plan.close();
+        Util.outputEnd(plan.getFieldNames());
+        return true;
+    }
+
+    // returns the plan of the query, whose getFields() are the selected columns of each tuple,
+    // or null if the query is not valid
+    Project getPlan(MainMemory memory, SchemaManager schemaManager, BufferPool bufferPool, StatisticsCatalog catalog, IndexCatalog indexes, List<Statement> statements) {
         List<Statement> columns = null;
         Statement from = null, expression = null, order = null;
         boolean distinct = false;
-
-        boolean singleRelation = true;
+        int limit = -1;
 
         for (Statement statement : statements) {
             switch (statement.getAttribute()) {
@@ -33,7 +62,6 @@ public class Select implements Manipulation {
 
                 case "FROM":
                     from = statement;
-                    singleRelation = from.getSize() == 1;
                     break;
 
                 case "EXPRESSION":
@@ -43,21 +71,30 @@ public class Select implements Manipulation {
                 case "ORDER":
                     order = statement;
                     break;
+
+                case "LIMIT":
+                    try {
+                        limit = Integer.parseInt(statement.getLeafAttribute());
+                    } catch (NumberFormatException e) {
+                        limit = -1;
+                    }
+                    if (limit < 0) {
+                        Util.outputErrorLn(errorInfo + "LIMIT \"" + statement.getLeafAttribute() + "\" is not a number of tuples.");
+                        return null;
+                    }
+                    break;
             }
         }
 
         if (columns == null) {
             Util.outputErrorLn(errorInfo + "Cannot find columns.");
-            return false;
+            return null;
 
         } else if (from == null) {
             Util.outputErrorLn(errorInfo + "Cannot find relation name.");
-            return false;
+            return null;
         }
 
-        this.tuples = new ArrayList<>();
-        this.originTuples = new ArrayList<>();
-
         ArrayList<String> relationNames = new ArrayList<>();
         List<String> fieldNames = new ArrayList<>();
 
@@ -69,7 +106,7 @@ public class Select implements Manipulation {
             Relation relation = schemaManager.getRelation(relationName);
             if (relation == null) {
                 Util.outputErrorLn(errorInfo + "No such relation \"" + relationName + "\".");
-                return false;
+                return null;
             }
 
             relationNames.add(relationName);
@@ -98,43 +135,23 @@ public class Select implements Manipulation {
                             fieldNameInColumn = column.getRightAttribute();
                         } else {
                             Util.outputErrorLn(errorInfo + "Relation name in COL \"" + relationNameInColumn + "\" and relation name in FROM \"" + relationNameInColumn + "\" are not identical.");
-                            return false;
+                            return null;
                         }
 
                     } else {
                         Util.outputErrorLn(errorInfo + "Unrecognized COL name.");
-                        return false;
+                        return null;
                     }
 
                     if (schema.getFieldOffset(fieldNameInColumn) == -1) {
                         Util.outputErrorLn(errorInfo + "No such column \"" + fieldNameInColumn + "\" in relation \"" + relationName + "\".");
-                        return false;
+                        return null;
                     } else {
 
                         fieldNames.add(fieldNameInColumn);
                     }
                 }
             }
-
-            int blockNumber = relation.getNumOfBlocks();
-            for (int i = 0; i < blockNumber; i++) {
-                if (relation.getBlock(i, 0)) {
-                    Block block = memory.getBlock(0);
-                    ArrayList<Tuple> tuplesInBlock = block.getTuples();
-
-                    for (Tuple tuple : tuplesInBlock) {
-                        // deal with WHERE
-                        if (!tuple.isNull() && (expression == null || Expression.evaluateBoolean(expression, tuple))) {
-                            Map<String, Field> tupleStringMap = new HashMap<>();
-                            for (String fieldName : fieldNames) {
-                                tupleStringMap.put(fieldName, tuple.getField(fieldName));
-                            }
-                            this.tuples.add(tupleStringMap);
-                            this.originTuples.add(tuple);
-                        }
-                    }
-                }
-            }
         } else {
             // Select from MULTIPLE relations.
 
@@ -144,7 +161,7 @@ public class Select implements Manipulation {
                 Relation relation = schemaManager.getRelation(relationName);
                 if (relation == null) {
                     Util.outputErrorLn(errorInfo + "No such relation \"" + relationName + "\".");
-                    return false;
+                    return null;
                 }
 
                 relationNames.add(relationName);
@@ -177,7 +194,7 @@ public class Select implements Manipulation {
                             if (schema.getFieldOffset(fieldNameInColumn) != -1) {
                                 if (foundColumn) {
                                     Util.outputErrorLn(errorInfo + "There are at least two columns \"" + fieldNameInColumn + "\" in these relations. Please specify relation name for the column.");
-                                    return false;
+                                    return null;
 
                                 } else {
                                     foundColumn = true;
@@ -188,7 +205,7 @@ public class Select implements Manipulation {
 
                         if (!foundColumn) {
                             Util.outputErrorLn(errorInfo + "Cannot find such column: \"" + fieldNameInColumn + "\" in any relation.");
-                            return false;
+                            return null;
                         }
 
                     } else if (column.getSize() == 2) {
@@ -203,7 +220,7 @@ public class Select implements Manipulation {
 
                                 if (schemaManager.getSchema(relationName).getFieldOffset(fieldNameInColumn) == -1) {
                                     Util.outputErrorLn(errorInfo + "No such column \"" + fieldNameInColumn + "\" in relation \"" + relationName + "\".");
-                                    return false;
+                                    return null;
 
                                 } else {
                                     fieldNames.add(relationName + "." + fieldNameInColumn);
@@ -214,414 +231,497 @@ public class Select implements Manipulation {
 
                         if (!foundRelation) {
                             Util.outputErrorLn(errorInfo + "Cannot find such relation: \"" + relationNameInColumn + "\".");
-                            return false;
+                            return null;
                         }
 
                     } else {
                         Util.outputErrorLn(errorInfo + "Unrecognized COL name.");
-                        return false;
+                        return null;
                     }
 
 
                 }
             }
-
-            if (relationNames.size() == 2) {
-                crossJoin(schemaManager, memory, relationNames);
-            } else if (relationNames.size() == 3) {
-                // deal with this condition later
-                return true;
-            } else {
-                multipleJoin(schemaManager, memory, relationNames);
-            }
         }
 
-        // deal with DISTINCT
-        if (distinct) {
-            List<Map<String, Field>> distinctTuples = new ArrayList<>();
-            List<Tuple> distinctOriginalTuples = new ArrayList<>();
-            Set<Integer> distinctTupleSet = new HashSet<>();
-
-            for (int i = 0; i != tuples.size(); i++) {
-                Map<String, Field> tuple = tuples.get(i);
+        // the selected columns, as relation.field
+        List<String> selectedColumns = new ArrayList<>();
+        for (String fieldName : fieldNames) {
+            selectedColumns.add(from.getSize() == 1 ? relationNames.get(0) + "." + fieldName : fieldName);
+        }
 
-                int hashCode = 1;
-                for (String entireFieldName : tuple.keySet()) {
-                    FieldType fieldType;
-                    if (singleRelation) {
-                        Schema schema = schemaManager.getSchema(relationNames.get(0));
-                        fieldType = schema.getFieldType(entireFieldName);
+        // deal with ORDER BY
+        String orderColumn = null;
+        if (order != null) {
+            Statement orderColumnInfo = order.getLeaf();
+            String[] resolved = resolveColumn(schemaManager, relationNames, orderColumnInfo);
+            if (resolved == null) {
+                if (orderColumnInfo.getSize() != 1) {
+                    Util.outputErrorLn(errorInfo + "Unrecognized ORDER BY column.");
+                } else if (getNumOfRelationsWithColumn(schemaManager, relationNames, orderColumnInfo.getLeafAttribute()) > 1) {
+                    Util.outputErrorLn(errorInfo + "There are at least two columns \"" + orderColumnInfo.getLeafAttribute() + "\" in these relations. Please specify relation name for the column.");
+                } else {
+                    Util.outputErrorLn(errorInfo + "Cannot find such column: \"" + orderColumnInfo.getLeafAttribute() + "\" in any relation.");
+                }
+                return null;
+            }
+            orderColumn = resolved[0] + "." + resolved[1];
+        }
 
-                    } else {
-                        fieldType = getFieldType(schemaManager, entireFieldName);
-                    }
+        if (expression != null) {
+            pushDownConditions(schemaManager, expression, relationNames);
+        }
+        JoinPlanner planner = new JoinPlanner(schemaManager, bufferPool, catalog, relationNames, relationConditions, joinConditions);
 
-                    // pick an arbitrary primitive number to calculate hashcode
-                    // here, we choose 10007
-                    if (fieldType == FieldType.INT) {
-                        hashCode = 10007 * hashCode + tuple.get(entireFieldName).integer;
-                    } else {
-                        hashCode = 10007 * hashCode + tuple.get(entireFieldName).str.hashCode();
-                    }
-                }
+        if (relationNames.size() == 1 && !distinct && orderColumn == null && limit == -1) {
+            rootConditions = new ArrayList<>();
+        }
 
-                if (!distinctTupleSet.contains(hashCode)) {
-                    distinctTuples.add(tuple);
-                    distinctOriginalTuples.add(originTuples.get(i));
-                    distinctTupleSet.add(hashCode);
-                }
-            }
-            this.tuples = distinctTuples;
-            this.originTuples = distinctOriginalTuples;
+        // the columns needed above the joins
+        List<String> neededColumns = new ArrayList<>(selectedColumns);
+        if (orderColumn != null && !neededColumns.contains(orderColumn)) {
+            neededColumns.add(orderColumn);
+        }
+        Operator plan = getJoinPlan(memory, schemaManager, bufferPool, indexes, planner, relationNames, neededColumns, distinct || order != null);
+        if (plan == null) {
+            Util.outputErrorLn(errorInfo + "Too many columns are selected from the join.");
+            return null;
         }
 
-        // deal with ORDER BY
-        if (order != null) {
-            String orderRel = null;
-            String orderCol = null;
+        // deal with DISTINCT
+        String name = String.join("_", relationNames);
+        if (distinct) {
+            // one pass if the tuples are expected to fit in memory, hashing the values of the selected columns;
+            // two passes otherwise, sorting on the selected columns and keeping the first of equal tuples
+            boolean hash = planner.getNumOfJoinedTuples(relationNames) <= bufferPool.getNumOfAvailableFrames() * plan.getSchema().getTuplesPerBlock();
+            plan = new Distinct(plan, selectedColumns, hash, name + "_distinct", schemaManager, memory, bufferPool, getNumOfReservedFrames(relationNames));
+        }
 
-            Statement orderColumnInfo = order.getLeaf();
-            if (orderColumnInfo.getSize() == 1) {
-                // ORDER BY sid ...
-                orderRel = null;
-                orderCol = orderColumnInfo.getLeafAttribute();
-
-            } else if (orderColumnInfo.getSize() == 2) {
-                // ORDER BY course.sid ...
-                boolean foundColumn = false;
-                for (String relationName : relationNames) {
-                    orderRel = orderColumnInfo.getLeafAttribute();
+        if (orderColumn != null) {
+            plan = new Sort(plan, Collections.singletonList(orderColumn), name + "_order", schemaManager, memory, bufferPool, getNumOfReservedFrames(relationNames));
+        }
 
-                    if (orderRel.equals(relationName)) {
-                        orderCol = orderColumnInfo.getRightAttribute();
+        if (limit != -1) {
+            plan = new Limit(plan, limit);
+        }
 
-                        if (foundColumn) {
-                            Util.outputErrorLn(errorInfo + "There are at least two columns \"" + orderCol + "\" in these relations. Please specify relation name for the column.");
-                            return false;
+        return new Project(plan, fieldNames, selectedColumns, rootConditions == null ? Collections.emptyList() : rootConditions);
+    }
 
-                        } else {
-                            foundColumn = true;
-                        }
+    // left-deep tree of joins in the order chosen by the JoinPlanner, over scans that apply the pushed-down conditions.
+    // A relation is joined through an index of it if there is an equality predicate between an indexed column
+    // and the relations before it, and looking up each of their tuples is expected to read fewer blocks than a scan;
+    // otherwise by hashing if there is an equality predicate between it and the relations before it,
+    // and the smaller side is expected to fit in the free frames; otherwise by nested loops or by sorting,
+    // from an estimate of the blocks each would read. Each join condition is applied as soon as its relations are joined.
+    // blockingAbove tells if a sort or hash above the joins will need frames too.
+    // Returns null if the columns of a joined tuple do not fit in a tuple.
+    private Operator getJoinPlan(MainMemory memory, SchemaManager schemaManager, BufferPool bufferPool, IndexCatalog indexes,
+                                 JoinPlanner planner, List<String> relationNames, List<String> neededColumns, boolean blockingAbove) {
+        List<String> order = planner.getOrder();
+
+        // the join conditions by the relation joined last; the ones whose columns cannot be resolved
+        // are applied after all the relations are joined
+        Map<String, List<Statement>> conditionsByRelation = new HashMap<>();
+        List<Statement> remainingConditions = new ArrayList<>();
+        for (Statement condition : joinConditions) {
+            Set<String> relations = new HashSet<>();
+            if (getReferencedRelations(schemaManager, relationNames, condition, relations)) {
+                String lastRelation = order.get(0);
+                for (String relationName : order) {
+                    if (relations.contains(relationName)) {
+                        lastRelation = relationName;
                     }
                 }
-
+                conditionsByRelation.computeIfAbsent(lastRelation, n -> new ArrayList<>()).add(condition);
             } else {
-                Util.outputErrorLn(errorInfo + "Unrecognized ORDER BY column.");
-                return false;
+                remainingConditions.add(condition);
             }
+        }
+        conditionsByRelation.computeIfAbsent(order.get(order.size() - 1), n -> new ArrayList<>()).addAll(remainingConditions);
 
-            if (orderCol == null) {
-                Util.outputErrorLn(errorInfo + "Unrecognized ORDER BY column.");
-                return false;
-            }
-
-            FieldType fieldType;
-
-            if (singleRelation) {
-                Schema schema = schemaManager.getSchema(relationNames.get(0));
-                fieldType = schema.getFieldType(orderCol);
+        Operator plan = getScan(memory, schemaManager, bufferPool, indexes, planner, order.get(0));
+        List<Statement> firstConditions = conditionsByRelation.getOrDefault(order.get(0), Collections.emptyList());
+        if (!firstConditions.isEmpty()) {
+            plan = new Filter(plan, firstConditions);
+        }
 
-            } else {
-                // give it a default value
-                fieldType = FieldType.INT;
-
-                boolean foundColumn = false;
-                if (orderRel == null) {
-                    for (String relationName : relationNames) {
-                        if (isColumnInRelation(orderCol, relationName, schemaManager)) {
-                            if (foundColumn) {
-                                Util.outputErrorLn(errorInfo + "There are at least two columns \"" + orderCol + "\" in these relations. Please specify relation name for the column.");
-                                return false;
-
-                            } else {
-                                foundColumn = true;
-                                fieldType = schemaManager.getSchema(relationName).getFieldType(orderCol);
-                            }
-                        }
-                    }
+        int reserve = getNumOfReservedFrames(relationNames);
+        int numOfFrames = Math.max(1, bufferPool.getNumOfAvailableFrames() - reserve);
+        // work frames expected to be held by the operators built so far while the plan runs,
+        // and the blocks it is expected to read
+        int claimed = 0;
+        double cost = bufferPool.getNumOfBlocks(schemaManager.getRelation(order.get(0)));
+        List<String> joinedRelations = new ArrayList<>();
+        joinedRelations.add(order.get(0));
+        for (int i = 1; i < order.size(); i++) {
+            String relationName = order.get(i);
+            Operator scan = getScan(memory, schemaManager, bufferPool, indexes, planner, relationName);
+
+            // equality predicates between the relations joined so far and this one, as the keys of the join
+            List<String> leftKeys = new ArrayList<>();
+            List<String> rightKeys = new ArrayList<>();
+            List<Statement> keyConditions = new ArrayList<>();
+            List<Statement> otherConditions = new ArrayList<>();
+            List<Statement> conditions = conditionsByRelation.getOrDefault(relationName, Collections.emptyList());
+            for (Statement condition : conditions) {
+                String[] left = null;
+                String[] right = null;
+                if (condition.getAttribute().equals("=")
+                        && condition.getLeftAttribute().equals("COL_ID") && condition.getRightAttribute().equals("COL_ID")) {
+                    left = resolveColumn(schemaManager, relationNames, condition.getLeft());
+                    right = resolveColumn(schemaManager, relationNames, condition.getRight());
+                }
+                if (left != null && right != null && left[0].equals(relationName) != right[0].equals(relationName)
+                        && getFieldType(schemaManager, left[0] + "." + left[1]) == getFieldType(schemaManager, right[0] + "." + right[1])) {
+                    String[] joined = left[0].equals(relationName) ? right : left;
+                    String[] other = left[0].equals(relationName) ? left : right;
+                    leftKeys.add(joined[0] + "." + joined[1]);
+                    rightKeys.add(other[0] + "." + other[1]);
+                    keyConditions.add(condition);
                 } else {
-                    if (isColumnInRelation(orderCol, orderRel, schemaManager)) {
-                        foundColumn = true;
-                        fieldType = schemaManager.getSchema(orderRel).getFieldType(orderCol);
-                    }
+                    otherConditions.add(condition);
                 }
+            }
 
-                if (!foundColumn) {
-                    Util.outputErrorLn(errorInfo + "Cannot find such column: \"" + orderCol + "\" in any relation.");
-                    return false;
+            // the columns used by this join or above it
+            Set<String> usedColumns = new HashSet<>(neededColumns);
+            for (int j = i; j < order.size(); j++) {
+                for (Statement condition : conditionsByRelation.getOrDefault(order.get(j), Collections.emptyList())) {
+                    getColumns(schemaManager, relationNames, condition, usedColumns);
                 }
             }
+            List<String> names = new ArrayList<>(joinedRelations);
+            names.add(relationName);
+            Relation tempRelation = getTempRelation(schemaManager, bufferPool, "temp_" + String.join("_join_", names), plan, scan, usedColumns);
+            if (tempRelation == null) {
+                return null;
+            }
 
-            final String orderColumn;
-            if (orderRel == null) {
-                orderColumn = orderCol;
-            } else {
-                orderColumn = orderRel + "." + orderCol;
+            int rightBlocks = getNumOfBlocks(planner.getNumOfQualifiedTuples(relationName), scan);
+            int leftBlocks = getNumOfBlocks(planner.getNumOfJoinedTuples(joinedRelations), plan);
+            double scanCost = bufferPool.getNumOfBlocks(schemaManager.getRelation(relationName));
+
+            // by looking up each tuple joined so far in an index of this relation, on one of the keys,
+            // if that is expected to read fewer blocks than a scan of this relation, which any other join reads
+            Index bestIndex = null;
+            int bestKey = -1;
+            double bestCost = cost + scanCost;
+            double leftTuples = planner.getNumOfJoinedTuples(joinedRelations);
+            for (int j = 0; j < rightKeys.size(); j++) {
+                String fieldName = rightKeys.get(j).substring(relationName.length() + 1);
+                for (Index index : indexes.getIndexes(relationName, fieldName, '=')) {
+                    // the tuples of this relation that match one key
+                    double numOfMatches = planner.getNumOfQualifiedTuples(relationName, keyConditions.get(j));
+                    double indexCost = cost + leftTuples * (index.getCost(numOfMatches)
+                            + getNumOfBlocksRead(index, numOfMatches, schemaManager.getRelation(relationName), bufferPool));
+                    if (indexCost < bestCost) {
+                        bestIndex = index;
+                        bestKey = j;
+                        bestCost = indexCost;
+                    }
+                }
             }
 
-            // sort using lambda expressions
-            if (fieldType == FieldType.INT) {
-                this.tuples.sort((tupleMap1, tupleMap2) -> new Integer(tupleMap1.get(orderColumn).integer).compareTo(tupleMap2.get(orderColumn).integer));
-                this.originTuples.sort((tuple1, tuple2) ->
-                        new Integer(tuple1.getField(orderColumn).integer).compareTo(tuple2.getField(orderColumn).integer));
+            if (bestIndex != null) {
+                IndexScan lookup = new IndexScan(relationName, schemaManager.getRelation(relationName), bestIndex, '=', null, memory, bufferPool);
+                Operator inner = relationConditions.containsKey(relationName)
+                        ? new Filter(lookup, relationConditions.get(relationName)) : lookup;
+                plan = new IndexNestedLoopJoin(plan, inner, lookup, tempRelation, leftKeys.get(bestKey), conditions);
+                cost = bestCost;
+            } else if (!leftKeys.isEmpty() && leftBlocks < rightBlocks && leftBlocks <= numOfFrames) {
+                // by hashing the smaller side if it fits; a side is hashed when the join is opened,
+                // before the operators of the other side claim their frames
+                plan = new HashJoin(scan, plan, tempRelation, rightKeys, leftKeys, otherConditions, schemaManager, memory, bufferPool, reserve);
+                claimed = leftBlocks;
+                cost += scanCost;
+            } else if (!leftKeys.isEmpty() && rightBlocks <= numOfFrames) {
+                plan = new HashJoin(plan, scan, tempRelation, leftKeys, rightKeys, otherConditions, schemaManager, memory, bufferPool, reserve);
+                claimed += rightBlocks;
+                cost += scanCost;
             } else {
-                this.tuples.sort((tupleMap1, tupleMap2) -> tupleMap1.get(orderColumn).str.compareTo(tupleMap2.get(orderColumn).str));
-                this.originTuples.sort((tuple1, tuple2) ->
-                        tuple1.getField(orderColumn).str.compareTo(tuple2.getField(orderColumn).str));
+                // otherwise by nested loops, with either side outer, or by sorting,
+                // whichever is expected to read fewer blocks;
+                // leave some frames for a sort above
+                int numOfChunkFrames = Math.max(1, numOfFrames - claimed - (blockingAbove ? 2 : 0));
+                double leftOuterCost = cost + Math.ceil((double) leftBlocks / numOfChunkFrames) * scanCost;
+                double rightOuterCost = scanCost + Math.ceil((double) rightBlocks / numOfChunkFrames) * cost;
+                double mergeCost = leftKeys.isEmpty() ? Double.MAX_VALUE
+                        : cost + scanCost + getSortCost(leftBlocks, numOfFrames) + getSortCost(rightBlocks, numOfFrames);
+
+                if (mergeCost < Math.min(leftOuterCost, rightOuterCost)) {
+                    plan = new MergeJoin(plan, scan, tempRelation, leftKeys, rightKeys, otherConditions,
+                            String.join("_", joinedRelations), relationName, schemaManager, memory, bufferPool, reserve);
+                    claimed = 2;
+                    cost = mergeCost;
+                } else if (rightOuterCost < leftOuterCost) {
+                    plan = new NestedLoopJoin(scan, plan, tempRelation, conditions, bufferPool, numOfChunkFrames, reserve);
+                    claimed += Math.min(numOfChunkFrames, rightBlocks);
+                    cost = rightOuterCost;
+                } else {
+                    plan = new NestedLoopJoin(plan, scan, tempRelation, conditions, bufferPool, numOfChunkFrames, reserve);
+                    claimed += Math.min(numOfChunkFrames, leftBlocks);
+                    cost = leftOuterCost;
+                }
             }
+            joinedRelations.add(relationName);
         }
-
-        Util.output(fieldNames, tuples);
-        return true;
-    }
-
-    private boolean isColumnInRelation(String column, String relationName, SchemaManager schemaManager) {
-        Schema schema = schemaManager.getSchema(relationName);
-        return schema.getFieldOffset(column) != -1;
-    }
-
-    private FieldType getFieldType(SchemaManager schemaManager, String fieldInfo) {
-        String[] parts = fieldInfo.split("\\.");
-        String relationName = parts[0];
-        String fieldName = parts[1];
-        Schema schema = schemaManager.getSchema(relationName);
-        return schema.getFieldType(fieldName);
+        return plan;
     }
 
-    private void crossJoin(SchemaManager schemaManager, MainMemory memory, ArrayList<String> relationNames) {
-        if (relationNames.size() == 2) {
-            // two relations join
-            String name0 = relationNames.get(0);
-            String name1 = relationNames.get(1);
-
-            Relation relation0 = schemaManager.getRelation(name0);
-            Relation relation1 = schemaManager.getRelation(name1);
-
-            ArrayList<String> newRelationNames = new ArrayList<>();
-            Relation smallerRelation;
-            if (relation0.getNumOfBlocks() <= relation1.getNumOfBlocks()) {
-                newRelationNames.add(name0);
-                newRelationNames.add(name1);
-                smallerRelation = relation0;
-            } else {
-                newRelationNames.add(name1);
-                newRelationNames.add(name0);
-                smallerRelation = relation1;
+    // a scan of the relation, with its pushed-down conditions;
+    // through an index if one of them can be looked up in it for fewer blocks
+    private Operator getScan(MainMemory memory, SchemaManager schemaManager, BufferPool bufferPool, IndexCatalog indexes,
+                             JoinPlanner planner, String relationName) {
+        Relation relation = schemaManager.getRelation(relationName);
+        List<Statement> conditions = relationConditions.get(relationName);
+        IndexLookup lookup = conditions == null ? null
+                : getIndexLookup(schemaManager, bufferPool, indexes, planner, relationName, conditions);
+        Operator scan = lookup == null ? new TableScan(relationName, relation, memory, bufferPool)
+                : new IndexScan(relationName, relation, lookup.index, lookup.operator, lookup.value, memory, bufferPool);
+        if (conditions != null) {
+            // all of them, the looked up one too, since an index may return more tuples than match
+            List<Statement> scanConditions = conditions;
+            if (rootConditions != null) {
+                scanConditions = new ArrayList<>();
+                Filter.split(conditions, relation.getSchema(), scanConditions, rootConditions);
             }
-
-            if (smallerRelation.getNumOfBlocks() < memory.getMemorySize() - 1) {
-                // the main memory is sufficiently large
-                // to hold the smaller relation
-                // One-pass
-                onePassJoin(schemaManager, memory, newRelationNames);
-            } else {
-                // the main memory is NOT sufficiently large
-                // to hold the smaller relation
-                // Two-pass
-                nestedJoin(schemaManager, memory, newRelationNames);
+            if (!scanConditions.isEmpty()) {
+                scan = new Filter(scan, scanConditions);
             }
-        } else {
-            onePassJoin(schemaManager, memory, relationNames);
         }
+        return scan;
     }
 
-    private void multipleJoin(SchemaManager schemaManager, MainMemory memory, ArrayList<String> relationNames) {
-        String tempRelationName = "temp_multiple_join";
+    // a condition of the relation that an index can look up
+    static class IndexLookup {
+        Index index;
+        char operator;
+        Object value;
 
-        // if the temp relation already exists, drop it
-        if (schemaManager.relationExists(tempRelationName)) {
-            Drop drop = new Drop();
-            drop.execute(schemaManager, tempRelationName);
+        IndexLookup(Index index, char operator, Object value) {
+            this.index = index;
+            this.operator = operator;
+            this.value = value;
         }
-
-        // create a temp relation to store join result
-        Schema tempRelationSchema = generateSchema(schemaManager, relationNames);
-        Relation tempRelation = schemaManager.createRelation(tempRelationName, tempRelationSchema);
-
-        List<Tuple> resultTuples = new ArrayList<>();
-        generateNewTupleList(resultTuples, null, 0, relationNames, tempRelation, schemaManager, memory);
-        addTupleListToResults(tempRelationSchema, resultTuples);
     }
 
-    // recursive way to deal with cross join of any number of relations
-    private void generateNewTupleList(List<Tuple> resultTuples, List<Tuple> newTupleList, int relationOffset, ArrayList<String> relationNames, Relation tempRelation, SchemaManager schemaManager, MainMemory memory) {
-        String relationName = relationNames.get(relationOffset);
+    // the condition "column operator constant", or "constant operator column", on an indexed column
+    // or the column the relation is clustered by, whose lookup and the blocks of its tuples are expected to read the fewest blocks, fewer than a scan;
+    // null if there is none
+    static IndexLookup getIndexLookup(SchemaManager schemaManager, BufferPool bufferPool, IndexCatalog indexes,
+                                      JoinPlanner planner, String relationName, List<Statement> conditions) {
         Relation relation = schemaManager.getRelation(relationName);
-
-        for (int i = 0; i != relation.getNumOfBlocks(); i++) {
-            // put n-th relation's block into n-th block in memory
-            relation.getBlock(i, relationOffset);
-            Block block = memory.getBlock(relationOffset);
-
-            // it should be like this,
-            // but due to the design of storage manager,
-            // this will produce a lot of "error"s
-            // so let's work around!
-//            for (int j = 0; j != numOfTuplesPerBlock; j++) {
-//                Tuple tuple = block.getTuple(j);
-//                if (!tuple.isNull()) {
-
-            for (int j = 0; j != block.getNumTuples(); j++) {
-                Tuple tuple = block.getTuple(j);
-
-                List<Tuple> newTupleListCopy = new ArrayList<>();
-
-                if (relationOffset != 0) {
-                    for (Tuple tupleInList : newTupleList) {
-                        newTupleListCopy.add(tupleInList);
-                    }
-                }
-
-                newTupleListCopy.add(tuple);
-
-                if (relationOffset == relationNames.size() - 1) {
-                    resultTuples.add(mergeTuples(tempRelation, newTupleListCopy));
-                } else {
-                    generateNewTupleList(resultTuples, newTupleListCopy, relationOffset + 1, relationNames, tempRelation, schemaManager, memory);
+        double bestCost = bufferPool.getNumOfBlocks(relation);
+        IndexLookup best = null;
+        for (Statement condition : conditions) {
+            String operator = condition.getAttribute();
+            if (!operator.equals("=") && !operator.equals("<") && !operator.equals(">")) {
+                continue;
+            }
+            Statement column = condition.getLeft();
+            Statement constant = condition.getRight();
+            if (!column.getAttribute().equals("COL_ID")) {
+                // 10 < exam is exam > 10
+                column = condition.getRight();
+                constant = condition.getLeft();
+                operator = operator.equals("<") ? ">" : operator.equals(">") ? "<" : operator;
+            }
+            String[] resolved = column.getAttribute().equals("COL_ID")
+                    ? resolveColumn(schemaManager, Collections.singletonList(relationName), column) : null;
+            if (resolved == null) {
+                continue;
+            }
+            FieldType type = relation.getSchema().getFieldType(resolved[1]);
+            Object value;
+            if (type == FieldType.INT && constant.getAttribute().equals("INT")) {
+                value = Integer.parseInt(constant.getLeafAttribute());
+            } else if (type == FieldType.STR20 && constant.getAttribute().equals("STR20")) {
+                value = constant.getLeafAttribute();
+            } else {
+                continue;
+            }
+            double numOfTuples = planner.getNumOfQualifiedTuples(relationName, condition);
+            for (Index index : indexes.getIndexes(relationName, resolved[1], operator.charAt(0))) {
+                double cost = index.getCost(numOfTuples) + getNumOfBlocksRead(index, numOfTuples, relation, bufferPool);
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    best = new IndexLookup(index, operator.charAt(0), value);
                 }
             }
         }
+        return best;
     }
 
-    private void onePassJoin(SchemaManager schemaManager, MainMemory memory, ArrayList<String> relationNames) {
-        String smaller = relationNames.get(0);
-        String larger = relationNames.get(1);
-
-        Relation smallerRelation = schemaManager.getRelation(smaller);
-        Relation largerRelation = schemaManager.getRelation(larger);
-
-        String tempRelationName = "temp_" + smaller + "_cross_" + larger;
-
-        // if the temp relation already exists, drop it
-        if (schemaManager.relationExists(tempRelationName)) {
-            Drop drop = new Drop();
-            drop.execute(schemaManager, tempRelationName);
+    // estimated number of blocks of the relation read for the tuples looked up in the index:
+    // each block once, and the tuples are in the fewest blocks if the index is clustered
+    private static double getNumOfBlocksRead(Index index, double numOfTuples, Relation relation, BufferPool bufferPool) {
+        int numOfBlocks = bufferPool.getNumOfBlocks(relation);
+        if (index.isClustered()) {
+            return Math.min(numOfBlocks, Math.ceil(numOfTuples / relation.getSchema().getTuplesPerBlock()) + 1);
         }
+        return Math.min(numOfTuples, numOfBlocks);
+    }
 
-        // create a temp relation to store join result
-        Schema tempRelationSchema = generateSchema(schemaManager, relationNames);
-        Relation tempRelation = schemaManager.createRelation(tempRelationName, tempRelationSchema);
-
-        // get all blocks of smaller relation,
-        // because the main memory can hold them
-        int numOfBlocksInSmallerRelation = smallerRelation.getNumOfBlocks();
-        smallerRelation.getBlocks(0, 0, numOfBlocksInSmallerRelation);
-        List<Tuple> tuplesInSmallerRelation = memory.getTuples(0, numOfBlocksInSmallerRelation);
-
-        int lastBlockInMemory = memory.getMemorySize() - 1;
-
-        List<Tuple> resultTuples = new ArrayList<>();
-
-        for (int i = 0; i < largerRelation.getNumOfBlocks(); i++) {
-            // use last block of memory to hold block in larger relation
-            largerRelation.getBlock(i, lastBlockInMemory);
-            Block blockL = memory.getBlock(lastBlockInMemory);
+    // the operators that claim work frames leave a frame for the scan of every relation but the first one,
+    // which is pinned when the plan is opened; the others may be opened again while the frames are held
+    private static int getNumOfReservedFrames(List<String> relationNames) {
+        return relationNames.size() - 1;
+    }
 
-            for (Tuple tupleS : tuplesInSmallerRelation) {
-                for (Tuple tupleL : blockL.getTuples()) {
-                    if (!tupleS.isNull() && !tupleL.isNull()) {
-                        addTuplesToList(resultTuples, tempRelation, tupleS, tupleL);
-                    }
-                }
-            }
+    // blocks read and written to sort the blocks: none if they fit in the frames,
+    // otherwise each of them is written and read again by every pass over the runs
+    private static double getSortCost(int numOfBlocks, int numOfFrames) {
+        if (numOfBlocks <= numOfFrames) {
+            return 0;
         }
-
-        addTupleListToResults(tempRelationSchema, resultTuples);
+        int numOfPasses = 1;
+        for (int numOfRuns = (numOfBlocks + numOfFrames - 1) / numOfFrames; numOfRuns > numOfFrames && numOfFrames > 2; numOfPasses++) {
+            numOfRuns = (numOfRuns + numOfFrames - 2) / (numOfFrames - 1);
+        }
+        return 2.0 * numOfBlocks * numOfPasses;
     }
 
-    private void nestedJoin(SchemaManager schemaManager, MainMemory memory, ArrayList<String> relationNames) {
-        String rName = relationNames.get(0);
-        String sName = relationNames.get(1);
-
-        Relation r = schemaManager.getRelation(rName);
-        Relation s = schemaManager.getRelation(sName);
+    // estimated number of blocks of the tuples of the operator
+    private static int getNumOfBlocks(double numOfTuples, Operator operator) {
+        return (int) Math.ceil(numOfTuples / operator.getSchema().getTuplesPerBlock());
+    }
 
-        String tempRelationName = "temp_" + rName + "_cross_" + sName;
+    // returns the temp relation of the tuples joined from the two operators, with only the used columns,
+    // so a joined tuple takes less of a block; an existing relation with another schema is dropped.
+    // Returns null if the used columns do not fit in a tuple.
+    private static Relation getTempRelation(SchemaManager schemaManager, BufferPool bufferPool, String tempRelationName,
+                                            Operator left, Operator right, Set<String> usedColumns) {
+        List<String> allColumns = new ArrayList<>(left.getColumnNames());
+        allColumns.addAll(right.getColumnNames());
+        ArrayList<FieldType> allTypes = new ArrayList<>(left.getSchema().getFieldTypes());
+        allTypes.addAll(right.getSchema().getFieldTypes());
+
+        ArrayList<String> fieldNames = new ArrayList<>();
+        ArrayList<FieldType> fieldTypes = new ArrayList<>();
+        for (int i = 0; i < allColumns.size(); i++) {
+            if (usedColumns.contains(allColumns.get(i))) {
+                fieldNames.add(allColumns.get(i));
+                fieldTypes.add(allTypes.get(i));
+            }
+        }
+        if (fieldNames.isEmpty()) {
+            // nothing of these relations is used, but a tuple needs a field
+            fieldNames.add(allColumns.get(0));
+            fieldTypes.add(allTypes.get(0));
+        }
+        if (fieldNames.size() > Schema.getMaxNumOfFields()) {
+            return null;
+        }
+        Schema schema = new Schema(fieldNames, fieldTypes);
 
-        // if the temp relation already exists, drop it
         if (schemaManager.relationExists(tempRelationName)) {
+            if (schemaManager.getSchema(tempRelationName).equals(schema)) {
+                return schemaManager.getRelation(tempRelationName);
+            }
             Drop drop = new Drop();
-            drop.execute(schemaManager, tempRelationName);
+            drop.execute(schemaManager, bufferPool, tempRelationName);
         }
+        return schemaManager.createRelation(tempRelationName, schema);
+    }
 
-        // create a temp relation to store join result
-        Schema tempRelationSchema = generateSchema(schemaManager, relationNames);
-        Relation tempRelation = schemaManager.createRelation(tempRelationName, tempRelationSchema);
-
-        List<Tuple> resultTuples = new ArrayList<>();
-        for (int i = 0; i < r.getNumOfBlocks(); i++) {
-            r.getBlock(i, 0);
-            Block blockR = memory.getBlock(0);
-
-            for (int j = 0; j < s.getNumOfBlocks(); j++) {
-                s.getBlock(j, 1);
-                Block blockS = memory.getBlock(1);
-
-                for (Tuple tupleR : blockR.getTuples()) {
-                    for (Tuple tupleS : blockS.getTuples()) {
-                        if (!tupleR.isNull() && !tupleS.isNull()) {
-                            addTuplesToList(resultTuples, tempRelation, tupleR, tupleS);
-                        }
-                    }
+    // collects the columns the expression may use, as relation.field:
+    // a column of several relations is collected for each of them
+    private static void getColumns(SchemaManager schemaManager, List<String> relationNames, Statement expression, Set<String> columns) {
+        if (expression.getAttribute().equals("COL_ID")) {
+            for (String relationName : relationNames) {
+                if (expression.getSize() == 2 && !expression.getLeftAttribute().equals(relationName)) {
+                    continue;
+                }
+                String fieldName = expression.getSize() == 2 ? expression.getRightAttribute() : expression.getLeafAttribute();
+                if (schemaManager.getSchema(relationName).getFieldNames().contains(fieldName)) {
+                    columns.add(relationName + "." + fieldName);
                 }
             }
+            return;
+        }
+        for (Statement branch : expression.branches) {
+            getColumns(schemaManager, relationNames, branch, columns);
         }
-
-        addTupleListToResults(tempRelationSchema, resultTuples);
     }
 
-    private void addTuplesToList(List<Tuple> resultTuples, Relation relation, Tuple tuple1, Tuple tuple2) {
-        List<Tuple> newTupleList = new ArrayList<>();
-        newTupleList.add(tuple1);
-        newTupleList.add(tuple2);
-        resultTuples.add(mergeTuples(relation, newTupleList));
+    private static int getNumOfRelationsWithColumn(SchemaManager schemaManager, List<String> relationNames, String fieldName) {
+        int count = 0;
+        for (String relationName : relationNames) {
+            if (schemaManager.getSchema(relationName).getFieldNames().contains(fieldName)) {
+                count++;
+            }
+        }
+        return count;
     }
 
-    private void addTupleListToResults(Schema schema, List<Tuple> resultTuples) {
-        List<String> fieldNames = schema.getFieldNames();
+    private static FieldType getFieldType(SchemaManager schemaManager, String fieldInfo) {
+        String[] parts = fieldInfo.split("\\.");
+        String relationName = parts[0];
+        String fieldName = parts[1];
+        Schema schema = schemaManager.getSchema(relationName);
+        return schema.getFieldType(fieldName);
+    }
 
-        for (Tuple tuple : resultTuples) {
-            Map<String, Field> tupleStringMap = new HashMap<>();
-            for (String fieldName : fieldNames) {
-                tupleStringMap.put(fieldName, tuple.getField(fieldName));
+    // splits the WHERE clause into its conjuncts, and pushes the ones
+    // that only use the columns of one relation down to the scan of that relation
+    private void pushDownConditions(SchemaManager schemaManager, Statement expression, List<String> relationNames) {
+        List<Statement> conjuncts = new ArrayList<>();
+        getConjuncts(expression.getLeaf(), conjuncts);
+        for (Statement conjunct : conjuncts) {
+            Set<String> relations = new HashSet<>();
+            if (getReferencedRelations(schemaManager, relationNames, conjunct, relations) && relations.size() == 1) {
+                relationConditions.computeIfAbsent(relations.iterator().next(), name -> new ArrayList<>()).add(conjunct);
+            } else {
+                joinConditions.add(conjunct);
             }
-            this.tuples.add(tupleStringMap);
-            this.originTuples.add(tuple);
         }
     }
 
-    private static Schema generateSchema(SchemaManager schemaManager, List<String> relationNames) {
-        ArrayList<String> newFieldNames = new ArrayList<>();
-        ArrayList<FieldType> newFieldTypes = new ArrayList<>();
-
-        for (String relationName : relationNames) {
-            Relation relation = schemaManager.getRelation(relationName);
-            Schema schema = relation.getSchema();
-
-            for (String fieldName : schema.getFieldNames()) {
-                newFieldNames.add(relationName + '.' + fieldName);
-                newFieldTypes.add(schema.getFieldType(fieldName));
+    // collects the relations whose columns are used in the expression;
+    // returns false if a column cannot be resolved to exactly one relation
+    static boolean getReferencedRelations(SchemaManager schemaManager, List<String> relationNames, Statement expression, Set<String> relations) {
+        if (expression.getAttribute().equals("COL_ID")) {
+            String[] column = resolveColumn(schemaManager, relationNames, expression);
+            if (column == null) {
+                return false;
             }
+            relations.add(column[0]);
+            return true;
         }
-
-        return new Schema(newFieldNames, newFieldTypes);
+        for (Statement branch : expression.branches) {
+            if (!getReferencedRelations(schemaManager, relationNames, branch, relations)) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    private static Tuple mergeTuples(Relation relation, List<Tuple> tupleList) {
-        Tuple newTuple = relation.createTuple();
-        int newTupleFieldOffset = 0;
+    static void getConjuncts(Statement expression, List<Statement> conjuncts) {
+        if (expression.getAttribute().equals("AND")) {
+            getConjuncts(expression.getLeft(), conjuncts);
+            getConjuncts(expression.getRight(), conjuncts);
+        } else {
+            conjuncts.add(expression);
+        }
+    }
 
-        for (Tuple tuple : tupleList) {
-            for (int i = 0; i != tuple.getNumOfFields(); i++, newTupleFieldOffset++) {
-                Field field = tuple.getField(i);
-                if (field.type == FieldType.INT) {
-                    newTuple.setField(newTupleFieldOffset, field.integer);
-                } else {
-                    newTuple.setField(newTupleFieldOffset, field.str);
+    // returns { relation name, field name } of the column,
+    // or null if no relation or more than one relation has it
+    static String[] resolveColumn(SchemaManager schemaManager, List<String> relationNames, Statement column) {
+        String[] found = null;
+        for (String relationName : relationNames) {
+            if (column.getSize() == 2 && !column.getLeftAttribute().equals(relationName)) {
+                continue;
+            }
+            String fieldName = column.getSize() == 2 ? column.getRightAttribute() : column.getLeafAttribute();
+            if (schemaManager.getSchema(relationName).getFieldNames().contains(fieldName)) {
+                if (found != null) {
+                    return null;
                 }
+                found = new String[]{relationName, fieldName};
             }
         }
-
-        return newTuple;
+        return found;
     }
 }
@@ -0,0 +1,89 @@
+package com.tamu.operator;
+
+import storageManager.Block;
+import storageManager.Field;
+import storageManager.FieldType;
+import storageManager.Schema;
+import storageManager.Tuple;
+
+import java.util.Arrays;
+import java.util.List;
+
+/* A batch of up to CAPACITY tuples, exchanged by nextBatch().
+ * The fields a filter reads are copied out of the blocks into a vector per column:
+ *   ints[offset] or strings[offset] by the type of the field, null for the fields not copied.
+ *   So a condition runs as a loop over an array instead of a call per tuple.
+ * Rows are numbered from 0 in the order of the tuples;
+ *   selection[0 .. numOfSelected) are the rows still selected, in increasing order.
+ */
+public class Batch {
+    public final static int CAPACITY = 1024;
+
+    final Tuple[] tuples = new Tuple[CAPACITY];
+    final int[][] ints;
+    final String[][] strings;
+    int size;
+    final int[] selection = new int[CAPACITY];
+    int numOfSelected;
+
+    private int[] offsets;
+
+    // a batch of tuples of the schema, with the fields at the offsets copied into vectors
+    Batch(Schema schema, int[] offsets) {
+        this.offsets = offsets;
+        ints = new int[schema.getNumOfFields()][];
+        strings = new String[schema.getNumOfFields()][];
+        for (int offset : offsets) {
+            if (schema.getFieldType(offset) == FieldType.INT) {
+                ints[offset] = new int[CAPACITY];
+            } else {
+                strings[offset] = new String[CAPACITY];
+            }
+        }
+    }
+
+    boolean hasOffsets(int[] offsets) {
+        return Arrays.equals(this.offsets, offsets);
+    }
+
+    void clear() {
+        size = 0;
+        numOfSelected = 0;
+    }
+
+    boolean isFull() {
+        return size == CAPACITY;
+    }
+
+    // adds a tuple, reading its fields one by one
+    void add(Tuple tuple) {
+        for (int offset : offsets) {
+            Field field = tuple.getField(offset);
+            if (ints[offset] != null) {
+                ints[offset][size] = field.integer;
+            } else {
+                strings[offset][size] = field.str;
+            }
+        }
+        tuples[size] = tuple;
+        selection[numOfSelected++] = size++;
+    }
+
+    // adds the valid tuples of a block, reading the fields column by column out of the block;
+    // tuples are the tuples of the block, holes included
+    void addBlock(Block block, List<Tuple> tuples) {
+        for (int offset : offsets) {
+            if (ints[offset] != null) {
+                block.getIntColumn(offset, ints[offset], size);
+            } else {
+                block.getStr20Column(offset, strings[offset], size);
+            }
+        }
+        for (Tuple tuple : tuples) {
+            if (!tuple.isNull()) {
+                this.tuples[size] = tuple;
+                selection[numOfSelected++] = size++;
+            }
+        }
+    }
+}
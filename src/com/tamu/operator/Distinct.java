@@ -0,0 +1,130 @@
+package com.tamu.operator;
+
+import com.tamu.buffer.BufferPool;
+import storageManager.MainMemory;
+import storageManager.Schema;
+import storageManager.SchemaManager;
+import storageManager.Tuple;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Returns the tuples of its child that differ from all the tuples before them on some of their fields.
+// By hashing, a tuple is returned as soon as it is pulled, and a frame is claimed for every block of values seen.
+// Past the frames it can claim, the tuples whose values are not seen yet are spilled to a temp relation,
+// and once the child is done the frames are released and the spilled tuples are sorted on the fields.
+// Otherwise, for inputs too large to remember, the child is sorted on the fields
+// and a tuple is returned if it differs from the one before it.
+public class Distinct implements Operator {
+    private Operator child;
+    private int[] offsets;
+    private boolean hash;
+    private String name;
+    private SchemaManager schemaManager;
+    private MainMemory memory;
+    private BufferPool bufferPool;
+    private int reserve;
+    private WorkFrames frames;
+
+    private Operator input;
+    private Set<List<Object>> seen;
+    private List<Object> last;
+    // the tuples pulled past the frames, and then their sorted values
+    private Spill spill;
+    private Operator spilled;
+
+    // the tuples are compared on the columns; if they are sorted, the runs are written to temp relations named after name;
+    // reserve is the number of frames left available for the scans
+    public Distinct(Operator child, List<String> columns, boolean hash, String name,
+                    SchemaManager schemaManager, MainMemory memory, BufferPool bufferPool, int reserve) {
+        this.child = child;
+        this.offsets = Keys.getOffsets(child.getColumnNames(), columns);
+        this.hash = hash;
+        this.name = name;
+        this.schemaManager = schemaManager;
+        this.memory = memory;
+        this.bufferPool = bufferPool;
+        this.reserve = reserve;
+        this.frames = new WorkFrames(bufferPool, reserve);
+        this.input = hash ? child : new Sort(child, offsets, name, schemaManager, memory, bufferPool, reserve, 1);
+    }
+
+    public void open() {
+        input.open();
+        seen = new HashSet<>();
+        last = null;
+        spill = null;
+        spilled = null;
+    }
+
+    public Tuple next() {
+        if (spilled != null) {
+            return nextSorted(spilled);
+        }
+        if (!hash) {
+            return nextSorted(input);
+        }
+
+        for (Tuple tuple = input.next(); tuple != null; tuple = input.next()) {
+            List<Object> key = Keys.getKey(tuple, offsets);
+            if (seen.contains(key)) {
+                continue;
+            }
+            if (spill == null && seen.size() % child.getSchema().getTuplesPerBlock() == 0 && !frames.claim()) {
+                spill = new Spill("temp_spill_" + name, child.getSchema(), child.getColumnNames(), 1,
+                        schemaManager, memory, bufferPool);
+            }
+            if (spill != null) {
+                spill.add(0, tuple);
+            } else {
+                seen.add(key);
+                return tuple;
+            }
+        }
+        if (spill == null) {
+            return null;
+        }
+
+        // none of the spilled tuples has the values of a tuple returned before
+        frames.release();
+        seen = new HashSet<>();
+        spilled = new Sort(spill.scan(0), offsets, name, schemaManager, memory, bufferPool, reserve, 1);
+        spilled.open();
+        return nextSorted(spilled);
+    }
+
+    // the next tuple of the sorted tuples that differs from the one before it
+    private Tuple nextSorted(Operator sorted) {
+        for (Tuple tuple = sorted.next(); tuple != null; tuple = sorted.next()) {
+            List<Object> key = Keys.getKey(tuple, offsets);
+            if (last == null || Keys.compare(key, last) != 0) {
+                last = key;
+                return tuple;
+            }
+        }
+        return null;
+    }
+
+    public void close() {
+        if (spilled != null) {
+            spilled.close();
+            spilled = null;
+        }
+        if (spill != null) {
+            spill.clear();
+            spill = null;
+        }
+        input.close();
+        frames.release();
+        seen = null;
+    }
+
+    public Schema getSchema() {
+        return child.getSchema();
+    }
+
+    public List<String> getColumnNames() {
+        return child.getColumnNames();
+    }
+}
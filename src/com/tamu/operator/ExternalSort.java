@@ -0,0 +1,225 @@
+package com.tamu.operator;
+
+import com.tamu.buffer.BufferPool;
+import storageManager.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Two-phase multiway merge sort, driven by the Sort operator.
+// Phase 1 takes as many blocks of tuples as there are work frames at once,
+// sorts them in memory and writes them as a sorted run to a temp relation.
+// Phase 2 merges the runs, holding one block of every run in memory.
+// If there are too many runs to merge at once, mergePass() merges them into fewer, longer runs.
+// Tuples that compare equal keep their order.
+class ExternalSort {
+    private SchemaManager schemaManager;
+    private MainMemory memory;
+    private BufferPool bufferPool;
+    private String name;
+    private Schema schema;
+    private Comparator<Tuple> comparator;
+
+    // work frames handed out for phase 1
+    private int workStart;
+    private int numOfWorkFrames;
+
+    // sorted runs in a temp relation: run i is the blocks [ ranges[i][0], ranges[i][1] )
+    static class Runs {
+        final Relation relation;
+        final List<int[]> ranges = new ArrayList<>();
+
+        Runs(Relation relation) {
+            this.relation = relation;
+        }
+
+        int size() {
+            return ranges.size();
+        }
+    }
+
+    // the runs are written to temp relations named after name, with the schema
+    ExternalSort(SchemaManager schemaManager, MainMemory memory, BufferPool bufferPool, String name, Schema schema, Comparator<Tuple> comparator) {
+        this.schemaManager = schemaManager;
+        this.memory = memory;
+        this.bufferPool = bufferPool;
+        this.name = name;
+        this.schema = schema;
+        this.comparator = comparator;
+    }
+
+    // claims the available frames but reserve for phase 1;
+    // returns the number of tuples they hold, or 0 if there is no frame to claim
+    int allocateWorkFrames(int reserve) {
+        numOfWorkFrames = bufferPool.getNumOfAvailableFrames() - reserve;
+        workStart = -1;
+        while (numOfWorkFrames > 0 && (workStart = bufferPool.allocate(numOfWorkFrames)) == -1) {
+            numOfWorkFrames--;
+        }
+        return workStart == -1 ? 0 : numOfWorkFrames * schema.getTuplesPerBlock();
+    }
+
+    void releaseWorkFrames() {
+        for (int i = workStart; i < workStart + numOfWorkFrames; i++) {
+            bufferPool.release(i);
+        }
+        workStart = -1;
+        numOfWorkFrames = 0;
+    }
+
+    Runs newRuns() {
+        return new Runs(Spill.getTempRelation(schemaManager, bufferPool, "temp_sort_" + name, schema));
+    }
+
+    // phase 1: sorts the tuples and writes them through the work frames as a new run
+    void addRun(Runs runs, ArrayList<Tuple> tuples) {
+        if (tuples.isEmpty()) {
+            return;
+        }
+        tuples.sort(comparator);
+        int first = runs.relation.getNumOfBlocks();
+        runs.relation.appendTuples(tuples, workStart, numOfWorkFrames);
+        runs.ranges.add(new int[]{first, runs.relation.getNumOfBlocks()});
+    }
+
+    // reads every tuple of the runs back, one pinned block at a time, and sorts them in memory;
+    // for when there are not enough frames to merge them
+    List<Tuple> readAll(Runs runs) {
+        List<Tuple> tuples = new ArrayList<>();
+        for (int i = 0; i < runs.size(); i++) {
+            RunReader reader = new RunReader(i, runs.relation, runs.ranges.get(i));
+            while (reader.advance()) {
+                tuples.add(reader.current);
+            }
+        }
+        tuples.sort(comparator);
+        return tuples;
+    }
+
+    // merges every numFrames-1 runs into one, with one frame for the output;
+    // returns null if there are not at least three available frames
+    Runs mergePass(Runs runs) {
+        int fanIn = bufferPool.getNumOfAvailableFrames() - 1;
+        if (fanIn < 2) {
+            return null;
+        }
+        int output = bufferPool.allocate();
+
+        String prefix = runs.relation.getRelationName().startsWith("temp_sort_") ? "temp_merge_" : "temp_sort_";
+        Runs newRuns = new Runs(Spill.getTempRelation(schemaManager, bufferPool, prefix + name, schema));
+        for (int i = 0; i < runs.size(); i += fanIn) {
+            Merger merger = new Merger(runs, i, Math.min(runs.size(), i + fanIn));
+            int first = newRuns.relation.getNumOfBlocks();
+            Block block = memory.getBlock(output);
+            for (Tuple tuple = merger.next(); tuple != null; tuple = merger.next()) {
+                if (block.isFull()) {
+                    newRuns.relation.setBlock(newRuns.relation.getNumOfBlocks(), output);
+                    block.clear();
+                }
+                block.appendTuple(tuple);
+            }
+            if (!block.isEmpty()) {
+                newRuns.relation.setBlock(newRuns.relation.getNumOfBlocks(), output);
+                block.clear();
+            }
+            merger.close();
+            newRuns.ranges.add(new int[]{first, newRuns.relation.getNumOfBlocks()});
+        }
+
+        bufferPool.release(output);
+        return newRuns;
+    }
+
+    // phase 2: merges all the runs; they must not be more than the available frames
+    Merger merge(Runs runs) {
+        return new Merger(runs, 0, runs.size());
+    }
+
+    // reads a run one pinned block at a time
+    private class RunReader {
+        private int runIndex;
+        private Relation runRelation;
+        private int nextBlock;
+        private int end;
+        private int frame = -1;
+        private ArrayList<Tuple> tuples = new ArrayList<>();
+        private int position;
+        private Tuple current;
+
+        RunReader(int runIndex, Relation runRelation, int[] range) {
+            this.runIndex = runIndex;
+            this.runRelation = runRelation;
+            this.nextBlock = range[0];
+            this.end = range[1];
+        }
+
+        // moves to the next valid tuple; returns false at the end of the run
+        boolean advance() {
+            while (true) {
+                while (position < tuples.size()) {
+                    current = tuples.get(position++);
+                    if (!current.isNull()) {
+                        return true;
+                    }
+                }
+                close();
+                if (nextBlock >= end) {
+                    current = null;
+                    return false;
+                }
+                frame = bufferPool.pin(runRelation, nextBlock++);
+                tuples = memory.getBlock(frame).getTuples();
+                position = 0;
+            }
+        }
+
+        void close() {
+            if (frame != -1) {
+                bufferPool.unpin(frame, false);
+                frame = -1;
+            }
+        }
+    }
+
+    // returns the tuples of several runs in sorted order
+    class Merger {
+        private PriorityQueue<RunReader> queue;
+        private List<RunReader> readers = new ArrayList<>();
+
+        private Merger(Runs runs, int from, int to) {
+            // equal tuples are taken from the earlier run first
+            queue = new PriorityQueue<>(Math.max(1, to - from), (r1, r2) -> {
+                int compare = comparator.compare(r1.current, r2.current);
+                return compare != 0 ? compare : Integer.compare(r1.runIndex, r2.runIndex);
+            });
+            for (int i = from; i < to; i++) {
+                RunReader reader = new RunReader(i, runs.relation, runs.ranges.get(i));
+                readers.add(reader);
+                if (reader.advance()) {
+                    queue.add(reader);
+                }
+            }
+        }
+
+        // returns null after the last tuple
+        Tuple next() {
+            RunReader reader = queue.poll();
+            if (reader == null) {
+                return null;
+            }
+            Tuple tuple = reader.current;
+            if (reader.advance()) {
+                queue.add(reader);
+            }
+            return tuple;
+        }
+
+        void close() {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+}
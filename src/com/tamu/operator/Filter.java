@@ -0,0 +1,142 @@
+package com.tamu.operator;
+
+import com.tamu.Condition;
+import com.tamu.Statement;
+import storageManager.Schema;
+import storageManager.Tuple;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeSet;
+
+// Returns the tuples of its child that satisfy all the conditions.
+// The comparisons among the conditions are compiled to VectorPredicates, and run over
+// batches pulled from the child; the other conditions are compiled to Conditions, and checked
+// one tuple at a time on the tuples the comparisons have selected.
+// Without a comparison to vectorize, the tuples are pulled one at a time.
+public class Filter implements Operator {
+    private Operator child;
+
+    private List<VectorPredicate> predicates = new ArrayList<>();
+    private List<Condition> rowConditions = new ArrayList<>();
+    // the offsets of the fields the predicates read
+    private int[] offsets;
+
+    private Batch batch;
+    private int position;
+
+    public Filter(Operator child, List<Statement> conditions) {
+        this.child = child;
+
+        TreeSet<Integer> used = new TreeSet<>();
+        for (Statement condition : conditions) {
+            compile(condition, used);
+        }
+        offsets = new int[used.size()];
+        int i = 0;
+        for (int offset : used) {
+            offsets[i++] = offset;
+        }
+    }
+
+    public void open() {
+        child.open();
+        batch = null;
+        position = 0;
+    }
+
+    public Tuple next() {
+        if (predicates.isEmpty()) {
+            for (Tuple tuple = child.next(); tuple != null; tuple = child.next()) {
+                if (satisfies(rowConditions, tuple)) {
+                    return tuple;
+                }
+            }
+            return null;
+        }
+
+        while (true) {
+            while (batch != null && position < batch.numOfSelected) {
+                Tuple tuple = batch.tuples[batch.selection[position++]];
+                if (satisfies(rowConditions, tuple)) {
+                    return tuple;
+                }
+            }
+            batch = child.nextBatch(offsets);
+            position = 0;
+            if (batch == null) {
+                return null;
+            }
+            for (VectorPredicate predicate : predicates) {
+                predicate.filter(batch);
+            }
+        }
+    }
+
+    public void close() {
+        child.close();
+        batch = null;
+    }
+
+    public Schema getSchema() {
+        return child.getSchema();
+    }
+
+    public List<String> getColumnNames() {
+        return child.getColumnNames();
+    }
+
+    // splits the condition into its conjuncts, and compiles the ones it can
+    private void compile(Statement condition, TreeSet<Integer> used) {
+        switch (condition.getAttribute()) {
+            case "EXPRESSION":
+                compile(condition.getLeaf(), used);
+                return;
+            case "AND":
+                compile(condition.getLeft(), used);
+                compile(condition.getRight(), used);
+                return;
+        }
+        VectorPredicate predicate = VectorPredicate.compile(condition, child.getSchema(), used);
+        if (predicate != null) {
+            predicates.add(predicate);
+        } else {
+            rowConditions.add(Condition.compile(condition, child.getSchema()));
+        }
+    }
+
+    // splits the conditions into their conjuncts on the tuples of the schema:
+    // the ones a Filter vectorizes, and the ones it checks one tuple at a time
+    public static void split(List<Statement> conditions, Schema schema, List<Statement> vectorized, List<Statement> rows) {
+        for (Statement condition : conditions) {
+            switch (condition.getAttribute()) {
+                case "EXPRESSION":
+                    split(condition.branches.subList(0, 1), schema, vectorized, rows);
+                    break;
+                case "AND":
+                    split(condition.branches, schema, vectorized, rows);
+                    break;
+                default:
+                    (VectorPredicate.compile(condition, schema, new HashSet<>()) != null ? vectorized : rows).add(condition);
+            }
+        }
+    }
+
+    static boolean satisfies(List<Condition> conditions, Tuple tuple) {
+        for (Condition condition : conditions) {
+            if (!condition.evaluate(tuple)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static List<Condition> compile(List<Statement> conditions, Schema schema) {
+        List<Condition> compiled = new ArrayList<>();
+        for (Statement condition : conditions) {
+            compiled.add(Condition.compile(condition, schema));
+        }
+        return compiled;
+    }
+}
@@ -0,0 +1,270 @@
+package com.tamu.operator;
+
+import com.tamu.Statement;
+import com.tamu.buffer.BufferPool;
+import storageManager.MainMemory;
+import storageManager.Relation;
+import storageManager.SchemaManager;
+import storageManager.Tuple;
+
+import java.util.*;
+
+// Equi-join by hashing. open() pulls the whole build side into a hash table on its keys,
+// claiming a frame for every block of it, before the probe side is opened;
+// the probe side is then streamed through the table by next().
+// Past the frames it can claim, the build side is partitioned on a hash of its keys into a temp relation,
+// a partition for each available frame, except that the first partition stays in the table while it fits.
+// The probe side is then streamed: its tuples of the first partition are joined as they come,
+// and the others are partitioned alike, to be joined one pair of partitions at a time.
+// A build partition that still does not fit is partitioned again, with another hash, up to MAX_DEPTH times;
+// past that, its keys are too skewed to split and its table is only kept on the heap.
+public class HashJoin extends Join {
+    private final static int MAX_DEPTH = 3;
+
+    private int[] probeKeys;
+    private int[] buildKeys;
+    private String name;
+    private SchemaManager schemaManager;
+    private MainMemory memory;
+    private BufferPool bufferPool;
+    private int reserve;
+
+    private Map<List<Object>, List<Tuple>> table;
+    // the build tuple pulled when build() ran out of frames, not in the table
+    private Tuple tableOverflow;
+    private WorkFrames frames;
+    private Operator probe;
+    private Tuple probeTuple;
+    private List<Tuple> matches = Collections.emptyList();
+    private int position;
+    // the partitions whose probe side is being streamed, and the partitions of both sides not joined yet,
+    // the deepest last
+    private Partitions streaming;
+    private Deque<Partitions> partitions = new ArrayDeque<>();
+
+    // a build side and a probe side partitioned alike, joined from partition next on
+    private static class Partitions {
+        final Spill build;
+        final Spill probe;
+        final int depth;
+        // true if the first partition of the build side is in the table instead
+        final boolean resident;
+        int next;
+
+        Partitions(Spill build, Spill probe, int depth, boolean resident) {
+            this.build = build;
+            this.probe = probe;
+            this.depth = depth;
+            this.resident = resident;
+            this.next = resident ? 1 : 0;
+        }
+    }
+
+    // the keys are the names of the columns compared, in the same order on both sides;
+    // the partitions are written to temp relations named after the relation of the joined tuples;
+    // reserve is the number of frames left available for the scans
+    public HashJoin(Operator probe, Operator build, Relation relation, List<String> probeKeys, List<String> buildKeys,
+                    List<Statement> conditions, SchemaManager schemaManager, MainMemory memory, BufferPool bufferPool, int reserve) {
+        super(probe, build, relation, conditions);
+        this.name = relation.getRelationName();
+        this.schemaManager = schemaManager;
+        this.memory = memory;
+        this.bufferPool = bufferPool;
+        this.reserve = reserve;
+        this.frames = new WorkFrames(bufferPool, reserve);
+        this.probeKeys = Keys.getOffsets(probe.getColumnNames(), probeKeys);
+        this.buildKeys = Keys.getOffsets(build.getColumnNames(), buildKeys);
+    }
+
+    public void open() {
+        matches = Collections.emptyList();
+        position = 0;
+        probeTuple = null;
+        table = new HashMap<>();
+        right.open();
+        if (build(right)) {
+            right.close();
+            left.open();
+            probe = left;
+        } else {
+            partition(right, left, 0);
+        }
+    }
+
+    public Tuple next() {
+        while (true) {
+            while (position < matches.size()) {
+                Tuple tuple = join(probeTuple, matches.get(position++));
+                if (tuple != null) {
+                    return tuple;
+                }
+            }
+            probeTuple = probe == null ? null : probe.next();
+            if (probeTuple == null) {
+                matches = Collections.emptyList();
+                if ((streaming == null && partitions.isEmpty()) || !nextPartition()) {
+                    return null;
+                }
+                continue;
+            }
+            List<Object> key = Keys.getKey(probeTuple, probeKeys);
+            if (streaming != null) {
+                int partition = getPartition(key, streaming.depth, streaming.probe.getNumOfPartitions());
+                if (partition != 0 || !streaming.resident) {
+                    streaming.probe.add(partition, probeTuple);
+                    continue;
+                }
+            }
+            matches = table.getOrDefault(key, Collections.emptyList());
+            position = 0;
+        }
+    }
+
+    public void close() {
+        if (probe != null) {
+            probe.close();
+            probe = null;
+        }
+        if (streaming != null) {
+            partitions.push(streaming);
+            streaming = null;
+        }
+        while (!partitions.isEmpty()) {
+            Partitions pair = partitions.pop();
+            pair.build.clear();
+            pair.probe.clear();
+        }
+        frames.release();
+        table = null;
+    }
+
+    // pulls the tuples of the build input into the table, claiming a frame for every block of them;
+    // returns false if no more frame can be claimed, with the input still open
+    private boolean build(Operator input) {
+        int tuplesPerBlock = right.getSchema().getTuplesPerBlock();
+        int numOfTuples = 0;
+        for (Tuple tuple = input.next(); tuple != null; tuple = input.next()) {
+            if (numOfTuples++ % tuplesPerBlock == 0 && !frames.claim()) {
+                tableOverflow = tuple;
+                return false;
+            }
+            add(table, tuple);
+        }
+        return true;
+    }
+
+    // moves the table and the rest of the open build input to the partitions of a new spill,
+    // keeping the first partition in the table while it fits, closes the build input,
+    // and opens the probe input to be streamed by next()
+    private void partition(Operator buildInput, Operator probeInput, int depth) {
+        frames.release();
+        int numOfPartitions = Math.max(2, bufferPool.getNumOfAvailableFrames() - reserve);
+        Spill buildSpill = newSpill(buildInput, depth, "build", numOfPartitions);
+
+        List<Tuple> tuples = new ArrayList<>();
+        for (List<Tuple> equal : table.values()) {
+            tuples.addAll(equal);
+        }
+        tuples.add(tableOverflow);
+        tableOverflow = null;
+        table = new HashMap<>();
+
+        boolean resident = true;
+        int tuplesPerBlock = right.getSchema().getTuplesPerBlock();
+        int numOfResidentTuples = 0;
+        int next = 0;
+        for (Tuple tuple = tuples.get(next++); tuple != null;
+             tuple = next < tuples.size() ? tuples.get(next++) : buildInput.next()) {
+            int partition = getPartition(Keys.getKey(tuple, buildKeys), depth, numOfPartitions);
+            if (partition == 0 && resident && numOfResidentTuples++ % tuplesPerBlock == 0 && !frames.claim()) {
+                // the first partition does not fit either
+                for (List<Tuple> equal : table.values()) {
+                    for (Tuple residentTuple : equal) {
+                        buildSpill.add(0, residentTuple);
+                    }
+                }
+                table = new HashMap<>();
+                frames.release();
+                resident = false;
+            }
+            if (partition == 0 && resident) {
+                add(table, tuple);
+            } else {
+                buildSpill.add(partition, tuple);
+            }
+        }
+        buildInput.close();
+
+        probeInput.open();
+        probe = probeInput;
+        streaming = new Partitions(buildSpill, newSpill(probeInput, depth, "probe", numOfPartitions), depth, resident);
+    }
+
+    private Spill newSpill(Operator input, int depth, String side, int numOfPartitions) {
+        return new Spill("temp_" + side + depth + "_" + name, input.getSchema(), input.getColumnNames(), numOfPartitions,
+                schemaManager, memory, bufferPool);
+    }
+
+    // builds the table of the next pair of partitions with tuples on both sides, and opens its probe side;
+    // returns false if every pair is joined
+    private boolean nextPartition() {
+        if (probe != null) {
+            probe.close();
+            probe = null;
+        }
+        if (streaming != null) {
+            partitions.push(streaming);
+            streaming = null;
+        }
+        frames.release();
+        while (!partitions.isEmpty()) {
+            Partitions pair = partitions.peek();
+            if (pair.next == pair.build.getNumOfPartitions()) {
+                partitions.pop();
+                pair.build.clear();
+                pair.probe.clear();
+                continue;
+            }
+            int i = pair.next++;
+            if (pair.build.getNumOfBlocks(i) == 0 || pair.probe.getNumOfBlocks(i) == 0) {
+                continue;
+            }
+
+            table = new HashMap<>();
+            Operator buildInput = pair.build.scan(i);
+            buildInput.open();
+            if (!build(buildInput)) {
+                if (pair.depth + 1 < MAX_DEPTH) {
+                    partition(buildInput, pair.probe.scan(i), pair.depth + 1);
+                    return true;
+                }
+                // too skewed to split: the rest of the partition is kept on the heap
+                add(table, tableOverflow);
+                tableOverflow = null;
+                for (Tuple tuple = buildInput.next(); tuple != null; tuple = buildInput.next()) {
+                    add(table, tuple);
+                }
+            }
+            buildInput.close();
+            probe = pair.probe.scan(i);
+            probe.open();
+            return true;
+        }
+        return false;
+    }
+
+    private void add(Map<List<Object>, List<Tuple>> table, Tuple tuple) {
+        table.computeIfAbsent(Keys.getKey(tuple, buildKeys), k -> new ArrayList<>()).add(tuple);
+    }
+
+    // the partition of a key at a depth of partitioning; every depth mixes the hash differently
+    private static int getPartition(List<Object> key, int depth, int numOfPartitions) {
+        int hash = key.hashCode() + depth * 0x9E3779B9;
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, numOfPartitions);
+    }
+}
@@ -0,0 +1,72 @@
+package com.tamu.operator;
+
+import com.tamu.Statement;
+import storageManager.Relation;
+import storageManager.Tuple;
+
+import java.util.Collections;
+import java.util.List;
+
+// Equi-join by looking up the key of each outer tuple in an index of the inner relation.
+// The inner side is the lookup of the index, under the conditions of the inner relation,
+// and it is opened again for every outer tuple with the key of that tuple;
+// so only the index blocks of the keys and the blocks of their tuples are read,
+// never the whole inner relation. No work frame is claimed.
+// A null key matches nothing, so it is not looked up.
+public class IndexNestedLoopJoin extends Join {
+    private IndexScan lookup;
+    private int outerKey;
+
+    private Tuple outerTuple;
+    private boolean innerOpen;
+
+    // inner is the lookup, or an operator over it; outerKey is the name of the column of the outer side
+    // whose values are looked up, and conditions are all the conditions of the join
+    public IndexNestedLoopJoin(Operator outer, Operator inner, IndexScan lookup, Relation relation,
+                               String outerKey, List<Statement> conditions) {
+        super(outer, inner, relation, conditions);
+        this.lookup = lookup;
+        this.outerKey = Keys.getOffsets(outer.getColumnNames(), Collections.singletonList(outerKey))[0];
+    }
+
+    public void open() {
+        left.open();
+        outerTuple = null;
+        innerOpen = false;
+    }
+
+    public Tuple next() {
+        while (true) {
+            if (innerOpen) {
+                for (Tuple innerTuple = right.next(); innerTuple != null; innerTuple = right.next()) {
+                    Tuple tuple = join(outerTuple, innerTuple);
+                    if (tuple != null) {
+                        return tuple;
+                    }
+                }
+                right.close();
+                innerOpen = false;
+            }
+
+            outerTuple = left.next();
+            if (outerTuple == null) {
+                return null;
+            }
+            Object key = Keys.getKey(outerTuple, new int[]{outerKey}).get(0);
+            if (key != null) {
+                lookup.setValue(key);
+                right.open();
+                innerOpen = true;
+            }
+        }
+    }
+
+    public void close() {
+        if (innerOpen) {
+            right.close();
+            innerOpen = false;
+        }
+        left.close();
+        outerTuple = null;
+    }
+}
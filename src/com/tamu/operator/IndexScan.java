@@ -0,0 +1,108 @@
+package com.tamu.operator;
+
+import com.tamu.buffer.BufferPool;
+import com.tamu.index.Index;
+import storageManager.MainMemory;
+import storageManager.Relation;
+import storageManager.Schema;
+import storageManager.Tuple;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Returns the tuples of a relation whose keys in the index compare with a value by the operator,
+// with one block of the relation pinned at a time.
+// The tuple ids are sorted, so each block is read once, and the tuples come in the order
+// a TableScan returns them. They are looked up the first time the scan is opened only,
+// since the relation does not change while a query runs, or again after setValue().
+public class IndexScan implements Operator {
+    private String relationName;
+    private Relation relation;
+    private Index index;
+    private char operator;
+    private Object value;
+    private MainMemory memory;
+    private BufferPool bufferPool;
+
+    private List<Integer> tupleIds;
+    private int position;
+    private int blockIndex = -1;
+    private int frame = -1;
+
+    public IndexScan(String relationName, Relation relation, Index index, char operator, Object value,
+                     MainMemory memory, BufferPool bufferPool) {
+        this.relationName = relationName;
+        this.relation = relation;
+        this.index = index;
+        this.operator = operator;
+        this.value = value;
+        this.memory = memory;
+        this.bufferPool = bufferPool;
+    }
+
+    public void open() {
+        if (tupleIds == null) {
+            tupleIds = new ArrayList<>(index.lookup(operator, value));
+            Collections.sort(tupleIds);
+        }
+        position = 0;
+        // pin the first block now, so its frame is claimed
+        if (!tupleIds.isEmpty()) {
+            pin(tupleIds.get(0) / relation.getSchema().getTuplesPerBlock());
+        }
+    }
+
+    // looks up another value the next time the scan is opened, as an index nested-loop join does
+    public void setValue(Object value) {
+        this.value = value;
+        tupleIds = null;
+    }
+
+    public Tuple next() {
+        int tuplesPerBlock = relation.getSchema().getTuplesPerBlock();
+        while (position < tupleIds.size()) {
+            int tupleId = tupleIds.get(position++);
+            pin(tupleId / tuplesPerBlock);
+            List<Tuple> tuples = memory.getBlock(frame).getTuples();
+            int offset = tupleId % tuplesPerBlock;
+            if (offset < tuples.size() && !tuples.get(offset).isNull()) {
+                return tuples.get(offset);
+            }
+        }
+        return null;
+    }
+
+    public void close() {
+        unpin();
+    }
+
+    public Schema getSchema() {
+        return relation.getSchema();
+    }
+
+    public List<String> getColumnNames() {
+        List<String> columnNames = new ArrayList<>();
+        for (String fieldName : relation.getSchema().getFieldNames()) {
+            columnNames.add(relationName + "." + fieldName);
+        }
+        return columnNames;
+    }
+
+    // moves to the block, unless it is pinned already
+    private void pin(int block) {
+        if (block != blockIndex) {
+            unpin();
+            blockIndex = block;
+            frame = bufferPool.pin(relation, blockIndex);
+        }
+    }
+
+    private void unpin() {
+        if (frame != -1) {
+            bufferPool.unpin(frame, false);
+            frame = -1;
+            blockIndex = -1;
+        }
+    }
+}
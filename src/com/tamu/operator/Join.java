@@ -0,0 +1,62 @@
+package com.tamu.operator;
+
+import com.tamu.Condition;
+import com.tamu.Statement;
+import storageManager.Field;
+import storageManager.FieldType;
+import storageManager.Relation;
+import storageManager.Schema;
+import storageManager.Tuple;
+
+import java.util.List;
+
+// Base of the join operators. A joined tuple is a tuple of a temp relation whose fields
+// are the columns of the two sides that are needed above the join, named relation.field.
+// The join conditions that are not compared by the join itself are checked on the joined tuple.
+abstract class Join implements Operator {
+    protected Operator left;
+    protected Operator right;
+    private Relation relation;
+    private List<Condition> conditions;
+    // field i of a joined tuple is field sources[i] of the left tuple,
+    // or field ~sources[i] of the right tuple if it is negative
+    private int[] sources;
+
+    Join(Operator left, Operator right, Relation relation, List<Statement> conditions) {
+        this.left = left;
+        this.right = right;
+        this.relation = relation;
+        this.conditions = Filter.compile(conditions, relation.getSchema());
+
+        List<String> columnNames = getColumnNames();
+        List<String> leftColumnNames = left.getColumnNames();
+        List<String> rightColumnNames = right.getColumnNames();
+        sources = new int[columnNames.size()];
+        for (int i = 0; i < columnNames.size(); i++) {
+            int offset = leftColumnNames.indexOf(columnNames.get(i));
+            sources[i] = offset != -1 ? offset : ~rightColumnNames.indexOf(columnNames.get(i));
+        }
+    }
+
+    // returns the joined tuple, or null if it does not satisfy the conditions
+    protected Tuple join(Tuple leftTuple, Tuple rightTuple) {
+        Tuple tuple = relation.createTuple();
+        for (int i = 0; i < sources.length; i++) {
+            Field field = sources[i] >= 0 ? leftTuple.getField(sources[i]) : rightTuple.getField(~sources[i]);
+            if (field.type == FieldType.INT) {
+                tuple.setField(i, field.integer);
+            } else {
+                tuple.setField(i, field.str);
+            }
+        }
+        return Filter.satisfies(conditions, tuple) ? tuple : null;
+    }
+
+    public Schema getSchema() {
+        return relation.getSchema();
+    }
+
+    public List<String> getColumnNames() {
+        return relation.getSchema().getFieldNames();
+    }
+}
@@ -0,0 +1,51 @@
+package com.tamu.operator;
+
+import storageManager.Field;
+import storageManager.FieldType;
+import storageManager.Tuple;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// join, sort and duplicate keys: the values of some fields of a tuple
+class Keys {
+    private Keys() {
+    }
+
+    static List<Object> getKey(Tuple tuple, int[] offsets) {
+        List<Object> key = new ArrayList<>(offsets.length);
+        for (int offset : offsets) {
+            Field field = tuple.getField(offset);
+            if (field.type == FieldType.INT) {
+                key.add(field.integer);
+            } else {
+                key.add(field.str);
+            }
+        }
+        return key;
+    }
+
+    static int compare(List<Object> key1, List<Object> key2) {
+        for (int i = 0; i < key1.size(); i++) {
+            int compare;
+            if (key1.get(i) instanceof Integer) {
+                compare = Integer.compare((Integer) key1.get(i), (Integer) key2.get(i));
+            } else {
+                compare = ((String) key1.get(i)).compareTo((String) key2.get(i));
+            }
+            if (compare != 0) {
+                return compare;
+            }
+        }
+        return 0;
+    }
+
+    // the offsets of the columns in the column names of an operator
+    static int[] getOffsets(List<String> columnNames, List<String> columns) {
+        int[] offsets = new int[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            offsets[i] = columnNames.indexOf(columns.get(i));
+        }
+        return offsets;
+    }
+}
@@ -0,0 +1,43 @@
+package com.tamu.operator;
+
+import storageManager.Schema;
+import storageManager.Tuple;
+
+import java.util.List;
+
+// Returns the first tuples of its child, and stops pulling it after them
+public class Limit implements Operator {
+    private Operator child;
+    private int limit;
+    private int count;
+
+    public Limit(Operator child, int limit) {
+        this.child = child;
+        this.limit = limit;
+    }
+
+    public void open() {
+        child.open();
+        count = 0;
+    }
+
+    public Tuple next() {
+        if (count >= limit) {
+            return null;
+        }
+        count++;
+        return child.next();
+    }
+
+    public void close() {
+        child.close();
+    }
+
+    public Schema getSchema() {
+        return child.getSchema();
+    }
+
+    public List<String> getColumnNames() {
+        return child.getColumnNames();
+    }
+}
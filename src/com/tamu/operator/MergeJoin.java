@@ -0,0 +1,97 @@
+package com.tamu.operator;
+
+import com.tamu.Statement;
+import com.tamu.buffer.BufferPool;
+import storageManager.MainMemory;
+import storageManager.Relation;
+import storageManager.SchemaManager;
+import storageManager.Tuple;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Sort-merge equi-join, for sides too large to hash. Both sides are sorted on their keys,
+// the left one first and keeping at most half of the frames for its merge, so the right
+// one can be sorted and merged after it. The sorted sides are then merged by next(),
+// with the left tuples of one key held in memory while the right tuples of that key pass.
+public class MergeJoin extends Join {
+    private int[] leftKeys;
+    private int[] rightKeys;
+    private Sort leftSort;
+    private Sort rightSort;
+
+    private Tuple leftTuple;
+    private Tuple rightTuple;
+    // the left tuples of the key being joined, and the right tuple they are joined with
+    private List<Tuple> group = new ArrayList<>();
+    private List<Object> groupKey;
+    private Tuple groupTuple;
+    private int position;
+
+    // the keys are the names of the columns compared, in the same order on both sides;
+    // the sorted runs are written to temp relations named after the two names;
+    // reserve is the number of frames left available for the scans
+    public MergeJoin(Operator left, Operator right, Relation relation, List<String> leftKeys, List<String> rightKeys,
+                     List<Statement> conditions, String leftName, String rightName,
+                     SchemaManager schemaManager, MainMemory memory, BufferPool bufferPool, int reserve) {
+        super(left, right, relation, conditions);
+        this.leftKeys = Keys.getOffsets(left.getColumnNames(), leftKeys);
+        this.rightKeys = Keys.getOffsets(right.getColumnNames(), rightKeys);
+        leftSort = new Sort(left, this.leftKeys, leftName, schemaManager, memory, bufferPool, reserve, 0.5);
+        rightSort = new Sort(right, this.rightKeys, rightName, schemaManager, memory, bufferPool, reserve, 1);
+    }
+
+    public void open() {
+        leftSort.open();
+        rightSort.open();
+        leftTuple = leftSort.next();
+        rightTuple = rightSort.next();
+        groupTuple = null;
+    }
+
+    public Tuple next() {
+        while (true) {
+            if (groupTuple != null) {
+                while (position < group.size()) {
+                    Tuple tuple = join(group.get(position++), groupTuple);
+                    if (tuple != null) {
+                        return tuple;
+                    }
+                }
+                // the next right tuple of the same key
+                rightTuple = rightSort.next();
+                position = 0;
+                if (rightTuple != null && Keys.compare(groupKey, Keys.getKey(rightTuple, rightKeys)) == 0) {
+                    groupTuple = rightTuple;
+                    continue;
+                }
+                groupTuple = null;
+            }
+
+            if (leftTuple == null || rightTuple == null) {
+                return null;
+            }
+            int compare = Keys.compare(Keys.getKey(leftTuple, leftKeys), Keys.getKey(rightTuple, rightKeys));
+            if (compare < 0) {
+                leftTuple = leftSort.next();
+            } else if (compare > 0) {
+                rightTuple = rightSort.next();
+            } else {
+                groupKey = Keys.getKey(leftTuple, leftKeys);
+                group = new ArrayList<>();
+                while (leftTuple != null && Keys.compare(groupKey, Keys.getKey(leftTuple, leftKeys)) == 0) {
+                    group.add(leftTuple);
+                    leftTuple = leftSort.next();
+                }
+                groupTuple = rightTuple;
+                position = 0;
+            }
+        }
+    }
+
+    public void close() {
+        leftSort.close();
+        rightSort.close();
+        group = new ArrayList<>();
+    }
+}
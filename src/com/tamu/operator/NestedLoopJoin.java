@@ -0,0 +1,86 @@
+package com.tamu.operator;
+
+import com.tamu.Statement;
+import com.tamu.buffer.BufferPool;
+import storageManager.Relation;
+import storageManager.Tuple;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Block nested-loop join. open() claims up to numOfChunkFrames frames, and the outer side is read
+// in chunks of as many blocks, or of one block on the heap if no frame is free. The inner side
+// is scanned once for every chunk, so it is opened again for each of them.
+// With a chunk large enough for the whole outer side, the inner side is scanned once.
+public class NestedLoopJoin extends Join {
+    private int numOfChunkFrames;
+
+    private WorkFrames frames;
+    private int capacity;
+    private List<Tuple> chunk = new ArrayList<>();
+    private Tuple innerTuple;
+    private boolean innerOpen;
+    private int position;
+
+    // reserve is the number of frames left available for the scans
+    public NestedLoopJoin(Operator outer, Operator inner, Relation relation, List<Statement> conditions,
+                          BufferPool bufferPool, int numOfChunkFrames, int reserve) {
+        super(outer, inner, relation, conditions);
+        this.numOfChunkFrames = numOfChunkFrames;
+        this.frames = new WorkFrames(bufferPool, reserve);
+    }
+
+    public void open() {
+        left.open();
+        while (frames.size() < numOfChunkFrames && frames.claim()) {
+        }
+        capacity = Math.max(1, frames.size()) * left.getSchema().getTuplesPerBlock();
+        innerTuple = null;
+        nextChunk();
+    }
+
+    public Tuple next() {
+        while (true) {
+            if (innerTuple != null) {
+                while (position < chunk.size()) {
+                    Tuple tuple = join(chunk.get(position++), innerTuple);
+                    if (tuple != null) {
+                        return tuple;
+                    }
+                }
+            }
+            if (!innerOpen) {
+                return null;
+            }
+            innerTuple = right.next();
+            position = 0;
+            if (innerTuple == null) {
+                right.close();
+                innerOpen = false;
+                nextChunk();
+            }
+        }
+    }
+
+    public void close() {
+        if (innerOpen) {
+            right.close();
+            innerOpen = false;
+        }
+        left.close();
+        frames.release();
+        chunk = new ArrayList<>();
+    }
+
+    // reads the next chunk of the outer side, and opens the inner side for it
+    private void nextChunk() {
+        chunk = new ArrayList<>();
+        for (Tuple tuple = left.next(); tuple != null; tuple = chunk.size() < capacity ? left.next() : null) {
+            chunk.add(tuple);
+        }
+        if (!chunk.isEmpty()) {
+            right.open();
+            innerOpen = true;
+        }
+    }
+}
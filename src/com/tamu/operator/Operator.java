@@ -0,0 +1,47 @@
+package com.tamu.operator;
+
+import storageManager.Schema;
+import storageManager.Tuple;
+
+import java.util.List;
+
+/* A physical operator of a query plan, pulled one tuple at a time.
+ * Usage: open() the operator, call next() until it returns null,
+ *          and close() it to unpin and release its frames.
+ *        An operator claims the frames it keeps in open(), so the
+ *          operators opened after it see what is left.
+ *        Tuples may also be pulled a batch at a time with nextBatch(),
+ *          which a scan fills straight from its blocks.
+ *        An operator may be opened again after it is closed, e.g. the
+ *          inner side of a nested-loop join is scanned once per chunk.
+ */
+public interface Operator {
+    void open();
+
+    // returns the next tuple, or null after the last one
+    Tuple next();
+
+    // returns the next batch of tuples, or null after the last one,
+    //   with the fields at the offsets copied into the vectors of the batch;
+    //   the batch may be reused by the next call.
+    // next() and nextBatch() may be mixed, each returns the tuples the other has not.
+    default Batch nextBatch(int[] offsets) {
+        Batch batch = new Batch(getSchema(), offsets);
+        while (!batch.isFull()) {
+            Tuple tuple = next();
+            if (tuple == null) {
+                break;
+            }
+            batch.add(tuple);
+        }
+        return batch.size == 0 ? null : batch;
+    }
+
+    void close();
+
+    // the schema of the tuples returned by next()
+    Schema getSchema();
+
+    // the name of each field of the tuples, as relation.field, in the order of the fields
+    List<String> getColumnNames();
+}
@@ -0,0 +1,70 @@
+package com.tamu.operator;
+
+import com.tamu.Projection;
+import com.tamu.Statement;
+import storageManager.Field;
+import storageManager.Schema;
+import storageManager.Tuple;
+
+import java.util.Collections;
+import java.util.List;
+
+// The root of a plan: returns the tuples of its child that satisfy its conditions, and picks
+// the selected columns out of them with getFields(), so no new tuple is built for them.
+// The conditions and the selection are one Projection, generated for the shape of the query.
+public class Project implements Operator {
+    private Operator child;
+    private List<String> fieldNames;
+    private Projection projection;
+    // the selected columns of the tuple returned last
+    private List<Field> fields;
+
+    public Project(Operator child, List<String> fieldNames, List<String> columns) {
+        this(child, fieldNames, columns, Collections.emptyList());
+    }
+
+    // fieldNames are the names of the selected columns in the result,
+    // columns the names of the columns of the child they are read from,
+    // conditions the ones to check on the tuples of the child
+    public Project(Operator child, List<String> fieldNames, List<String> columns, List<Statement> conditions) {
+        this.child = child;
+        this.fieldNames = fieldNames;
+        this.projection = Projection.compile(conditions, child.getSchema(), Keys.getOffsets(child.getColumnNames(), columns));
+    }
+
+    public void open() {
+        child.open();
+    }
+
+    public Tuple next() {
+        for (Tuple tuple = child.next(); tuple != null; tuple = child.next()) {
+            fields = projection.apply(tuple);
+            if (fields != null) {
+                return tuple;
+            }
+        }
+        return null;
+    }
+
+    public void close() {
+        child.close();
+        fields = null;
+    }
+
+    public Schema getSchema() {
+        return child.getSchema();
+    }
+
+    public List<String> getColumnNames() {
+        return child.getColumnNames();
+    }
+
+    public List<String> getFieldNames() {
+        return fieldNames;
+    }
+
+    // the selected columns of the tuple returned last by next()
+    public List<Field> getFields() {
+        return fields;
+    }
+}
@@ -0,0 +1,132 @@
+package com.tamu.operator;
+
+import com.tamu.buffer.BufferPool;
+import storageManager.MainMemory;
+import storageManager.Schema;
+import storageManager.SchemaManager;
+import storageManager.Tuple;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Sorts the tuples of its child. open() pulls all of them: they are sorted in the frames
+// it claims if they fit, and are written to sorted runs otherwise. Without a frame to claim,
+// they are sorted on the heap. The runs are merged
+// down to a few, and the last merge is done lazily by next().
+// Tuples that compare equal keep their order.
+public class Sort implements Operator {
+    private Operator child;
+    private Comparator<Tuple> comparator;
+    private String name;
+    private SchemaManager schemaManager;
+    private MainMemory memory;
+    private BufferPool bufferPool;
+    // the number of frames left available for the scans
+    private int reserve;
+    // the fraction of the available frames the last merge may hold,
+    // so that a sort opened after this one still has frames to work with
+    private double share;
+
+    private ExternalSort sort;
+    // the sorted tuples, if they are sorted in memory
+    private List<Tuple> tuples;
+    private int position;
+    private ExternalSort.Merger merger;
+
+    // sorts on the columns, in order; the runs are written to temp relations named after name;
+    // reserve is the number of frames left available for the scans
+    public Sort(Operator child, List<String> columns, String name, SchemaManager schemaManager, MainMemory memory, BufferPool bufferPool, int reserve) {
+        this(child, Keys.getOffsets(child.getColumnNames(), columns), name, schemaManager, memory, bufferPool, reserve, 1);
+    }
+
+    Sort(Operator child, int[] offsets, String name, SchemaManager schemaManager, MainMemory memory, BufferPool bufferPool,
+         int reserve, double share) {
+        this.child = child;
+        this.comparator = (t1, t2) -> Keys.compare(Keys.getKey(t1, offsets), Keys.getKey(t2, offsets));
+        this.name = name;
+        this.schemaManager = schemaManager;
+        this.memory = memory;
+        this.bufferPool = bufferPool;
+        this.reserve = reserve;
+        this.share = share;
+    }
+
+    public void open() {
+        child.open();
+        sort = new ExternalSort(schemaManager, memory, bufferPool, name, child.getSchema(), comparator);
+        int capacity = sort.allocateWorkFrames(reserve);
+
+        // phase 1
+        ExternalSort.Runs runs = null;
+        ArrayList<Tuple> buffer = new ArrayList<>();
+        for (Tuple tuple = child.next(); tuple != null; tuple = child.next()) {
+            buffer.add(tuple);
+            if (buffer.size() == capacity) {
+                if (runs == null) {
+                    runs = sort.newRuns();
+                }
+                sort.addRun(runs, buffer);
+                buffer = new ArrayList<>();
+            }
+        }
+        child.close();
+
+        if (runs == null) {
+            // the work frames are kept until close(), since the tuples take them
+            buffer.sort(comparator);
+            tuples = buffer;
+            position = 0;
+            return;
+        }
+        sort.addRun(runs, buffer);
+        sort.releaseWorkFrames();
+
+        while (runs.size() > getMaxNumOfRuns()) {
+            ExternalSort.Runs newRuns = sort.mergePass(runs);
+            if (newRuns == null) {
+                break;
+            }
+            runs = newRuns;
+        }
+        if (runs.size() > getMaxNumOfRuns()) {
+            // not enough memory to merge
+            tuples = sort.readAll(runs);
+            position = 0;
+        } else {
+            // phase 2
+            merger = sort.merge(runs);
+        }
+    }
+
+    public Tuple next() {
+        if (tuples != null) {
+            return position < tuples.size() ? tuples.get(position++) : null;
+        }
+        return merger.next();
+    }
+
+    public void close() {
+        if (merger != null) {
+            merger.close();
+            merger = null;
+        }
+        if (tuples != null) {
+            sort.releaseWorkFrames();
+            tuples = null;
+        }
+    }
+
+    public Schema getSchema() {
+        return child.getSchema();
+    }
+
+    public List<String> getColumnNames() {
+        return child.getColumnNames();
+    }
+
+    // the number of runs the last merge may read at once, one frame for each
+    private int getMaxNumOfRuns() {
+        return Math.max(1, (int) ((bufferPool.getNumOfAvailableFrames() - reserve) * share));
+    }
+}
@@ -0,0 +1,148 @@
+package com.tamu.operator;
+
+import com.tamu.buffer.BufferPool;
+import com.tamu.manipulation.Drop;
+import storageManager.MainMemory;
+import storageManager.Relation;
+import storageManager.Schema;
+import storageManager.SchemaManager;
+import storageManager.Tuple;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Tuples an operator cannot keep in its frames, written out to the partitions of a temp relation
+// and read back a partition at a time. The blocks of a partition are wherever they were appended,
+// so their indexes are kept in memory. The last block of a partition is only pinned while a tuple is
+// appended to it, so a spill holds no frame; with no more partitions than available frames,
+// the last blocks stay buffered until they are full.
+class Spill {
+    private MainMemory memory;
+    private BufferPool bufferPool;
+    private Relation relation;
+    private List<String> columnNames;
+
+    private List<List<Integer>> blocks = new ArrayList<>();
+    // the number of tuples in the last block of each partition
+    private int[] counts;
+    private int numOfBlocks;
+
+    // an empty temp relation named name for tuples of the schema, split into numOfPartitions partitions;
+    // the tuples read back are named by columnNames
+    Spill(String name, Schema schema, List<String> columnNames, int numOfPartitions,
+          SchemaManager schemaManager, MainMemory memory, BufferPool bufferPool) {
+        this.memory = memory;
+        this.bufferPool = bufferPool;
+        this.relation = getTempRelation(schemaManager, bufferPool, name, schema);
+        this.columnNames = columnNames;
+        this.counts = new int[numOfPartitions];
+        for (int i = 0; i < numOfPartitions; i++) {
+            blocks.add(new ArrayList<>());
+        }
+    }
+
+    int getNumOfPartitions() {
+        return counts.length;
+    }
+
+    int getNumOfBlocks(int partition) {
+        return blocks.get(partition).size();
+    }
+
+    // appends the tuple to the last block of the partition, starting a new block if it is full
+    void add(int partition, Tuple tuple) {
+        List<Integer> partitionBlocks = blocks.get(partition);
+        int frame;
+        if (partitionBlocks.isEmpty() || counts[partition] == relation.getSchema().getTuplesPerBlock()) {
+            frame = bufferPool.pinNew(relation, numOfBlocks);
+            partitionBlocks.add(numOfBlocks++);
+            counts[partition] = 0;
+        } else {
+            frame = bufferPool.pin(relation, partitionBlocks.get(partitionBlocks.size() - 1));
+        }
+        // by its slot, since a block written back after a later one is padded with invalid tuples on the disk
+        memory.getBlock(frame).setTuple(counts[partition], tuple);
+        counts[partition]++;
+        bufferPool.unpin(frame, true);
+    }
+
+    // the tuples of a partition, with one block of it pinned at a time
+    Operator scan(int partition) {
+        return new PartitionScan(blocks.get(partition));
+    }
+
+    // deletes every block of the temp relation
+    void clear() {
+        bufferPool.deleteBlocks(relation, 0);
+        for (List<Integer> partition : blocks) {
+            partition.clear();
+        }
+        numOfBlocks = 0;
+    }
+
+    // returns an empty temp relation with the schema;
+    // an existing one is emptied instead of dropped, since a relation slot is never reused
+    static Relation getTempRelation(SchemaManager schemaManager, BufferPool bufferPool, String tempRelationName, Schema schema) {
+        if (schemaManager.relationExists(tempRelationName)) {
+            Relation tempRelation = schemaManager.getRelation(tempRelationName);
+            if (tempRelation.getSchema().equals(schema)) {
+                bufferPool.deleteBlocks(tempRelation, 0);
+                return tempRelation;
+            }
+            Drop drop = new Drop();
+            drop.execute(schemaManager, bufferPool, tempRelationName);
+        }
+        return schemaManager.createRelation(tempRelationName, schema);
+    }
+
+    private class PartitionScan implements Operator {
+        private List<Integer> partition;
+        private int next;
+        private int frame = -1;
+        private List<Tuple> tuples = new ArrayList<>();
+        private int position;
+
+        PartitionScan(List<Integer> partition) {
+            this.partition = partition;
+        }
+
+        public void open() {
+            next = 0;
+            tuples = new ArrayList<>();
+            position = 0;
+        }
+
+        public Tuple next() {
+            while (true) {
+                while (position < tuples.size()) {
+                    Tuple tuple = tuples.get(position++);
+                    if (!tuple.isNull()) {
+                        return tuple;
+                    }
+                }
+                close();
+                if (next >= partition.size()) {
+                    return null;
+                }
+                frame = bufferPool.pin(relation, partition.get(next++));
+                tuples = memory.getBlock(frame).getTuples();
+                position = 0;
+            }
+        }
+
+        public void close() {
+            if (frame != -1) {
+                bufferPool.unpin(frame, false);
+                frame = -1;
+            }
+        }
+
+        public Schema getSchema() {
+            return relation.getSchema();
+        }
+
+        public List<String> getColumnNames() {
+            return columnNames;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.tamu.operator;
+
+import com.tamu.buffer.BufferPool;
+import storageManager.MainMemory;
+import storageManager.Relation;
+import storageManager.Schema;
+import storageManager.Tuple;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Returns the valid tuples of a relation, with one block of it pinned at a time.
+// The blocks are read ahead, since they are read in order.
+public class TableScan implements Operator {
+    private String relationName;
+    private Relation relation;
+    private MainMemory memory;
+    private BufferPool bufferPool;
+
+    private int numOfBlocks;
+    private int nextBlock;
+    private int frame = -1;
+    private List<Tuple> tuples = new ArrayList<>();
+    private int position;
+
+    private Batch batch;
+    // the most tuples of the next batch: it starts at a block and doubles up to a full batch,
+    // so a query that stops early does not read far ahead
+    private int batchSize;
+
+    public TableScan(String relationName, Relation relation, MainMemory memory, BufferPool bufferPool) {
+        this.relationName = relationName;
+        this.relation = relation;
+        this.memory = memory;
+        this.bufferPool = bufferPool;
+    }
+
+    public void open() {
+        numOfBlocks = bufferPool.getNumOfBlocks(relation);
+        nextBlock = 0;
+        batchSize = relation.getSchema().getTuplesPerBlock();
+        // pin the first block now, so its frame is claimed
+        nextBlock();
+    }
+
+    public Tuple next() {
+        while (true) {
+            while (position < tuples.size()) {
+                Tuple tuple = tuples.get(position++);
+                if (!tuple.isNull()) {
+                    return tuple;
+                }
+            }
+            if (!nextBlock()) {
+                return null;
+            }
+        }
+    }
+
+    // fills the batch with whole blocks, read column by column; only one block is pinned at a time
+    public Batch nextBatch(int[] offsets) {
+        if (batch == null || !batch.hasOffsets(offsets)) {
+            batch = new Batch(relation.getSchema(), offsets);
+        }
+        batch.clear();
+        int tuplesPerBlock = relation.getSchema().getTuplesPerBlock();
+        do {
+            if (position == 0 && frame != -1) {
+                batch.addBlock(memory.getBlock(frame), tuples);
+            } else {
+                // the rest of a block partly returned by next()
+                for (; position < tuples.size(); position++) {
+                    if (!tuples.get(position).isNull()) {
+                        batch.add(tuples.get(position));
+                    }
+                }
+            }
+            position = tuples.size();
+        } while (batch.size + tuplesPerBlock <= batchSize && nextBlock());
+        batchSize = Math.min(Batch.CAPACITY, batchSize * 2);
+        return batch.size == 0 ? null : batch;
+    }
+
+    public void close() {
+        unpin();
+        tuples = new ArrayList<>();
+        position = 0;
+    }
+
+    public Schema getSchema() {
+        return relation.getSchema();
+    }
+
+    public List<String> getColumnNames() {
+        List<String> columnNames = new ArrayList<>();
+        for (String fieldName : relation.getSchema().getFieldNames()) {
+            columnNames.add(relationName + "." + fieldName);
+        }
+        return columnNames;
+    }
+
+    public String getRelationName() {
+        return relationName;
+    }
+
+    // moves to the next block; returns false after the last one
+    private boolean nextBlock() {
+        unpin();
+        tuples = new ArrayList<>();
+        position = 0;
+        if (nextBlock >= numOfBlocks) {
+            return false;
+        }
+        frame = bufferPool.pinAhead(relation, nextBlock++, numOfBlocks);
+        tuples = memory.getBlock(frame).getTuples();
+        return true;
+    }
+
+    private void unpin() {
+        if (frame != -1) {
+            bufferPool.unpin(frame, false);
+            frame = -1;
+        }
+    }
+}
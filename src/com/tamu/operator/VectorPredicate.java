@@ -0,0 +1,310 @@
+package com.tamu.operator;
+
+import com.tamu.Statement;
+import storageManager.FieldType;
+import storageManager.Schema;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// A condition evaluated over a whole batch: filter() narrows the selection of the batch
+// to the rows that satisfy it, in a loop over the column vectors.
+// Only comparisons of columns, constants and INT arithmetic are compiled, as evaluateBoolean()
+// in Expression would evaluate them; compile() returns null for any other condition.
+abstract class VectorPredicate {
+    abstract void filter(Batch batch);
+
+    // compiles a comparison on the tuples of the schema, adding the offsets of the columns it reads
+    static VectorPredicate compile(Statement condition, Schema schema, Set<Integer> offsets) {
+        String operator = condition.getAttribute();
+        if (!operator.equals("=") && !operator.equals("<") && !operator.equals(">")) {
+            return null;
+        }
+        Statement left = condition.getLeft();
+        Statement right = condition.getRight();
+        if (isConstant(left) && !isConstant(right)) {
+            // 10 < exam is exam > 10
+            Statement column = right;
+            right = left;
+            left = column;
+            operator = operator.equals("<") ? ">" : operator.equals(">") ? "<" : operator;
+        }
+
+        // the offsets are only added once the whole comparison is compiled
+        Set<Integer> used = new HashSet<>();
+        IntOperand intLeft = compileInt(left, schema, used);
+        IntOperand intRight = compileInt(right, schema, used);
+        if (intLeft != null && intRight != null) {
+            offsets.addAll(used);
+            return new IntComparison(operator.charAt(0), intLeft, intRight);
+        }
+        if (!operator.equals("=")) {
+            return null;
+        }
+        int column = getOffset(left, schema, FieldType.STR20);
+        if (column == -1) {
+            return null;
+        }
+        if (right.getAttribute().equals("STR20")) {
+            offsets.add(column);
+            return new StrEquality(column, -1, right.getLeafAttribute());
+        }
+        int other = getOffset(right, schema, FieldType.STR20);
+        if (other == -1) {
+            return null;
+        }
+        offsets.add(column);
+        offsets.add(other);
+        return new StrEquality(column, other, null);
+    }
+
+    private static boolean isConstant(Statement operand) {
+        return operand.getAttribute().equals("INT") || operand.getAttribute().equals("STR20");
+    }
+
+    private static IntOperand compileInt(Statement operand, Schema schema, Set<Integer> offsets) {
+        switch (operand.getAttribute()) {
+            case "INT":
+                try {
+                    return new IntConstant(Integer.parseInt(operand.getLeafAttribute()));
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            case "COL_ID":
+                int offset = getOffset(operand, schema, FieldType.INT);
+                if (offset == -1) {
+                    return null;
+                }
+                offsets.add(offset);
+                return new IntColumn(offset);
+            case "+":
+            case "-":
+            case "*":
+                IntOperand left = compileInt(operand.getLeft(), schema, offsets);
+                IntOperand right = compileInt(operand.getRight(), schema, offsets);
+                if (left == null || right == null) {
+                    return null;
+                }
+                return new IntArithmetic(operand.getAttribute().charAt(0), left, right);
+            default:
+                return null;
+        }
+    }
+
+    // the offset of a COL_ID of the type in the schema, found as Expression finds it,
+    // or -1 if it is not such a column
+    private static int getOffset(Statement operand, Schema schema, FieldType type) {
+        if (!operand.getAttribute().equals("COL_ID")) {
+            return -1;
+        }
+        List<String> fieldNames = schema.getFieldNames();
+        String found = null;
+        if (operand.getSize() == 2) {
+            String fieldName = operand.getRightAttribute();
+            String qualified = operand.getLeftAttribute() + "." + fieldName;
+            found = fieldNames.contains(qualified) ? qualified : fieldNames.contains(fieldName) ? fieldName : null;
+        } else if (operand.getSize() == 1) {
+            String fieldName = operand.getLeafAttribute();
+            if (fieldNames.contains(fieldName)) {
+                found = fieldName;
+            } else {
+                for (String name : fieldNames) {
+                    if (name.endsWith("." + fieldName)) {
+                        if (found != null) {
+                            return -1;
+                        }
+                        found = name;
+                    }
+                }
+            }
+        }
+        if (found == null || schema.getFieldType(found) != type) {
+            return -1;
+        }
+        return fieldNames.indexOf(found);
+    }
+
+    // an INT operand: evaluate() returns its value for each selected row, indexed by row
+    private static abstract class IntOperand {
+        abstract int[] evaluate(Batch batch);
+    }
+
+    private static class IntColumn extends IntOperand {
+        private int offset;
+
+        IntColumn(int offset) {
+            this.offset = offset;
+        }
+
+        int[] evaluate(Batch batch) {
+            return batch.ints[offset];
+        }
+    }
+
+    private static class IntConstant extends IntOperand {
+        private int value;
+        private int[] values;
+
+        IntConstant(int value) {
+            this.value = value;
+        }
+
+        int[] evaluate(Batch batch) {
+            if (values == null) {
+                values = new int[Batch.CAPACITY];
+                Arrays.fill(values, value);
+            }
+            return values;
+        }
+    }
+
+    private static class IntArithmetic extends IntOperand {
+        private char operator;
+        private IntOperand left;
+        private IntOperand right;
+        private int[] values = new int[Batch.CAPACITY];
+
+        IntArithmetic(char operator, IntOperand left, IntOperand right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        int[] evaluate(Batch batch) {
+            int[] l = left.evaluate(batch);
+            int[] r = right.evaluate(batch);
+            int[] selection = batch.selection;
+            int n = batch.numOfSelected;
+            switch (operator) {
+                case '+':
+                    for (int i = 0; i < n; i++) {
+                        int row = selection[i];
+                        values[row] = l[row] + r[row];
+                    }
+                    break;
+                case '-':
+                    for (int i = 0; i < n; i++) {
+                        int row = selection[i];
+                        values[row] = l[row] - r[row];
+                    }
+                    break;
+                default:
+                    for (int i = 0; i < n; i++) {
+                        int row = selection[i];
+                        values[row] = l[row] * r[row];
+                    }
+                    break;
+            }
+            return values;
+        }
+    }
+
+    // a comparison of INT operands; a constant on the right is compared without a vector
+    private static class IntComparison extends VectorPredicate {
+        private char operator;
+        private IntOperand left;
+        private IntOperand right;
+
+        IntComparison(char operator, IntOperand left, IntOperand right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        void filter(Batch batch) {
+            int[] l = left.evaluate(batch);
+            int[] selection = batch.selection;
+            int n = batch.numOfSelected;
+            int selected = 0;
+            if (right instanceof IntConstant) {
+                int value = ((IntConstant) right).value;
+                switch (operator) {
+                    case '=':
+                        for (int i = 0; i < n; i++) {
+                            int row = selection[i];
+                            if (l[row] == value) {
+                                selection[selected++] = row;
+                            }
+                        }
+                        break;
+                    case '<':
+                        for (int i = 0; i < n; i++) {
+                            int row = selection[i];
+                            if (l[row] < value) {
+                                selection[selected++] = row;
+                            }
+                        }
+                        break;
+                    default:
+                        for (int i = 0; i < n; i++) {
+                            int row = selection[i];
+                            if (l[row] > value) {
+                                selection[selected++] = row;
+                            }
+                        }
+                        break;
+                }
+            } else {
+                int[] r = right.evaluate(batch);
+                switch (operator) {
+                    case '=':
+                        for (int i = 0; i < n; i++) {
+                            int row = selection[i];
+                            if (l[row] == r[row]) {
+                                selection[selected++] = row;
+                            }
+                        }
+                        break;
+                    case '<':
+                        for (int i = 0; i < n; i++) {
+                            int row = selection[i];
+                            if (l[row] < r[row]) {
+                                selection[selected++] = row;
+                            }
+                        }
+                        break;
+                    default:
+                        for (int i = 0; i < n; i++) {
+                            int row = selection[i];
+                            if (l[row] > r[row]) {
+                                selection[selected++] = row;
+                            }
+                        }
+                        break;
+                }
+            }
+            batch.numOfSelected = selected;
+        }
+    }
+
+    // a STR20 column equal to another, or to a constant if other is -1; a null never matches
+    private static class StrEquality extends VectorPredicate {
+        private int offset;
+        private int other;
+        private String value;
+
+        StrEquality(int offset, int other, String value) {
+            this.offset = offset;
+            this.other = other;
+            this.value = value;
+        }
+
+        void filter(Batch batch) {
+            String[] l = batch.strings[offset];
+            String[] r = other == -1 ? null : batch.strings[other];
+            int[] selection = batch.selection;
+            int n = batch.numOfSelected;
+            int selected = 0;
+            for (int i = 0; i < n; i++) {
+                int row = selection[i];
+                String str = l[row];
+                if (str != null && str.equals(r == null ? value : r[row])) {
+                    selection[selected++] = row;
+                }
+            }
+            batch.numOfSelected = selected;
+        }
+    }
+}
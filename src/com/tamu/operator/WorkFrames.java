@@ -0,0 +1,43 @@
+package com.tamu.operator;
+
+import com.tamu.buffer.BufferPool;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Work frames claimed by an operator one at a time. Some frames are always left available,
+// so the scans of the plan can still pin their blocks while the operator holds its frames.
+class WorkFrames {
+    private BufferPool bufferPool;
+    private int reserve;
+    private List<Integer> frames = new ArrayList<>();
+
+    WorkFrames(BufferPool bufferPool, int reserve) {
+        this.bufferPool = bufferPool;
+        this.reserve = reserve;
+    }
+
+    // returns false if no more frame can be claimed
+    boolean claim() {
+        if (bufferPool.getNumOfAvailableFrames() <= reserve) {
+            return false;
+        }
+        int frame = bufferPool.allocate();
+        if (frame == -1) {
+            return false;
+        }
+        frames.add(frame);
+        return true;
+    }
+
+    int size() {
+        return frames.size();
+    }
+
+    void release() {
+        for (int frame : frames) {
+            bufferPool.release(frame);
+        }
+        frames.clear();
+    }
+}
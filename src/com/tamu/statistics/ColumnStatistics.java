@@ -0,0 +1,239 @@
+package com.tamu.statistics;
+
+import storageManager.Field;
+import storageManager.FieldType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/* Statistics of a column: the number of distinct values V(R,a),
+ *   the min and max values, and an equi-depth histogram.
+ * V(R,a) is estimated from the SKETCH_SIZE smallest hashes of the values
+ *   (a k-minimum-values sketch), so it is kept up to date as values are added.
+ *   A removed value cannot be taken out of the sketch, so the estimate
+ *   is only capped by the number of tuples until the next ANALYZE.
+ * The histogram is built by ANALYZE, from a uniform sample of SAMPLE_SIZE values
+ *   (reservoir sampling) scaled to the number of tuples. Values added or removed later change
+ *   the count of their bucket, so the buckets drift from equal depth.
+ */
+public class ColumnStatistics {
+    private final static int SKETCH_SIZE = 256;
+    private final static int NUM_OF_BUCKETS = 16;
+    private final static int SAMPLE_SIZE = 4096;
+
+    private FieldType type;
+    private TreeSet<Long> sketch = new TreeSet<>();
+    // null before the first value
+    private Object min;
+    private Object max;
+    // bucket i holds the values after bounds[i - 1] up to bounds[i]; null before ANALYZE
+    private List<Object> bounds;
+    private long[] counts;
+    // the values sampled while ANALYZE scans the relation; null otherwise
+    private List<Object> sample;
+    private long numOfSampledValues;
+    private Random random;
+
+    ColumnStatistics(FieldType type) {
+        this.type = type;
+    }
+
+    void add(Field field) {
+        Object value = getValue(field);
+        long hash = hash(value);
+        if (sketch.size() < SKETCH_SIZE) {
+            sketch.add(hash);
+        } else if (hash < sketch.last() && sketch.add(hash)) {
+            sketch.pollLast();
+        }
+
+        if (min == null || compare(value, min) < 0) {
+            min = value;
+        }
+        if (max == null || compare(value, max) > 0) {
+            max = value;
+        }
+
+        if (sample != null) {
+            numOfSampledValues++;
+            if (sample.size() < SAMPLE_SIZE) {
+                sample.add(value);
+            } else {
+                long replaced = (long) (random.nextDouble() * numOfSampledValues);
+                if (replaced < SAMPLE_SIZE) {
+                    sample.set((int) replaced, value);
+                }
+            }
+        }
+
+        if (bounds != null) {
+            int bucket = getBucket(value);
+            if (bucket == bounds.size()) {
+                // beyond the last bucket, which is widened
+                bucket--;
+                bounds.set(bucket, value);
+            }
+            counts[bucket]++;
+        }
+    }
+
+    void remove(Field field) {
+        if (bounds != null) {
+            int bucket = getBucket(getValue(field));
+            if (bucket < bounds.size() && counts[bucket] > 0) {
+                counts[bucket]--;
+            }
+        }
+    }
+
+    // samples the values added from now on, for buildHistogram()
+    void startSample() {
+        sample = new ArrayList<>();
+        numOfSampledValues = 0;
+        // seeded, so that the same relation gets the same histogram
+        random = new Random(0);
+    }
+
+    // builds the histogram from the values sampled, with the counts of the buckets
+    // scaled from the sample to all the values added
+    void buildHistogram() {
+        List<Object> values = sample;
+        sample = null;
+        random = null;
+        if (values.isEmpty()) {
+            bounds = null;
+            return;
+        }
+        values.sort(ColumnStatistics::compare);
+        bounds = new ArrayList<>();
+        int numOfBuckets = Math.min(NUM_OF_BUCKETS, values.size());
+        for (int i = 1; i <= numOfBuckets; i++) {
+            Object bound = values.get((int) ((long) i * values.size() / numOfBuckets) - 1);
+            // a value that fills several buckets gets only one
+            if (bounds.isEmpty() || compare(bound, bounds.get(bounds.size() - 1)) != 0) {
+                bounds.add(bound);
+            }
+        }
+        counts = new long[bounds.size()];
+        int bucket = 0;
+        for (Object value : values) {
+            while (compare(value, bounds.get(bucket)) > 0) {
+                bucket++;
+            }
+            counts[bucket]++;
+        }
+        if (numOfSampledValues > values.size()) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = Math.round((double) counts[i] * numOfSampledValues / values.size());
+            }
+        }
+    }
+
+    public FieldType getType() {
+        return type;
+    }
+
+    // estimated number of distinct values
+    public double getNumOfValues() {
+        if (sketch.size() < SKETCH_SIZE) {
+            return sketch.size();
+        }
+        // the k-th smallest of n uniform hashes is about k / n of the way through the hash space
+        return (SKETCH_SIZE - 1) / (sketch.last() / Math.pow(2, 63));
+    }
+
+    // fraction of the tuples whose value is the given one
+    public double getEqualFraction(Object value, double numOfTuples) {
+        if (min == null || compare(value, min) < 0 || compare(value, max) > 0) {
+            return 0;
+        }
+        return 1 / Math.max(1, Math.min(getNumOfValues(), numOfTuples));
+    }
+
+    // fraction of the tuples whose value is less than the given one
+    public double getLessFraction(Object value) {
+        if (min == null || compare(value, min) <= 0) {
+            return 0;
+        } else if (compare(value, max) > 0) {
+            return 1;
+        }
+
+        if (bounds == null) {
+            // no histogram yet: assume the values are spread evenly between min and max
+            if (type == FieldType.INT) {
+                return ((double) (Integer) value - (Integer) min) / ((double) (Integer) max - (Integer) min + 1);
+            }
+            return 0.5;
+        }
+
+        long total = 0;
+        double less = 0;
+        for (int i = 0; i < bounds.size(); i++) {
+            total += counts[i];
+            if (compare(bounds.get(i), value) < 0) {
+                less += counts[i];
+            } else if (i == 0 || compare(bounds.get(i - 1), value) < 0) {
+                // the bucket holding the value: assume its values are spread evenly
+                less += counts[i] * getFractionBelow(i == 0 ? min : bounds.get(i - 1), bounds.get(i), value, i == 0);
+            }
+        }
+        return total == 0 ? 0 : less / total;
+    }
+
+    // fraction of the tuples whose value is greater than the given one
+    public double getGreaterFraction(Object value, double numOfTuples) {
+        return Math.max(0, 1 - getLessFraction(value) - getEqualFraction(value, numOfTuples));
+    }
+
+    // fraction of the values of a bucket from low (included if first) to high that are less than value
+    private double getFractionBelow(Object low, Object high, Object value, boolean first) {
+        if (type != FieldType.INT) {
+            return 0.5;
+        }
+        double from = (Integer) low + (first ? 0 : 1);
+        double width = (Integer) high - from + 1;
+        return Math.max(0, Math.min(1, ((Integer) value - from) / width));
+    }
+
+    // first bucket whose bound is not less than the value, or bounds.size() if there is none
+    private int getBucket(Object value) {
+        int low = 0;
+        int high = bounds.size();
+        while (low < high) {
+            int middle = (low + high) / 2;
+            if (compare(bounds.get(middle), value) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    static Object getValue(Field field) {
+        if (field.type == FieldType.INT) {
+            return field.integer;
+        }
+        return field.str == null ? "" : field.str;
+    }
+
+    private static int compare(Object value1, Object value2) {
+        if (value1 instanceof Integer) {
+            return Integer.compare((Integer) value1, (Integer) value2);
+        }
+        return ((String) value1).compareTo((String) value2);
+    }
+
+    // spreads the hash codes over the non-negative longs
+    private static long hash(Object value) {
+        long hash = value.hashCode();
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb93fe53e94b9L;
+        hash ^= hash >>> 33;
+        return hash >>> 1;
+    }
+}
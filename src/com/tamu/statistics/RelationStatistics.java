@@ -0,0 +1,64 @@
+package com.tamu.statistics;
+
+import storageManager.Schema;
+import storageManager.Tuple;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Statistics of a relation: its number of tuples,
+// and the statistics of each of its columns
+public class RelationStatistics {
+    private long numOfTuples;
+    private Map<String, ColumnStatistics> columns = new HashMap<>();
+
+    RelationStatistics(Schema schema) {
+        for (String fieldName : schema.getFieldNames()) {
+            columns.put(fieldName, new ColumnStatistics(schema.getFieldType(fieldName)));
+        }
+    }
+
+    // empty statistics that sample the values added to them, until buildHistograms()
+    static RelationStatistics sample(Schema schema) {
+        RelationStatistics statistics = new RelationStatistics(schema);
+        for (ColumnStatistics column : statistics.columns.values()) {
+            column.startSample();
+        }
+        return statistics;
+    }
+
+    // builds equi-depth histograms from the values sampled
+    void buildHistograms() {
+        for (ColumnStatistics column : columns.values()) {
+            column.buildHistogram();
+        }
+    }
+
+    public void add(Tuple tuple) {
+        numOfTuples++;
+        for (Map.Entry<String, ColumnStatistics> column : columns.entrySet()) {
+            column.getValue().add(tuple.getField(column.getKey()));
+        }
+    }
+
+    public void remove(Tuple tuple) {
+        numOfTuples = Math.max(0, numOfTuples - 1);
+        for (Map.Entry<String, ColumnStatistics> column : columns.entrySet()) {
+            column.getValue().remove(tuple.getField(column.getKey()));
+        }
+    }
+
+    public long getNumOfTuples() {
+        return numOfTuples;
+    }
+
+    // returns null if there is no such column
+    public ColumnStatistics getColumn(String fieldName) {
+        return columns.get(fieldName);
+    }
+
+    // estimated V(R,a), at least 1 and at most the number of tuples
+    public double getNumOfValues(String fieldName) {
+        return Math.max(1, Math.min(numOfTuples, columns.get(fieldName).getNumOfValues()));
+    }
+}
@@ -0,0 +1,43 @@
+package com.tamu.statistics;
+
+import storageManager.Schema;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/* The statistics catalog keeps the statistics of the relations next to the SchemaManager.
+ * CREATE starts the statistics of a relation, INSERT, LOAD and DELETE
+ *   update them as tuples come and go, and DROP forgets them.
+ * ANALYZE rebuilds them from one scan of the tuples of the relation, which also
+ *   builds fresh equi-depth histograms from a sample of its values.
+ * Temp relations, and relations read from a page file until they are
+ *   analyzed, have no statistics; get() returns null for them.
+ */
+public class StatisticsCatalog {
+    private Map<String, RelationStatistics> relations = new HashMap<>();
+
+    public void create(String relationName, Schema schema) {
+        relations.put(relationName, new RelationStatistics(schema));
+    }
+
+    public void drop(String relationName) {
+        relations.remove(relationName);
+    }
+
+    // starts rebuilding the statistics of a relation: every tuple of it is added to the statistics returned,
+    // which are then given to finishAnalyze()
+    public RelationStatistics startAnalyze(Schema schema) {
+        return RelationStatistics.sample(schema);
+    }
+
+    // replaces the statistics of the relation by the ones rebuilt
+    public void finishAnalyze(String relationName, RelationStatistics statistics) {
+        statistics.buildHistograms();
+        relations.put(relationName, statistics);
+    }
+
+    // returns null if the relation has no statistics
+    public RelationStatistics get(String relationName) {
+        return relations.get(relationName);
+    }
+}
@@ -1,63 +1,256 @@
 package storageManager;
 
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 
-/* A disk or memory block contains a number of records/tuples that 
- * belong to the same relation. 
+/* A disk or memory block contains a number of records/tuples that
+ * belong to the same relation.
  * A tuple CANNOT be split and stored in more than one blocks.
- * Each block is defined to hold as most FIELDS_PER_BLOCK fields. 
- * Therefore, the max number of tuples held in a block can be 
- *   calculated from the size of a tuple, 
+ * Each block is defined to hold as most FIELDS_PER_BLOCK fields.
+ * Therefore, the max number of tuples held in a block can be
+ *   calculated from the size of a tuple,
  *   which is the number of fields in a tuple.
  * You can get the number by calling Schema::getTuplesPerBlock().
  *
- * The max number of tuples held in a block = 
+ * The max number of tuples held in a block =
  *       FIELDS_PER_BLOCK / num_of_fields_in_tuple
  *
- * Usage: Blocks already reside in the memory and disk. 
+ * A block is stored as a slotted page of BLOCK_SIZE bytes:
+ *
+ *   byte 0:        number of slots in use
+ *   slot directory: two bytes per slot, the slot status (valid or hole)
+ *                   and a bit mask of the STR20 fields that are null
+ *   slots:          one fixed-width slot per tuple, 4 bytes per INT field
+ *                   and 20 bytes per STR20 field, in schema order
+ *
+ * Tuples are encoded into the page when they are stored, so a STR20
+ *   field keeps at most 20 bytes. Tuples read from the block are
+ *   read-only views over the page.
+ * Copies of a block share the page until one of them is changed
+ *   (copy-on-write), so moving a block between the disk and the
+ *   memory does not copy its tuples.
+ *
+ * Usage: Blocks already reside in the memory and disk.
  *          You don't need to create blocks manually.
- *        Most time when you need to use the Block class is 
+ *        Most time when you need to use the Block class is
  *          to access a block of the main memory
  *        and to get or modify the tuples in the memory block.
- *        First be sure to get a pointer to a memory block 
+ *        First be sure to get a pointer to a memory block
  *          from the Memory class.
  */
 
 public class Block implements Serializable {
-    private ArrayList<Tuple> tuples;
+    private final static int INT_WIDTH = 4;
+    private final static int STR20_WIDTH = 20;
+    private final static byte SLOT_HOLE = 0;
+    private final static byte SLOT_VALID = 1;
+    private final static int DIRECTORY_OFFSET = 1;
+    private final static int SLOTS_OFFSET = DIRECTORY_OFFSET + 2 * Config.FIELDS_PER_BLOCK;
+
+    // the fields of a full block never take more than 20 bytes each
+    final static int BLOCK_SIZE = SLOTS_OFFSET + STR20_WIDTH * Config.FIELDS_PER_BLOCK;
+
+    // the relation whose tuples are in this block; unset while the block is empty
+    private SchemaManager schemaManager;
+    private int schemaIndex = -1;
+    private byte[] data;
+    // true if the page may also be referenced by another block or a tuple view
+    private boolean shared;
 
     // for internal use only: you DO NOT need this constructor.
     // Use the blocks in Memory or Relation directly
     protected Block() {
-        tuples = new ArrayList<>();
+        data = new byte[BLOCK_SIZE];
     }
 
     protected Block(Block b) {
-        tuples = new ArrayList<>();
-        for (Tuple tuple : b.tuples) {
-            tuples.add(new Tuple(tuple));
+        schemaManager = b.schemaManager;
+        schemaIndex = b.schemaIndex;
+        data = b.data;
+        shared = true;
+        b.shared = true;
+    }
+
+    // for internal use: a block over a page read from the disk;
+    // the tuples in the page belong to the relation of schemaIndex
+    Block(SchemaManager schemaManager, int schemaIndex, byte[] data) {
+        this.data = data;
+        if (getNumSlots() > 0) {
+            this.schemaManager = schemaManager;
+            this.schemaIndex = schemaIndex;
+        }
+    }
+
+    // for internal use: the page of the block, not a copy
+    byte[] getData() {
+        return data;
+    }
+
+    // copies a shared page before the block changes it
+    private void beforeWrite() {
+        if (shared) {
+            byte[] copy = new byte[BLOCK_SIZE];
+            System.arraycopy(data, 0, copy, 0, BLOCK_SIZE);
+            data = copy;
+            shared = false;
+        }
+    }
+
+    // for internal use: true if the block is empty or holds tuples of the schema
+    boolean matchesSchema(Schema schema) {
+        return isEmpty() || schemaManager == null || getBlockSchema().equals(schema);
+    }
+
+    static int getFieldWidth(FieldType type) {
+        return type == FieldType.INT ? INT_WIDTH : STR20_WIDTH;
+    }
+
+    static int readInt(byte[] page, int position) {
+        return (page[position] & 0xFF) << 24 | (page[position + 1] & 0xFF) << 16
+                | (page[position + 2] & 0xFF) << 8 | (page[position + 3] & 0xFF);
+    }
+
+    static String readStr20(byte[] page, int position) {
+        int length = 0;
+        while (length < STR20_WIDTH && page[position + length] != 0) {
+            length++;
+        }
+        return new String(page, position, length, StandardCharsets.UTF_8);
+    }
+
+    private int getNumSlots() {
+        return data[0];
+    }
+
+    private Schema getBlockSchema() {
+        return schemaManager.schemas[schemaIndex];
+    }
+
+    private int getSlotWidth(Schema schema) {
+        int width = 0;
+        for (FieldType type : schema.getFieldTypes()) {
+            width += getFieldWidth(type);
+        }
+        return width;
+    }
+
+    // binds an empty block to the relation of the tuple;
+    // returns false if the block holds tuples of another schema
+    private boolean bind(Tuple tuple, String caller) {
+        if (tuple.schemaManager == null) {
+            if (schemaManager == null) {
+                System.err.print(caller + " ERROR: the tuple has no schema\n");
+                return false;
+            }
+            return true;
+        }
+        if (schemaManager == null || getNumSlots() == 0) {
+            schemaManager = tuple.schemaManager;
+            schemaIndex = tuple.schemaIndex;
+            return true;
+        }
+        if (tuple.schemaManager != schemaManager || tuple.schemaIndex != schemaIndex) {
+            if (!getBlockSchema().equals(tuple.schemaManager.schemas[tuple.schemaIndex])) {
+                System.err.print(caller + " ERROR: tuples' schemas " + "do not match\n");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // encodes the tuple into the slot; an invalid tuple leaves a hole
+    private void encode(int slot, Tuple tuple) {
+        int directory = DIRECTORY_OFFSET + 2 * slot;
+        if (tuple.isNull()) {
+            data[directory] = SLOT_HOLE;
+            data[directory + 1] = 0;
+            return;
+        }
+        Schema schema = getBlockSchema();
+        int width = getSlotWidth(schema);
+        int position = SLOTS_OFFSET + slot * width;
+        if (tuple.isView()) {
+            // the slot layout only depends on the field types, which match
+            System.arraycopy(tuple.getPage(), tuple.getSlotPosition(), data, position, width);
+            data[directory] = SLOT_VALID;
+            data[directory + 1] = (byte) tuple.getNullMask();
+            return;
+        }
+        int nulls = 0;
+        for (int i = 0; i < schema.getNumOfFields(); i++) {
+            Field field = tuple.getFieldReference(i);
+            if (schema.getFieldType(i) == FieldType.INT) {
+                int value = field.integer;
+                data[position] = (byte) (value >>> 24);
+                data[position + 1] = (byte) (value >>> 16);
+                data[position + 2] = (byte) (value >>> 8);
+                data[position + 3] = (byte) value;
+                position += INT_WIDTH;
+            } else {
+                byte[] bytes = field.str == null ? new byte[0] : truncate(field.str);
+                if (field.str == null) {
+                    nulls |= 1 << i;
+                }
+                System.arraycopy(bytes, 0, data, position, bytes.length);
+                for (int j = bytes.length; j < STR20_WIDTH; j++) {
+                    data[position + j] = 0;
+                }
+                position += STR20_WIDTH;
+            }
+        }
+        data[directory] = SLOT_VALID;
+        data[directory + 1] = (byte) nulls;
+    }
+
+    // returns a read-only view of the tuple in the slot;
+    // a hole becomes an invalid tuple
+    private Tuple decode(int slot) {
+        int directory = DIRECTORY_OFFSET + 2 * slot;
+        if (data[directory] == SLOT_HOLE) {
+            return Tuple.invalidTuple(schemaManager, schemaIndex);
         }
+        // the view keeps this page, so the block must copy it before a change
+        shared = true;
+        int position = SLOTS_OFFSET + slot * getSlotWidth(getBlockSchema());
+        return new Tuple(schemaManager, schemaIndex, data, position, data[directory + 1]);
+    }
+
+    // a STR20 field keeps at most 20 bytes, cut at a character boundary
+    private static byte[] truncate(String str) {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        int end = str.length();
+        while (bytes.length > STR20_WIDTH) {
+            end--;
+            bytes = str.substring(0, end).getBytes(StandardCharsets.UTF_8);
+        }
+        return bytes;
     }
 
     public boolean isFull() {
-        return !tuples.isEmpty() && tuples.size() == tuples.get(0).getTuplesPerBlock();
+        return getNumSlots() > 0 && getNumSlots() == getBlockSchema().getTuplesPerBlock();
     }
 
     public boolean isEmpty() {
-        return tuples.isEmpty();
+        return getNumSlots() == 0;
     }
 
     // empty the block
     public void clear() {
-        tuples.clear();
+        if (shared) {
+            data = new byte[BLOCK_SIZE];
+            shared = false;
+        }
+        data[0] = 0;
+        schemaManager = null;
+        schemaIndex = -1;
     }
 
     // returns current number of tuples inside this block
     public int getNumTuples() {
         int count = 0;
-        for (Tuple tuple : tuples) {
-            if (!tuple.isNull()) {
+        for (int i = 0; i < getNumSlots(); i++) {
+            if (data[DIRECTORY_OFFSET + 2 * i] == SLOT_VALID) {
                 count++;
             }
         }
@@ -67,58 +260,101 @@ public class Block implements Serializable {
     // gets the tuple at tuple_index;
     // returns empty Tuple if tuple_index out of bound
     public Tuple getTuple(int tuple_offset) {
-        if (!tuples.isEmpty() && tuple_offset >= tuples.get(0).getTuplesPerBlock()) {
+        if (!isEmpty() && tuple_offset >= getBlockSchema().getTuplesPerBlock()) {
             System.err.print("getTuple ERROR: tuple offset " + tuple_offset + " out of bound of the block\n");
             return new Tuple();
         }
-        if (tuple_offset < 0 || tuple_offset >= tuples.size()) {
+        if (tuple_offset < 0 || tuple_offset >= getNumSlots()) {
             System.err.print("getTuple ERROR: tuple offset " + tuple_offset + " out of bound\n");
             return new Tuple();
         }
-        return new Tuple(tuples.get(tuple_offset));
+        return decode(tuple_offset);
     }
 
     // returns all the tuples inside this block
     public ArrayList<Tuple> getTuples() {
-        // return (ArrayList<Tuple>) DeepCopy.copy(tuples);
-        ArrayList<Tuple> tuples = new ArrayList<>(this.tuples.size());
-        for (Tuple tuple : this.tuples) {
-            tuples.add(new Tuple(tuple));
+        ArrayList<Tuple> tuples = new ArrayList<>(getNumSlots());
+        for (int i = 0; i < getNumSlots(); i++) {
+            tuples.add(decode(i));
         }
         return tuples;
     }
 
+    // copies the INT field at the offset of every valid tuple into values, from start on,
+    // without building the tuples; returns the number of valid tuples
+    public int getIntColumn(int field_offset, int[] values, int start) {
+        if (isEmpty()) {
+            return 0;
+        }
+        Schema schema = getBlockSchema();
+        if (field_offset < 0 || field_offset >= schema.getNumOfFields()) {
+            System.err.print("getIntColumn ERROR: offset " + field_offset + " is out of bound!\n");
+            return 0;
+        } else if (schema.getFieldType(field_offset) != FieldType.INT) {
+            System.err.print("getIntColumn ERROR: field type not FieldType.INT!\n");
+            return 0;
+        }
+        int width = getSlotWidth(schema);
+        int position = SLOTS_OFFSET + schema.getFieldPosition(field_offset);
+        int count = 0;
+        for (int i = 0; i < getNumSlots(); i++, position += width) {
+            if (data[DIRECTORY_OFFSET + 2 * i] == SLOT_VALID) {
+                values[start + count++] = readInt(data, position);
+            }
+        }
+        return count;
+    }
+
+    // copies the STR20 field at the offset of every valid tuple into values, from start on,
+    // without building the tuples; returns the number of valid tuples
+    public int getStr20Column(int field_offset, String[] values, int start) {
+        if (isEmpty()) {
+            return 0;
+        }
+        Schema schema = getBlockSchema();
+        if (field_offset < 0 || field_offset >= schema.getNumOfFields()) {
+            System.err.print("getStr20Column ERROR: offset " + field_offset + " is out of bound!\n");
+            return 0;
+        } else if (schema.getFieldType(field_offset) != FieldType.STR20) {
+            System.err.print("getStr20Column ERROR: field type not FieldType.STR20!\n");
+            return 0;
+        }
+        int width = getSlotWidth(schema);
+        int position = SLOTS_OFFSET + schema.getFieldPosition(field_offset);
+        int count = 0;
+        for (int i = 0; i < getNumSlots(); i++, position += width) {
+            int directory = DIRECTORY_OFFSET + 2 * i;
+            if (data[directory] == SLOT_VALID) {
+                values[start + count++] = (data[directory + 1] & (1 << field_offset)) == 0 ? readStr20(data, position) : null;
+            }
+        }
+        return count;
+    }
+
     // sets new tuple value at tuple_index;
     // returns false if tuple_index out of bound
     public boolean setTuple(int tuple_offset, Tuple tuple) {
-        Schema s = tuple.getSchema();
-        if (!tuples.isEmpty()) {
-            if (tuple_offset >= tuples.get(0).getTuplesPerBlock()) {
-                System.err.print("setTuple ERROR: tuple offset " + tuple_offset + " out of bound of the block\n");
-                return false;
-            }
-            for (Tuple t : tuples) {
-                if (!s.equals(t.getSchema())) {
-                    System.err.print("setTuple ERROR: tuples' schemas " + "do not match\n");
-                    return false;
-                }
-            }
+        Schema s = tuple.schemaManager.schemas[tuple.schemaIndex];
+        if (!isEmpty() && tuple_offset >= getBlockSchema().getTuplesPerBlock()) {
+            System.err.print("setTuple ERROR: tuple offset " + tuple_offset + " out of bound of the block\n");
+            return false;
         }
         if (tuple_offset < 0 || tuple_offset >= s.getTuplesPerBlock()) {
             System.err.print("setTuple ERROR: tuple offset " + tuple_offset + " out of bound\n");
             return false;
         }
-        if (tuple_offset >= tuples.size()) {
-            // If there is a gap before the offset,
-            // filled it with invalid tuples
-            Tuple t = new Tuple(tuple.schemaManager, tuple.schemaIndex);
-            t.invalidate();
-            for (int i = tuples.size(); i < tuple_offset; i++) {
-                tuples.add(t);
-            }
-            tuples.add(new Tuple(tuple));
-        } else {
-            tuples.set(tuple_offset, new Tuple(tuple));
+        if (!bind(tuple, "setTuple")) {
+            return false;
+        }
+        beforeWrite();
+        // If there is a gap before the offset,
+        // filled it with invalid tuples
+        for (int i = getNumSlots(); i < tuple_offset; i++) {
+            data[DIRECTORY_OFFSET + 2 * i] = SLOT_HOLE;
+        }
+        encode(tuple_offset, tuple);
+        if (tuple_offset >= getNumSlots()) {
+            data[0] = (byte) (tuple_offset + 1);
         }
         return true;
     }
@@ -126,16 +362,7 @@ public class Block implements Serializable {
     // remove all the tuples; sets new tuples for the block;
     // returns false if number of input tuples exceeds the space limit
     public boolean setTuples(ArrayList<Tuple> tuples) {
-        if (tuples.size() > tuples.get(0).getTuplesPerBlock()) {
-            System.err.print("setTuples ERROR: number of tuples " + "exceed space limit of the block\n");
-            return false;
-        }
-        // this.tuples=(ArrayList<Tuple>) DeepCopy.copy(tuples);
-        this.tuples.clear();
-        for (Tuple tuple : tuples) {
-            this.tuples.add(tuple);
-        }
-        return true;
+        return setTuples(tuples, 0, tuples.size());
     }
 
     // remove all the tuples; sets new tuples for the block;
@@ -145,9 +372,13 @@ public class Block implements Serializable {
             System.err.print("setTuples ERROR: number of tuples " + "exceed space limit of the block\n");
             return false;
         }
-        this.tuples.clear();
+        clear();
         for (int i = start_index; i < end_index; i++) {
-            this.tuples.add(new Tuple(tuples.get(i)));
+            if (!bind(tuples.get(i), "setTuples")) {
+                return false;
+            }
+            encode(i - start_index, tuples.get(i));
+            data[0]++;
         }
         return true;
     }
@@ -159,39 +390,44 @@ public class Block implements Serializable {
             System.err.print("appendTuple ERROR: the block is full\n");
             return false;
         }
-        this.tuples.add(new Tuple(tuple));
+        if (!bind(tuple, "appendTuple")) {
+            return false;
+        }
+        beforeWrite();
+        encode(getNumSlots(), tuple);
+        data[0]++;
         return true;
     }
 
     // invalidates the tuple at the offset
     public boolean invalidateTuple(int tuple_offset) {
-        if (tuple_offset < 0 || tuple_offset >= tuples.size()) {
+        if (tuple_offset < 0 || tuple_offset >= getNumSlots()) {
             System.err.print("nullTuple ERROR: tuple offset " + tuple_offset + " out of bound\n");
             return false;
         }
-        tuples.get(tuple_offset).invalidate();
+        beforeWrite();
+        data[DIRECTORY_OFFSET + 2 * tuple_offset] = SLOT_HOLE;
         return true;
     }
 
     // empty all the tuples in the block
     public boolean invalidateTuples() {
-        for (Tuple tuple : tuples) {
-            tuple.invalidate();
+        beforeWrite();
+        for (int i = 0; i < getNumSlots(); i++) {
+            data[DIRECTORY_OFFSET + 2 * i] = SLOT_HOLE;
         }
         return true;
     }
 
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        if (!tuples.isEmpty()) {
-            for (Tuple tuple : tuples) {
-                if (tuple.isNull()) {
-                    sb.append("(hole)");
-                } else {
-                    sb.append(tuple.toString());
-                }
-                sb.append("\n");
+        for (int i = 0; i < getNumSlots(); i++) {
+            if (data[DIRECTORY_OFFSET + 2 * i] == SLOT_HOLE) {
+                sb.append("(hole)");
+            } else {
+                sb.append(decode(i).toString());
             }
+            sb.append("\n");
         }
         return sb.toString();
     }
@@ -13,6 +13,9 @@ class Config {
 
     // Setting true turns on the simulated disk latency
     static boolean SIMULATED_DISK_LATENCY_ON = true;
+    // Setting true charges the simulated disk latency to a virtual clock
+    // instead of sleeping, so no wall-clock time is spent waiting for the disk
+    static boolean VIRTUAL_DISK_CLOCK_ON = false;
     // Setting to true turns on the debug message of disk I/O incrementation
     static boolean DISK_I_O_DEBUG = false;
 }
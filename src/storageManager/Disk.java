@@ -1,5 +1,7 @@
 package storageManager;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 
@@ -17,6 +19,15 @@ import java.util.ArrayList;
  *       You don't need to access Disk directly except for 
  *          getting disk I/O counts
  *       When you need to access a relation, use the Relation class
+ *       With the virtual disk clock (Config.VIRTUAL_DISK_CLOCK_ON, off by default),
+ *          every request is queued at the disk
+ *          and charged to the virtual clock of the calling thread,
+ *          instead of putting the thread to sleep. Requests of concurrent
+ *          callers wait for each other like in a real I/O queue.
+ *       A disk created with a page file name keeps every track in
+ *          that file instead of the heap, so the relations are still
+ *          there the next time the file is opened.
+ *          Call close() before the program exits.
  */
 
 public class Disk implements Serializable {
@@ -35,9 +46,21 @@ public class Disk implements Serializable {
     private final static double avg_rotation_latency = 4.17;
     private final static double avg_transfer_time_per_block = 0.20 * 320;
 
-    ArrayList<ArrayList<Block>> tracks;
+    // tracks kept in the heap; null when a page file is used
+    private ArrayList<ArrayList<Block>> tracks;
+    // tracks kept in a page file; null when the tracks are in the heap
+    private transient PageFile pageFile;
+    // rebuilds the tuples read from the page file; set by SchemaManager
+    transient SchemaManager schemaManager;
     private long diskIOs = 0;
     private double timer = 0;
+    // virtual clock: the time the disk finishes the requests queued so far
+    private double diskFreeAt = 0;
+    // virtual clock of each calling thread, its time spent in the queue,
+    // and the clockEpoch they were started in; a clock of an older epoch reads as 0
+    private transient ThreadLocal<double[]> callerClocks = ThreadLocal.withInitial(() -> new double[3]);
+    // increased by every reset of the disk timer
+    private long clockEpoch = 0;
 
     public Disk() {
         resetDiskIOs();
@@ -47,6 +70,93 @@ public class Disk implements Serializable {
             tracks.add(new ArrayList<>());
     }
 
+    // keeps the tracks in the page file 'page_file_name',
+    // creating the file if it does not exist;
+    // falls back to the heap if the file cannot be used
+    public Disk(String page_file_name) {
+        resetDiskIOs();
+        resetDiskTimer();
+        try {
+            pageFile = new PageFile(page_file_name, NUM_TRACKS);
+        } catch (IOException e) {
+            System.err.print("Disk ERROR: cannot use page file " + page_file_name + ": " + e.getMessage() + "\n");
+            tracks = new ArrayList<>(NUM_TRACKS);
+            for (int i = 0; i < NUM_TRACKS; i++)
+                tracks.add(new ArrayList<>());
+        }
+    }
+
+    // returns true if the tracks are kept in a page file
+    public boolean isPersistent() {
+        return pageFile != null;
+    }
+
+    // writes all the tracks back to the page file and closes it;
+    // does nothing if the tracks are in the heap
+    public void close() {
+        if (pageFile != null) {
+            pageFile.close();
+        }
+    }
+
+    // for internal use: number of blocks on the track; no disk latency
+    int getTrackSize(int schemaIndex) {
+        if (pageFile != null) {
+            return pageFile.getTrackSize(schemaIndex);
+        }
+        return tracks.get(schemaIndex).size();
+    }
+
+    // for internal use: the block stored on the track; no disk latency.
+    // In the heap it is the stored block itself, not a copy
+    Block peekBlock(int schemaIndex, int block_index) {
+        if (pageFile != null) {
+            return pageFile.readBlock(schemaManager, schemaIndex, block_index);
+        }
+        return tracks.get(schemaIndex).get(block_index);
+    }
+
+    // for internal use: stores a copy of the block on the track,
+    // at most one block past the end; no disk latency
+    private boolean storeBlock(int schemaIndex, int block_index, Block b) {
+        if (pageFile != null) {
+            if (!pageFile.writeBlock(schemaIndex, block_index, b)) {
+                return false;
+            }
+            if (block_index >= pageFile.getTrackSize(schemaIndex)) {
+                pageFile.setTrackSize(schemaIndex, block_index + 1);
+            }
+            return true;
+        }
+        ArrayList<Block> track = tracks.get(schemaIndex);
+        if (block_index == track.size()) {
+            track.add(new Block(b));
+        } else {
+            track.set(block_index, new Block(b));
+        }
+        return true;
+    }
+
+    // for internal use: catalog of a persistent disk, kept by SchemaManager
+    String getCatalogRelationName(int schemaIndex) {
+        return pageFile == null ? null : pageFile.readRelationName(schemaIndex);
+    }
+
+    Schema getCatalogSchema(int schemaIndex) {
+        return pageFile.readSchema(schemaIndex);
+    }
+
+    // returns false if the relation cannot be recorded in the catalog
+    boolean setCatalog(int schemaIndex, String relation_name, Schema schema) {
+        return pageFile == null || pageFile.writeCatalog(schemaIndex, relation_name, schema);
+    }
+
+    void dropCatalog(int schemaIndex) {
+        if (pageFile != null) {
+            pageFile.dropCatalog(schemaIndex);
+        }
+    }
+
     // for internal use: extend the track to 'block_index'-1;
     // no disk latency
     boolean extendTrack(int schemaIndex, int block_index, Tuple t) {
@@ -54,25 +164,30 @@ public class Disk implements Serializable {
             System.err.print("extendTrack ERROR: block index " + block_index + " out of disk bound\n");
             return false;
         }
-        ArrayList<Block> track = tracks.get(schemaIndex);
-        int j = track.size();
+        int j = getTrackSize(schemaIndex);
         if (block_index > j) {
             if (j > 0) {
                 // first fill the last block with invalid tuples
-                while (!track.get(j - 1).isFull()) {
-                    track.get(j - 1).appendTuple(new Tuple(t));
+                Block last = peekBlock(schemaIndex, j - 1);
+                while (!last.isFull()) {
+                    last.appendTuple(new Tuple(t));
                 }
+                storeBlock(schemaIndex, j - 1, last);
             }
             // fill the gap with invalid tuples
             for (int i = j; i < block_index - 1; i++) {
-                track.add(new Block());
-                while (!track.get(i).isFull()) {
-                    track.get(i).appendTuple(new Tuple(t));
+                Block gap = new Block();
+                while (!gap.isFull()) {
+                    gap.appendTuple(new Tuple(t));
+                }
+                if (!storeBlock(schemaIndex, i, gap)) {
+                    return false;
                 }
             }
             // fill the last block with only one invalid tuple
-            track.add(new Block());
-            track.get(block_index - 1).appendTuple(new Tuple(t));
+            Block last = new Block();
+            last.appendTuple(new Tuple(t));
+            return storeBlock(schemaIndex, block_index - 1, last);
         }
         return true;
     }
@@ -80,34 +195,42 @@ public class Disk implements Serializable {
     // for internal use: shrink the track to 'block_index'-1;
     // no disk latency
     boolean shrinkTrack(int schemaIndex, int block_index) {
-        if (block_index < 0 || block_index >= tracks.get(schemaIndex).size()) {
+        if (block_index < 0 || block_index >= getTrackSize(schemaIndex)) {
             System.err.print("shrinkTrack ERROR: block index " + block_index + " out of disk bound\n");
             return false;
         }
-        tracks.get(schemaIndex).subList(block_index, tracks.get(schemaIndex).size()).clear();
+        if (pageFile != null) {
+            pageFile.setTrackSize(schemaIndex, block_index);
+        } else {
+            tracks.get(schemaIndex).subList(block_index, tracks.get(schemaIndex).size()).clear();
+        }
         return true;
     }
 
     // for internal use
     protected Block getBlock(int schemaIndex, int block_index) {
-        if (block_index < 0 || block_index >= tracks.get(schemaIndex).size()) {
+        if (block_index < 0 || block_index >= getTrackSize(schemaIndex)) {
             System.err.print("getBlock ERROR: block index " + block_index + " out of disk bound\n");
             return new Block();
         }
         incrementDiskIOs(1);
         incrementDiskTimer(1);
 
-        return new Block(tracks.get(schemaIndex).get(block_index));
+        if (pageFile != null) {
+            // a block read from the page file is already a new object
+            return peekBlock(schemaIndex, block_index);
+        }
+        return new Block(peekBlock(schemaIndex, block_index));
     }
 
     // for internal use
     ArrayList<Block> getBlocks(int schemaIndex, int block_index, int num_blocks) {
-        if (block_index < 0 || block_index >= tracks.get(schemaIndex).size()) {
+        if (block_index < 0 || block_index >= getTrackSize(schemaIndex)) {
             System.err.print("getBlocks ERROR: block index " + block_index + " out of disk bound\n");
             return new ArrayList<>();
         }
         int i;
-        if ((i = block_index + num_blocks - 1) >= tracks.get(schemaIndex).size()) {
+        if ((i = block_index + num_blocks - 1) >= getTrackSize(schemaIndex)) {
             System.err.print("getBlocks ERROR: num of blocks " + " out of disk bound: " + i + "\n");
             return new ArrayList<>();
         }
@@ -116,7 +239,7 @@ public class Disk implements Serializable {
 
         ArrayList<Block> v = new ArrayList<>(num_blocks);
         for (i = block_index; i < block_index + num_blocks; i++) {
-            v.add(tracks.get(schemaIndex).get(i));
+            v.add(peekBlock(schemaIndex, i));
         }
         return v;
     }
@@ -129,8 +252,7 @@ public class Disk implements Serializable {
         }
         incrementDiskIOs(1);
         incrementDiskTimer(1);
-        tracks.get(schemaIndex).set(block_index, new Block(b));
-        return true;
+        return storeBlock(schemaIndex, block_index, b);
     }
 
     // for internal use
@@ -143,7 +265,8 @@ public class Disk implements Serializable {
         incrementDiskTimer(vb.size());
         int i, j;
         for (i = 0, j = block_index; i < vb.size(); i++, j++)
-            tracks.get(schemaIndex).set(j, new Block(vb.get(i)));
+            if (!storeBlock(schemaIndex, j, vb.get(i)))
+                return false;
         return true;
     }
 
@@ -156,7 +279,9 @@ public class Disk implements Serializable {
 
     // for internal use: increment Disk time
     private void incrementDiskTimer(int num_blocks) {
-        if (Config.SIMULATED_DISK_LATENCY_ON) {
+        if (Config.SIMULATED_DISK_LATENCY_ON && Config.VIRTUAL_DISK_CLOCK_ON) {
+            chargeVirtualClock(avg_seek_time + avg_rotation_latency + avg_transfer_time_per_block * num_blocks);
+        } else if (Config.SIMULATED_DISK_LATENCY_ON) {
             try {
                 Thread.sleep((long) (avg_seek_time + avg_rotation_latency + avg_transfer_time_per_block * num_blocks));
             } catch (Exception e) {
@@ -167,6 +292,51 @@ public class Disk implements Serializable {
         timer += avg_seek_time + avg_rotation_latency + avg_transfer_time_per_block * num_blocks;
     }
 
+    // for internal use: the request of the calling thread starts when both
+    // the caller and the disk are free, and the caller waits until it is done
+    private synchronized void chargeVirtualClock(double latency) {
+        double[] clock = getCallerClock();
+        double start = Math.max(clock[0], diskFreeAt);
+        clock[1] += start - clock[0];
+        diskFreeAt = start + latency;
+        clock[0] = diskFreeAt;
+    }
+
+    // After the operation is done, get the virtual time of the calling thread
+    // in milliseconds, i.e. the time it has spent on disk requests,
+    // including the time waiting for requests of other threads
+    public synchronized double getVirtualTime() {
+        return getCallerClock()[0];
+    }
+
+    // the part of getVirtualTime() the calling thread has spent
+    // waiting for requests of other threads
+    public synchronized double getQueueTime() {
+        return getCallerClock()[1];
+    }
+
+    // returns true if the simulated disk latency is charged to the virtual clocks
+    public boolean hasVirtualClock() {
+        return Config.SIMULATED_DISK_LATENCY_ON && Config.VIRTUAL_DISK_CLOCK_ON;
+    }
+
+    // for internal use: the clock of the calling thread, restarted if the timer was reset since
+    private double[] getCallerClock() {
+        double[] clock = callerClocks.get();
+        if (clock[2] != clockEpoch) {
+            clock[0] = 0;
+            clock[1] = 0;
+            clock[2] = clockEpoch;
+        }
+        return clock;
+    }
+
+    // the clocks of the calling threads are not serialized
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        callerClocks = ThreadLocal.withInitial(() -> new double[3]);
+    }
+
     // Reset the disk I/O counter.
     // Every time before you do a SQL operation, reset the counter.
     public void resetDiskIOs() {
@@ -179,10 +349,12 @@ public class Disk implements Serializable {
         return diskIOs;
     }
 
-    // Reset the disk timer.
+    // Reset the disk timer, and the virtual clocks of the disk and of every thread.
     // Every time before you do a SQL operation, reset the timer.
-    public void resetDiskTimer() {
+    public synchronized void resetDiskTimer() {
         timer = 0;
+        diskFreeAt = 0;
+        clockEpoch++;
     }
 
     // After the operation is done, get the elapse disk time
@@ -74,17 +74,15 @@ public class MainMemory implements Serializable {
             return new ArrayList<>();
         }
         ArrayList<Tuple> tuples = new ArrayList<>();
-        Schema s = blocks[memory_block_begin].getTuples().get(0).getSchema();
+        Schema s = blocks[memory_block_begin].getTuple(0).getSchema();
         for (i = memory_block_begin; i < memory_block_begin + num_blocks; i++) {
-            ArrayList<Tuple> tuples2 = blocks[i].getTuples();
-            if (!tuples2.get(0).getSchema().equals(s)) {
+            if (!blocks[i].matchesSchema(s)) {
                 System.err.print("getTuples ERROR: schema at memory " + "block " + i + " has a different schema\n");
                 return new ArrayList<>();
             }
             // Only valid tuples are returned
-            for (Tuple tuple : tuples2) {
-                tuples.add(new Tuple(tuple));
-            }
+            // The tuples are read-only views, so they need not be copied
+            tuples.addAll(blocks[i].getTuples());
         }
         return tuples;
     }
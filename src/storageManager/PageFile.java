@@ -0,0 +1,263 @@
+package storageManager;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/* A page file keeps the tracks of a Disk in a single file on the real disk,
+ *   so that relations survive the program and may be larger than the heap.
+ * The file is laid out as:
+ *
+ *   header:  magic, page size, number of tracks, pages per extent, max number of extents,
+ *              followed by the number of blocks on every track
+ *   catalog: one CATALOG_ENTRY_SIZE entry per track
+ *              (relation name and schema of the relation on the track)
+ *   extents: the track owning each extent, plus one, or 0 if the extent is not allocated
+ *   pages:   PAGES_PER_EXTENT pages of PAGE_SIZE bytes per extent
+ *
+ * A track grows by an extent at the end of the file whenever a block is written
+ *   past its last extent; the k-th extent of a track is the k-th one it owns in the file.
+ *   The extents of a dropped relation stay allocated to its track.
+ * Every region is accessed through a MappedByteBuffer.
+ *   An extent is only mapped when it is first used.
+ * Usage: For internal use of Disk only.
+ */
+
+class PageFile {
+    private final static int MAGIC = 0x54535133; // "TSQ3"
+    // A block holds at most FIELDS_PER_BLOCK=8 fields,
+    // so Block.BLOCK_SIZE always fits in one page
+    final static int PAGE_SIZE = 256;
+    // 1MB per extent, and 256GB per file
+    final static int PAGES_PER_EXTENT = 1 << 12;
+    final static int MAX_NUM_OF_EXTENTS = 1 << 18;
+    private final static int CATALOG_ENTRY_SIZE = 512;
+
+    private final static byte CATALOG_UNUSED = 0;
+    private final static byte CATALOG_IN_USE = 1;
+    private final static byte CATALOG_DROPPED = 2;
+
+    private final long catalogOffset;
+    private final long extentsOffset;
+    private final long pagesOffset;
+
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private MappedByteBuffer header;
+    private MappedByteBuffer catalog;
+    private MappedByteBuffer extentTable;
+    // the extents of every track in order, and the mapped extents
+    private List<List<Integer>> trackExtents;
+    private MappedByteBuffer[] extents = new MappedByteBuffer[MAX_NUM_OF_EXTENTS];
+    private int numOfExtents;
+
+    PageFile(String fileName, int numTracks) throws IOException {
+        int headerSize = roundToPage(20 + 4 * numTracks);
+        this.catalogOffset = headerSize;
+        this.extentsOffset = catalogOffset + roundToPage(CATALOG_ENTRY_SIZE * numTracks);
+        this.pagesOffset = extentsOffset + roundToPage(4 * MAX_NUM_OF_EXTENTS);
+
+        file = new RandomAccessFile(fileName, "rw");
+        channel = file.getChannel();
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, headerSize);
+        catalog = channel.map(FileChannel.MapMode.READ_WRITE, catalogOffset, (long) CATALOG_ENTRY_SIZE * numTracks);
+        extentTable = channel.map(FileChannel.MapMode.READ_WRITE, extentsOffset, 4L * MAX_NUM_OF_EXTENTS);
+
+        int magic = header.getInt(0);
+        if (magic == 0) {
+            // a new file: write the disk geometry
+            header.putInt(0, MAGIC);
+            header.putInt(4, PAGE_SIZE);
+            header.putInt(8, numTracks);
+            header.putInt(12, PAGES_PER_EXTENT);
+            header.putInt(16, MAX_NUM_OF_EXTENTS);
+        } else if (magic != MAGIC || header.getInt(4) != PAGE_SIZE || header.getInt(8) != numTracks
+                || header.getInt(12) != PAGES_PER_EXTENT || header.getInt(16) != MAX_NUM_OF_EXTENTS) {
+            close();
+            throw new IOException("not a page file of this disk geometry: " + fileName);
+        }
+
+        trackExtents = new ArrayList<>(numTracks);
+        for (int i = 0; i < numTracks; i++) {
+            trackExtents.add(new ArrayList<>());
+        }
+        // the extents are allocated in order, so the first free one ends the table
+        for (numOfExtents = 0; numOfExtents < MAX_NUM_OF_EXTENTS; numOfExtents++) {
+            int owner = extentTable.getInt(4 * numOfExtents);
+            if (owner == 0) {
+                break;
+            }
+            trackExtents.get(owner - 1).add(numOfExtents);
+        }
+    }
+
+    private static int roundToPage(int size) {
+        return (size + PAGE_SIZE - 1) / PAGE_SIZE * PAGE_SIZE;
+    }
+
+    int getTrackSize(int track) {
+        return header.getInt(20 + 4 * track);
+    }
+
+    void setTrackSize(int track, int numBlocks) {
+        header.putInt(20 + 4 * track, numBlocks);
+    }
+
+    // the extent holding block_index of the track, allocating the extents up to it if grow is true;
+    // null if the track has no such extent
+    private MappedByteBuffer getExtent(int track, int block_index, boolean grow) throws IOException {
+        List<Integer> owned = trackExtents.get(track);
+        int k = block_index / PAGES_PER_EXTENT;
+        while (grow && k >= owned.size()) {
+            if (numOfExtents == MAX_NUM_OF_EXTENTS) {
+                throw new IOException("no more extents in the page file");
+            }
+            extentTable.putInt(4 * numOfExtents, track + 1);
+            owned.add(numOfExtents++);
+        }
+        if (k >= owned.size()) {
+            return null;
+        }
+        int extent = owned.get(k);
+        if (extents[extent] == null) {
+            long size = (long) PAGES_PER_EXTENT * PAGE_SIZE;
+            extents[extent] = channel.map(FileChannel.MapMode.READ_WRITE, pagesOffset + size * extent, size);
+        }
+        return extents[extent];
+    }
+
+    // reads the page at block_index of the track into a new block;
+    // tuples of the block are bound to the schema of the track
+    Block readBlock(SchemaManager schemaManager, int track, int block_index) {
+        byte[] data = new byte[Block.BLOCK_SIZE];
+        try {
+            MappedByteBuffer extent = getExtent(track, block_index, false);
+            if (extent == null) {
+                System.err.print("readBlock ERROR: block index " + block_index + " is not on track " + track + "\n");
+                return new Block();
+            }
+            ByteBuffer page = extent.duplicate();
+            page.position(block_index % PAGES_PER_EXTENT * PAGE_SIZE);
+            page.get(data);
+        } catch (IOException e) {
+            System.err.print("readBlock ERROR: cannot map track " + track + ": " + e.getMessage() + "\n");
+            return new Block();
+        }
+        return new Block(schemaManager, track, data);
+    }
+
+    // writes the block to the page at block_index of the track, growing the track as needed;
+    // returns false if the track cannot grow or be mapped
+    boolean writeBlock(int track, int block_index, Block block) {
+        try {
+            ByteBuffer page = getExtent(track, block_index, true).duplicate();
+            page.position(block_index % PAGES_PER_EXTENT * PAGE_SIZE);
+            page.put(block.getData());
+        } catch (IOException e) {
+            System.err.print("writeBlock ERROR: cannot map track " + track + ": " + e.getMessage() + "\n");
+            return false;
+        }
+        return true;
+    }
+
+    // returns the relation name stored for the track,
+    // "" if the relation has been dropped, or null if the track was never used
+    String readRelationName(int track) {
+        int position = track * CATALOG_ENTRY_SIZE;
+        byte state = catalog.get(position);
+        if (state == CATALOG_UNUSED) {
+            return null;
+        } else if (state == CATALOG_DROPPED) {
+            return "";
+        }
+        return readString(position + 1);
+    }
+
+    // returns the schema stored for the track
+    Schema readSchema(int track) {
+        int position = track * CATALOG_ENTRY_SIZE + 1;
+        position += 2 + catalog.getShort(position);
+        int numFields = catalog.get(position++);
+
+        ArrayList<String> fieldNames = new ArrayList<>();
+        ArrayList<FieldType> fieldTypes = new ArrayList<>();
+        for (int i = 0; i < numFields; i++) {
+            fieldTypes.add(FieldType.values()[catalog.get(position++)]);
+            String fieldName = readString(position);
+            fieldNames.add(fieldName);
+            position += 2 + fieldName.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return new Schema(fieldNames, fieldTypes);
+    }
+
+    // records the relation on the track in the catalog;
+    // returns false if the names do not fit in a catalog entry
+    boolean writeCatalog(int track, String relation_name, Schema schema) {
+        byte[] entry = new byte[CATALOG_ENTRY_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(entry);
+        try {
+            buffer.put(CATALOG_IN_USE);
+            putString(buffer, relation_name);
+            buffer.put((byte) schema.getNumOfFields());
+            for (int i = 0; i < schema.getNumOfFields(); i++) {
+                buffer.put((byte) schema.getFieldType(i).ordinal());
+                putString(buffer, schema.getFieldName(i));
+            }
+        } catch (BufferOverflowException e) {
+            System.err.print("writeCatalog ERROR: schema of " + relation_name + " is too large for the catalog\n");
+            return false;
+        }
+        int position = track * CATALOG_ENTRY_SIZE;
+        for (int i = 0; i < CATALOG_ENTRY_SIZE; i++) {
+            catalog.put(position + i, entry[i]);
+        }
+        return true;
+    }
+
+    void dropCatalog(int track) {
+        catalog.put(track * CATALOG_ENTRY_SIZE, CATALOG_DROPPED);
+    }
+
+    private String readString(int position) {
+        int length = catalog.getShort(position);
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = catalog.get(position + 2 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putString(ByteBuffer buffer, String str) {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    // forces all mapped regions to the file and closes it
+    void close() {
+        if (channel == null) {
+            return;
+        }
+        header.force();
+        catalog.force();
+        extentTable.force();
+        for (MappedByteBuffer extent : extents) {
+            if (extent != null) {
+                extent.force();
+            }
+        }
+        try {
+            channel.close();
+            file.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        channel = null;
+    }
+}
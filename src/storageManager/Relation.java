@@ -69,18 +69,17 @@ public class Relation implements Serializable {
     // NOTE: Because the operation should not have disk latency,
     // it is implemented in Relation instead of in Disk
     public int getNumOfBlocks() {
-        ArrayList<Block> data = disk.tracks.get(schemaIndex);
-        return data.size();
+        return disk.getTrackSize(schemaIndex);
     }
 
     // returns actual number of tuples in the relation
     // NOTE: Because the operation should not have disk latency,
     // it is implemented in Relation instead of in Disk
     public int getNumOfTuples() {
-        ArrayList<Block> data = disk.tracks.get(schemaIndex);
+        int num_blocks = disk.getTrackSize(schemaIndex);
         int total_tuples = 0;
-        for (Block block : data) {
-            total_tuples += block.getNumTuples();
+        for (int i = 0; i < num_blocks; i++) {
+            total_tuples += disk.peekBlock(schemaIndex, i).getNumTuples();
         }
         return total_tuples;
     }
@@ -147,15 +146,13 @@ public class Relation implements Serializable {
                     .print("setBlock ERROR: block index " + relation_block_index + " out of bound in relation\n");
             return false;
         }
-        // check if the schema is correct
-        ArrayList<Tuple> v = mem.getBlock(memory_block_index).getTuples();
+        // check if the schema is correct;
+        // all the tuples in a block share the schema of the block
         Schema s = schemaManager.schemas[schemaIndex];
-        for (int i = 0; i < v.size(); i++) {
-            if (!v.get(i).getSchema().equals(s)) {
-                System.err.print("setBlock ERROR: The tuple at offset " + i + " of memory block " + memory_block_index
-                        + " has a different schema.\n");
-                return false;
-            }
+        if (!mem.getBlock(memory_block_index).matchesSchema(s)) {
+            System.err.print("setBlock ERROR: The tuples of memory block " + memory_block_index
+                    + " have a different schema.\n");
+            return false;
         }
 
         Tuple t = new Tuple(schemaManager, schemaIndex);
@@ -190,16 +187,12 @@ public class Relation implements Serializable {
 
         ArrayList<Block> vb = new ArrayList<>();
         Schema s = schemaManager.schemas[schemaIndex];
-        int j, k;
+        int j;
         for (j = memory_block_index; j < memory_block_index + num_blocks; j++) {
             // check if the schema is correct
-            ArrayList<Tuple> v = mem.getBlock(j).getTuples();
-            for (k = 0; k < v.size(); k++) {
-                if (!v.get(k).getSchema().equals(s)) {
-                    System.err.print("setBlocks ERROR: The tuple at offset " + k + " of memory block " + j
-                            + " has a different schema.\n");
-                    return false;
-                }
+            if (!mem.getBlock(j).matchesSchema(s)) {
+                System.err.print("setBlocks ERROR: The tuples of memory block " + j + " have a different schema.\n");
+                return false;
             }
             vb.add(mem.getBlock(j));
         }
@@ -212,6 +205,48 @@ public class Relation implements Serializable {
                 && disk.setBlocks(schemaIndex, relation_block_index, vb);
     }
 
+    // appends the tuples after the last block of the relation:
+    // the tuples are packed into the memory blocks
+    // [ memory_block_index, memory_block_index+num_blocks-1 ],
+    // which are written with one setBlocks() every time they are all full.
+    // NOTE: The memory blocks are overwritten.
+    // returns false if out of bound or the tuples have a different schema
+    public boolean appendTuples(ArrayList<Tuple> tuples, int memory_block_index, int num_blocks) {
+        if (num_blocks <= 0) {
+            System.err.print("appendTuples ERROR: num of blocks " + num_blocks + " too few\n");
+            return false;
+        }
+        if (memory_block_index < 0 || memory_block_index >= Config.NUM_OF_BLOCKS_IN_MEMORY) {
+            System.err.print("appendTuples ERROR: block index " + memory_block_index + " out of bound in memory\n");
+            return false;
+        }
+        int i;
+        if ((i = memory_block_index + num_blocks - 1) >= Config.NUM_OF_BLOCKS_IN_MEMORY) {
+            System.err.print("appendTuples ERROR: access to block " + "out of memory bound: " + i + "\n");
+            return false;
+        }
+        if (tuples.isEmpty()) {
+            return true;
+        }
+
+        int tuples_per_block = tuples.get(0).getTuplesPerBlock();
+        int tuples_per_chunk = tuples_per_block * num_blocks;
+        for (int begin = 0; begin < tuples.size(); begin += tuples_per_chunk) {
+            int end = Math.min(begin + tuples_per_chunk, tuples.size());
+            int blocks = 0;
+            for (int t = begin; t < end; t += tuples_per_block) {
+                Block b = mem.getBlock(memory_block_index + blocks++);
+                if (!b.setTuples(tuples, t, Math.min(t + tuples_per_block, end))) {
+                    return false;
+                }
+            }
+            if (!setBlocks(getNumOfBlocks(), memory_block_index, blocks)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     // delete the block from starting_block_index to the last block
     // return false if out of bound
     public boolean deleteBlocks(int starting_block_index) {
@@ -220,15 +255,13 @@ public class Relation implements Serializable {
 
     public String toString() {
         String str = "";
-        ArrayList<Block> data = disk.tracks.get(schemaIndex);
-        int i = 0;
+        int num_blocks = disk.getTrackSize(schemaIndex);
         str += ("******RELATION DUMP BEGIN******\n");
         str += schemaManager.schemas[schemaIndex].fieldNamesToString();
         str += ("\n");
 
-        for (Block block : data) {
-            str += i + ": " + block.toString() + "\n";
-            i++;
+        for (int i = 0; i < num_blocks; i++) {
+            str += i + ": " + disk.peekBlock(schemaIndex, i).toString() + "\n";
         }
 
         str += "******RELATION DUMP END******";
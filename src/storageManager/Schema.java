@@ -28,6 +28,7 @@ public class Schema implements Serializable {
     private ArrayList<String> field_names;
     private ArrayList<FieldType> field_types;
     private TreeMap<String, Integer> field_offsets; // Maps a field name to a field offset.
+    private transient int[] field_positions; // Byte position of each field in a block slot.
 
     public Schema() {
         field_names = new ArrayList<>();
@@ -119,6 +120,7 @@ public class Schema implements Serializable {
     }
 
     void clear() {
+        field_positions = null;
         field_offsets.clear();
         this.field_names.clear();
         this.field_types.clear();
@@ -173,6 +175,26 @@ public class Schema implements Serializable {
         return field_offsets.get(field_name);
     }
 
+    // for internal use: byte position of the field at the offset
+    // inside a block slot, following the layout in Block
+    int getFieldPosition(int offset) {
+        if (field_positions == null) {
+            int[] positions = new int[field_types.size()];
+            int position = 0;
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = position;
+                position += Block.getFieldWidth(field_types.get(i));
+            }
+            field_positions = positions;
+        }
+        return field_positions[offset];
+    }
+
+    // returns the most fields a schema can have
+    public static int getMaxNumOfFields() {
+        return Config.MAX_NUM_OF_FIELDS_IN_RELATION;
+    }
+
     public int getNumOfFields() {
         return field_names.size();
     }
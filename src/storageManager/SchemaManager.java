@@ -1,6 +1,7 @@
 package storageManager;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.TreeMap;
 
 /* A schema manager maps a relation name to a relation and 
@@ -16,6 +17,9 @@ import java.util.TreeMap;
  *        	relation name and schema
  *        Every relation name must be unique.
  *        Once a relation is created, the schema cannot be changed
+ *        If the disk keeps a page file, the relations stored in the
+ *        	file are available again as soon as the schema manager
+ *        	is created.
  */
 
 public class SchemaManager implements Serializable {
@@ -36,6 +40,26 @@ public class SchemaManager implements Serializable {
 			schemas[i] = new Schema();
 		}
 		relation_name_to_index = new TreeMap<>();
+		disk.schemaManager = this;
+		if (disk.isPersistent()) {
+			loadCatalog();
+		}
+	}
+
+	// restores the relations recorded in the page file of the disk
+	private void loadCatalog() {
+		for (int i = 0; i < MAX_NUM_CREATING_RELATIONS; i++) {
+			String relation_name = disk.getCatalogRelationName(i);
+			if (relation_name == null) {
+				break;
+			}
+			offset = i + 1;
+			if (!relation_name.equals("")) {
+				relation_name_to_index.put(relation_name, i);
+				relations[i] = new Relation(this, i, relation_name, mem, disk);
+				schemas[i] = disk.getCatalogSchema(i);
+			}
+		}
 	}
 
 	// returns empty schema if the relation is not found
@@ -53,6 +77,11 @@ public class SchemaManager implements Serializable {
 		return (relation_name_to_index.containsKey(relation_name));
 	}
 
+	// returns the names of the relations, in alphabetical order
+	public ArrayList<String> getRelationNames() {
+		return new ArrayList<>(relation_name_to_index.keySet());
+	}
+
 	// returns a reference to the newly allocated relation;
 	// the relation name must not exist already
 	public Relation createRelation(String relation_name, Schema schema) {
@@ -72,6 +101,10 @@ public class SchemaManager implements Serializable {
 			System.err.print("createRelation ERROR: no more " + "relations can be created.\n");
 			return null;
 		}
+		if (!disk.setCatalog(offset, relation_name, schema)) {
+			System.err.print("createRelation ERROR: " + relation_name + " cannot be recorded in the page file\n");
+			return null;
+		}
 		relation_name_to_index.put(relation_name, offset);
 		relations[offset] = new Relation(this, offset, relation_name, mem, disk);
 		schemas[offset] = new Schema(schema);
@@ -98,6 +131,7 @@ public class SchemaManager implements Serializable {
 		int offset = relation_name_to_index.get(relation_name);
 		relations[offset].invalidate();
 		schemas[offset].clear();
+		disk.dropCatalog(offset);
 		relation_name_to_index.remove(relation_name);
 		return true;
 	}
@@ -16,13 +16,20 @@ import java.util.ArrayList;
  *          "invalidate" the tuple
  *          by using Tuple::invalidate() or Block::invalidateTuple() .
  *        You are able to get schema of a particular tuple through here.
+ *        A tuple read from a block is a read-only view over the block
+ *          page; its fields are only copied out when the tuple is changed.
  */
 
 public class Tuple implements Serializable {
     SchemaManager schemaManager;
     int schemaIndex; // points to the schema of the
     // relation which the tuple belongs to
-    private ArrayList<Field> fields; // stores int and string fields
+    private ArrayList<Field> fields; // stores int and string fields; null for a view
+    // a view reads its fields from a slot of a block page;
+    // the page is never written once a view refers to it
+    private byte[] page;
+    private int slotPosition;
+    private int nullMask;
 
     // DO NOT use the constructor here.
     // Create an empty tuple only through Schema
@@ -37,6 +44,13 @@ public class Tuple implements Serializable {
     protected Tuple(Tuple t) {
         schemaManager = t.schemaManager;
         schemaIndex = t.schemaIndex;
+        if (t.fields == null) {
+            // a view cannot change, so the copy shares the page
+            page = t.page;
+            slotPosition = t.slotPosition;
+            nullMask = t.nullMask;
+            return;
+        }
         // fields=(ArrayList<Field>) DeepCopy.copy(t.fields);
         this.fields = new ArrayList<>();
         for (Field field : t.fields) {
@@ -44,6 +58,65 @@ public class Tuple implements Serializable {
         }
     }
 
+    // for internal use: a view over the slot at slotPosition of a block page
+    Tuple(SchemaManager schemaManager, int schemaIndex, byte[] page, int slotPosition, int nullMask) {
+        this.schemaManager = schemaManager;
+        this.schemaIndex = schemaIndex;
+        this.page = page;
+        this.slotPosition = slotPosition;
+        this.nullMask = nullMask;
+    }
+
+    // for internal use: an invalid tuple of the schema
+    static Tuple invalidTuple(SchemaManager schemaManager, int schemaIndex) {
+        Tuple t = new Tuple();
+        t.schemaManager = schemaManager;
+        t.schemaIndex = schemaIndex;
+        return t;
+    }
+
+    // for internal use: views expose their slot so blocks can copy it directly
+    boolean isView() {
+        return fields == null;
+    }
+
+    byte[] getPage() {
+        return page;
+    }
+
+    int getSlotPosition() {
+        return slotPosition;
+    }
+
+    int getNullMask() {
+        return nullMask;
+    }
+
+    // copies the fields of a view out of the page before a change
+    private void materialize() {
+        if (fields == null) {
+            Schema schema = schemaManager.schemas[schemaIndex];
+            fields = new ArrayList<>(schema.getNumOfFields());
+            for (int i = 0; i < schema.getNumOfFields(); i++) {
+                fields.add(readField(schema, i));
+            }
+            page = null;
+        }
+    }
+
+    // decodes the field at the offset from the page of a view
+    private Field readField(Schema schema, int offset) {
+        Field f = new Field();
+        f.type = schema.getFieldType(offset);
+        int position = slotPosition + schema.getFieldPosition(offset);
+        if (f.type == FieldType.INT) {
+            f.integer = Block.readInt(page, position);
+        } else if ((nullMask & (1 << offset)) == 0) {
+            f.str = Block.readStr20(page, position);
+        }
+        return f;
+    }
+
     protected Tuple(SchemaManager schemaManager, int schemaIndex) {
         this.schemaManager = schemaManager;
         this.schemaIndex = schemaIndex;
@@ -61,7 +134,7 @@ public class Tuple implements Serializable {
 
     // returns true if the tuple is invalid
     public boolean isNull() {
-        return fields.size() == 0;
+        return fields != null && fields.size() == 0;
     }
 
     // returns the schema of the tuple
@@ -83,7 +156,8 @@ public class Tuple implements Serializable {
 
     // invalidates the tuple
     void invalidate() {
-        fields.clear();
+        fields = new ArrayList<>();
+        page = null;
     }
 
     // returns false if the type is wrong or out of bound
@@ -96,6 +170,7 @@ public class Tuple implements Serializable {
             System.err.print("setField ERROR: field type not FieldType.STR20!\n");
             return false;
         } else {
+            materialize();
             fields.get(offset).str = s;
         }
         return true;
@@ -111,6 +186,7 @@ public class Tuple implements Serializable {
             System.err.print("setField ERROR: field type not FieldType.INT!\n");
             return false;
         } else {
+            materialize();
             fields.get(offset).integer = i;
         }
         return true;
@@ -128,6 +204,7 @@ public class Tuple implements Serializable {
             System.err.print("setField ERROR: field type not FieldType.STR20!\n");
             return false;
         } else {
+            materialize();
             fields.get(offset).str = s;
         }
         return true;
@@ -145,6 +222,7 @@ public class Tuple implements Serializable {
             System.err.print("setField ERROR: field type not FieldType.INT!\n");
             return false;
         } else {
+            materialize();
             fields.get(offset).integer = i;
         }
         return true;
@@ -152,7 +230,10 @@ public class Tuple implements Serializable {
 
     // returns default field if out of bound
     public Field getField(int offset) {
-        if (offset < fields.size() && offset >= 0) {
+        if (fields == null && offset < getNumOfFields() && offset >= 0) {
+            return readField(schemaManager.schemas[schemaIndex], offset);
+        }
+        if (fields != null && offset < fields.size() && offset >= 0) {
             return new Field(fields.get(offset));
         } else {
             System.err.print("getField ERROR: offset " + offset + " is out of bound!\n");
@@ -160,11 +241,54 @@ public class Tuple implements Serializable {
         }
     }
 
+    // returns the integer of the field at the offset without copying the field;
+    // Integer.MIN_VALUE if out of bound, or for a STR20 field
+    public int getInteger(int offset) {
+        if (fields == null && offset < getNumOfFields() && offset >= 0) {
+            Schema schema = schemaManager.schemas[schemaIndex];
+            if (schema.getFieldType(offset) != FieldType.INT) {
+                return Integer.MIN_VALUE;
+            }
+            return Block.readInt(page, slotPosition + schema.getFieldPosition(offset));
+        }
+        if (fields != null && offset < fields.size() && offset >= 0) {
+            return fields.get(offset).integer;
+        }
+        System.err.print("getInteger ERROR: offset " + offset + " is out of bound!\n");
+        return Integer.MIN_VALUE;
+    }
+
+    // returns the string of the field at the offset without copying the field;
+    // null if out of bound, for a null STR20 field, or for an INT field
+    public String getStr(int offset) {
+        if (fields == null && offset < getNumOfFields() && offset >= 0) {
+            Schema schema = schemaManager.schemas[schemaIndex];
+            if (schema.getFieldType(offset) != FieldType.STR20 || (nullMask & (1 << offset)) != 0) {
+                return null;
+            }
+            return Block.readStr20(page, slotPosition + schema.getFieldPosition(offset));
+        }
+        if (fields != null && offset < fields.size() && offset >= 0) {
+            return fields.get(offset).str;
+        }
+        System.err.print("getStr ERROR: offset " + offset + " is out of bound!\n");
+        return null;
+    }
+
+    // for internal use: the field itself, not a copy
+    Field getFieldReference(int offset) {
+        materialize();
+        return fields.get(offset);
+    }
+
     // returns default field if out of bound
     public Field getField(String field_name) {
         Schema schema = schemaManager.schemas[schemaIndex];
         int offset = schema.getFieldOffset(field_name);
-        if (offset < fields.size() && offset >= 0) {
+        if (fields == null && offset >= 0) {
+            return readField(schema, offset);
+        }
+        if (fields != null && offset < fields.size() && offset >= 0) {
             return new Field(fields.get(offset));
         } else {
             System.err.print("getField ERROR: offset " + offset + " is out of bound!\n");
@@ -178,8 +302,9 @@ public class Tuple implements Serializable {
         if (print_field_names) {
             sb.append(schema.fieldNamesToString()).append("\n");
         }
-        for (Field field : fields) {
-            sb.append(field).append("\t");
+        int numOfFields = fields == null ? schema.getNumOfFields() : fields.size();
+        for (int i = 0; i < numOfFields; i++) {
+            sb.append(getField(i)).append("\t");
         }
         return sb.toString();
     }
@@ -0,0 +1,39 @@
+package test;
+
+import com.tamu.Parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static test.TestUtil.check;
+
+// Times Parser.parseText() on 100k INSERT statements and 100k SELECT statements with WHERE,
+// ORDER BY and LIMIT, 5 runs each, the way the numbers of the lexer-based parser were taken.
+public class ParserBenchmark {
+    private final static int NUM_OF_STATEMENTS = 100000;
+    private final static int NUM_OF_RUNS = 5;
+
+    private static void run(String description, List<String> statements) {
+        Parser parser = new Parser();
+        for (int run = 0; run < NUM_OF_RUNS; run++) {
+            long start = System.nanoTime();
+            for (String statement : statements) {
+                check(parser.parseText(statement) != null, "cannot parse " + statement);
+            }
+            System.out.printf("%s: %.0f ms%n", description, (System.nanoTime() - start) / 1e6);
+        }
+    }
+
+    public static void main(String[] args) {
+        List<String> inserts = new ArrayList<>();
+        List<String> selects = new ArrayList<>();
+        for (int i = 0; i < NUM_OF_STATEMENTS; i++) {
+            inserts.add("INSERT INTO course (sid, homework, project, exam, grade) VALUES (" + i + ", " + i % 100
+                    + ", " + i % 7 + ", " + i % 50 + ", \"grade " + i % 5 + "\")");
+            selects.add("SELECT sid, course.grade FROM course WHERE exam > " + i % 100 + " AND (project = " + i % 7
+                    + " OR grade = \"A\") ORDER BY exam LIMIT " + (i % 10 + 1));
+        }
+        run(NUM_OF_STATEMENTS + " INSERT ... VALUES", inserts);
+        run(NUM_OF_STATEMENTS + " SELECT ... WHERE ... ORDER BY ... LIMIT", selects);
+    }
+}
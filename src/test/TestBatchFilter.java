@@ -0,0 +1,90 @@
+package test;
+
+import com.tamu.Expression;
+import com.tamu.Statement;
+import com.tamu.buffer.BufferPool;
+import com.tamu.buffer.LRUPolicy;
+import com.tamu.operator.Filter;
+import com.tamu.operator.TableScan;
+import storageManager.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static test.TestUtil.check;
+import static test.TestUtil.leaf;
+import static test.TestUtil.operate;
+
+// Filters a relation a batch at a time, and checks that the tuples selected
+// are the ones Expression.evaluateBoolean() selects one tuple at a time.
+public class TestBatchFilter {
+    private final static int NUM_OF_TUPLES = 48;
+
+    private static MainMemory memory;
+    private static BufferPool bufferPool;
+    private static Relation relation;
+
+    // t(a, b, name, other) with a = i, b = i * 7 % 24, name = "n" + i % 5 and other = "n" + i % 3;
+    // the first tuple of the third block is deleted
+    private static void createRelation() {
+        relation = new SchemaManager(memory, new Disk()).createRelation("t", TestUtil.createSchema(
+                Arrays.asList("a", "b", "name", "other"), Arrays.asList(FieldType.INT, FieldType.INT, FieldType.STR20, FieldType.STR20)));
+        List<Tuple> tuples = new ArrayList<>();
+        for (int i = 0; i < NUM_OF_TUPLES; i++) {
+            tuples.add(TestUtil.createTuple(relation, i, i * 7 % 24, "n" + i % 5, "n" + i % 3));
+        }
+        TestUtil.load(relation, tuples, memory, bufferPool);
+        int frame = bufferPool.pin(relation, 2);
+        memory.getBlock(frame).invalidateTuple(0);
+        bufferPool.unpin(frame, true);
+        bufferPool.flushAll();
+    }
+
+    private static TableScan scan() {
+        return new TableScan("t", relation, memory, bufferPool);
+    }
+
+    private static void checkFilter(String description, List<Tuple> all, Statement... conditions) {
+        List<Integer> expected = new ArrayList<>();
+        for (Tuple tuple : all) {
+            boolean satisfied = true;
+            for (Statement condition : conditions) {
+                satisfied &= Expression.evaluateBoolean(condition, tuple);
+            }
+            if (satisfied) {
+                expected.add(tuple.getField("a").integer);
+            }
+        }
+        List<Integer> selected = new ArrayList<>();
+        for (Tuple tuple : TestUtil.collect(new Filter(scan(), Arrays.asList(conditions)), bufferPool)) {
+            selected.add(tuple.getField("a").integer);
+        }
+        check(selected.equals(expected), description + ": " + selected + " instead of " + expected);
+    }
+
+    public static void main(String[] args) {
+        memory = new MainMemory();
+        bufferPool = new BufferPool(memory, new LRUPolicy());
+        createRelation();
+
+        List<Tuple> all = TestUtil.collect(scan(), bufferPool);
+        check(all.size() == NUM_OF_TUPLES - 1, "scan of " + all.size() + " tuples");
+        check(TestUtil.collect(new Filter(scan(), Collections.emptyList()), bufferPool).size() == all.size(),
+                "filter without conditions");
+
+        checkFilter("a > 10", all, operate(">", leaf("COL_ID", "a"), leaf("INT", "10")));
+        checkFilter("30 > t.a", all, operate(">", leaf("INT", "30"), leaf("COL_ID", "t", "a")));
+        checkFilter("a + b = 20", all, operate("=", operate("+", leaf("COL_ID", "a"), leaf("COL_ID", "b")), leaf("INT", "20")));
+        checkFilter("b < a * 2", all, operate("<", leaf("COL_ID", "b"), operate("*", leaf("COL_ID", "a"), leaf("INT", "2"))));
+        checkFilter("name = \"n3\"", all, operate("=", leaf("COL_ID", "name"), leaf("STR20", "n3")));
+        checkFilter("name = other", all, operate("=", leaf("COL_ID", "name"), leaf("COL_ID", "other")));
+        // a vectorized comparison, and a disjunction checked a tuple at a time
+        checkFilter("a > 5 AND (name = other OR b < 3)", all,
+                operate(">", leaf("COL_ID", "a"), leaf("INT", "5")),
+                operate("OR", operate("=", leaf("COL_ID", "name"), leaf("COL_ID", "other")),
+                        operate("<", leaf("COL_ID", "b"), leaf("INT", "3"))));
+        System.out.println("Batch filter passed");
+    }
+}
@@ -0,0 +1,81 @@
+package test;
+
+import com.tamu.Condition;
+import com.tamu.Expression;
+import com.tamu.Projection;
+import com.tamu.Statement;
+import storageManager.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static test.TestUtil.check;
+import static test.TestUtil.leaf;
+import static test.TestUtil.operate;
+
+// Compiles conditions for a schema and checks that they evaluate as Expression.evaluateBoolean()
+// evaluates their statements, also when a condition of the same shape was compiled with other constants,
+// and that a projection selects the columns of the tuples that satisfy its conditions only.
+public class TestCondition {
+    private static Relation relation;
+
+    // the compiled condition against the statement evaluated on every tuple
+    private static void checkCondition(String description, Statement statement, boolean expected, Tuple... tuples) {
+        Condition condition = Condition.compile(statement, relation.getSchema());
+        check(condition.evaluate(tuples[0]) == expected, description);
+        for (Tuple tuple : tuples) {
+            check(condition.evaluate(tuple) == Expression.evaluateBoolean(statement, tuple), description + " on " + tuple);
+        }
+    }
+
+    public static void main(String[] args) {
+        relation = new SchemaManager(new MainMemory(), new Disk()).createRelation("course", TestUtil.createSchema(
+                Arrays.asList("sid", "exam", "name", "grade"), Arrays.asList(FieldType.INT, FieldType.INT, FieldType.STR20, FieldType.STR20)));
+        Tuple tuple = TestUtil.createTuple(relation, 17, 90, "x.y", "A");
+        Tuple other = TestUtil.createTuple(relation, 18, 70, "A", "A");
+
+        checkCondition("sid = 17", operate("=", leaf("COL_ID", "sid"), leaf("INT", "17")), true, tuple, other);
+        // the same shape with another constant
+        checkCondition("sid = 18", operate("=", leaf("COL_ID", "sid"), leaf("INT", "18")), false, tuple, other);
+        checkCondition("course.sid = 18", operate("=", leaf("COL_ID", "course", "sid"), leaf("INT", "18")), false, tuple, other);
+        checkCondition("80 < exam", operate("<", leaf("INT", "80"), leaf("COL_ID", "exam")), true, tuple, other);
+        checkCondition("exam > sid * 5", operate(">", leaf("COL_ID", "exam"),
+                operate("*", leaf("COL_ID", "sid"), leaf("INT", "5"))), true, tuple, other);
+        checkCondition("name = \"x.y\"", operate("=", leaf("COL_ID", "name"), leaf("STR20", "x.y")), true, tuple, other);
+        checkCondition("name = \"A\"", operate("=", leaf("COL_ID", "name"), leaf("STR20", "A")), false, tuple, other);
+        checkCondition("name = grade", operate("=", leaf("COL_ID", "name"), leaf("COL_ID", "grade")), false, tuple, other);
+        checkCondition("sid = 17 OR name = grade", operate("OR",
+                operate("=", leaf("COL_ID", "sid"), leaf("INT", "17")),
+                operate("=", leaf("COL_ID", "name"), leaf("COL_ID", "grade"))), true, tuple, other);
+
+        // constants only, bound again for each compile
+        checkCondition("1 = 1 AND sid > 10", operate("AND", operate("=", leaf("INT", "1"), leaf("INT", "1")),
+                operate(">", leaf("COL_ID", "sid"), leaf("INT", "10"))), true, tuple, other);
+        checkCondition("1 = 2 AND sid > 10", operate("AND", operate("=", leaf("INT", "1"), leaf("INT", "2")),
+                operate(">", leaf("COL_ID", "sid"), leaf("INT", "10"))), false, tuple, other);
+        checkCondition("2 * 3 = 6", operate("=", operate("*", leaf("INT", "2"), leaf("INT", "3")), leaf("INT", "6")), true, tuple);
+        checkCondition("\"a\" = \"b\"", operate("=", leaf("STR20", "a"), leaf("STR20", "b")), false, tuple);
+
+        // more literals than parameters: generated as constants
+        Statement many = operate("=", leaf("COL_ID", "sid"), leaf("INT", "0"));
+        for (int i = 1; i < 300; i++) {
+            many = operate("OR", many, operate("=", leaf("COL_ID", "sid"), leaf("INT", String.valueOf(i * 17))));
+        }
+        checkCondition("sid = 0 OR ... OR sid = 5083", many, true, tuple, other);
+
+        // the conditions fused with the selection of the columns
+        List<Statement> conditions = Arrays.asList(operate(">", leaf("COL_ID", "exam"), leaf("INT", "80")),
+                operate("=", leaf("COL_ID", "grade"), leaf("STR20", "A")));
+        Projection projection = Projection.compile(conditions, relation.getSchema(), new int[]{2, 0});
+        List<Field> fields = projection.apply(tuple);
+        check(fields != null && fields.size() == 2 && fields.get(0).str.equals("x.y") && fields.get(1).integer == 17, "projection of exam > 80");
+        check(projection.apply(other) == null, "projection of exam > 80 on a tuple that does not satisfy it");
+        // the same shape with other constants
+        projection = Projection.compile(Arrays.asList(operate(">", leaf("COL_ID", "exam"), leaf("INT", "60")),
+                operate("=", leaf("COL_ID", "grade"), leaf("STR20", "A"))), relation.getSchema(), new int[]{2, 0});
+        check(projection.apply(other) != null && projection.apply(other).get(0).str.equals("A"), "projection of exam > 60");
+        check(Projection.compile(Collections.emptyList(), relation.getSchema(), new int[0]).apply(tuple).isEmpty(), "projection of no columns");
+        System.out.println("Condition passed");
+    }
+}
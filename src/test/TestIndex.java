@@ -0,0 +1,356 @@
+package test;
+
+import com.tamu.Statement;
+import com.tamu.buffer.BufferPool;
+import com.tamu.buffer.LRUPolicy;
+import com.tamu.index.ClusteredIndex;
+import com.tamu.index.Index;
+import com.tamu.index.IndexCatalog;
+import com.tamu.operator.IndexNestedLoopJoin;
+import com.tamu.operator.IndexScan;
+import com.tamu.operator.Operator;
+import com.tamu.operator.TableScan;
+import storageManager.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+import static test.TestUtil.check;
+import static test.TestUtil.checkFramesFree;
+import static test.TestUtil.leaf;
+import static test.TestUtil.operate;
+
+// Builds indexes on a relation, changes their entries, and checks every lookup
+// against the entries kept in a map on the heap.
+public class TestIndex {
+    private final static int NUM_OF_TUPLES = 64;
+
+    private static MainMemory memory;
+    private static SchemaManager schemaManager;
+    private static BufferPool bufferPool;
+    private static IndexCatalog indexes = new IndexCatalog();
+
+    // r(k, v) with k = i * 7 % 25 and v = "v" + i % 9, so tuple i has the tuple id i
+    private static Relation createRelation() {
+        Relation relation = schemaManager.createRelation("r", TestUtil.createSchema(Arrays.asList("k", "v"),
+                Arrays.asList(FieldType.INT, FieldType.STR20)));
+        List<Tuple> tuples = new ArrayList<>();
+        for (int i = 0; i < NUM_OF_TUPLES; i++) {
+            tuples.add(TestUtil.createTuple(relation, i * 7 % 25, "v" + i % 9));
+        }
+        TestUtil.load(relation, tuples, memory, bufferPool);
+        return relation;
+    }
+
+    // the tuple ids of the entries whose keys compare with the value, sorted
+    private static List<Integer> expect(Map<Integer, Object> entries, char operator, Object value) {
+        List<Integer> tupleIds = new ArrayList<>();
+        for (Map.Entry<Integer, Object> entry : entries.entrySet()) {
+            int compare = value instanceof Integer ? Integer.compare((Integer) entry.getValue(), (Integer) value)
+                    : ((String) entry.getValue()).compareTo((String) value);
+            if ((operator == '=' && compare == 0) || (operator == '<' && compare < 0) || (operator == '>' && compare > 0)) {
+                tupleIds.add(entry.getKey());
+            }
+        }
+        return tupleIds;
+    }
+
+    private static void checkLookups(Index index, Map<Integer, Object> entries, List<Object> values) {
+        for (char operator : new char[]{'=', '<', '>'}) {
+            if (!index.supports(operator)) {
+                continue;
+            }
+            for (Object value : values) {
+                List<Integer> tupleIds = new ArrayList<>(index.lookup(operator, value));
+                Collections.sort(tupleIds);
+                check(tupleIds.equals(expect(entries, operator, value)),
+                        index.getName() + ": " + operator + " " + value + " found " + tupleIds);
+            }
+        }
+    }
+
+    // builds the index, inserts entries, moves and removes some, and clears it
+    private static void testIndex(Relation relation, String name, String fieldName, boolean hash, List<Object> values) {
+        Index index = indexes.create(name, relation, fieldName, hash, schemaManager, memory, bufferPool);
+        check(index != null, "create " + name);
+        index.build();
+        checkFramesFree(bufferPool);
+
+        Map<Integer, Object> entries = new TreeMap<>();
+        for (int i = 0; i < NUM_OF_TUPLES; i++) {
+            entries.put(i, fieldName.equals("k") ? (Object) (i * 7 % 25) : "v" + i % 9);
+        }
+        checkLookups(index, entries, values);
+
+        // more entries, enough to split the nodes or buckets that hold them
+        List<Object> keys = new ArrayList<>();
+        List<Integer> tupleIds = new ArrayList<>();
+        for (int i = NUM_OF_TUPLES; i < 2 * NUM_OF_TUPLES; i++) {
+            Object key = fieldName.equals("k") ? (Object) (i * 3 % 25) : "v" + i % 4;
+            keys.add(key);
+            tupleIds.add(i);
+            entries.put(i, key);
+        }
+        index.insert(keys, tupleIds);
+        checkLookups(index, entries, values);
+
+        // the tuples of a key move to other tuple ids, and every other one is removed
+        Object key = entries.get(1);
+        Map<Integer, Integer> changes = new HashMap<>();
+        for (int tupleId : expect(entries, '=', key)) {
+            int to = changes.size() % 2 == 0 ? 1000 + tupleId : -1;
+            changes.put(tupleId, to);
+        }
+        for (Map.Entry<Integer, Integer> change : changes.entrySet()) {
+            entries.remove(change.getKey());
+            if (change.getValue() != -1) {
+                entries.put(change.getValue(), key);
+            }
+        }
+        index.update(Collections.singletonMap(key, changes));
+        checkLookups(index, entries, values);
+
+        index.clear();
+        checkLookups(index, new TreeMap<>(), values);
+        checkFramesFree(bufferPool);
+    }
+
+    // every tuple of the operator, as a string
+    private static List<String> collect(Operator operator) {
+        List<String> tuples = new ArrayList<>();
+        for (Tuple tuple : TestUtil.collect(operator, bufferPool)) {
+            tuples.add(tuple.toString());
+        }
+        return tuples;
+    }
+
+    // the tuples of the relation that the filter keeps, in the order of a scan
+    private static List<String> select(Relation relation, Predicate<Tuple> filter) {
+        List<String> tuples = new ArrayList<>();
+        TableScan scan = new TableScan(relation.getRelationName(), relation, memory, bufferPool);
+        scan.open();
+        for (Tuple tuple = scan.next(); tuple != null; tuple = scan.next()) {
+            if (filter.test(tuple)) {
+                tuples.add(tuple.toString());
+            }
+        }
+        scan.close();
+        return tuples;
+    }
+
+    // scans r through the lookups of an index, and joins s(c) to r on c = r.k through the index
+    private static void testIndexScans(Relation r, String name, boolean hash) {
+        Index index = indexes.create(name, r, "k", hash, schemaManager, memory, bufferPool);
+        index.build();
+
+        IndexScan scan = new IndexScan("r", r, index, '=', 7, memory, bufferPool);
+        check(collect(scan).equals(select(r, tuple -> tuple.getField("k").integer == 7)), name + ": scan of k = 7");
+        scan.setValue(12);
+        check(collect(scan).equals(select(r, tuple -> tuple.getField("k").integer == 12)), name + ": scan of k = 12");
+        check(collect(new IndexScan("r", r, index, '=', 40, memory, bufferPool)).isEmpty(), name + ": scan of k = 40");
+        if (!hash) {
+            check(collect(new IndexScan("r", r, index, '<', 5, memory, bufferPool))
+                    .equals(select(r, tuple -> tuple.getField("k").integer < 5)), name + ": scan of k < 5");
+        }
+
+        Relation s = schemaManager.getRelation("s");
+        Relation joined = schemaManager.getRelation("temp_s_join_r");
+        List<String> expected = new ArrayList<>();
+        TableScan outer = new TableScan("s", s, memory, bufferPool);
+        outer.open();
+        for (Tuple sTuple = outer.next(); sTuple != null; sTuple = outer.next()) {
+            int c = sTuple.getField("c").integer;
+            for (String rTuple : select(r, tuple -> tuple.getField("k").integer == c)) {
+                expected.add(c + "\t" + rTuple);
+            }
+        }
+        outer.close();
+
+        Statement equal = operate("=", leaf("COL_ID", "s", "c"), leaf("COL_ID", "r", "k"));
+        IndexScan lookup = new IndexScan("r", r, index, '=', null, memory, bufferPool);
+        List<String> tuples = collect(new IndexNestedLoopJoin(new TableScan("s", s, memory, bufferPool), lookup, lookup,
+                joined, "s.c", Collections.singletonList(equal)));
+        check(tuples.equals(expected), name + ": index nested-loop join of " + tuples.size() + " tuples");
+    }
+
+    // inserts tuples of the keys into the clustered relation, and moves the tuples of the map as the splits did;
+    // the map is from the tuple ids to the fields v, which number the tuples, and keys is from v to k
+    private static void insert(ClusteredIndex cluster, Relation relation, List<Integer> newKeys,
+                               Map<Integer, Integer> tuples, Map<Integer, Integer> keys) {
+        List<Tuple> newTuples = new ArrayList<>();
+        for (int key : newKeys) {
+            Tuple tuple = relation.createTuple();
+            tuple.setField("k", key);
+            tuple.setField("v", keys.size());
+            keys.put(keys.size(), key);
+            newTuples.add(tuple);
+        }
+        List<ClusteredIndex.Move> moves = new ArrayList<>();
+        List<Integer> tupleIds = cluster.insertTuples(newTuples, moves);
+        checkFramesFree(bufferPool);
+
+        Map<Integer, Integer> moved = new HashMap<>();
+        for (ClusteredIndex.Move move : moves) {
+            check(tuples.containsKey(move.from), "move of no tuple from " + move.from);
+            moved.put(move.to, tuples.remove(move.from));
+        }
+        tuples.putAll(moved);
+        for (int i = 0; i < newTuples.size(); i++) {
+            tuples.put(tupleIds.get(i), newTuples.get(i).getField("v").integer);
+        }
+    }
+
+    // the tuples of the relation against the map, the keys of its blocks in the order of the cluster,
+    // and the lookups against the tuples of the map
+    private static void checkCluster(ClusteredIndex cluster, Relation relation, Map<Integer, Integer> tuples,
+                                     Map<Integer, Integer> keys) {
+        int tuplesPerBlock = relation.getSchema().getTuplesPerBlock();
+        Map<Integer, Integer> found = new TreeMap<>();
+        for (int block = 0; block < bufferPool.getNumOfBlocks(relation); block++) {
+            int frame = bufferPool.pin(relation, block);
+            List<Tuple> blockTuples = memory.getBlock(frame).getTuples();
+            for (int i = 0; i < blockTuples.size(); i++) {
+                if (!blockTuples.get(i).isNull()) {
+                    found.put(block * tuplesPerBlock + i, blockTuples.get(i).getField("v").integer);
+                }
+            }
+            bufferPool.unpin(frame, false);
+        }
+        check(found.equals(new TreeMap<>(tuples)), "cluster holds " + found + " instead of " + tuples);
+
+        // every block holding a tuple once, in the order of the keys
+        List<Integer> order = new ArrayList<>();
+        for (int tupleId : cluster.lookup('<', Integer.MAX_VALUE)) {
+            if (order.isEmpty() || order.get(order.size() - 1) != tupleId / tuplesPerBlock) {
+                order.add(tupleId / tuplesPerBlock);
+            }
+        }
+        Set<Integer> blocks = new HashSet<>();
+        for (int tupleId : tuples.keySet()) {
+            blocks.add(tupleId / tuplesPerBlock);
+        }
+        check(order.size() == blocks.size() && blocks.containsAll(order), "order of the blocks " + order);
+        int largest = Integer.MIN_VALUE;
+        for (int block : order) {
+            int smallest = Integer.MAX_VALUE;
+            int blockLargest = Integer.MIN_VALUE;
+            for (Map.Entry<Integer, Integer> entry : tuples.entrySet()) {
+                if (entry.getKey() / tuplesPerBlock == block) {
+                    smallest = Math.min(smallest, keys.get(entry.getValue()));
+                    blockLargest = Math.max(blockLargest, keys.get(entry.getValue()));
+                }
+            }
+            check(largest <= smallest, "keys of block " + block + " out of order");
+            largest = blockLargest;
+        }
+
+        // the slots looked up hold every tuple of the keys
+        Map<Integer, Object> entries = new TreeMap<>();
+        for (Map.Entry<Integer, Integer> entry : tuples.entrySet()) {
+            entries.put(entry.getKey(), keys.get(entry.getValue()));
+        }
+        for (char operator : new char[]{'=', '<', '>'}) {
+            for (int value : new int[]{-1, 0, 7, 12, 24, 30}) {
+                check(new HashSet<>(cluster.lookup(operator, value)).containsAll(expect(entries, operator, value)),
+                        "cluster lookup of " + operator + " " + value);
+            }
+        }
+    }
+
+    // clusters an empty relation c(k, v) by k, inserts tuples in batches, and deletes a block of them
+    private static void testCluster() {
+        Relation relation = schemaManager.createRelation("c", TestUtil.createSchema("k", "v"));
+        ClusteredIndex cluster = indexes.cluster(relation, "k", memory, bufferPool);
+        check(indexes.getIndexes("c", "k", '<').contains(cluster), "cluster of the catalog");
+        Map<Integer, Integer> tuples = new HashMap<>();
+        Map<Integer, Integer> keys = new HashMap<>();
+
+        List<Integer> newKeys = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            newKeys.add(i * 7 % 25);
+        }
+        insert(cluster, relation, newKeys, tuples, keys);
+        checkCluster(cluster, relation, tuples, keys);
+
+        // keys between the ones there, which split their blocks
+        newKeys.clear();
+        for (int i = 0; i < 16; i++) {
+            newKeys.add(i * 3 % 25);
+        }
+        insert(cluster, relation, newKeys, tuples, keys);
+        checkCluster(cluster, relation, tuples, keys);
+
+        // a block in the middle of the order is emptied and freed, and later tuples may fill it again
+        int tuplesPerBlock = relation.getSchema().getTuplesPerBlock();
+        List<Integer> order = new ArrayList<>();
+        for (int tupleId : cluster.lookup('<', Integer.MAX_VALUE)) {
+            if (order.isEmpty() || order.get(order.size() - 1) != tupleId / tuplesPerBlock) {
+                order.add(tupleId / tuplesPerBlock);
+            }
+        }
+        int block = order.get(order.size() / 2);
+        int frame = bufferPool.pin(relation, block);
+        for (int i = 0; i < memory.getBlock(frame).getTuples().size(); i++) {
+            memory.getBlock(frame).invalidateTuple(i);
+            tuples.remove(block * tuplesPerBlock + i);
+        }
+        bufferPool.unpin(frame, true);
+        cluster.free(Collections.singletonList(block));
+        checkCluster(cluster, relation, tuples, keys);
+
+        newKeys.clear();
+        for (int i = 0; i < 12; i++) {
+            newKeys.add(i * 11 % 25);
+        }
+        insert(cluster, relation, newKeys, tuples, keys);
+        checkCluster(cluster, relation, tuples, keys);
+
+        cluster.clear();
+        check(cluster.lookup('=', 7).isEmpty(), "cleared cluster");
+    }
+
+    public static void main(String[] args) {
+        memory = new MainMemory();
+        schemaManager = new SchemaManager(memory, new Disk());
+        bufferPool = new BufferPool(memory, new LRUPolicy());
+        Relation relation = createRelation();
+        List<Object> intValues = Arrays.asList(-1, 0, 7, 12, 24, 30);
+        List<Object> strValues = Arrays.asList("", "v0", "v3", "v8", "w");
+
+        testIndex(relation, "rk", "k", false, intValues);
+        testIndex(relation, "rv", "v", false, strValues);
+        check(!indexes.get("rv").supports('<'), "a B+-tree on a STR20 column looks up = only");
+        check(indexes.getIndex("r", "k", '<') == indexes.get("rk"), "index of the catalog");
+        System.out.println("B+-tree passed");
+
+        testIndex(relation, "hk", "k", true, intValues);
+        testIndex(relation, "hv", "v", true, strValues);
+        check(!indexes.get("hk").supports('<') && !indexes.get("hk").supports('>'), "a hash index looks up = only");
+        check(indexes.getIndex("r", "k", '<') == indexes.get("rk"), "range lookups go to the B+-tree");
+        System.out.println("Hash index passed");
+
+        // s(c) with c = i * 4 % 30, some of them keys of r and some not
+        Relation s = schemaManager.createRelation("s", TestUtil.createSchema("c"));
+        List<Tuple> tuples = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            tuples.add(TestUtil.createTuple(s, i * 4 % 30));
+        }
+        TestUtil.load(s, tuples, memory, bufferPool);
+        schemaManager.createRelation("temp_s_join_r", TestUtil.createSchema(Arrays.asList("s.c", "r.k", "r.v"),
+                Arrays.asList(FieldType.INT, FieldType.INT, FieldType.STR20)));
+        testIndexScans(relation, "jk", false);
+        testIndexScans(relation, "jh", true);
+        System.out.println("Index scan and index nested-loop join passed");
+
+        testCluster();
+        System.out.println("Clustered index passed");
+    }
+}
@@ -0,0 +1,184 @@
+package test;
+
+import com.tamu.Statement;
+import com.tamu.buffer.BufferPool;
+import com.tamu.buffer.LRUPolicy;
+import com.tamu.operator.*;
+import storageManager.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static test.TestUtil.check;
+import static test.TestUtil.leaf;
+import static test.TestUtil.operate;
+
+// Runs the operators of a query plan over relations larger than the memory,
+// and checks their tuples against the ones computed on the heap.
+public class TestOperators {
+    // the frames left to the scans, as a query of two relations reserves them
+    private final static int RESERVE = 2;
+
+    private static MainMemory memory;
+    private static SchemaManager schemaManager;
+    private static BufferPool bufferPool;
+
+    private static Relation createRelation(String name, String... fieldNames) {
+        return schemaManager.createRelation(name, TestUtil.createSchema(fieldNames));
+    }
+
+    private static void load(Relation relation, List<int[]> rows) {
+        List<Tuple> tuples = new ArrayList<>();
+        for (int[] row : rows) {
+            tuples.add(TestUtil.createTuple(relation, Arrays.stream(row).boxed().toArray()));
+        }
+        TestUtil.load(relation, tuples, memory, bufferPool);
+    }
+
+    // every tuple of the operator, as the list of its fields
+    private static List<List<Integer>> collect(Operator operator) {
+        List<List<Integer>> tuples = new ArrayList<>();
+        for (Tuple tuple : TestUtil.collect(operator, bufferPool)) {
+            List<Integer> fields = new ArrayList<>();
+            for (int i = 0; i < tuple.getNumOfFields(); i++) {
+                fields.add(tuple.getField(i).integer);
+            }
+            tuples.add(fields);
+        }
+        return tuples;
+    }
+
+    private static List<List<Integer>> sorted(List<List<Integer>> tuples) {
+        List<List<Integer>> sorted = new ArrayList<>(tuples);
+        sorted.sort((t1, t2) -> {
+            for (int i = 0; i < t1.size(); i++) {
+                int compare = Integer.compare(t1.get(i), t2.get(i));
+                if (compare != 0) {
+                    return compare;
+                }
+            }
+            return 0;
+        });
+        return sorted;
+    }
+
+    private static TableScan scan(Relation relation) {
+        return new TableScan(relation.getRelationName(), relation, memory, bufferPool);
+    }
+
+    // r(a, b) has 60 tuples in 15 blocks, b = a * 37 % 60; s(c) has 40 tuples in 5 blocks, c = i * 3 % 70
+    private static List<int[]> rRows() {
+        List<int[]> rows = new ArrayList<>();
+        for (int a = 0; a < 60; a++) {
+            rows.add(new int[]{a, a * 37 % 60});
+        }
+        return rows;
+    }
+
+    private static List<int[]> sRows() {
+        List<int[]> rows = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            rows.add(new int[]{i * 3 % 70});
+        }
+        return rows;
+    }
+
+    private static void testScanFilterLimit(Relation r) {
+        check(collect(scan(r)).size() == 60, "scan");
+
+        // a > 50 AND b < 30
+        Statement greater = operate(">", leaf("COL_ID", "a"), leaf("INT", "50"));
+        Statement less = operate("<", leaf("COL_ID", "b"), leaf("INT", "30"));
+        List<List<Integer>> expected = new ArrayList<>();
+        for (int[] row : rRows()) {
+            if (row[0] > 50 && row[1] < 30) {
+                expected.add(Arrays.asList(row[0], row[1]));
+            }
+        }
+        check(collect(new Filter(scan(r), Arrays.asList(greater, less))).equals(expected), "filter");
+
+        check(collect(new Limit(scan(r), 5)).size() == 5, "limit");
+        List<String> columns = Collections.singletonList("r.b");
+        Project project = new Project(scan(r), columns, columns);
+        check(collect(project).size() == 60 && project.getFieldNames().equals(columns), "project");
+        System.out.println("Scan, filter and limit passed");
+    }
+
+    private static void testSort(Relation r) {
+        List<List<Integer>> tuples = collect(new Sort(scan(r), Collections.singletonList("r.b"), "sort",
+                schemaManager, memory, bufferPool, RESERVE));
+        check(tuples.size() == 60, "sort lost tuples");
+        for (int i = 1; i < tuples.size(); i++) {
+            check(tuples.get(i - 1).get(1) <= tuples.get(i).get(1), "sort order at " + i);
+        }
+        System.out.println("External sort passed");
+    }
+
+    private static void testDistinct() {
+        // 50 distinct tuples, more than fit in the frames, so the hash path spills
+        Relation d = createRelation("d", "x", "y");
+        List<int[]> rows = new ArrayList<>();
+        Set<List<Integer>> expected = new HashSet<>();
+        for (int i = 0; i < 120; i++) {
+            rows.add(new int[]{i % 50, i % 50 * 2});
+            expected.add(Arrays.asList(i % 50, i % 50 * 2));
+        }
+        load(d, rows);
+
+        for (boolean hash : new boolean[]{true, false}) {
+            // every temp relation is named after the test, so none is dropped and created again
+            List<List<Integer>> tuples = collect(new Distinct(scan(d), Arrays.asList("d.x", "d.y"), hash,
+                    hash ? "hash_distinct" : "sort_distinct", schemaManager, memory, bufferPool, RESERVE));
+            check(tuples.size() == expected.size() && new HashSet<>(tuples).equals(expected),
+                    (hash ? "hash" : "sort") + " distinct");
+        }
+        System.out.println("Distinct passed");
+    }
+
+    private static void testJoins(Relation r, Relation s) {
+        List<List<Integer>> expected = new ArrayList<>();
+        for (int[] rRow : rRows()) {
+            for (int[] sRow : sRows()) {
+                if (rRow[0] == sRow[0]) {
+                    expected.add(Arrays.asList(rRow[0], rRow[1], sRow[0]));
+                }
+            }
+        }
+        expected = sorted(expected);
+        Relation joined = createRelation("temp_r_join_s", "r.a", "r.b", "s.c");
+        List<String> rKeys = Collections.singletonList("r.a");
+        List<String> sKeys = Collections.singletonList("s.c");
+        Statement equal = operate("=", leaf("COL_ID", "r", "a"), leaf("COL_ID", "s", "c"));
+
+        // r is the build side, too big for the frames, so both sides are partitioned
+        check(sorted(collect(new HashJoin(scan(s), scan(r), joined, sKeys, rKeys, Collections.emptyList(),
+                schemaManager, memory, bufferPool, RESERVE))).equals(expected), "hash join, build side spilled");
+        check(sorted(collect(new HashJoin(scan(r), scan(s), joined, rKeys, sKeys, Collections.emptyList(),
+                schemaManager, memory, bufferPool, RESERVE))).equals(expected), "hash join in memory");
+        check(sorted(collect(new MergeJoin(scan(r), scan(s), joined, rKeys, sKeys, Collections.emptyList(), "r", "s",
+                schemaManager, memory, bufferPool, RESERVE))).equals(expected), "merge join");
+        check(sorted(collect(new NestedLoopJoin(scan(r), scan(s), joined, Collections.singletonList(equal),
+                bufferPool, 4, RESERVE))).equals(expected), "nested-loop join");
+        System.out.println("Joins passed");
+    }
+
+    public static void main(String[] args) {
+        memory = new MainMemory();
+        schemaManager = new SchemaManager(memory, new Disk());
+        bufferPool = new BufferPool(memory, new LRUPolicy());
+
+        Relation r = createRelation("r", "a", "b");
+        load(r, rRows());
+        Relation s = createRelation("s", "c");
+        load(s, sRows());
+
+        testScanFilterLimit(r);
+        testSort(r);
+        testDistinct();
+        testJoins(r, s);
+    }
+}
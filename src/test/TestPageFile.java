@@ -0,0 +1,102 @@
+package test;
+
+import storageManager.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static test.TestUtil.check;
+
+// Writes blocks to a disk kept in a page file, reopens the file
+// and checks that the relation and its blocks are read back unchanged.
+public class TestPageFile {
+    // past the first two extents of 4096 pages of the track
+    private final static int FAR_BLOCK = 2 * 4096 + 5;
+
+    private static Schema createSchema() {
+        return TestUtil.createSchema(Arrays.asList("id", "name"), Arrays.asList(FieldType.INT, FieldType.STR20));
+    }
+
+    private static void fillBlock(Relation relation, Block block, int first) {
+        block.clear();
+        for (int i = 0; i < relation.getSchema().getTuplesPerBlock(); i++) {
+            Tuple tuple = relation.createTuple();
+            tuple.setField("id", first + i);
+            tuple.setField("name", "name" + (first + i));
+            block.appendTuple(tuple);
+        }
+    }
+
+    private static void checkBlock(Block block, int first) {
+        ArrayList<Tuple> tuples = block.getTuples();
+        check(!tuples.isEmpty(), "block of " + first + " is empty");
+        for (int i = 0; i < tuples.size(); i++) {
+            check(tuples.get(i).getField("id").integer == first + i, "id of tuple " + (first + i));
+            check(tuples.get(i).getField("name").str.equals("name" + (first + i)), "name of tuple " + (first + i));
+        }
+    }
+
+    // a block written to the heap disk and read back
+    private static void testBlockRoundTrip() {
+        MainMemory memory = new MainMemory();
+        SchemaManager schemaManager = new SchemaManager(memory, new Disk());
+        Relation relation = schemaManager.createRelation("students", createSchema());
+
+        fillBlock(relation, memory.getBlock(0), 1);
+        check(relation.setBlock(0, 0), "setBlock");
+        memory.getBlock(1).clear();
+        check(relation.getBlock(0, 1), "getBlock");
+        checkBlock(memory.getBlock(1), 1);
+
+        memory.getBlock(1).invalidateTuple(0);
+        check(relation.setBlock(0, 1) && relation.getBlock(0, 2), "rewrite");
+        check(memory.getBlock(2).getNumTuples() == relation.getSchema().getTuplesPerBlock() - 1, "invalidated tuple");
+        System.out.println("Block round trip passed");
+    }
+
+    // blocks in several extents of a page file, read back after the file is reopened
+    private static void testPageFileRoundTrip(String fileName) {
+        MainMemory memory = new MainMemory();
+        Disk disk = new Disk(fileName);
+        check(disk.isPersistent(), "page file cannot be used");
+        Relation relation = new SchemaManager(memory, disk).createRelation("students", createSchema());
+        fillBlock(relation, memory.getBlock(0), 1);
+        check(relation.setBlock(0, 0), "setBlock of the first block");
+        fillBlock(relation, memory.getBlock(0), 100);
+        check(relation.setBlock(FAR_BLOCK, 0), "setBlock past an extent");
+        disk.close();
+
+        memory = new MainMemory();
+        disk = new Disk(fileName);
+        SchemaManager schemaManager = new SchemaManager(memory, disk);
+        check(schemaManager.relationExists("students"), "relation is not in the catalog");
+        relation = schemaManager.getRelation("students");
+        check(relation.getNumOfBlocks() == FAR_BLOCK + 1, "number of blocks " + relation.getNumOfBlocks());
+        check(relation.getBlock(0, 0) && relation.getBlock(FAR_BLOCK, 1), "getBlock");
+        checkBlock(memory.getBlock(0), 1);
+        checkBlock(memory.getBlock(1), 100);
+        check(relation.getBlock(FAR_BLOCK / 2, 2) && memory.getBlock(2).getNumTuples() == 0, "gap block");
+
+        // a relation whose name does not fit in the catalog is not created
+        StringBuilder longName = new StringBuilder();
+        for (int i = 0; i < 600; i++) {
+            longName.append('r');
+        }
+        check(schemaManager.createRelation(longName.toString(), createSchema()) == null, "catalog overflow");
+        disk.close();
+        System.out.println("Page file round trip passed");
+    }
+
+    public static void main(String[] args) throws IOException {
+        testBlockRoundTrip();
+        File file = File.createTempFile("pagefile", ".db");
+        file.delete();
+        try {
+            testPageFileRoundTrip(file.getPath());
+        } finally {
+            file.delete();
+        }
+    }
+}
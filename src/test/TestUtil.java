@@ -0,0 +1,102 @@
+package test;
+
+import com.tamu.Statement;
+import com.tamu.buffer.BufferPool;
+import com.tamu.operator.Operator;
+import storageManager.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Helpers shared by the tests: checks, schemas and tuples, relations loaded through a buffer pool,
+// operators pulled to the end, and the statements of conditions as the parser builds them.
+public class TestUtil {
+    public static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(getTestName() + " failed: " + message);
+        }
+    }
+
+    // the name of the test class that called in
+    private static String getTestName() {
+        for (StackTraceElement element : Thread.currentThread().getStackTrace()) {
+            String className = element.getClassName();
+            if (className.startsWith("test.") && !className.equals(TestUtil.class.getName())) {
+                return className.substring("test.".length()).split("\\$")[0];
+            }
+        }
+        return "Test";
+    }
+
+    public static Schema createSchema(List<String> fieldNames, List<FieldType> fieldTypes) {
+        return new Schema(new ArrayList<>(fieldNames), new ArrayList<>(fieldTypes));
+    }
+
+    // a schema of INT fields only
+    public static Schema createSchema(String... fieldNames) {
+        List<FieldType> fieldTypes = new ArrayList<>();
+        for (String ignored : fieldNames) {
+            fieldTypes.add(FieldType.INT);
+        }
+        return createSchema(Arrays.asList(fieldNames), fieldTypes);
+    }
+
+    // a tuple of the relation with the values, an Integer or a String for each field
+    public static Tuple createTuple(Relation relation, Object... values) {
+        Tuple tuple = relation.createTuple();
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] instanceof Integer) {
+                tuple.setField(i, (Integer) values[i]);
+            } else {
+                tuple.setField(i, (String) values[i]);
+            }
+        }
+        return tuple;
+    }
+
+    // appends the tuples to the empty relation through the buffer pool, so tuple i has the tuple id i
+    public static void load(Relation relation, List<Tuple> tuples, MainMemory memory, BufferPool bufferPool) {
+        int tuplesPerBlock = relation.getSchema().getTuplesPerBlock();
+        for (int i = 0; i < tuples.size(); i += tuplesPerBlock) {
+            int frame = bufferPool.pinNew(relation, i / tuplesPerBlock);
+            for (Tuple tuple : tuples.subList(i, Math.min(i + tuplesPerBlock, tuples.size()))) {
+                memory.getBlock(frame).appendTuple(tuple);
+            }
+            bufferPool.unpin(frame, true);
+        }
+        bufferPool.flushAll();
+    }
+
+    public static void checkFramesFree(BufferPool bufferPool) {
+        check(bufferPool.getNumOfAvailableFrames() == bufferPool.getNumOfFrames(), "frames left pinned or claimed");
+    }
+
+    // every tuple of the operator, which must give back its frames when it is closed
+    public static List<Tuple> collect(Operator operator, BufferPool bufferPool) {
+        List<Tuple> tuples = new ArrayList<>();
+        operator.open();
+        for (Tuple tuple = operator.next(); tuple != null; tuple = operator.next()) {
+            tuples.add(tuple);
+        }
+        operator.close();
+        checkFramesFree(bufferPool);
+        return tuples;
+    }
+
+    // a leaf of a condition, e.g. COL_ID with the parts of the column name, or INT with the constant
+    public static Statement leaf(String type, String... parts) {
+        Statement statement = new Statement(type);
+        for (String part : parts) {
+            statement.branches.add(new Statement(part));
+        }
+        return statement;
+    }
+
+    public static Statement operate(String operator, Statement left, Statement right) {
+        Statement statement = new Statement(operator);
+        statement.branches.add(left);
+        statement.branches.add(right);
+        return statement;
+    }
+}